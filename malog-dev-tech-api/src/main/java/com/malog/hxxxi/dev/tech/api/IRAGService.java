@@ -1,5 +1,8 @@
 package com.malog.hxxxi.dev.tech.api;
 
+import com.malog.hxxxi.dev.tech.api.dto.IngestJobResponseDTO;
+import com.malog.hxxxi.dev.tech.api.dto.QuantizationReportResponseDTO;
+import com.malog.hxxxi.dev.tech.api.dto.RagTagResponseDTO;
 import com.malog.hxxxi.dev.tech.api.response.Response;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -20,22 +23,55 @@ public interface IRAGService {
     Response<List<String>> queryRagTagList();
 
     /**
-     * 上传文件到指定的RAG标签下
+     * 查询RAG标签及统计
+     *
+     * @return 各标签的切片数、字节数、最近入库时间及 embedding 模型
+     */
+    Response<List<RagTagResponseDTO>> queryRagTagStats();
+
+    /**
+     * 上传文件到指定的RAG标签下，异步入库
      *
      * @param ragTag RAG标签名称，用于标识文件所属的分类
      * @param files 要上传的文件列表，支持多个文件同时上传
-     * @return 包含上传结果信息的响应对象
+     * @return 包含入库任务ID的响应对象
      */
     Response<String> uploadFile(String ragTag, List<MultipartFile> files);
 
     /**
-     * 分析Git仓库并上传知识库
+     * 分析Git仓库并上传知识库，异步入库
      *
      * @param repoUrl  Git仓库URL
      * @param userName Git仓库用户名
      * @param token    Git仓库访问令牌
-     * @return 响应结果
+     * @return 包含入库任务ID的响应对象
      */
     Response<String> analyzeGitRepository(String repoUrl, String userName, String token) throws Exception;
 
+    /**
+     * 查询入库任务进度
+     *
+     * @param jobId 入库任务ID
+     * @return 任务状态及已解析文件数、已向量化切片数、已写入行数和吞吐量
+     */
+    Response<IngestJobResponseDTO> queryIngestJob(String jobId);
+
+    /**
+     * 删除知识库标签及其下全部切片
+     *
+     * @param ragTag RAG标签名称
+     * @return 删除结果
+     */
+    Response<Boolean> deleteRagTag(String ragTag);
+
+    /**
+     * 对比标签下各量化方式的召回率与检索延迟
+     *
+     * @param ragTag  RAG标签名称
+     * @param samples 抽样查询数，最多 100
+     * @param topK    每次查询返回的条数，最多 50
+     * @return 各量化方式的 recall@topK、平均与 p95 耗时及索引大小
+     */
+    Response<QuantizationReportResponseDTO> queryQuantizationReport(String ragTag, int samples, int topK);
+
 }
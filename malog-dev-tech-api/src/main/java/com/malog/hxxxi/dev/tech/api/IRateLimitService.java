@@ -0,0 +1,37 @@
+package com.malog.hxxxi.dev.tech.api;
+
+import com.malog.hxxxi.dev.tech.api.dto.RateLimitRuleDTO;
+import com.malog.hxxxi.dev.tech.api.response.Response;
+
+import java.util.List;
+
+/**
+ * 限流规则管理接口
+ * 规则修改后集群内各节点同步生效，无需重启
+ */
+public interface IRateLimitService {
+
+    /**
+     * 查询全部限流规则
+     *
+     * @return 按接口类别排序的规则列表
+     */
+    Response<List<RateLimitRuleDTO>> queryRules();
+
+    /**
+     * 新增或修改限流规则
+     *
+     * @param rule 限流规则，按接口类别覆盖
+     * @return 修改结果
+     */
+    Response<Boolean> updateRule(RateLimitRuleDTO rule);
+
+    /**
+     * 删除限流规则
+     *
+     * @param endpointClass 接口类别
+     * @return 删除结果
+     */
+    Response<Boolean> deleteRule(String endpointClass);
+
+}
@@ -0,0 +1,55 @@
+package com.malog.hxxxi.dev.tech.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * @Auth : Malog
+ * @Desc : 入库任务进度查询结果
+ * @Time : 2026/10/18 14:30
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestJobResponseDTO implements Serializable {
+
+    /** 任务ID */
+    private String jobId;
+    /** 任务类型：upload、git */
+    private String jobType;
+    /** 知识库标签 */
+    private String ragTag;
+    /** 任务状态：PENDING、RUNNING、SUCCESS、FAILED */
+    private String status;
+    /** 已解析文件数 */
+    private long filesParsed;
+    /** 解析失败文件数 */
+    private long filesFailed;
+    /** 跳过的文件数（.gitignore、排除规则、大小上限、二进制） */
+    private long filesSkipped;
+    /** 按原因统计的跳过文件数 */
+    private Map<String, Long> skipReasons;
+    /** 去重跳过的切片数（与已入库切片完全相同或近似重复） */
+    private long chunksDeduplicated;
+    /** 已向量化切片数 */
+    private long chunksEmbedded;
+    /** 已写入行数 */
+    private long rowsWritten;
+    /** 写入吞吐量（行/秒） */
+    private double rowsPerSecond;
+    /** 提交时间 */
+    private long submitTime;
+    /** 开始执行时间 */
+    private long startTime;
+    /** 结束时间 */
+    private long endTime;
+    /** 失败信息 */
+    private String errorMessage;
+
+}
@@ -0,0 +1,58 @@
+package com.malog.hxxxi.dev.tech.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : 量化检索召回率与延迟报告
+ * @Time : 2026/10/22 11:30
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuantizationReportResponseDTO implements Serializable {
+
+    /** 知识库标签 */
+    private String ragTag;
+    /** 当前使用的量化方式：none、halfvec、binary */
+    private String quantization;
+    /** 抽样查询数 */
+    private int samples;
+    /** 每次查询返回的条数 */
+    private int topK;
+    /** 量化检索的候选数 */
+    private int candidates;
+    /** 精确检索（不走索引）的平均耗时（单位：毫秒） */
+    private double exactMeanMillis;
+    /** 各量化方式的结果 */
+    private List<Entry> entries;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry implements Serializable {
+
+        /** 量化方式 */
+        private String quantization;
+        /** 是否存在该方式的 ANN 索引，不存在时为顺序扫描 */
+        private boolean indexed;
+        /** 索引大小（单位：字节），-1 表示无索引 */
+        private long indexBytes;
+        /** recall@topK */
+        private double recall;
+        /** 平均耗时（单位：毫秒） */
+        private double meanMillis;
+        /** p95 耗时（单位：毫秒） */
+        private double p95Millis;
+
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.malog.hxxxi.dev.tech.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * @Auth : Malog
+ * @Desc : 知识库标签统计查询结果
+ * @Time : 2026/10/21 16:50
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RagTagResponseDTO implements Serializable {
+
+    /** 知识库标签 */
+    private String ragTag;
+    /** 切片数 */
+    private long chunkCount;
+    /** 已入库的原始文件字节数 */
+    private long bytes;
+    /** 创建时间 */
+    private long createTime;
+    /** 最近一次入库时间 */
+    private long lastIngestTime;
+    /** 最近一次入库使用的 embedding 模型 */
+    private String embeddingModel;
+
+}
@@ -0,0 +1,39 @@
+package com.malog.hxxxi.dev.tech.api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : 限流规则，三项限额取 0 表示不限制
+ * @Time : 2026/10/22 11:20
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimitRuleDTO implements Serializable {
+
+    /** 接口类别 */
+    private String endpointClass;
+    /** 匹配的请求路径，Ant 风格 */
+    private List<String> paths;
+    /** 是否启用 */
+    private boolean enabled;
+    /** 每个周期允许的请求数 */
+    private long requests;
+    /** 请求数的统计周期（单位：秒） */
+    private long requestsIntervalSeconds;
+    /** 同时进行的请求数上限 */
+    private int concurrent;
+    /** 每个周期允许上传的字节数 */
+    private long bytes;
+    /** 上传字节数的统计周期（单位：秒） */
+    private long bytesIntervalSeconds;
+
+}
@@ -0,0 +1,27 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import com.malog.hxxxi.dev.tech.trigger.AdminKeyFilter;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * 管理接口（限流规则修改、量化报告等）鉴权，校验请求头中的管理密钥
+ */
+@Configuration
+@EnableConfigurationProperties(AdminConfigProperties.class)
+public class AdminConfig {
+
+    @Bean
+    public FilterRegistrationBean<AdminKeyFilter> adminKeyFilter(AdminConfigProperties properties) {
+        FilterRegistrationBean<AdminKeyFilter> registration = new FilterRegistrationBean<>(new AdminKeyFilter(
+                properties.getPaths(), properties.getKeyHeader(), properties.getKey()));
+        registration.addUrlPatterns("/api/*");
+        // 先于限流执行，未通过鉴权的请求不占用限流配额
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        return registration;
+    }
+
+}
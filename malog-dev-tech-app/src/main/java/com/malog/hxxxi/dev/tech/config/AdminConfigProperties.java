@@ -0,0 +1,24 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 管理接口鉴权配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.admin", ignoreInvalidFields = true)
+public class AdminConfigProperties {
+
+    /** 管理密钥，为空时管理接口一律返回 403，默认为空 */
+    private String key;
+    /** 携带管理密钥的请求头，默认为X-Admin-Key */
+    private String keyHeader = "X-Admin-Key";
+    /** 需要管理密钥的路径（Ant 风格），默认为限流规则管理、删除知识库标签与量化报告 */
+    private List<String> paths = new ArrayList<>(List.of("/api/v1/rate_limit/**", "/api/v1/rag/delete_rag_tag",
+            "/api/v1/rag/query_quantization_report"));
+
+}
@@ -0,0 +1,28 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Ollama 按模型准入控制配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.admission", ignoreInvalidFields = true)
+public class AdmissionConfigProperties {
+
+    /** 是否启用准入控制，默认为true */
+    private boolean enabled = true;
+    /** 单个模型的并发上限，与 Ollama 的 OLLAMA_NUM_PARALLEL 对应，默认为4 */
+    private int maxConcurrencyPerModel = 4;
+    /** 总并发上限，默认为8 */
+    private int maxTotalConcurrency = 8;
+    /** 同时运行的模型数，与 Ollama 的 OLLAMA_MAX_LOADED_MODELS 对应，默认为1 */
+    private int maxLoadedModels = 1;
+    /** 排队上限，默认为64 */
+    private int maxQueueSize = 64;
+    /** 最长排队时间（单位：毫秒），预计超过时直接拒绝，默认为20000 */
+    private long maxQueueWaitMillis = 20000;
+    /** 其他模型请求等待超过该时间后停止向已加载模型追加请求（单位：毫秒），默认为5000 */
+    private long maxAffinityWaitMillis = 5000;
+
+}
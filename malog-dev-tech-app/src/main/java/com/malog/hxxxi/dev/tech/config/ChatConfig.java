@@ -0,0 +1,121 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import com.malog.hxxxi.dev.tech.domain.chat.service.ChatRouter;
+import com.malog.hxxxi.dev.tech.domain.chat.service.ChatStreamFramer;
+import com.malog.hxxxi.dev.tech.domain.chat.service.ContextAssembler;
+import com.malog.hxxxi.dev.tech.domain.chat.service.ModelAdmissionQueue;
+import com.malog.hxxxi.dev.tech.domain.chat.service.RagChatService;
+import com.malog.hxxxi.dev.tech.domain.chat.service.SemanticResponseCache;
+import com.malog.hxxxi.dev.tech.domain.chat.service.provider.IChatProvider;
+import com.malog.hxxxi.dev.tech.domain.chat.service.provider.OllamaChatProvider;
+import com.malog.hxxxi.dev.tech.domain.chat.service.provider.OpenAiChatProvider;
+import com.malog.hxxxi.dev.tech.domain.metrics.service.RagMetrics;
+import com.malog.hxxxi.dev.tech.domain.retrieval.service.HybridRetriever;
+import com.malog.hxxxi.dev.tech.domain.tag.service.RagTagRegistry;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.redisson.api.RedissonClient;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.ollama.OllamaChatClient;
+import org.springframework.ai.openai.OpenAiChatClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RAG 问答链路配置，服务商适配、模型路由、语义缓存与上下文组装
+ */
+@Configuration
+@EnableConfigurationProperties({SemanticCacheConfigProperties.class, ContextConfigProperties.class, ChatConfigProperties.class, AdmissionConfigProperties.class,
+        StreamConfigProperties.class})
+public class ChatConfig {
+
+    @Bean
+    public SemanticResponseCache semanticResponseCache(EmbeddingClient embeddingClient, RedissonClient redissonClient,
+                                                       SemanticCacheConfigProperties properties) {
+        return new SemanticResponseCache(embeddingClient, redissonClient, properties.isEnabled(),
+                properties.getSimilarityThreshold(), properties.getMaxEntriesPerKey(),
+                Duration.ofMinutes(properties.getTtlMinutes()),
+                properties.getReplayChunkChars(), Duration.ofMillis(properties.getReplayIntervalMillis()));
+    }
+
+    /**
+     * 知识库标签注册表，本地近端缓存通过 Redis topic 失效
+     */
+    @Bean
+    public RagTagRegistry ragTagRegistry(@Value("${spring.ai.rag.embed}") String embeddingModel, RedissonClient redissonClient) {
+        return new RagTagRegistry(redissonClient, embeddingModel);
+    }
+
+    /**
+     * 流式回答的紧凑帧模式
+     */
+    @Bean
+    public ChatStreamFramer chatStreamFramer(StreamConfigProperties properties) {
+        return new ChatStreamFramer(properties.isCompact(), properties.getFrameMaxTokens(),
+                Duration.ofMillis(properties.getFrameMaxDelayMillis()), Duration.ofMillis(properties.getHeartbeatMillis()));
+    }
+
+    @Bean
+    public ContextAssembler contextAssembler(ContextConfigProperties properties) {
+        return new ContextAssembler(properties.getDefaultTokenBudget(), properties.getModelTokenBudgets(), properties.getDuplicateThreshold());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "rag.admission", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public ModelAdmissionQueue ollamaAdmissionQueue(AdmissionConfigProperties properties) {
+        return new ModelAdmissionQueue(properties.getMaxConcurrencyPerModel(), properties.getMaxTotalConcurrency(),
+                properties.getMaxLoadedModels(), properties.getMaxQueueSize(),
+                Duration.ofMillis(properties.getMaxQueueWaitMillis()), Duration.ofMillis(properties.getMaxAffinityWaitMillis()));
+    }
+
+    @Bean
+    public MeterBinder ollamaAdmissionMetrics(ObjectProvider<ModelAdmissionQueue> ollamaAdmissionQueue) {
+        return registry -> {
+            ModelAdmissionQueue queue = ollamaAdmissionQueue.getIfAvailable();
+            if (null == queue) return;
+            Gauge.builder("rag.ollama.admission.queue.depth", queue, ModelAdmissionQueue::getQueued).register(registry);
+            Gauge.builder("rag.ollama.admission.running", queue, ModelAdmissionQueue::getRunning).register(registry);
+            FunctionCounter.builder("rag.ollama.admission.rejected", queue, ModelAdmissionQueue::getRejectedCount).register(registry);
+            FunctionTimer.builder("rag.ollama.admission.wait", queue,
+                    ModelAdmissionQueue::getAdmittedCount, ModelAdmissionQueue::getTotalWaitMillis, TimeUnit.MILLISECONDS).register(registry);
+        };
+    }
+
+    @Bean
+    public OllamaChatProvider ollamaChatProvider(OllamaChatClient ollamaChatClient, ObjectProvider<ModelAdmissionQueue> ollamaAdmissionQueue) {
+        return new OllamaChatProvider(ollamaChatClient, ollamaAdmissionQueue.getIfAvailable());
+    }
+
+    @Bean
+    public OpenAiChatProvider openAiChatProvider(OpenAiChatClient openAiChatClient) {
+        return new OpenAiChatProvider(openAiChatClient);
+    }
+
+    @Bean
+    public ChatRouter chatRouter(List<IChatProvider> chatProviders, ChatConfigProperties properties) {
+        return new ChatRouter(chatProviders, properties.getProviderMaxConcurrency(), properties.getRoutes(),
+                Duration.ofMillis(properties.getFirstTokenTimeoutMillis()));
+    }
+
+    @Bean
+    public RagChatService ragChatService(ChatRouter chatRouter, HybridRetriever hybridRetriever,
+                                         ContextAssembler contextAssembler, SemanticResponseCache semanticResponseCache,
+                                         RagMetrics ragMetrics, @Qualifier("retrievalScheduler") Scheduler retrievalScheduler,
+                                         RagTagRegistry ragTagRegistry, ChatStreamFramer chatStreamFramer) {
+        return new RagChatService(chatRouter, hybridRetriever, contextAssembler, semanticResponseCache, ragMetrics, retrievalScheduler,
+                ragTagRegistry, chatStreamFramer);
+    }
+
+}
@@ -0,0 +1,28 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import com.malog.hxxxi.dev.tech.domain.chat.model.ModelRoute;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 聊天服务商路由配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.chat", ignoreInvalidFields = true)
+public class ChatConfigProperties {
+
+    /** 统一入口未命中路由表时使用的服务商，默认为ollama */
+    private String defaultProvider = "ollama";
+    /** 首个 token 超时时间（单位：毫秒），超时后转到下一个目标，默认为30000 */
+    private long firstTokenTimeoutMillis = 30000;
+    /** 各服务商的并发上限，未配置的不限制；启用 rag.admission 时 Ollama 的并发由准入队列控制，此处的 ollama 上限不生效 */
+    private Map<String, Integer> providerMaxConcurrency = new HashMap<>();
+    /** 模型路由表，按顺序匹配 */
+    private List<ModelRoute> routes = new ArrayList<>();
+
+}
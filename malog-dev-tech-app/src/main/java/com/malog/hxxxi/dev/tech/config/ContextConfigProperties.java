@@ -0,0 +1,23 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * RAG 上下文组装配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.context", ignoreInvalidFields = true)
+public class ContextConfigProperties {
+
+    /** 默认上下文 token 预算，默认为2000 */
+    private int defaultTokenBudget = 2000;
+    /** 按模型设置的 token 预算，模型名包含冒号等字符时使用 "[deepseek-r1:1.5b]" 形式的键 */
+    private Map<String, Integer> modelTokenBudgets = new HashMap<>();
+    /** 近似重复判定的 Jaccard 相似度阈值，默认为0.8 */
+    private double duplicateThreshold = 0.8;
+
+}
@@ -0,0 +1,24 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Embedding 缓存配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.embedding.cache", ignoreInvalidFields = true)
+public class EmbeddingCacheConfigProperties {
+
+    /** 是否启用缓存，默认为true */
+    private boolean enabled = true;
+    /** 进程内缓存的最大向量数，默认为50000 */
+    private int localMaxSize = 50000;
+    /** 进程内缓存过期时间（单位：分钟），默认为60 */
+    private long localTtlMinutes = 60;
+    /** 是否启用 Redis 共享缓存，默认为false */
+    private boolean redisEnabled = false;
+    /** Redis 缓存过期时间（单位：小时），默认为24 */
+    private long redisTtlHours = 24;
+
+}
@@ -0,0 +1,171 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import com.malog.hxxxi.dev.tech.domain.ingest.service.ChunkDeduplicator;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.DocumentIngestionPipeline;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.GitRepositoryIndexer;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.IVectorWriter;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.IngestJobService;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.PgVectorBatchWriter;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.RepositoryFileFilter;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.splitter.ISourceSplitter;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.splitter.JavaSourceSplitter;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.splitter.MarkdownSplitter;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.splitter.SourceSplitterRegistry;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.splitter.YamlSplitter;
+import com.malog.hxxxi.dev.tech.domain.metrics.service.RagMetrics;
+import com.malog.hxxxi.dev.tech.domain.vector.service.PgVectorPartitionManager;
+import org.redisson.api.RedissonClient;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 入库流水线配置，解析线程池、各阶段工作线程、pgvector 批量写入及异步入库任务
+ */
+@Configuration
+@EnableConfigurationProperties(IngestConfigProperties.class)
+public class IngestConfig {
+
+    /**
+     * 工作窃取线程池，文件大小差异很大时空闲线程从其他线程的队列中取任务，避免少数大文件拖慢整体；
+     * 仓库文件过滤同样在该线程池中并行执行。背压由流水线各阶段的有界队列保证
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool ingestParseExecutor(IngestConfigProperties properties) {
+        int threads = Math.max(1, properties.getParseThreads());
+        AtomicInteger index = new AtomicInteger();
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("ingest-parse-" + index.incrementAndGet());
+            return thread;
+        }, null, true);
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService ingestStageExecutor() {
+        return Executors.newCachedThreadPool(namedThreadFactory("ingest-stage-"));
+    }
+
+    /**
+     * 使用进程内 HNSW 时由 HnswVectorStore 直接承担写入
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "rag.vector-store", name = "type", havingValue = "pgvector", matchIfMissing = true)
+    public IVectorWriter vectorWriter(JdbcTemplate jdbcTemplate, PgVectorPartitionManager pgVectorPartitionManager,
+                                      IngestConfigProperties properties) {
+        return new PgVectorBatchWriter(jdbcTemplate, pgVectorPartitionManager, properties.getWriteBatchSize());
+    }
+
+    @Bean
+    public JavaSourceSplitter javaSourceSplitter(IngestConfigProperties properties) {
+        return new JavaSourceSplitter(properties.getSplitterChunkTokens(), properties.getSplitterOverlapLines());
+    }
+
+    @Bean
+    public MarkdownSplitter markdownSplitter(IngestConfigProperties properties) {
+        return new MarkdownSplitter(properties.getSplitterChunkTokens(), properties.getSplitterOverlapLines());
+    }
+
+    @Bean
+    public YamlSplitter yamlSplitter(IngestConfigProperties properties) {
+        return new YamlSplitter(properties.getSplitterChunkTokens(), properties.getSplitterOverlapLines());
+    }
+
+    /**
+     * 结构化切分器注册表，新增文件类型只需再声明一个 ISourceSplitter bean；关闭时全部文件使用 TokenTextSplitter
+     */
+    @Bean
+    public SourceSplitterRegistry sourceSplitterRegistry(List<ISourceSplitter> sourceSplitters, IngestConfigProperties properties) {
+        return new SourceSplitterRegistry(properties.isSplitterEnabled() ? sourceSplitters : List.of(),
+                properties.getSplitterMaxFileBytes());
+    }
+
+    /**
+     * 切片去重指纹索引。关闭去重时仍需要该 bean 在删除标签、重建仓库时清理已有指纹
+     */
+    @Bean
+    public ChunkDeduplicator chunkDeduplicator(RedissonClient redissonClient, IngestConfigProperties properties) {
+        return new ChunkDeduplicator(redissonClient, properties.isDedupNearEnabled(), properties.getDedupMaxHammingDistance(),
+                properties.getDedupMinTokens());
+    }
+
+    @Bean
+    public DocumentIngestionPipeline documentIngestionPipeline(EmbeddingClient embeddingClient,
+                                                               TokenTextSplitter tokenTextSplitter,
+                                                               IVectorWriter vectorWriter,
+                                                               @Qualifier("ingestParseExecutor") ExecutorService ingestParseExecutor,
+                                                               @Qualifier("ingestStageExecutor") ExecutorService ingestStageExecutor,
+                                                               IngestConfigProperties properties, RagMetrics ragMetrics,
+                                                               SourceSplitterRegistry sourceSplitterRegistry,
+                                                               ChunkDeduplicator chunkDeduplicator) {
+        return DocumentIngestionPipeline.builder()
+                .embeddingClient(embeddingClient)
+                .textSplitter(tokenTextSplitter)
+                .vectorWriter(vectorWriter)
+                .parseExecutor(ingestParseExecutor)
+                .stageExecutor(ingestStageExecutor)
+                .splitThreads(properties.getSplitThreads())
+                .embedBatchSize(properties.getEmbedBatchSize())
+                .embedConcurrency(properties.getEmbedConcurrency())
+                .embedLingerMillis(properties.getEmbedLingerMillis())
+                .writeBatchSize(properties.getWriteBatchSize())
+                .writeConcurrency(properties.getWriteConcurrency())
+                .queueCapacity(properties.getQueueCapacity())
+                .streamingParse(properties.isStreamingParse())
+                .streamingSegmentChars(properties.getStreamingSegmentChars())
+                .ragMetrics(ragMetrics)
+                .splitterRegistry(sourceSplitterRegistry)
+                .chunkDeduplicator(properties.isDedupEnabled() ? chunkDeduplicator : null)
+                .build();
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService ingestJobExecutor(IngestConfigProperties properties) {
+        int threads = Math.max(1, properties.getJobConcurrency());
+        // 任务队列已满时直接拒绝，由接口返回繁忙提示
+        return new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, properties.getJobQueueCapacity())), namedThreadFactory("ingest-job-"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean
+    public IngestJobService ingestJobService(RedissonClient redissonClient,
+                                             @Qualifier("ingestJobExecutor") ExecutorService ingestJobExecutor,
+                                             IngestConfigProperties properties, RagMetrics ragMetrics) {
+        ScheduledExecutorService progressScheduler = Executors.newSingleThreadScheduledExecutor(namedThreadFactory("ingest-job-progress-"));
+        return new IngestJobService(redissonClient, ingestJobExecutor, progressScheduler,
+                properties.getProgressFlushMillis(), Duration.ofHours(properties.getJobTtlHours()), ragMetrics);
+    }
+
+    @Bean
+    public GitRepositoryIndexer gitRepositoryIndexer(DocumentIngestionPipeline documentIngestionPipeline,
+                                                     IVectorWriter vectorWriter,
+                                                     RedissonClient redissonClient,
+                                                     @Qualifier("ingestParseExecutor") ForkJoinPool ingestParseExecutor,
+                                                     IngestConfigProperties properties, ChunkDeduplicator chunkDeduplicator) {
+        RepositoryFileFilter fileFilter = new RepositoryFileFilter(properties.getGitIncludeGlobs(), properties.getGitExcludeGlobs(),
+                properties.getGitMaxFileBytes(), properties.isGitRespectGitignore());
+        return new GitRepositoryIndexer(documentIngestionPipeline, vectorWriter, redissonClient, fileFilter, ingestParseExecutor,
+                properties.getGitMirrorDir(), chunkDeduplicator);
+    }
+
+    static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger index = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+}
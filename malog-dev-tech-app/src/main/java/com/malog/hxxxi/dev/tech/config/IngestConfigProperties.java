@@ -0,0 +1,73 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 入库流水线配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.ingest", ignoreInvalidFields = true)
+public class IngestConfigProperties {
+
+    /** 解析线程数，默认为 CPU 核数 */
+    private int parseThreads = Runtime.getRuntime().availableProcessors();
+    /** 切分线程数，默认为2 */
+    private int splitThreads = 2;
+    /** 单次 embedding 请求的切片数，默认为32 */
+    private int embedBatchSize = 32;
+    /** embedding 请求并发数，默认为4 */
+    private int embedConcurrency = 4;
+    /** 凑批等待时间（单位：毫秒），默认为20 */
+    private long embedLingerMillis = 20;
+    /** 单次写入 pgvector 的行数，默认为256 */
+    private int writeBatchSize = 256;
+    /** 写入线程数，默认为2 */
+    private int writeConcurrency = 2;
+    /** 阶段间队列容量（切片数），默认为1024 */
+    private int queueCapacity = 1024;
+    /** 是否流式解析，边解析边切分写入，大文件不再整体加载到内存，默认为true */
+    private boolean streamingParse = true;
+    /** 流式解析时每段正文的字符数，默认为32768 */
+    private int streamingSegmentChars = 32768;
+    /** 同时执行的入库任务数，默认为2 */
+    private int jobConcurrency = 2;
+    /** 排队等待的入库任务数上限，超出后拒绝提交，默认为16 */
+    private int jobQueueCapacity = 16;
+    /** 任务进度刷新到 Redis 的间隔（单位：毫秒），默认为1000 */
+    private long progressFlushMillis = 1000;
+    /** 任务状态在 Redis 中的保留时间（单位：小时），默认为24 */
+    private int jobTtlHours = 24;
+    /** Git 仓库本地镜像根目录，重复分析时增量 fetch，默认为 ./git-mirror */
+    private String gitMirrorDir = "./git-mirror";
+    /** Git 仓库是否按 .gitignore 跳过文件，默认为true */
+    private boolean gitRespectGitignore = true;
+    /** Git 仓库只索引匹配的文件（glob，相对仓库根目录），为空时不限制，默认为空 */
+    private List<String> gitIncludeGlobs = new ArrayList<>();
+    /** Git 仓库跳过匹配的文件（glob，相对仓库根目录），默认跳过依赖目录、压缩产物与锁文件 */
+    private List<String> gitExcludeGlobs = new ArrayList<>(List.of(
+            "**/node_modules/**", "**/vendor/**", "**/dist/**", "**/target/**", "**/build/**",
+            "**/*.min.js", "**/*.min.css", "**/*.map", "**/*.lock", "**/package-lock.json"));
+    /** Git 仓库单个文件的大小上限（单位：字节），超过时跳过，默认为1MB */
+    private long gitMaxFileBytes = 1024 * 1024;
+    /** 是否按文件类型使用结构化切分（Java 按类/方法、Markdown 按标题、YAML 按配置键），默认为true */
+    private boolean splitterEnabled = true;
+    /** 结构化切分每个切片的 token 上限，默认为800 */
+    private int splitterChunkTokens = 800;
+    /** 结构化切分相邻切片重叠的行数，默认为2 */
+    private int splitterOverlapLines = 2;
+    /** 结构化切分的文件大小上限（单位：字节），超过时使用默认切分，默认为1MB */
+    private long splitterMaxFileBytes = 1024 * 1024;
+    /** 是否在向量化前按知识库标签去重切片，默认为true */
+    private boolean dedupEnabled = true;
+    /** 是否启用 SimHash 近似去重，关闭时只去除完全相同的切片，默认为true */
+    private boolean dedupNearEnabled = true;
+    /** 近似重复的最大海明距离（64 位 SimHash，最大为3），默认为3 */
+    private int dedupMaxHammingDistance = 3;
+    /** 参与近似去重的最少 token 数，默认为32 */
+    private int dedupMinTokens = 32;
+
+}
@@ -0,0 +1,70 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.malog.hxxxi.dev.tech.domain.chat.service.ChatRouter;
+import com.malog.hxxxi.dev.tech.domain.metrics.service.RagMetrics;
+import com.malog.hxxxi.dev.tech.domain.tag.service.RagTagRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RAG 埋点配置。各阶段通过 Observation 记录，同时产生 rag.* 计时器（Prometheus 抓取 /actuator/prometheus）与链路 span；
+ * 只上报慢于阈值或出错的 span，正常请求的短阶段不进入链路存储。
+ */
+@Configuration
+@EnableConfigurationProperties(MetricsConfigProperties.class)
+public class MetricsConfig {
+
+    /**
+     * ragTag 只记录已注册的标签；model 只记录命中路由表、embedding 模型或 rag.metrics.known-models 中配置的模型，
+     * 其余取值记为 unknown。注册表与路由在调用时才获取，避免与依赖埋点的 bean 形成循环依赖
+     */
+    @Bean
+    public RagMetrics ragMetrics(MeterRegistry meterRegistry, ObservationRegistry observationRegistry, MetricsConfigProperties properties,
+                                 @Value("${spring.ai.rag.embed}") String embeddingModel,
+                                 ObjectProvider<RagTagRegistry> ragTagRegistry, ObjectProvider<ChatRouter> chatRouter) {
+        Set<String> knownModels = new HashSet<>(properties.getKnownModels());
+        knownModels.add(embeddingModel);
+        return new RagMetrics(meterRegistry, observationRegistry,
+                ragTag -> {
+                    RagTagRegistry registry = ragTagRegistry.getIfAvailable();
+                    return null != registry && registry.exists(ragTag);
+                },
+                model -> {
+                    if (knownModels.contains(model)) return true;
+                    ChatRouter router = chatRouter.getIfAvailable();
+                    return null != router && router.routes(model);
+                });
+    }
+
+    /**
+     * 排在 Zipkin 上报之前，返回 false 的 span 不再交给后续处理器
+     */
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public SpanHandler slowSpanFilter(MetricsConfigProperties properties) {
+        long thresholdMicros = TimeUnit.MILLISECONDS.toMicros(properties.getSlowSpanThresholdMillis());
+        return new SpanHandler() {
+            @Override
+            public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+                if (thresholdMicros <= 0 || Cause.FINISHED != cause) return true;
+                if (null != span.error() || null != span.tag("error")) return true;
+                return span.finishTimestamp() - span.startTimestamp() >= thresholdMicros;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * RAG 埋点配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.metrics", ignoreInvalidFields = true)
+public class MetricsConfigProperties {
+
+    /** 上报链路 span 的最小耗时，低于该值且未出错的 span 直接丢弃，0 表示全部上报，默认为200 */
+    private long slowSpanThresholdMillis = 200;
+    /** 作为指标标签记录的模型，命中路由表的模型与 embedding 模型无需配置，其余模型记为 unknown */
+    private List<String> knownModels = new ArrayList<>();
+
+}
@@ -1,5 +1,17 @@
 package com.malog.hxxxi.dev.tech.config;
 
+import com.malog.hxxxi.dev.tech.domain.embedding.service.CachingEmbeddingClient;
+import com.malog.hxxxi.dev.tech.domain.embedding.service.ObservedEmbeddingClient;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.IVectorWriter;
+import com.malog.hxxxi.dev.tech.domain.metrics.service.RagMetrics;
+import com.malog.hxxxi.dev.tech.domain.ollama.service.ReplicatedOllamaApi;
+import com.malog.hxxxi.dev.tech.domain.vector.service.PartitionedPgVectorStore;
+import com.malog.hxxxi.dev.tech.domain.vector.service.PgVectorPartitionManager;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.redisson.api.RedissonClient;
+import org.springframework.ai.embedding.EmbeddingClient;
 import org.springframework.ai.ollama.OllamaChatClient;
 import org.springframework.ai.ollama.OllamaEmbeddingClient;
 import org.springframework.ai.ollama.api.OllamaApi;
@@ -7,19 +19,53 @@ import org.springframework.ai.ollama.api.OllamaOptions;
 import org.springframework.ai.openai.OpenAiEmbeddingClient;
 import org.springframework.ai.openai.api.OpenAiApi;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.PgVectorStore;
 import org.springframework.ai.vectorstore.SimpleVectorStore;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.time.Duration;
+import java.util.List;
+
 @Configuration
+@EnableConfigurationProperties({EmbeddingCacheConfigProperties.class, OllamaReplicaConfigProperties.class})
 public class OllamaConfig {
 
+    /**
+     * 配置了多个副本时按负载与模型亲和路由，只有一个地址时保持直连
+     */
+    @Bean
+    public OllamaApi ollamaApi(@Value("${spring.ai.ollama.base-url}") String baseUrl, OllamaReplicaConfigProperties replicaProperties) {
+        List<String> endpoints = replicaProperties.endpointsOr(baseUrl);
+        if (endpoints.size() == 1) {
+            return new OllamaApi(endpoints.get(0));
+        }
+        return new ReplicatedOllamaApi(endpoints, replicaProperties.getAffinityMaxInFlight(),
+                Duration.ofMinutes(replicaProperties.getAffinityTtlMinutes()), replicaProperties.getFailureThreshold(),
+                Duration.ofSeconds(replicaProperties.getProbeIntervalSeconds()), Duration.ofMillis(replicaProperties.getHedgeDelayMillis()));
+    }
+
     @Bean
-    public OllamaApi ollamaApi(@Value("${spring.ai.ollama.base-url}") String baseUrl) {
-        return new OllamaApi(baseUrl);
+    public MeterBinder ollamaReplicaMetrics(OllamaApi ollamaApi) {
+        return registry -> {
+            if (!(ollamaApi instanceof ReplicatedOllamaApi pool)) return;
+            for (ReplicatedOllamaApi.Replica replica : pool.replicas()) {
+                Gauge.builder("rag.ollama.replica.in.flight", replica, ReplicatedOllamaApi.Replica::getInFlight)
+                        .tag("replica", replica.getBaseUrl()).register(registry);
+                Gauge.builder("rag.ollama.replica.healthy", replica, r -> r.isHealthy() ? 1 : 0)
+                        .tag("replica", replica.getBaseUrl()).register(registry);
+                Gauge.builder("rag.ollama.replica.latency", replica, ReplicatedOllamaApi.Replica::getLatencyMillis)
+                        .tag("replica", replica.getBaseUrl()).baseUnit("milliseconds").register(registry);
+            }
+            FunctionCounter.builder("rag.ollama.hedges", pool, ReplicatedOllamaApi::getHedges)
+                    .tag("result", "sent").register(registry);
+            FunctionCounter.builder("rag.ollama.hedges", pool, ReplicatedOllamaApi::getHedgeWins)
+                    .tag("result", "won").register(registry);
+        };
     }
 
     @Bean
@@ -38,27 +84,59 @@ public class OllamaConfig {
     }
 
     @Bean
-    public SimpleVectorStore vectorStore(@Value("${spring.ai.rag.embed}") String model, OllamaApi ollamaApi, OpenAiApi openAiApi) {
+    @Primary
+    public EmbeddingClient embeddingClient(@Value("${spring.ai.rag.embed}") String model, OllamaApi ollamaApi, OpenAiApi openAiApi,
+                                           RedissonClient redissonClient, EmbeddingCacheConfigProperties cacheProperties,
+                                           RagMetrics ragMetrics) {
+        EmbeddingClient embeddingClient;
         if ("nomic-embed-text".equalsIgnoreCase(model)) {
-            OllamaEmbeddingClient embeddingClient = new OllamaEmbeddingClient(ollamaApi);
-            embeddingClient.withDefaultOptions(OllamaOptions.create().withModel("nomic-embed-text"));
-            return new SimpleVectorStore(embeddingClient);
+            OllamaEmbeddingClient ollamaEmbeddingClient = new OllamaEmbeddingClient(ollamaApi);
+            ollamaEmbeddingClient.withDefaultOptions(OllamaOptions.create().withModel("nomic-embed-text"));
+            embeddingClient = ollamaEmbeddingClient;
         } else {
-            OpenAiEmbeddingClient embeddingClient = new OpenAiEmbeddingClient(openAiApi);
-            return new SimpleVectorStore(embeddingClient);
+            embeddingClient = new OpenAiEmbeddingClient(openAiApi);
+        }
+        // 埋点在缓存内层，只统计实际发往模型的请求
+        embeddingClient = new ObservedEmbeddingClient(embeddingClient, model, ragMetrics);
+
+        if (!cacheProperties.isEnabled()) {
+            return embeddingClient;
         }
+        // 按 hash(模型名 + 文本) 缓存向量，重复入库与热点问题不再重复请求 embedding
+        return new CachingEmbeddingClient(embeddingClient, model,
+                cacheProperties.getLocalMaxSize(), Duration.ofMinutes(cacheProperties.getLocalTtlMinutes()),
+                cacheProperties.isRedisEnabled() ? redissonClient : null, Duration.ofHours(cacheProperties.getRedisTtlHours()));
     }
 
     @Bean
-    public PgVectorStore pgVectorStore(@Value("${spring.ai.rag.embed}") String model, OllamaApi ollamaApi, OpenAiApi openAiApi, JdbcTemplate jdbcTemplate) {
-        if ("nomic-embed-text".equalsIgnoreCase(model)) {
-            OllamaEmbeddingClient embeddingClient = new OllamaEmbeddingClient(ollamaApi);
-            embeddingClient.withDefaultOptions(OllamaOptions.create().withModel("nomic-embed-text"));
-            return new PgVectorStore(jdbcTemplate, embeddingClient);
-        } else {
-            OpenAiEmbeddingClient embeddingClient = new OpenAiEmbeddingClient(openAiApi);
-            return new PgVectorStore(jdbcTemplate, embeddingClient);
-        }
+    public MeterBinder embeddingCacheMetrics(EmbeddingClient embeddingClient) {
+        return registry -> {
+            if (!(embeddingClient instanceof CachingEmbeddingClient cache)) return;
+            FunctionCounter.builder("rag.embedding.cache.requests", cache, CachingEmbeddingClient::getLocalHits)
+                    .tag("result", "local_hit").register(registry);
+            FunctionCounter.builder("rag.embedding.cache.requests", cache, CachingEmbeddingClient::getRedisHits)
+                    .tag("result", "redis_hit").register(registry);
+            FunctionCounter.builder("rag.embedding.cache.requests", cache, CachingEmbeddingClient::getMisses)
+                    .tag("result", "miss").register(registry);
+            Gauge.builder("rag.embedding.cache.size", cache, CachingEmbeddingClient::getLocalSize)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public SimpleVectorStore vectorStore(EmbeddingClient embeddingClient) {
+        return new SimpleVectorStore(embeddingClient);
+    }
+
+    /**
+     * 按知识库标签分区的 pgvector 存储，rag.vector-store.type=hnsw 时不创建，无需连接 Postgres
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "rag.vector-store", name = "type", havingValue = "pgvector", matchIfMissing = true)
+    public PartitionedPgVectorStore pgVectorStore(EmbeddingClient embeddingClient, JdbcTemplate jdbcTemplate, IVectorWriter vectorWriter,
+                                                  PgVectorPartitionManager pgVectorPartitionManager, VectorStoreConfigProperties properties) {
+        return new PartitionedPgVectorStore(jdbcTemplate, embeddingClient, vectorWriter, pgVectorPartitionManager,
+                properties.getHnswEfSearch(), properties.getPgIvfflatProbes(), properties.getPgRerankFactor());
     }
 
 }
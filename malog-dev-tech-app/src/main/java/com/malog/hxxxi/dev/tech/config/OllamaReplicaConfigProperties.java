@@ -0,0 +1,36 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ollama 多副本配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.ollama", ignoreInvalidFields = true)
+public class OllamaReplicaConfigProperties {
+
+    /** 各副本地址，为空时只使用 spring.ai.ollama.base-url */
+    private List<String> endpoints = new ArrayList<>();
+    /** 已加载模型的副本进行中的请求数达到该值后，允许转到未加载该模型的空闲副本，默认为4 */
+    private int affinityMaxInFlight = 4;
+    /** 副本处理过某模型后视为已加载的时长（单位：分钟），与 Ollama 的 keep_alive 对应，默认为5 */
+    private long affinityTtlMinutes = 5;
+    /** 连续失败多少次后摘除副本，默认为3 */
+    private int failureThreshold = 3;
+    /** 健康探测间隔（单位：秒），同时刷新各副本已加载的模型，默认为10 */
+    private long probeIntervalSeconds = 10;
+    /** embedding 请求的对冲延迟（单位：毫秒），超过后向另一个副本再发一次，0 表示不对冲，默认为0 */
+    private long hedgeDelayMillis = 0;
+
+    /**
+     * 实际使用的副本地址
+     */
+    public List<String> endpointsOr(String baseUrl) {
+        return endpoints.isEmpty() ? List.of(baseUrl) : endpoints;
+    }
+
+}
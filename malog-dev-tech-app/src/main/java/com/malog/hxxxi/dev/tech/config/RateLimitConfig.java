@@ -0,0 +1,38 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import com.malog.hxxxi.dev.tech.domain.ratelimit.service.ClientRateLimiter;
+import com.malog.hxxxi.dev.tech.trigger.RateLimitFilter;
+import org.redisson.api.RedissonClient;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按客户端与接口类别限流，计数保存在 Redis 中，集群内共享
+ */
+@Configuration
+@EnableConfigurationProperties(RateLimitConfigProperties.class)
+public class RateLimitConfig {
+
+    @Bean
+    public ClientRateLimiter clientRateLimiter(RedissonClient redissonClient, RateLimitConfigProperties properties) {
+        return new ClientRateLimiter(redissonClient, properties.getRules(), properties.getLeaseFraction(),
+                TimeUnit.MINUTES.toMillis(properties.getConcurrentLeaseMinutes()));
+    }
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(ClientRateLimiter clientRateLimiter, RateLimitConfigProperties properties) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(new RateLimitFilter(clientRateLimiter,
+                properties.getApiKeyHeader(), properties.getApiKeyParam(), properties.isTrustForwardedFor()));
+        registration.addUrlPatterns("/api/*");
+        registration.setEnabled(properties.isEnabled());
+        // 在请求体解析之前拒绝，超限的上传不写入临时文件
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import com.malog.hxxxi.dev.tech.domain.ratelimit.model.RateLimitRule;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按客户端限流配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.rate-limit", ignoreInvalidFields = true)
+public class RateLimitConfigProperties {
+
+    /** 是否启用限流，默认为false */
+    private boolean enabled = false;
+    /** 携带 API Key 的请求头，默认为X-API-Key */
+    private String apiKeyHeader = "X-API-Key";
+    /** 携带 API Key 的查询参数，供无法设置请求头的 EventSource 使用，默认为apiKey */
+    private String apiKeyParam = "apiKey";
+    /** 是否按 X-Forwarded-For 识别来源 IP，只在可信的反向代理之后开启，默认为false */
+    private boolean trustForwardedFor = false;
+    /** 每个节点一次预取的请求许可占周期限额的比例，越大访问 Redis 越少、集群内计数越不精确，默认为0.1 */
+    private double leaseFraction = 0.1;
+    /** 并发租约的有效期（单位：分钟），节点宕机未释放的租约到期失效，默认为30 */
+    private long concurrentLeaseMinutes = 30;
+    /** 按接口类别的初始规则，Redis 中已存在同名规则时以 Redis 为准 */
+    private Map<String, RateLimitRule> rules = new LinkedHashMap<>();
+
+}
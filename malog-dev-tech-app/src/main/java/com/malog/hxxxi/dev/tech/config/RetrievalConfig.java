@@ -0,0 +1,69 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import com.malog.hxxxi.dev.tech.domain.metrics.service.RagMetrics;
+import com.malog.hxxxi.dev.tech.domain.retrieval.service.HybridRetriever;
+import com.malog.hxxxi.dev.tech.domain.retrieval.service.ILexicalRetriever;
+import com.malog.hxxxi.dev.tech.domain.retrieval.service.PgFullTextRetriever;
+import com.malog.hxxxi.dev.tech.domain.vector.service.PgVectorPartitionManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 混合检索配置，向量检索与全文检索并行执行后按 RRF 融合。
+ * pgvector 模式下全文检索使用同表的 tsvector 列，hnsw 模式下由 HnswVectorStore 内置的 BM25 索引承担。
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(RetrievalConfigProperties.class)
+public class RetrievalConfig {
+
+    /**
+     * 检索中的阻塞调用（embedding 请求、JDBC 查询）在有界弹性调度器上执行，不占用 Tomcat 请求线程
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler retrievalScheduler(RetrievalConfigProperties properties) {
+        return Schedulers.newBoundedElastic(Math.max(2, properties.getThreads()), Math.max(1, properties.getQueueCapacity()),
+                "rag-retrieval", 60, true);
+    }
+
+    /**
+     * 依赖 PgVectorPartitionManager，保证分区表已创建
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "rag.vector-store", name = "type", havingValue = "pgvector", matchIfMissing = true)
+    public PgFullTextRetriever lexicalRetriever(JdbcTemplate jdbcTemplate,
+                                                PgVectorPartitionManager pgVectorPartitionManager,
+                                                @Qualifier("retrievalScheduler") Scheduler retrievalScheduler,
+                                                RetrievalConfigProperties properties) {
+        PgFullTextRetriever lexicalRetriever = new PgFullTextRetriever(jdbcTemplate, pgVectorPartitionManager.getTableName());
+        lexicalRetriever.initSchema();
+        retrievalScheduler.schedule(() -> {
+            try {
+                lexicalRetriever.backfill(properties.getBackfillBatchSize());
+            } catch (Exception e) {
+                log.error("全文索引补齐失败", e);
+            }
+        });
+        return lexicalRetriever;
+    }
+
+    @Bean
+    public HybridRetriever hybridRetriever(@Qualifier("ragVectorStore") VectorStore ragVectorStore,
+                                           ObjectProvider<ILexicalRetriever> lexicalRetriever,
+                                           @Qualifier("retrievalScheduler") Scheduler retrievalScheduler,
+                                           RetrievalConfigProperties properties, RagMetrics ragMetrics) {
+        return new HybridRetriever(ragVectorStore,
+                properties.isLexicalEnabled() ? lexicalRetriever.getIfAvailable() : null,
+                retrievalScheduler, properties.getTopK(), properties.getVectorTopK(), properties.getLexicalTopK(), properties.getRrfK(), ragMetrics);
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 混合检索配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.retrieval", ignoreInvalidFields = true)
+public class RetrievalConfigProperties {
+
+    /** 融合后放入提示词的切片数，默认为4 */
+    private int topK = 4;
+    /** 向量检索召回数，默认为10 */
+    private int vectorTopK = 10;
+    /** 全文检索召回数，默认为10 */
+    private int lexicalTopK = 10;
+    /** RRF 融合常数，默认为60 */
+    private int rrfK = 60;
+    /** 是否启用全文检索，默认为true */
+    private boolean lexicalEnabled = true;
+    /** 检索调度器线程数上限，默认为16 */
+    private int threads = 16;
+    /** 检索调度器线程全忙时的排队任务上限，超出后请求直接失败，默认为1024 */
+    private int queueCapacity = 1024;
+    /** 启动时补齐已有数据全文索引的批大小，默认为500 */
+    private int backfillBatchSize = 500;
+
+}
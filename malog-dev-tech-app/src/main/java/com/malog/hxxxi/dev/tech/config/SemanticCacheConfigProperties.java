@@ -0,0 +1,26 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * RAG 问答语义缓存配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.semantic-cache", ignoreInvalidFields = true)
+public class SemanticCacheConfigProperties {
+
+    /** 是否启用语义缓存，默认为false */
+    private boolean enabled = false;
+    /** 命中所需的最小余弦相似度，默认为0.95 */
+    private double similarityThreshold = 0.95;
+    /** 每个 ragTag + 模型 保留的最大问答数，默认为512 */
+    private int maxEntriesPerKey = 512;
+    /** 缓存过期时间（单位：分钟），默认为360 */
+    private long ttlMinutes = 360;
+    /** 回放时每段字符数，默认为8 */
+    private int replayChunkChars = 8;
+    /** 回放时每段间隔（单位：毫秒），默认为15 */
+    private long replayIntervalMillis = 15;
+
+}
@@ -0,0 +1,22 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 流式回答紧凑帧配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.stream", ignoreInvalidFields = true)
+public class StreamConfigProperties {
+
+    /** 是否启用紧凑帧模式，关闭时逐 token 输出完整的 ChatResponse，默认为false */
+    private boolean compact = false;
+    /** 每帧最多合并的 token 数，默认为16 */
+    private int frameMaxTokens = 16;
+    /** 每帧最长等待时间（单位：毫秒），默认为50 */
+    private long frameMaxDelayMillis = 50;
+    /** 首帧到达前的心跳间隔（单位：毫秒），0 表示不发送，默认为15000 */
+    private long heartbeatMillis = 15000;
+
+}
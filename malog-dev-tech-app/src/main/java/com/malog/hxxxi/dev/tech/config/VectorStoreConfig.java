@@ -0,0 +1,70 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import com.malog.hxxxi.dev.tech.domain.vector.service.HnswVectorStore;
+import com.malog.hxxxi.dev.tech.domain.vector.service.PartitionedPgVectorStore;
+import com.malog.hxxxi.dev.tech.domain.vector.service.PgVectorPartitionManager;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 检索使用的向量存储，rag.vector-store.type 选择按标签分区的 pgvector 或进程内 HNSW，统一以 ragVectorStore 注入
+ */
+@Configuration
+@EnableConfigurationProperties(VectorStoreConfigProperties.class)
+public class VectorStoreConfig {
+
+    /**
+     * 旧版 PgVectorStore 使用的未分区表
+     */
+    private static final String LEGACY_TABLE_NAME = "vector_store";
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnProperty(prefix = "rag.vector-store", name = "type", havingValue = "pgvector", matchIfMissing = true)
+    public PgVectorPartitionManager pgVectorPartitionManager(JdbcTemplate jdbcTemplate, EmbeddingClient embeddingClient,
+                                                             VectorStoreConfigProperties properties) {
+        int dimensions = properties.getPgDimensions() > 0 ? properties.getPgDimensions() : embeddingClient.dimensions();
+        PgVectorPartitionManager partitionManager = new PgVectorPartitionManager(jdbcTemplate, properties.getPgTableName(), dimensions,
+                properties.getPgIndexType(), properties.getHnswM(), properties.getHnswEfConstruction(),
+                properties.getPgIvfflatLists(), properties.getPgIvfflatMinRows(),
+                properties.getPgQuantization(), properties.getPgTagQuantization());
+        partitionManager.initSchema();
+        if (properties.isPgMigrateLegacy()) {
+            partitionManager.migrateLegacy(LEGACY_TABLE_NAME);
+        }
+        return partitionManager;
+    }
+
+    @Bean(name = "ragVectorStore", destroyMethod = "")
+    @ConditionalOnProperty(prefix = "rag.vector-store", name = "type", havingValue = "pgvector", matchIfMissing = true)
+    public VectorStore pgRagVectorStore(PartitionedPgVectorStore pgVectorStore) {
+        return pgVectorStore;
+    }
+
+    @Bean(name = "ragVectorStore", destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "rag.vector-store", name = "type", havingValue = "hnsw")
+    public HnswVectorStore hnswRagVectorStore(EmbeddingClient embeddingClient, VectorStoreConfigProperties properties) {
+        Path snapshotDir = StringUtils.isBlank(properties.getHnswSnapshotDir()) ? null : Path.of(properties.getHnswSnapshotDir());
+        HnswVectorStore vectorStore = new HnswVectorStore(embeddingClient, properties.getHnswM(),
+                properties.getHnswEfConstruction(), properties.getHnswEfSearch(), snapshotDir, properties.getHnswCompactDeletedRatio());
+
+        // 不持久化时同样按周期压缩分区，snapshot 在没有快照目录时只做压缩
+        if (properties.getHnswSnapshotIntervalSeconds() > 0) {
+            ScheduledExecutorService snapshotScheduler = Executors.newSingleThreadScheduledExecutor(IngestConfig.namedThreadFactory("hnsw-snapshot-"));
+            snapshotScheduler.scheduleWithFixedDelay(vectorStore::snapshot, properties.getHnswSnapshotIntervalSeconds(),
+                    properties.getHnswSnapshotIntervalSeconds(), TimeUnit.SECONDS);
+        }
+        return vectorStore;
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 向量存储配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.vector-store", ignoreInvalidFields = true)
+public class VectorStoreConfigProperties {
+
+    /** 向量存储类型，pgvector 或 hnsw（进程内），默认为pgvector */
+    private String type = "pgvector";
+    /** HNSW 每个节点的邻居数，进程内与 pgvector 分区索引共用，默认为16 */
+    private int hnswM = 16;
+    /** HNSW 构建时的检索宽度，进程内与 pgvector 分区索引共用，默认为200 */
+    private int hnswEfConstruction = 200;
+    /** HNSW 查询时的检索宽度，进程内与 pgvector 分区索引共用，默认为64 */
+    private int hnswEfSearch = 64;
+    /** HNSW 快照目录，为空时不持久化，默认为./data/hnsw */
+    private String hnswSnapshotDir = "./data/hnsw";
+    /** HNSW 快照与压缩间隔（单位：秒），未配置快照目录时只压缩，默认为300 */
+    private long hnswSnapshotIntervalSeconds = 300;
+    /** 进程内 HNSW 分区的墓碑占比超过该值时重建分区回收空间，0 表示不压缩，默认为0.3 */
+    private double hnswCompactDeletedRatio = 0.3;
+    /** pgvector 按知识库标签分区的表名，默认为rag_vector_store */
+    private String pgTableName = "rag_vector_store";
+    /** pgvector 向量维度，小于等于0时启动时由 embedding 模型探测，默认为0 */
+    private int pgDimensions = 0;
+    /** pgvector 每个分区的 ANN 索引类型，hnsw、ivfflat 或 none，默认为hnsw */
+    private String pgIndexType = "hnsw";
+    /** IVFFlat 聚类数，小于等于0时按分区行数/1000 计算，默认为0 */
+    private int pgIvfflatLists = 0;
+    /** IVFFlat 查询时探查的聚类数，默认为10 */
+    private int pgIvfflatProbes = 10;
+    /** 分区行数达到该值后才构建 IVFFlat 索引，默认为10000 */
+    private long pgIvfflatMinRows = 10000;
+    /** 启动时将旧版未分区的 vector_store 表迁移到分区表，默认为true */
+    private boolean pgMigrateLegacy = true;
+    /** pgvector ANN 索引的默认量化方式，none、halfvec（半精度）或 binary（二值），需要 pgvector 0.7+，默认为none */
+    private String pgQuantization = "none";
+    /** 按知识库标签指定量化方式，覆盖默认值，默认为空 */
+    private Map<String, String> pgTagQuantization = new HashMap<>();
+    /** 量化检索的候选倍数，在量化索引上取 topK * 倍数 个候选后按全精度重排，默认为4 */
+    private int pgRerankFactor = 4;
+
+}
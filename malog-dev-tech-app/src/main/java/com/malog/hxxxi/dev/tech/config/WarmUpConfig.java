@@ -0,0 +1,120 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import com.malog.hxxxi.dev.tech.domain.chat.service.RagChatService;
+import com.malog.hxxxi.dev.tech.domain.tag.service.RagTagRegistry;
+import com.malog.hxxxi.dev.tech.domain.warmup.service.ConnectionPoolPrimer;
+import com.malog.hxxxi.dev.tech.domain.warmup.service.OllamaModelPreloader;
+import com.malog.hxxxi.dev.tech.domain.warmup.service.StartupWarmUp;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 启动预热。ApplicationRunner 在应用标记为就绪（ReadinessState.ACCEPTING_TRAFFIC）之前执行，
+ * 预热期间 /actuator/health/readiness 返回 OUT_OF_SERVICE，负载均衡不会把流量转到尚未预热的节点；预热有总时限，超时后照常就绪。
+ * 第一阶段并行预加载 Ollama 模型、建立 JDBC 与 Redis 连接，第二阶段在已有标签上执行合成查询。
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(WarmUpConfigProperties.class)
+@ConditionalOnProperty(prefix = "rag.warm-up", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class WarmUpConfig {
+
+    /** Ollama 托管的 embedding 模型，与 OllamaConfig 中的选择一致 */
+    private static final String OLLAMA_EMBEDDING_MODEL = "nomic-embed-text";
+    /** 未配置聊天模型时，合成查询的上下文组装使用默认 token 预算 */
+    private static final String SYNTHETIC_MODEL = "warm-up";
+
+    @Bean
+    public OllamaModelPreloader ollamaModelPreloader(@Value("${spring.ai.ollama.base-url}") String baseUrl, WarmUpConfigProperties properties,
+                                                     OllamaReplicaConfigProperties replicaProperties) {
+        return new OllamaModelPreloader(replicaProperties.endpointsOr(baseUrl), properties.getOllamaKeepAlive());
+    }
+
+    @Bean
+    public ApplicationRunner startupWarmUp(WarmUpConfigProperties properties, OllamaModelPreloader ollamaModelPreloader,
+                                           @Value("${spring.ai.rag.embed}") String embeddingModel,
+                                           ObjectProvider<DataSource> dataSourceProvider, RedissonClient redissonClient,
+                                           RedisClientConfigProperties redisProperties,
+                                           RagChatService ragChatService, RagTagRegistry ragTagRegistry) {
+        return args -> {
+            List<StartupWarmUp.Task> resources = new ArrayList<>(modelTasks(properties, ollamaModelPreloader, embeddingModel));
+            DataSource dataSource = dataSourceProvider.getIfAvailable();
+            if (null != dataSource) {
+                int connections = properties.getJdbcConnections() > 0 ? properties.getJdbcConnections()
+                        : dataSource instanceof HikariDataSource hikari ? hikari.getMinimumIdle() : 1;
+                resources.add(new StartupWarmUp.Task("jdbc", () -> ConnectionPoolPrimer.primeJdbc(dataSource, connections)));
+            }
+            int redisCommands = properties.getRedisCommands() > 0 ? properties.getRedisCommands() : redisProperties.getPoolSize();
+            resources.add(new StartupWarmUp.Task("redis", () -> ConnectionPoolPrimer.primeRedis(redissonClient, redisCommands)));
+
+            List<StartupWarmUp.Task> queries = new ArrayList<>();
+            List<String> tags = ragTagRegistry.tags().stream().limit(Math.max(0, properties.getSyntheticMaxTags())).toList();
+            if (!tags.isEmpty() && !properties.getSyntheticQueries().isEmpty()) {
+                String model = properties.getOllamaChatModels().isEmpty() ? SYNTHETIC_MODEL : properties.getOllamaChatModels().get(0);
+                queries.add(new StartupWarmUp.Task("synthetic-queries", () -> {
+                    for (int round = 0; round < Math.max(1, properties.getSyntheticRounds()); round++) {
+                        for (String ragTag : tags) {
+                            for (String query : properties.getSyntheticQueries()) {
+                                ragChatService.warmUp(model, ragTag, query);
+                            }
+                        }
+                    }
+                }));
+            }
+
+            new StartupWarmUp(Duration.ofSeconds(properties.getTimeoutSeconds()))
+                    .then(resources)
+                    .then(queries)
+                    .run();
+        };
+    }
+
+    /**
+     * 定期刷新模型常驻时间，普通请求会把常驻时间重置为 Ollama 的默认值
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    @ConditionalOnProperty(prefix = "rag.warm-up", name = "ollama-keep-alive-refresh-minutes")
+    public ScheduledExecutorService ollamaKeepAliveScheduler(WarmUpConfigProperties properties, OllamaModelPreloader ollamaModelPreloader,
+                                                             @Value("${spring.ai.rag.embed}") String embeddingModel) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(IngestConfig.namedThreadFactory("ollama-keep-alive-"));
+        long interval = properties.getOllamaKeepAliveRefreshMinutes();
+        if (interval <= 0) return scheduler;
+        List<StartupWarmUp.Task> tasks = modelTasks(properties, ollamaModelPreloader, embeddingModel);
+        scheduler.scheduleWithFixedDelay(() -> tasks.forEach(task -> {
+            try {
+                task.action().run();
+            } catch (Exception e) {
+                log.warn("刷新 Ollama 模型常驻时间失败 task:{}", task.name(), e);
+            }
+        }), interval, interval, TimeUnit.MINUTES);
+        return scheduler;
+    }
+
+    private static List<StartupWarmUp.Task> modelTasks(WarmUpConfigProperties properties, OllamaModelPreloader ollamaModelPreloader, String embeddingModel) {
+        List<StartupWarmUp.Task> tasks = new ArrayList<>();
+        for (String model : properties.getOllamaChatModels()) {
+            tasks.add(new StartupWarmUp.Task("ollama-chat:" + model, () -> ollamaModelPreloader.preloadChat(model)));
+        }
+        if (OLLAMA_EMBEDDING_MODEL.equalsIgnoreCase(embeddingModel)) {
+            tasks.add(new StartupWarmUp.Task("ollama-embedding:" + embeddingModel, () -> ollamaModelPreloader.preloadEmbedding(OLLAMA_EMBEDDING_MODEL)));
+        }
+        return tasks;
+    }
+
+}
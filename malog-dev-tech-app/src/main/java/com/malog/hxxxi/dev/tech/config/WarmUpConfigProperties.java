@@ -0,0 +1,37 @@
+package com.malog.hxxxi.dev.tech.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动预热配置
+ */
+@Data
+@ConfigurationProperties(prefix = "rag.warm-up", ignoreInvalidFields = true)
+public class WarmUpConfigProperties {
+
+    /** 是否启用启动预热，默认为true */
+    private boolean enabled = true;
+    /** 预热总时限（单位：秒），超时后放弃剩余任务并开始接收流量，默认为120 */
+    private long timeoutSeconds = 120;
+    /** 需要预加载的 Ollama 聊天模型 */
+    private List<String> ollamaChatModels = new ArrayList<>();
+    /** 预加载模型的常驻时间，-1 表示一直常驻，默认为30m */
+    private String ollamaKeepAlive = "30m";
+    /** 定期刷新模型常驻时间的间隔（单位：分钟），0 表示不刷新，默认为0 */
+    private long ollamaKeepAliveRefreshMinutes = 0;
+    /** 预先建立的 JDBC 连接数，0 表示使用连接池的最小空闲连接数，默认为0 */
+    private int jdbcConnections = 0;
+    /** 预热时并发发出的 Redis 命令数，0 表示使用 Redis 连接池大小，默认为0 */
+    private int redisCommands = 0;
+    /** 合成查询，依次在已有的知识库标签上执行检索与提示词拼装 */
+    private List<String> syntheticQueries = new ArrayList<>(List.of("这个项目是做什么的？"));
+    /** 合成查询使用的知识库标签数上限，默认为3 */
+    private int syntheticMaxTags = 3;
+    /** 合成查询的重复轮数，让检索路径经过 JIT 编译，默认为3 */
+    private int syntheticRounds = 3;
+
+}
@@ -0,0 +1,75 @@
+package com.malog.hxxxi.dev.tech.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.malog.hxxxi.dev.tech.bench.support.BenchCorpus;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.Generation;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Auth : Malog
+ * @Desc : 流式回答的 JSON 序列化与解析。序列化与 Spring MVC 输出 SSE 时一致使用 Jackson；
+ *         解析按前端 index.js 的方式读取 result.output.content 与 finishReason。
+ *         每次操作处理一整条回答流，结果按流计。
+ * @Time : 2026/10/21 11:10
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatResponseJsonBenchmark {
+
+    /** 一条回答流的分片数，流式输出每个分片约为一个 token */
+    @Param({"64", "512"})
+    public int chunks;
+
+    private ObjectMapper objectMapper;
+    private List<ChatResponse> stream;
+    private List<String> frames;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        objectMapper = new ObjectMapper();
+        String answer = BenchCorpus.document(chunks * 2, 7);
+        stream = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            Generation generation = new Generation(answer.substring(i * 2, i * 2 + 2));
+            if (i == chunks - 1) {
+                generation = generation.withGenerationMetadata(ChatGenerationMetadata.from("STOP", null));
+            }
+            stream.add(new ChatResponse(List.of(generation)));
+        }
+        frames = new ArrayList<>(chunks);
+        for (ChatResponse response : stream) {
+            frames.add(objectMapper.writeValueAsString(response));
+        }
+    }
+
+    @Benchmark
+    public void serialize(Blackhole blackhole) throws Exception {
+        for (ChatResponse response : stream) {
+            blackhole.consume(objectMapper.writeValueAsString(response));
+        }
+    }
+
+    @Benchmark
+    public String parse() throws Exception {
+        StringBuilder answer = new StringBuilder();
+        for (String frame : frames) {
+            JsonNode result = objectMapper.readTree(frame).path("result");
+            answer.append(result.path("output").path("content").asText(""));
+            if ("STOP".equals(result.path("metadata").path("finishReason").asText(null))) break;
+        }
+        return answer.toString();
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.malog.hxxxi.dev.tech.bench;
+
+import com.malog.hxxxi.dev.tech.bench.support.BenchCorpus;
+import com.malog.hxxxi.dev.tech.domain.chat.model.AssembledContext;
+import com.malog.hxxxi.dev.tech.domain.chat.service.ContextAssembler;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.DocumentIngestionPipeline;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.SystemPromptTemplate;
+import org.springframework.ai.document.Document;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Auth : Malog
+ * @Desc : 上下文组装与提示词渲染。检索结果中包含相邻切片与重复切片，覆盖合并、去重与按预算裁剪
+ * @Time : 2026/10/21 10:50
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContextAssemblyBenchmark {
+
+    /** 与 RagChatService 的系统提示词一致 */
+    private static final String SYSTEM_PROMPT = """
+            Use the information from the DOCUMENTS section to provide accurate answers but act as if you knew this information innately.
+            If unsure, simply state that you don't know.
+            Another thing you need to note is that your reply must be in Chinese!
+            DOCUMENTS:
+                {documents}
+            """;
+
+    private static final String MODEL = "deepseek-r1:1.5b";
+    private static final int CHUNK_CHARS = 800;
+
+    /** 检索返回的切片数 */
+    @Param({"4", "16", "64"})
+    public int retrievedChunks;
+
+    /** 模型 token 预算 */
+    @Param({"1500", "8000"})
+    public int tokenBudget;
+
+    private ContextAssembler contextAssembler;
+    private List<Document> documents;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        contextAssembler = new ContextAssembler(tokenBudget, Map.of(), 0.8);
+        documents = new ArrayList<>(retrievedChunks);
+        for (int i = 0; i < retrievedChunks; i++) {
+            // 每个文件连续取 4 个切片以触发相邻合并，每 8 个切片重复一次以触发去重
+            int file = i / 4;
+            int seed = i % 8 == 7 ? i - 1 : i;
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("knowledge", "bench");
+            metadata.put(DocumentIngestionPipeline.METADATA_SOURCE, "file-" + file + ".md");
+            metadata.put(DocumentIngestionPipeline.METADATA_CHUNK_INDEX, i % 4);
+            documents.add(new Document("chunk-" + i, BenchCorpus.document(CHUNK_CHARS, seed), metadata));
+        }
+    }
+
+    @Benchmark
+    public AssembledContext assemble() {
+        return contextAssembler.assemble(MODEL, documents);
+    }
+
+    @Benchmark
+    public Message assembleAndRender() {
+        AssembledContext context = contextAssembler.assemble(MODEL, documents);
+        return new SystemPromptTemplate(SYSTEM_PROMPT).createMessage(Map.of("documents", context.getText()));
+    }
+
+}
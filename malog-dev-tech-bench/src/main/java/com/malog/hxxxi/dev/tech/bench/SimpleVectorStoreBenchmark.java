@@ -0,0 +1,75 @@
+package com.malog.hxxxi.dev.tech.bench;
+
+import com.malog.hxxxi.dev.tech.bench.support.StubEmbeddingClient;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.SimpleVectorStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Auth : Malog
+ * @Desc : SimpleVectorStore 暴力检索耗时，分别在 1 万、10 万、100 万向量下测量。
+ *         向量以 List<Double> 装箱保存，100 万 × 768 维需要二十余 GB 堆，默认使用 128 维，
+ *         检索耗时与维度线性相关，可通过 -p dimensions=768 在大内存机器上按实际维度运行。
+ * @Time : 2026/10/21 11:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class SimpleVectorStoreBenchmark {
+
+    private static final int ADD_BATCH = 10_000;
+    private static final int QUERIES = 64;
+
+    @Param({"10000", "100000", "1000000"})
+    public int vectors;
+
+    @Param({"128"})
+    public int dimensions;
+
+    @Param({"4", "10"})
+    public int topK;
+
+    private SimpleVectorStore vectorStore;
+    private List<String> queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        vectorStore = new SimpleVectorStore(new StubEmbeddingClient(dimensions));
+        List<Document> batch = new ArrayList<>(ADD_BATCH);
+        for (int i = 0; i < vectors; i++) {
+            batch.add(new Document("chunk-" + i, Map.of("knowledge", "bench")));
+            if (batch.size() == ADD_BATCH) {
+                vectorStore.add(batch);
+                batch = new ArrayList<>(ADD_BATCH);
+            }
+        }
+        if (!batch.isEmpty()) {
+            vectorStore.add(batch);
+        }
+
+        queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            queries.add("query-" + i);
+        }
+    }
+
+    /**
+     * 含问题向量化（桩实现，耗时可忽略）、全量相似度计算与排序
+     */
+    @Benchmark
+    public List<Document> similaritySearch() {
+        String query = queries.get(next++ & (QUERIES - 1));
+        return vectorStore.similaritySearch(SearchRequest.query(query).withTopK(topK));
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.malog.hxxxi.dev.tech.bench;
+
+import com.malog.hxxxi.dev.tech.bench.support.BenchCorpus;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.transformer.splitter.TokenTextSplitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Auth : Malog
+ * @Desc : TokenTextSplitter 切分吞吐，文档为中英文、代码与 Markdown 混排，与入库流水线的切分阶段一致
+ * @Time : 2026/10/21 10:40
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TokenTextSplitterBenchmark {
+
+    /** 文档字符数：普通文档、长文档、流式解析的一段 */
+    @Param({"4096", "32768", "262144"})
+    public int documentChars;
+
+    private TokenTextSplitter splitter;
+    private String content;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        splitter = new TokenTextSplitter();
+        content = BenchCorpus.document(documentChars, 42);
+    }
+
+    @Benchmark
+    public List<Document> split() {
+        // 切分会改写元数据，每次使用新的文档
+        return splitter.apply(List.of(new Document(content, Map.of("knowledge", "bench"))));
+    }
+
+}
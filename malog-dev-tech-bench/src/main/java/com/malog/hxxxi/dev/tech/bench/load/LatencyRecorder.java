@@ -0,0 +1,48 @@
+package com.malog.hxxxi.dev.tech.bench.load;
+
+import java.util.Arrays;
+
+/**
+ * @Auth : Malog
+ * @Desc : 延迟样本记录，多线程写入，结束后一次性排序计算分位数。单轮压测的样本量在百万以内，直接保存原始值
+ * @Time : 2026/10/21 14:40
+ */
+public class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int size;
+
+    public synchronized void record(long micros) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = micros;
+    }
+
+    public synchronized int count() {
+        return size;
+    }
+
+    /**
+     * 计算分位数
+     *
+     * @param quantile 0 ~ 1
+     * @return 微秒，无样本时返回 0
+     */
+    public synchronized long percentile(double quantile) {
+        if (size == 0) return 0;
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(quantile * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    public synchronized long max() {
+        long max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+
+}
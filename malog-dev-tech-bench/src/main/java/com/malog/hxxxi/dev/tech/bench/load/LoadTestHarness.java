@@ -0,0 +1,394 @@
+package com.malog.hxxxi.dev.tech.bench.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.malog.hxxxi.dev.tech.bench.support.BenchCorpus;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * @Auth : Malog
+ * @Desc : 离线端到端压测。启动模型桩服务，可选以 loadtest 配置拉起应用，按并发梯度闭环驱动
+ *         generate_stream_rag 与 file/upload，输出吞吐、首 token 耗时、p50/p95/p99 与错误率，用于定位饱和点。
+ *         <pre>
+ *         java -cp malog-dev-tech-bench/target/benchmarks.jar com.malog.hxxxi.dev.tech.bench.load.LoadTestHarness \
+ *             --app-jar=malog-dev-tech-app/target/ai-rag-knowledge-app.jar --scenario=mixed --concurrency=1,4,16,64
+ *         </pre>
+ *         不指定 --app-jar 时压测 --target 上已启动的应用，此时应用需以 loadtest 配置启动并指向桩服务端口。
+ * @Time : 2026/10/21 15:00
+ */
+@Slf4j
+public class LoadTestHarness {
+
+    private static final String CHAT = "chat";
+    private static final String UPLOAD = "upload";
+    private static final String INGEST = "ingest";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> options;
+    private final HttpClient httpClient;
+    private final String target;
+
+    private LoadTestHarness(Map<String, String> options) {
+        this.options = options;
+        this.target = option("target", "http://127.0.0.1:" + option("app-port", "8090"));
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newCachedThreadPool())
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) continue;
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+        new LoadTestHarness(options).run();
+    }
+
+    private void run() throws Exception {
+        int stubPort = Integer.parseInt(option("stub-port", "11435"));
+        StubModelServer stub = null;
+        Process app = null;
+        try {
+            if (Boolean.parseBoolean(option("stub", "true"))) {
+                stub = StubModelServer.builder()
+                        .port(stubPort)
+                        .embeddingDimensions(Integer.parseInt(option("embedding-dimensions", "768")))
+                        .tokensPerSecond(Double.parseDouble(option("token-rate", "30")))
+                        .answerTokens(Integer.parseInt(option("answer-tokens", "200")))
+                        .ttftMedianMillis(Long.parseLong(option("ttft-median-ms", "300")))
+                        .ttftP99Millis(Long.parseLong(option("ttft-p99-ms", "1500")))
+                        .embeddingMillisPerText(Long.parseLong(option("embedding-ms", "5")))
+                        .errorRate(Double.parseDouble(option("error-rate", "0")))
+                        .build()
+                        .start();
+            }
+            if (options.containsKey("app-jar")) {
+                app = launchApplication(option("app-jar", null), stubPort);
+            }
+            awaitHealthy(Duration.ofSeconds(Long.parseLong(option("startup-timeout-seconds", "180"))));
+
+            String ragTag = option("rag-tag", "loadtest");
+            // 先入库一份文档，保证检索有结果
+            if (!upload(ragTag, 0, new Stats())) {
+                throw new IllegalStateException("初始化知识库失败 ragTag:" + ragTag);
+            }
+
+            List<Step> steps = new ArrayList<>();
+            for (String concurrency : option("concurrency", "1,4,16").split(",")) {
+                steps.add(runStep(Integer.parseInt(concurrency.trim()), ragTag));
+            }
+            report(System.out, steps);
+            if (options.containsKey("report")) {
+                try (PrintStream out = new PrintStream(new File(option("report", null)), StandardCharsets.UTF_8)) {
+                    reportCsv(out, steps);
+                }
+            }
+        } finally {
+            if (null != app) {
+                app.destroy();
+                if (!app.waitFor(30, TimeUnit.SECONDS)) app.destroyForcibly();
+            }
+            if (null != stub) stub.close();
+        }
+    }
+
+    private Step runStep(int concurrency, String ragTag) throws InterruptedException {
+        String scenario = option("scenario", CHAT);
+        long warmupNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("warmup-seconds", "5")));
+        long durationNanos = TimeUnit.SECONDS.toNanos(Long.parseLong(option("duration-seconds", "30")));
+        // 混合场景中每 uploadEvery 个并发用户有一个负责上传
+        int uploadEvery = Integer.parseInt(option("upload-every", "8"));
+
+        Step step = new Step(concurrency);
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long deadline = measureFrom + durationNanos;
+        AtomicLong sequence = new AtomicLong();
+        ExecutorService users = Executors.newFixedThreadPool(concurrency);
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int user = 0; user < concurrency; user++) {
+            boolean uploader = UPLOAD.equals(scenario) || ("mixed".equals(scenario) && user % uploadEvery == uploadEvery - 1);
+            users.execute(() -> {
+                try {
+                    while (System.nanoTime() < deadline) {
+                        // 预热期间的请求不计入结果
+                        boolean measured = System.nanoTime() >= measureFrom;
+                        long n = sequence.incrementAndGet();
+                        if (uploader) {
+                            upload(ragTag, n, measured ? step.stats(UPLOAD) : new Stats());
+                        } else {
+                            chat(ragTag, n, measured ? step.stats(CHAT) : new Stats());
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        users.shutdown();
+        step.elapsedNanos = durationNanos;
+        log.info("压测轮次结束 concurrency:{}", concurrency);
+        return step;
+    }
+
+    private void chat(String ragTag, long n, Stats stats) {
+        String provider = option("provider", "ollama");
+        String query = "model=" + encode(option("model", "deepseek-r1:1.5b"))
+                + "&ragTag=" + encode(ragTag)
+                + "&message=" + encode("第" + n + "个问题：入库流水线分为哪几个阶段？");
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/api/v1/" + provider + "/generate_stream_rag?" + query))
+                .header("Accept", "text/event-stream")
+                .timeout(Duration.ofSeconds(Long.parseLong(option("request-timeout-seconds", "120"))))
+                .GET()
+                .build();
+
+        long start = System.nanoTime();
+        try {
+            HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                stats.fail(response.statusCode());
+                return;
+            }
+            long firstToken = 0;
+            long tokens = 0;
+            boolean stopped = false;
+            try (Stream<String> lines = response.body()) {
+                for (Iterator<String> it = lines.iterator(); it.hasNext(); ) {
+                    String line = it.next();
+                    if (!line.startsWith("data:")) continue;
+                    // 与 index.js 相同：读取 result.output.content，finishReason 为 STOP 时结束
+                    JsonNode result = objectMapper.readTree(line.substring(5)).path("result");
+                    if (!result.path("output").path("content").asText("").isEmpty()) {
+                        tokens++;
+                        if (firstToken == 0) firstToken = System.nanoTime();
+                    }
+                    // 紧凑帧模式只在 output.properties 中携带 finishReason，此时 tokens 统计的是帧数
+                    if ("STOP".equalsIgnoreCase(result.path("metadata").path("finishReason").asText(""))
+                            || "STOP".equalsIgnoreCase(result.path("output").path("properties").path("finishReason").asText(""))) {
+                        stopped = true;
+                        break;
+                    }
+                }
+            }
+            long end = System.nanoTime();
+            if (firstToken == 0) {
+                stats.fail(-1);
+                return;
+            }
+            stats.ttft.record(TimeUnit.NANOSECONDS.toMicros(firstToken - start));
+            stats.latency.record(TimeUnit.NANOSECONDS.toMicros(end - start));
+            stats.tokens.addAndGet(tokens);
+            stats.ok.incrementAndGet();
+            if (!stopped) stats.truncated.incrementAndGet();
+        } catch (Exception e) {
+            stats.fail(0);
+        }
+    }
+
+    /**
+     * 上传文档并等待入库任务结束，分别记录上传接口耗时与入库完成耗时
+     */
+    private boolean upload(String ragTag, long n, Stats stats) {
+        String boundary = "----loadtest" + n;
+        String fileName = "loadtest-" + n + ".md";
+        byte[] content = BenchCorpus.document(Integer.parseInt(option("upload-chars", "65536")), n).getBytes(StandardCharsets.UTF_8);
+        byte[] head = ("--" + boundary + "\r\nContent-Disposition: form-data; name=\"ragTag\"\r\n\r\n" + ragTag + "\r\n"
+                + "--" + boundary + "\r\nContent-Disposition: form-data; name=\"files\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: text/markdown\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/api/v1/rag/file/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(List.of(head, content, tail)))
+                .build();
+
+        long start = System.nanoTime();
+        try {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            JsonNode body = response.statusCode() == 200 ? objectMapper.readTree(response.body()) : null;
+            if (null == body || !"0000".equals(body.path("code").asText())) {
+                stats.fail(response.statusCode());
+                return false;
+            }
+            stats.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+
+            String jobId = body.path("data").asText();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Long.parseLong(option("ingest-timeout-seconds", "300")));
+            while (System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(50);
+                HttpResponse<String> job = httpClient.send(HttpRequest.newBuilder(
+                                URI.create(target + "/api/v1/rag/query_ingest_job?jobId=" + encode(jobId))).GET().build(),
+                        HttpResponse.BodyHandlers.ofString());
+                String status = objectMapper.readTree(job.body()).path("data").path("status").asText();
+                if ("SUCCESS".equals(status)) {
+                    stats.ingest.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                    stats.ok.incrementAndGet();
+                    return true;
+                }
+                if ("FAILED".equals(status)) break;
+            }
+            stats.fail(-1);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stats.fail(0);
+            return false;
+        } catch (Exception e) {
+            stats.fail(0);
+            return false;
+        }
+    }
+
+    private Process launchApplication(String appJar, int stubPort) throws IOException {
+        String stubUrl = "http://127.0.0.1:" + stubPort;
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString()));
+        command.addAll(Arrays.asList(option("app-jvm-args", "-Xms2g -Xmx2g").split("\\s+")));
+        command.addAll(List.of("-jar", appJar,
+                "--spring.profiles.active=loadtest",
+                "--server.port=" + option("app-port", "8090"),
+                "--spring.ai.ollama.base-url=" + stubUrl,
+                "--spring.ai.openai.base-url=" + stubUrl));
+        File logFile = new File(option("app-log", "loadtest-app.log"));
+        log.info("启动应用:{} 日志:{}", String.join(" ", command), logFile.getAbsolutePath());
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile)
+                .start();
+    }
+
+    private void awaitHealthy(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/actuator/health")).timeout(Duration.ofSeconds(2)).GET().build();
+        while (System.nanoTime() < deadline) {
+            try {
+                if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) return;
+            } catch (IOException ignored) {
+                // 应用尚未监听端口
+            }
+            TimeUnit.SECONDS.sleep(1);
+        }
+        throw new IllegalStateException("应用未在 " + timeout.toSeconds() + " 秒内就绪:" + target);
+    }
+
+    private void report(PrintStream out, List<Step> steps) {
+        out.printf("%-12s %-7s %8s %8s %8s %10s %9s %9s %9s %9s %9s %9s %10s%n",
+                "concurrency", "kind", "ok", "errors", "err%", "req/s",
+                "ttft50", "ttft95", "ttft99", "lat50", "lat95", "lat99", "tokens/s");
+        for (Step step : steps) {
+            double seconds = step.elapsedNanos / 1e9;
+            for (Map.Entry<String, Stats> entry : step.stats.entrySet()) {
+                Stats stats = entry.getValue();
+                long total = stats.ok.get() + stats.errors.get();
+                LatencyRecorder latency = UPLOAD.equals(entry.getKey()) ? stats.ingest : stats.latency;
+                out.printf("%-12d %-7s %8d %8d %7.2f%% %10.2f %9s %9s %9s %9s %9s %9s %10.1f%n",
+                        step.concurrency, UPLOAD.equals(entry.getKey()) ? INGEST : entry.getKey(),
+                        stats.ok.get(), stats.errors.get(), total == 0 ? 0 : stats.errors.get() * 100.0 / total,
+                        stats.ok.get() / seconds,
+                        millis(stats.ttft.percentile(0.5)), millis(stats.ttft.percentile(0.95)), millis(stats.ttft.percentile(0.99)),
+                        millis(latency.percentile(0.5)), millis(latency.percentile(0.95)), millis(latency.percentile(0.99)),
+                        stats.tokens.get() / seconds);
+                if (!stats.statusCounts.isEmpty()) {
+                    out.printf("%-12s %-7s errors by status %s (0=io/timeout, -1=incomplete)%n", "", "", stats.statusCounts);
+                }
+            }
+        }
+    }
+
+    private void reportCsv(PrintStream out, List<Step> steps) {
+        out.println("concurrency,kind,ok,errors,rejected,truncated,req_per_s,ttft_p50_ms,ttft_p95_ms,ttft_p99_ms,"
+                + "latency_p50_ms,latency_p95_ms,latency_p99_ms,latency_max_ms,tokens_per_s");
+        for (Step step : steps) {
+            double seconds = step.elapsedNanos / 1e9;
+            for (Map.Entry<String, Stats> entry : step.stats.entrySet()) {
+                Stats stats = entry.getValue();
+                LatencyRecorder latency = UPLOAD.equals(entry.getKey()) ? stats.ingest : stats.latency;
+                out.printf(Locale.ROOT, "%d,%s,%d,%d,%d,%d,%.2f,%s,%s,%s,%s,%s,%s,%s,%.1f%n",
+                        step.concurrency, UPLOAD.equals(entry.getKey()) ? INGEST : entry.getKey(),
+                        stats.ok.get(), stats.errors.get(), stats.statusCounts.getOrDefault(429, 0L), stats.truncated.get(),
+                        stats.ok.get() / seconds,
+                        millis(stats.ttft.percentile(0.5)), millis(stats.ttft.percentile(0.95)), millis(stats.ttft.percentile(0.99)),
+                        millis(latency.percentile(0.5)), millis(latency.percentile(0.95)), millis(latency.percentile(0.99)),
+                        millis(latency.max()), stats.tokens.get() / seconds);
+            }
+        }
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.1f", micros / 1000.0);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 一个并发梯度的结果
+     */
+    private static class Step {
+
+        private final int concurrency;
+        private final Map<String, Stats> stats = Collections.synchronizedMap(new TreeMap<>());
+        private long elapsedNanos;
+
+        private Step(int concurrency) {
+            this.concurrency = concurrency;
+        }
+
+        private Stats stats(String kind) {
+            return stats.computeIfAbsent(kind, k -> new Stats());
+        }
+
+    }
+
+    /**
+     * 一类请求的计数与延迟
+     */
+    private static class Stats {
+
+        private final LatencyRecorder ttft = new LatencyRecorder();
+        private final LatencyRecorder latency = new LatencyRecorder();
+        private final LatencyRecorder ingest = new LatencyRecorder();
+        private final AtomicLong ok = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong truncated = new AtomicLong();
+        private final AtomicLong tokens = new AtomicLong();
+        /** 按 HTTP 状态统计错误，429 为限流拒绝 */
+        private final Map<Integer, Long> statusCounts = Collections.synchronizedMap(new TreeMap<>());
+
+        private void fail(int status) {
+            errors.incrementAndGet();
+            statusCounts.merge(status, 1L, Long::sum);
+        }
+
+    }
+
+}
@@ -0,0 +1,276 @@
+package com.malog.hxxxi.dev.tech.bench.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.malog.hxxxi.dev.tech.bench.support.BenchCorpus;
+import com.malog.hxxxi.dev.tech.bench.support.StubEmbeddingClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Auth : Malog
+ * @Desc : 模拟 Ollama 与 OpenAI 的 HTTP 服务，供离线压测使用。
+ *         Ollama：/api/chat（NDJSON 流式与非流式）、/api/embeddings；OpenAI：/v1/chat/completions（SSE 流式与非流式）、/v1/embeddings。
+ *         首 token 延迟按对数正态分布抽样（由中位数与 p99 确定），之后按固定 token 速率输出；向量由文本哈希确定，结果可复现。
+ * @Time : 2026/10/21 14:10
+ */
+@Slf4j
+public class StubModelServer implements AutoCloseable {
+
+    /** 标准正态分布的 0.99 分位数 */
+    private static final double Z_99 = 2.326;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final int port;
+    private final int embeddingDimensions;
+    /** 每个流每秒输出的 token 数 */
+    private final double tokensPerSecond;
+    /** 每次回答的 token 数 */
+    private final int answerTokens;
+    /** 首 token 延迟中位数 */
+    private final long ttftMedianMillis;
+    /** 首 token 延迟 p99 */
+    private final long ttftP99Millis;
+    /** 单条文本的向量化耗时 */
+    private final long embeddingMillisPerText;
+    /** 返回 503 的比例，模拟模型服务故障 */
+    private final double errorRate;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    @Builder
+    public StubModelServer(int port, int embeddingDimensions, double tokensPerSecond, int answerTokens,
+                           long ttftMedianMillis, long ttftP99Millis, long embeddingMillisPerText, double errorRate) {
+        this.port = port;
+        this.embeddingDimensions = embeddingDimensions > 0 ? embeddingDimensions : StubEmbeddingClient.OLLAMA_DIMENSIONS;
+        this.tokensPerSecond = tokensPerSecond > 0 ? tokensPerSecond : 30;
+        this.answerTokens = answerTokens > 0 ? answerTokens : 200;
+        this.ttftMedianMillis = Math.max(0, ttftMedianMillis);
+        this.ttftP99Millis = Math.max(this.ttftMedianMillis, ttftP99Millis);
+        this.embeddingMillisPerText = Math.max(0, embeddingMillisPerText);
+        this.errorRate = Math.max(0, errorRate);
+    }
+
+    public StubModelServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        // 流式响应在输出期间占用线程，按连接数扩展
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/api/chat", exchange -> handle(exchange, this::ollamaChat));
+        server.createContext("/api/embeddings", exchange -> handle(exchange, this::ollamaEmbeddings));
+        server.createContext("/v1/chat/completions", exchange -> handle(exchange, this::openAiChat));
+        server.createContext("/v1/embeddings", exchange -> handle(exchange, this::openAiEmbeddings));
+        server.start();
+        log.info("模型桩服务已启动 port:{} tokensPerSecond:{} ttftMedian:{}ms ttftP99:{}ms",
+                getPort(), tokensPerSecond, ttftMedianMillis, ttftP99Millis);
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public void close() {
+        if (null != server) server.stop(0);
+        if (null != executor) executor.shutdownNow();
+    }
+
+    private void ollamaChat(HttpExchange exchange, JsonNode request) throws Exception {
+        String model = request.path("model").asText();
+        boolean stream = request.path("stream").asBoolean(true);
+        List<String> tokens = answer(request);
+        sleep(sampleTtft());
+
+        if (!stream) {
+            ObjectNode body = ollamaChunk(model, String.join("", tokens), true);
+            writeJson(exchange, 200, body);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (String token : tokens) {
+                writeLine(out, objectMapper.writeValueAsString(ollamaChunk(model, token, false)) + "\n");
+                sleep(tokenInterval());
+            }
+            ObjectNode done = ollamaChunk(model, "", true);
+            done.put("eval_count", tokens.size());
+            writeLine(out, objectMapper.writeValueAsString(done) + "\n");
+        }
+    }
+
+    private ObjectNode ollamaChunk(String model, String content, boolean done) {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.put("model", model);
+        chunk.put("created_at", Instant.now().toString());
+        ObjectNode message = chunk.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        chunk.put("done", done);
+        return chunk;
+    }
+
+    private void ollamaEmbeddings(HttpExchange exchange, JsonNode request) throws Exception {
+        String prompt = request.path("prompt").asText();
+        sleep(embeddingMillisPerText);
+        ObjectNode body = objectMapper.createObjectNode();
+        ArrayNode embedding = body.putArray("embedding");
+        StubEmbeddingClient.vectorOf(prompt.hashCode(), embeddingDimensions).forEach(embedding::add);
+        writeJson(exchange, 200, body);
+    }
+
+    private void openAiChat(HttpExchange exchange, JsonNode request) throws Exception {
+        String model = request.path("model").asText();
+        boolean stream = request.path("stream").asBoolean(false);
+        List<String> tokens = answer(request);
+        sleep(sampleTtft());
+
+        if (!stream) {
+            ObjectNode body = openAiCompletion(model, "chat.completion");
+            ObjectNode choice = body.putArray("choices").addObject();
+            choice.put("index", 0);
+            choice.putObject("message").put("role", "assistant").put("content", String.join("", tokens));
+            choice.put("finish_reason", "stop");
+            body.putObject("usage").put("completion_tokens", tokens.size()).put("prompt_tokens", 0).put("total_tokens", tokens.size());
+            writeJson(exchange, 200, body);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int i = 0; i <= tokens.size(); i++) {
+                boolean last = i == tokens.size();
+                ObjectNode chunk = openAiCompletion(model, "chat.completion.chunk");
+                ObjectNode choice = chunk.putArray("choices").addObject();
+                choice.put("index", 0);
+                ObjectNode delta = choice.putObject("delta");
+                if (!last) delta.put("content", tokens.get(i));
+                if (last) choice.put("finish_reason", "stop");
+                else choice.putNull("finish_reason");
+                writeLine(out, "data: " + objectMapper.writeValueAsString(chunk) + "\n\n");
+                if (!last) sleep(tokenInterval());
+            }
+            writeLine(out, "data: [DONE]\n\n");
+        }
+    }
+
+    private ObjectNode openAiCompletion(String model, String object) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("id", "chatcmpl-stub");
+        body.put("object", object);
+        body.put("created", System.currentTimeMillis() / 1000);
+        body.put("model", model);
+        return body;
+    }
+
+    private void openAiEmbeddings(HttpExchange exchange, JsonNode request) throws Exception {
+        JsonNode input = request.path("input");
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("object", "list");
+        body.put("model", request.path("model").asText());
+        ArrayNode data = body.putArray("data");
+        int count = input.isArray() ? input.size() : 1;
+        sleep(embeddingMillisPerText * count);
+        for (int i = 0; i < count; i++) {
+            String text = input.isArray() ? input.get(i).asText() : input.asText();
+            ObjectNode item = data.addObject();
+            item.put("object", "embedding");
+            item.put("index", i);
+            ArrayNode embedding = item.putArray("embedding");
+            StubEmbeddingClient.vectorOf(text.hashCode(), embeddingDimensions).forEach(embedding::add);
+        }
+        body.putObject("usage").put("prompt_tokens", count).put("total_tokens", count);
+        writeJson(exchange, 200, body);
+    }
+
+    private void handle(HttpExchange exchange, Handler handler) {
+        inFlight.incrementAndGet();
+        try (exchange) {
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                writeJson(exchange, 503, objectMapper.createObjectNode().put("error", "stub unavailable"));
+                return;
+            }
+            handler.handle(exchange, request);
+        } catch (IOException e) {
+            // 客户端断开
+            log.debug("模型桩连接中断:{}", e.toString());
+        } catch (Exception e) {
+            log.warn("模型桩处理失败 path:{}", exchange.getRequestURI(), e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 回答内容由最后一条消息决定，约两个字符一个 token
+     */
+    private List<String> answer(JsonNode request) {
+        JsonNode messages = request.path("messages");
+        String last = messages.isArray() && !messages.isEmpty() ? messages.get(messages.size() - 1).path("content").asText() : "";
+        String text = BenchCorpus.document(answerTokens * 2, last.hashCode());
+        String[] tokens = new String[answerTokens];
+        for (int i = 0; i < answerTokens; i++) {
+            tokens[i] = text.substring(i * 2, i * 2 + 2);
+        }
+        return List.of(tokens);
+    }
+
+    private long sampleTtft() {
+        if (ttftMedianMillis == 0) return 0;
+        double sigma = Math.log((double) ttftP99Millis / ttftMedianMillis) / Z_99;
+        return Math.round(ttftMedianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    private long tokenInterval() {
+        return Math.round(1000 / tokensPerSecond);
+    }
+
+    private void writeJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void writeLine(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) TimeUnit.MILLISECONDS.sleep(millis);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+
+        void handle(HttpExchange exchange, JsonNode request) throws Exception;
+
+    }
+
+}
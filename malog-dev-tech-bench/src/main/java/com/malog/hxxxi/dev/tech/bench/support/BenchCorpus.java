@@ -0,0 +1,84 @@
+package com.malog.hxxxi.dev.tech.bench.support;
+
+import java.util.Random;
+
+/**
+ * @Auth : Malog
+ * @Desc : 压测语料。按固定种子拼出中文正文、英文段落、Java 代码与 Markdown 混排的文档，
+ *         贴近知识库中实际上传的内容，每次生成结果相同。
+ * @Time : 2026/10/21 10:20
+ */
+public class BenchCorpus {
+
+    private static final String[] CHINESE = {
+            "知识库按标签隔离，每个标签对应一组上传的文件或一个代码仓库。",
+            "检索时先按向量相似度召回候选切片，再与全文检索结果按倒数排名融合。",
+            "入库流水线分为解析、切分、向量化与写入四个阶段，阶段之间通过有界队列衔接。",
+            "模型首次加载需要数秒，同一模型的请求尽量路由到已加载的实例上。",
+            "上下文组装会合并相邻切片，并按模型的 token 预算裁剪。",
+            "如果向量服务暂时不可用，检索会降级为只走全文检索。"
+    };
+
+    private static final String[] ENGLISH = {
+            "The ingestion pipeline batches chunks before calling the embedding model to amortise request overhead.",
+            "Retrieval fans out to the vector index and the lexical index in parallel and fuses the rankings.",
+            "Each knowledge tag is stored in its own partition so that deleting a tag is a metadata-only operation.",
+            "Streaming responses are flushed to the client as soon as the first token arrives from the model."
+    };
+
+    private static final String[] CODE = {
+            """
+            public List<Document> retrieve(String ragTag, String query, int topK) {
+                CompletableFuture<List<Document>> vectorLane = lane("vector", ragTag, () -> vectorStore.similaritySearch(
+                        SearchRequest.query(query).withTopK(topK)));
+                return vectorLane.join();
+            }
+            """,
+            """
+            @Data
+            public class IngestJobEntity implements Serializable {
+                private String jobId;
+                private String ragTag;
+                private long rowsWritten;
+            }
+            """
+    };
+
+    private static final String[] MARKDOWN = {
+            "## 部署说明\n\n1. 启动 Postgres 与 Redis\n2. 拉取 nomic-embed-text 模型\n3. 运行 `mvn package` 后启动应用\n",
+            "### 常见问题\n\n- 上传大文件超时：调大 `max-request-size`\n- 检索为空：确认 ragTag 是否一致\n"
+    };
+
+    private BenchCorpus() {
+    }
+
+    /**
+     * 生成指定长度的文档
+     *
+     * @param chars 字符数
+     * @param seed  随机种子
+     */
+    public static String document(int chars, long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder(chars + 512);
+        while (builder.length() < chars) {
+            int kind = random.nextInt(10);
+            if (kind < 5) {
+                for (int i = 0, n = 2 + random.nextInt(4); i < n; i++) {
+                    builder.append(CHINESE[random.nextInt(CHINESE.length)]);
+                }
+            } else if (kind < 7) {
+                for (int i = 0, n = 1 + random.nextInt(3); i < n; i++) {
+                    builder.append(ENGLISH[random.nextInt(ENGLISH.length)]).append(' ');
+                }
+            } else if (kind < 9) {
+                builder.append(CODE[random.nextInt(CODE.length)]);
+            } else {
+                builder.append(MARKDOWN[random.nextInt(MARKDOWN.length)]);
+            }
+            builder.append("\n\n");
+        }
+        return builder.substring(0, chars);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.malog.hxxxi.dev.tech.bench.support;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * @Auth : Malog
+ * @Desc : 离线压测用的 embedding 桩。以文本哈希为种子生成单位向量，同一文本始终得到同一向量，
+ *         不依赖 Ollama / OpenAI，结果可复现。
+ * @Time : 2026/10/21 10:10
+ */
+public class StubEmbeddingClient implements EmbeddingClient {
+
+    /** nomic-embed-text 的向量维度 */
+    public static final int OLLAMA_DIMENSIONS = 768;
+    /** text-embedding-ada-002 的向量维度 */
+    public static final int OPENAI_DIMENSIONS = 1536;
+
+    private final int dimensions;
+
+    public StubEmbeddingClient(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    public static StubEmbeddingClient ollama() {
+        return new StubEmbeddingClient(OLLAMA_DIMENSIONS);
+    }
+
+    public static StubEmbeddingClient openAi() {
+        return new StubEmbeddingClient(OPENAI_DIMENSIONS);
+    }
+
+    @Override
+    public List<Double> embed(String text) {
+        return vectorOf(text.hashCode(), dimensions);
+    }
+
+    @Override
+    public List<Double> embed(Document document) {
+        return embed(document.getContent());
+    }
+
+    @Override
+    public List<List<Double>> embed(List<String> texts) {
+        List<List<Double>> embeddings = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            embeddings.add(embed(text));
+        }
+        return embeddings;
+    }
+
+    @Override
+    public EmbeddingResponse embedForResponse(List<String> texts) {
+        List<Embedding> embeddings = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            embeddings.add(new Embedding(embed(texts.get(i)), i));
+        }
+        return new EmbeddingResponse(embeddings);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return embedForResponse(request.getInstructions());
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 按种子生成单位向量
+     */
+    public static List<Double> vectorOf(long seed, int dimensions) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] values = new double[dimensions];
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            values[i] = random.nextDouble(-1, 1);
+            norm += values[i] * values[i];
+        }
+        norm = Math.sqrt(norm);
+        List<Double> vector = new ArrayList<>(dimensions);
+        for (double value : values) {
+            vector.add(value / norm);
+        }
+        return vector;
+    }
+
+}
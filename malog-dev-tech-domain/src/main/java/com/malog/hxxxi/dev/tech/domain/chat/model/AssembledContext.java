@@ -0,0 +1,32 @@
+package com.malog.hxxxi.dev.tech.domain.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 组装后的提示词上下文
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AssembledContext {
+
+    /** 拼装后的上下文文本 */
+    private String text;
+    /** 上下文占用的 token 数 */
+    private int tokens;
+    /** token 预算 */
+    private int tokenBudget;
+    /** 检索返回的切片数 */
+    private int retrievedChunks;
+    /** 近似重复被丢弃的切片数 */
+    private int duplicateChunks;
+    /** 合并相邻切片后的段落数 */
+    private int blocks;
+    /** 最终放入上下文的段落数 */
+    private int packedBlocks;
+
+}
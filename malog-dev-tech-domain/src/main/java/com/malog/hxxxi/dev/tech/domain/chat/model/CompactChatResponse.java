@@ -0,0 +1,56 @@
+package com.malog.hxxxi.dev.tech.domain.chat.model;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.Generation;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Auth : Malog
+ * @Desc : 紧凑帧。仍是 ChatResponse，服务端按原样处理；序列化时只输出前端读取的字段：
+ *         {"result":{"output":{"content":"..."}}}，结束帧附带 properties.finishReason，
+ *         不再输出 results 数组、各级 metadata 与 messageType 等字段。
+ * @Time : 2026/10/21 09:40
+ */
+public class CompactChatResponse extends ChatResponse {
+
+    public static final String FINISH_REASON = "finishReason";
+    public static final String STOP = "STOP";
+
+    private final String content;
+    private final String finishReason;
+
+    public CompactChatResponse(String content, String finishReason) {
+        super(List.of(null == finishReason ? new Generation(content) : new Generation(content, Map.of(FINISH_REASON, finishReason))));
+        this.content = content;
+        this.finishReason = finishReason;
+    }
+
+    /**
+     * 结束帧，前端收到后关闭 EventSource
+     */
+    public static CompactChatResponse stop() {
+        return new CompactChatResponse("", STOP);
+    }
+
+    /**
+     * 心跳帧，内容为空，前端忽略
+     */
+    public static CompactChatResponse heartbeat() {
+        return new CompactChatResponse("", null);
+    }
+
+    @JsonValue
+    public Map<String, Object> frame() {
+        Map<String, Object> output = new LinkedHashMap<>(2);
+        output.put("content", content);
+        if (null != finishReason) {
+            output.put("properties", Map.of(FINISH_REASON, finishReason));
+        }
+        return Map.of("result", Map.of("output", output));
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.malog.hxxxi.dev.tech.domain.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 模型路由规则，按顺序尝试各个目标，前一个饱和、超时或失败时转到下一个
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ModelRoute {
+
+    /** 模型名匹配规则，支持 * 通配，如 deepseek-r1:* */
+    private String match;
+    /** 按优先级排列的目标 */
+    @Builder.Default
+    private List<RouteTarget> targets = new ArrayList<>();
+
+}
@@ -0,0 +1,22 @@
+package com.malog.hxxxi.dev.tech.domain.chat.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 路由目标，请求转发到的服务商与模型
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RouteTarget {
+
+    /** 服务商名称，如 ollama、openai */
+    private String provider;
+    /** 目标模型，为空时沿用请求的模型 */
+    private String model;
+
+}
@@ -0,0 +1,20 @@
+package com.malog.hxxxi.dev.tech.domain.chat.service;
+
+/**
+ * 排队已满或预计等待时间过长，请求被拒绝
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    /** 建议的重试间隔（单位：秒） */
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+}
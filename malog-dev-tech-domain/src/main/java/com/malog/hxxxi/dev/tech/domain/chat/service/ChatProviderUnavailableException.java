@@ -0,0 +1,16 @@
+package com.malog.hxxxi.dev.tech.domain.chat.service;
+
+/**
+ * 路由中的所有服务商均饱和或失败
+ */
+public class ChatProviderUnavailableException extends RuntimeException {
+
+    public ChatProviderUnavailableException(String message) {
+        super(message);
+    }
+
+    public ChatProviderUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
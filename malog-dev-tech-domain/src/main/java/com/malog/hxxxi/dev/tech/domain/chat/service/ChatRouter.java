@@ -0,0 +1,210 @@
+package com.malog.hxxxi.dev.tech.domain.chat.service;
+
+import com.malog.hxxxi.dev.tech.domain.chat.model.ModelRoute;
+import com.malog.hxxxi.dev.tech.domain.chat.model.RouteTarget;
+import com.malog.hxxxi.dev.tech.domain.chat.service.provider.IChatProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.messages.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * @Auth : Malog
+ * @Desc : 聊天请求路由。按模型路由表选择服务商，每个服务商有独立的并发上限；
+ *         当前目标并发已满、首个 token 超时或在输出前失败时，自动转到路由中的下一个目标。
+ *         带准入队列的服务商（Ollama）只由队列控制并发：请求先在队列中按模型公平排队，队列拒绝时才转到下一个目标；
+ *         路由层的并发上限对这类服务商不生效，否则排队中的请求已占用路由许可，超出上限的请求会直接转走而不进入队列。
+ *         已经开始输出的流不再切换，避免回答内容重复。
+ * @Time : 2026/10/20 11:20
+ */
+@Slf4j
+public class ChatRouter {
+
+    private final Map<String, IChatProvider> providers = new HashMap<>();
+    private final Map<String, Semaphore> permits = new HashMap<>();
+    private final Map<String, Integer> maxConcurrency = new HashMap<>();
+    private final List<CompiledRoute> routes = new ArrayList<>();
+    private final Duration firstTokenTimeout;
+
+    /**
+     * @param providers         服务商适配
+     * @param maxConcurrency    各服务商并发上限，未配置的与带准入队列的服务商不限制
+     * @param routes            模型路由表，按顺序匹配
+     * @param firstTokenTimeout 首个 token 超时时间
+     */
+    public ChatRouter(List<IChatProvider> providers, Map<String, Integer> maxConcurrency,
+                      List<ModelRoute> routes, Duration firstTokenTimeout) {
+        for (IChatProvider provider : providers) {
+            this.providers.put(provider.name(), provider);
+            int limit = maxConcurrency.getOrDefault(provider.name(), Integer.MAX_VALUE);
+            if (provider.admissionControlled() && limit != Integer.MAX_VALUE) {
+                log.warn("服务商由准入队列控制并发，忽略路由层并发上限 provider:{} limit:{}", provider.name(), limit);
+                limit = Integer.MAX_VALUE;
+            }
+            this.maxConcurrency.put(provider.name(), limit);
+            this.permits.put(provider.name(), new Semaphore(limit, true));
+        }
+        for (ModelRoute route : routes) {
+            this.routes.add(new CompiledRoute(Pattern.compile(globToRegex(route.getMatch())), route.getTargets()));
+        }
+        this.firstTokenTimeout = firstTokenTimeout;
+    }
+
+    /**
+     * 解析模型的路由目标，未匹配任何规则时直接使用默认服务商
+     *
+     * @param defaultProvider 默认服务商
+     * @param model           请求的模型
+     * @return 按优先级排列的目标
+     */
+    public List<RouteTarget> resolve(String defaultProvider, String model) {
+        for (CompiledRoute route : routes) {
+            if (!route.pattern().matcher(model).matches()) continue;
+            List<RouteTarget> targets = new ArrayList<>(route.targets().size());
+            for (RouteTarget target : route.targets()) {
+                targets.add(new RouteTarget(target.getProvider(), null == target.getModel() ? model : target.getModel()));
+            }
+            return targets;
+        }
+        return List.of(new RouteTarget(defaultProvider, model));
+    }
+
+    /**
+     * 准入预检，路由中至少有一个目标可以接收请求时通过，否则抛出建议重试间隔最短的拒绝
+     *
+     * @param defaultProvider 默认服务商
+     * @param model           请求的模型
+     * @throws AdmissionRejectedException 所有目标都无法接收请求
+     */
+    public void checkAdmission(String defaultProvider, String model) {
+        AdmissionRejectedException rejected = null;
+        for (RouteTarget target : resolve(defaultProvider, model)) {
+            IChatProvider provider = provider(target);
+            if (permits.get(provider.name()).availablePermits() == 0) continue;
+            try {
+                provider.checkAdmission(target.getModel());
+                return;
+            } catch (AdmissionRejectedException e) {
+                if (null == rejected || e.getRetryAfterSeconds() < rejected.getRetryAfterSeconds()) rejected = e;
+            }
+        }
+        throw null != rejected ? rejected : new AdmissionRejectedException("服务商并发已满 model:" + model, 1);
+    }
+
+    public Flux<ChatResponse> stream(String defaultProvider, String model, List<Message> messages) {
+        List<RouteTarget> targets = resolve(defaultProvider, model);
+        return Flux.defer(() -> attempt(targets, 0, messages, null));
+    }
+
+    public ChatResponse call(String defaultProvider, String model, List<Message> messages) {
+        List<RouteTarget> targets = resolve(defaultProvider, model);
+        Throwable lastError = null;
+        for (RouteTarget target : targets) {
+            IChatProvider provider = provider(target);
+            Semaphore semaphore = permits.get(provider.name());
+            if (!semaphore.tryAcquire()) {
+                log.warn("服务商并发已满，尝试下一个目标 provider:{} model:{}", target.getProvider(), target.getModel());
+                continue;
+            }
+            try {
+                return provider.call(target.getModel(), messages);
+            } catch (Exception e) {
+                lastError = e;
+                log.warn("服务商调用失败，尝试下一个目标 provider:{} model:{}", target.getProvider(), target.getModel(), e);
+            } finally {
+                semaphore.release();
+            }
+        }
+        throw unavailable(model, lastError);
+    }
+
+    /**
+     * 服务商当前可用的并发数
+     */
+    public int availablePermits(String provider) {
+        Semaphore semaphore = permits.get(provider);
+        return null == semaphore ? 0 : semaphore.availablePermits();
+    }
+
+    /**
+     * 服务商当前执行中的请求数
+     */
+    public int inFlight(String provider) {
+        Semaphore semaphore = permits.get(provider);
+        return null == semaphore ? 0 : maxConcurrency.get(provider) - semaphore.availablePermits();
+    }
+
+    public Set<String> providerNames() {
+        return Collections.unmodifiableSet(providers.keySet());
+    }
+
+    /**
+     * 模型是否命中路由表中的规则
+     */
+    public boolean routes(String model) {
+        return null != model && routes.stream().anyMatch(route -> route.pattern().matcher(model).matches());
+    }
+
+    private Flux<ChatResponse> attempt(List<RouteTarget> targets, int index, List<Message> messages, Throwable lastError) {
+        if (index >= targets.size()) {
+            return Flux.error(unavailable(targets.get(0).getModel(), lastError));
+        }
+
+        RouteTarget target = targets.get(index);
+        IChatProvider provider = provider(target);
+        Semaphore semaphore = permits.get(provider.name());
+        if (!semaphore.tryAcquire()) {
+            log.warn("服务商并发已满，尝试下一个目标 provider:{} model:{}", target.getProvider(), target.getModel());
+            return attempt(targets, index + 1, messages, lastError);
+        }
+
+        AtomicBoolean emitted = new AtomicBoolean(false);
+        AtomicBoolean released = new AtomicBoolean(false);
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) semaphore.release();
+        };
+        return Flux.defer(() -> provider.stream(target.getModel(), messages))
+                // 只限制首个 token 的等待时间，之后不再超时
+                .timeout(Mono.delay(firstTokenTimeout), response -> Flux.never())
+                .doOnNext(response -> emitted.set(true))
+                .doOnError(e -> release.run())
+                .doFinally(signal -> release.run())
+                .onErrorResume(e -> !emitted.get(), e -> {
+                    log.warn("服务商首个 token 前失败，尝试下一个目标 provider:{} model:{} error:{}", target.getProvider(), target.getModel(), e.toString());
+                    return attempt(targets, index + 1, messages, e);
+                });
+    }
+
+    private IChatProvider provider(RouteTarget target) {
+        IChatProvider provider = providers.get(target.getProvider());
+        if (null == provider) {
+            throw new IllegalArgumentException("未知的服务商:" + target.getProvider());
+        }
+        return provider;
+    }
+
+    private static ChatProviderUnavailableException unavailable(String model, Throwable cause) {
+        String message = "没有可用的服务商 model:" + model;
+        return null == cause ? new ChatProviderUnavailableException(message) : new ChatProviderUnavailableException(message, cause);
+    }
+
+    private static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (String part : glob.split("\\*", -1)) {
+            if (!regex.isEmpty()) regex.append(".*");
+            regex.append(Pattern.quote(part));
+        }
+        return regex.toString();
+    }
+
+    private record CompiledRoute(Pattern pattern, List<RouteTarget> targets) {
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.malog.hxxxi.dev.tech.domain.chat.service;
+
+import com.malog.hxxxi.dev.tech.domain.chat.model.CompactChatResponse;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.Generation;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : 流式回答的紧凑帧模式。逐 token 的 ChatResponse 按条数或时间窗口合并为一帧，只输出内容增量，
+ *         流结束时补发一个 finishReason=STOP 的结束帧，与现有前端的 EventSource 读取方式兼容。
+ *         合并按下游需求拉取：客户端写出慢时 token 在缓冲中累积为更大的帧，而不是堆积大量小帧；
+ *         首帧到达前（检索、模型加载、首 token 等待）按间隔发送空内容的心跳帧，保持连接并及时发现客户端断开。
+ *         关闭时原样返回上游流。
+ * @Time : 2026/10/21 09:50
+ */
+public class ChatStreamFramer {
+
+    private final boolean compact;
+    /** 每帧最多合并的 token 数 */
+    private final int frameMaxTokens;
+    /** 每帧最长等待时间，到时即使未满也发出 */
+    private final Duration frameMaxDelay;
+    /** 心跳间隔，为 null 或 0 时不发送 */
+    private final Duration heartbeatInterval;
+
+    public ChatStreamFramer(boolean compact, int frameMaxTokens, Duration frameMaxDelay, Duration heartbeatInterval) {
+        this.compact = compact;
+        this.frameMaxTokens = Math.max(1, frameMaxTokens);
+        this.frameMaxDelay = frameMaxDelay;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public Flux<ChatResponse> frame(Flux<ChatResponse> stream) {
+        if (!compact) return stream;
+
+        Flux<ChatResponse> frames = stream
+                .bufferTimeout(frameMaxTokens, frameMaxDelay, true)
+                .map(ChatStreamFramer::merge)
+                .filter(frame -> !frame.getResult().getOutput().getContent().isEmpty())
+                .concatWith(Flux.just(CompactChatResponse.stop()));
+
+        if (null == heartbeatInterval || heartbeatInterval.isZero() || heartbeatInterval.isNegative()) {
+            return frames;
+        }
+
+        return frames.publish(shared -> Flux.merge(shared,
+                Flux.interval(heartbeatInterval)
+                        .<ChatResponse>map(tick -> CompactChatResponse.heartbeat())
+                        // 首帧到达、流结束或出错后停止心跳，错误只由主流向下游传递
+                        .takeUntilOther(shared.onErrorResume(e -> Flux.empty()))));
+    }
+
+    /**
+     * 合并内容增量。上游的 finishReason 不再透传，结束由流末尾的结束帧统一表示
+     */
+    private static ChatResponse merge(List<ChatResponse> responses) {
+        StringBuilder content = new StringBuilder();
+        for (ChatResponse response : responses) {
+            Generation generation = response.getResult();
+            if (null == generation || null == generation.getOutput().getContent()) continue;
+            content.append(generation.getOutput().getContent());
+        }
+        return new CompactChatResponse(content.toString(), null);
+    }
+
+}
@@ -0,0 +1,205 @@
+package com.malog.hxxxi.dev.tech.domain.chat.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import com.malog.hxxxi.dev.tech.domain.chat.model.AssembledContext;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.DocumentIngestionPipeline;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.GitRepositoryIndexer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+
+import java.util.*;
+
+/**
+ * @Auth : Malog
+ * @Desc : 按 token 预算组装 RAG 提示词上下文。
+ *         1. 丢弃近似重复的切片（token 4-gram 的 Jaccard 相似度超过阈值）
+ *         2. 同一来源中序号相邻的切片合并为一段
+ *         3. 按检索排名依次放入，超出模型预算的段落跳过；一段都放不下时截断排名第一的段落
+ *         token 计数与 TokenTextSplitter 使用同一个 CL100K_BASE 编码。
+ * @Time : 2026/10/20 09:30
+ */
+@Slf4j
+public class ContextAssembler {
+
+    private static final String BLOCK_SEPARATOR = "\n\n---\n\n";
+    private static final int SHINGLE_SIZE = 4;
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+    private final int defaultTokenBudget;
+    private final Map<String, Integer> modelTokenBudgets;
+    private final double duplicateThreshold;
+
+    public ContextAssembler(int defaultTokenBudget, Map<String, Integer> modelTokenBudgets, double duplicateThreshold) {
+        this.defaultTokenBudget = defaultTokenBudget;
+        this.modelTokenBudgets = null == modelTokenBudgets ? Map.of() : Map.copyOf(modelTokenBudgets);
+        this.duplicateThreshold = duplicateThreshold;
+    }
+
+    /**
+     * 组装上下文
+     *
+     * @param model     模型名称，用于选择 token 预算
+     * @param documents 按相关度降序的检索结果
+     * @return 组装结果
+     */
+    public AssembledContext assemble(String model, List<Document> documents) {
+        int budget = modelTokenBudgets.getOrDefault(model, defaultTokenBudget);
+
+        List<Document> unique = dropDuplicates(documents);
+        List<Block> blocks = mergeAdjacent(unique);
+
+        StringBuilder text = new StringBuilder();
+        int used = 0;
+        int packed = 0;
+        int separatorTokens = encoding.countTokens(BLOCK_SEPARATOR);
+        for (Block block : blocks) {
+            String content = block.render();
+            int tokens = encoding.countTokens(content) + (packed == 0 ? 0 : separatorTokens);
+            if (used + tokens > budget) continue;
+            if (packed > 0) text.append(BLOCK_SEPARATOR);
+            text.append(content);
+            used += tokens;
+            packed++;
+        }
+
+        // 排名第一的段落本身就超出预算时截断，保证至少有一段上下文
+        if (packed == 0 && !blocks.isEmpty() && budget > 0) {
+            List<Integer> tokens = encoding.encode(blocks.get(0).render());
+            text.append(encoding.decode(tokens.subList(0, Math.min(budget, tokens.size()))));
+            used = Math.min(budget, tokens.size());
+            packed = 1;
+        }
+
+        AssembledContext context = AssembledContext.builder()
+                .text(text.toString())
+                .tokens(used)
+                .tokenBudget(budget)
+                .retrievedChunks(documents.size())
+                .duplicateChunks(documents.size() - unique.size())
+                .blocks(blocks.size())
+                .packedBlocks(packed)
+                .build();
+        log.info("上下文组装完成 model:{} tokens:{}/{} 切片:{} 重复:{} 段落:{}/{}", model, used, budget,
+                documents.size(), context.getDuplicateChunks(), packed, blocks.size());
+        return context;
+    }
+
+    private List<Document> dropDuplicates(List<Document> documents) {
+        List<Document> unique = new ArrayList<>(documents.size());
+        List<Set<Long>> keptShingles = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            Set<Long> shingles = shingles(document.getContent());
+            boolean duplicate = false;
+            for (Set<Long> kept : keptShingles) {
+                if (jaccard(shingles, kept) >= duplicateThreshold) {
+                    duplicate = true;
+                    break;
+                }
+            }
+            if (duplicate) continue;
+            unique.add(document);
+            keptShingles.add(shingles);
+        }
+        return unique;
+    }
+
+    /**
+     * 同一来源序号连续的切片合并，合并后的段落排在组内最靠前切片的位置
+     */
+    private List<Block> mergeAdjacent(List<Document> documents) {
+        Map<String, List<Ranked>> bySource = new LinkedHashMap<>();
+        List<Block> blocks = new ArrayList<>();
+        for (int rank = 0; rank < documents.size(); rank++) {
+            Document document = documents.get(rank);
+            String source = sourceOf(document);
+            Integer chunkIndex = chunkIndexOf(document);
+            if (null == source || null == chunkIndex) {
+                blocks.add(new Block(rank, source, new ArrayList<>(List.of(document))));
+                continue;
+            }
+            bySource.computeIfAbsent(source, key -> new ArrayList<>()).add(new Ranked(rank, chunkIndex, document));
+        }
+
+        bySource.forEach((source, chunks) -> {
+            chunks.sort(Comparator.comparingInt(Ranked::chunkIndex));
+            Block current = null;
+            int lastIndex = Integer.MIN_VALUE;
+            for (Ranked chunk : chunks) {
+                if (null != current && chunk.chunkIndex() == lastIndex + 1) {
+                    current.documents().add(chunk.document());
+                    current = new Block(Math.min(current.rank(), chunk.rank()), source, current.documents());
+                    blocks.set(blocks.size() - 1, current);
+                } else if (null == current || chunk.chunkIndex() != lastIndex) {
+                    current = new Block(chunk.rank(), source, new ArrayList<>(List.of(chunk.document())));
+                    blocks.add(current);
+                }
+                lastIndex = chunk.chunkIndex();
+            }
+        });
+
+        blocks.sort(Comparator.comparingInt(Block::rank));
+        return blocks;
+    }
+
+    private Set<Long> shingles(String content) {
+        List<Integer> tokens = encoding.encode(null == content ? "" : content);
+        Set<Long> shingles = new HashSet<>();
+        if (tokens.size() < SHINGLE_SIZE) {
+            shingles.add((long) tokens.hashCode());
+            return shingles;
+        }
+        for (int i = 0; i + SHINGLE_SIZE <= tokens.size(); i++) {
+            long hash = 17;
+            for (int j = 0; j < SHINGLE_SIZE; j++) {
+                hash = hash * 1_000_003L + tokens.get(i + j);
+            }
+            shingles.add(hash);
+        }
+        return shingles;
+    }
+
+    private static double jaccard(Set<Long> a, Set<Long> b) {
+        Set<Long> smaller = a.size() <= b.size() ? a : b;
+        Set<Long> larger = smaller == a ? b : a;
+        int intersection = 0;
+        for (Long shingle : smaller) {
+            if (larger.contains(shingle)) intersection++;
+        }
+        int union = a.size() + b.size() - intersection;
+        return union == 0 ? 1 : (double) intersection / union;
+    }
+
+    private static String sourceOf(Document document) {
+        Map<String, Object> metadata = document.getMetadata();
+        Object path = metadata.get(GitRepositoryIndexer.METADATA_PATH);
+        if (null != path) return metadata.get(GitRepositoryIndexer.METADATA_REPO) + ":" + path;
+        Object source = metadata.get(DocumentIngestionPipeline.METADATA_SOURCE);
+        return null == source ? null : source.toString();
+    }
+
+    private static Integer chunkIndexOf(Document document) {
+        Object chunkIndex = document.getMetadata().get(DocumentIngestionPipeline.METADATA_CHUNK_INDEX);
+        if (chunkIndex instanceof Number number) return number.intValue();
+        return null;
+    }
+
+    private record Ranked(int rank, int chunkIndex, Document document) {
+    }
+
+    private record Block(int rank, String source, List<Document> documents) {
+
+        String render() {
+            StringBuilder content = new StringBuilder();
+            if (null != source) content.append("[").append(source).append("]\n");
+            for (int i = 0; i < documents.size(); i++) {
+                if (i > 0) content.append('\n');
+                content.append(documents.get(i).getContent());
+            }
+            return content.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,341 @@
+package com.malog.hxxxi.dev.tech.domain.chat.service;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @Auth : Malog
+ * @Desc : 按模型的准入控制。每个模型有独立的并发许可，总并发与同时运行的模型数也有上限；
+ *         拿不到许可的请求进入按模型分组的 FIFO 队列，优先放行已在运行（权重已加载）的模型，
+ *         其他模型的请求等待超过亲和窗口后停止放行已加载模型，待其请求结束后切换，避免 Ollama 频繁换载权重又不会饿死。
+ *         队列已满、预计等待时间超过上限或排队超时的请求直接拒绝，并给出建议的重试间隔。
+ * @Time : 2026/10/20 14:30
+ */
+@Slf4j
+public class ModelAdmissionQueue {
+
+    private final int maxConcurrencyPerModel;
+    private final int maxTotalConcurrency;
+    private final int maxLoadedModels;
+    private final int maxQueueSize;
+    private final long maxQueueWaitMillis;
+    private final long maxAffinityWaitMillis;
+    private final ScheduledExecutorService timeoutScheduler;
+
+    private final Map<String, ModelState> models = new HashMap<>();
+    private int running;
+    private int queued;
+
+    /** 单次请求耗时的指数加权平均，用于估算排队时间 */
+    private volatile double averageServiceMillis = 5000;
+    private long admittedCount;
+    private long rejectedCount;
+    private long totalWaitMillis;
+
+    public ModelAdmissionQueue(int maxConcurrencyPerModel, int maxTotalConcurrency, int maxLoadedModels,
+                               int maxQueueSize, Duration maxQueueWait, Duration maxAffinityWait) {
+        this.maxConcurrencyPerModel = Math.max(1, maxConcurrencyPerModel);
+        this.maxTotalConcurrency = Math.max(1, maxTotalConcurrency);
+        this.maxLoadedModels = Math.max(1, maxLoadedModels);
+        this.maxQueueSize = Math.max(0, maxQueueSize);
+        this.maxQueueWaitMillis = maxQueueWait.toMillis();
+        this.maxAffinityWaitMillis = maxAffinityWait.toMillis();
+        this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "model-admission-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 申请许可，订阅时排队，拿到许可后发出；下游取消时自动出队
+     *
+     * @param model 模型名称
+     * @return 许可，使用完后必须 release
+     */
+    public Mono<Permit> acquire(String model) {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(model, sink, System.currentTimeMillis());
+            AdmissionRejectedException rejected = null;
+            synchronized (this) {
+                ModelState state = models.computeIfAbsent(model, key -> new ModelState());
+                if (canRun(model, state) && state.queue.isEmpty() && !starving(model)) {
+                    grant(waiter, state);
+                } else {
+                    long estimatedWaitMillis = estimateWaitMillis(state);
+                    if (queued >= maxQueueSize || estimatedWaitMillis > maxQueueWaitMillis) {
+                        rejectedCount++;
+                        rejected = new AdmissionRejectedException("模型排队繁忙 model:" + model + " 排队数:" + queued,
+                                TimeUnit.MILLISECONDS.toSeconds(Math.max(estimatedWaitMillis, 1000)));
+                        if (state.running == 0 && state.queue.isEmpty()) models.remove(model);
+                    } else {
+                        state.queue.addLast(waiter);
+                        queued++;
+                    }
+                }
+            }
+            if (null != waiter.permit) {
+                sink.success(waiter.permit);
+                return;
+            }
+            if (null != rejected) {
+                sink.error(rejected);
+                return;
+            }
+
+            waiter.timeout = timeoutScheduler.schedule(() -> expire(waiter), maxQueueWaitMillis, TimeUnit.MILLISECONDS);
+            sink.onCancel(() -> cancel(waiter));
+        });
+    }
+
+    /**
+     * 预检：队列已满或预计等待超过上限时直接拒绝，用于在响应提交前返回 429
+     *
+     * @param model 模型名称
+     * @throws AdmissionRejectedException 预计无法在限定时间内获得许可
+     */
+    public void checkAdmission(String model) {
+        long estimatedWaitMillis;
+        synchronized (this) {
+            ModelState state = models.get(model);
+            if (null == state) {
+                if (running < maxTotalConcurrency || queued < maxQueueSize) return;
+                estimatedWaitMillis = (long) averageServiceMillis;
+            } else {
+                if (canRun(model, state) && state.queue.isEmpty()) return;
+                estimatedWaitMillis = estimateWaitMillis(state);
+                if (queued < maxQueueSize && estimatedWaitMillis <= maxQueueWaitMillis) return;
+            }
+            rejectedCount++;
+        }
+        throw new AdmissionRejectedException("模型排队繁忙 model:" + model,
+                TimeUnit.MILLISECONDS.toSeconds(Math.max(estimatedWaitMillis, 1000)));
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getQueued() {
+        return queued;
+    }
+
+    public synchronized int getQueued(String model) {
+        ModelState state = models.get(model);
+        return null == state ? 0 : state.queue.size();
+    }
+
+    public synchronized Set<String> getModels() {
+        return new HashSet<>(models.keySet());
+    }
+
+    public synchronized long getAdmittedCount() {
+        return admittedCount;
+    }
+
+    public synchronized long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    public synchronized long getTotalWaitMillis() {
+        return totalWaitMillis;
+    }
+
+    private boolean canRun(String model, ModelState state) {
+        if (running >= maxTotalConcurrency || state.running >= maxConcurrencyPerModel) return false;
+        return state.running > 0 || loadedModels() < maxLoadedModels;
+    }
+
+    /**
+     * 其他未加载模型的请求等待超过亲和窗口时，已加载模型停止接收新请求
+     */
+    private boolean starving(String model) {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, ModelState> entry : models.entrySet()) {
+            if (entry.getKey().equals(model) || entry.getValue().running > 0) continue;
+            Waiter head = entry.getValue().queue.peekFirst();
+            if (null != head && now - head.enqueueMillis > maxAffinityWaitMillis) return true;
+        }
+        return false;
+    }
+
+    private int loadedModels() {
+        int loaded = 0;
+        for (ModelState state : models.values()) {
+            if (state.running > 0) loaded++;
+        }
+        return loaded;
+    }
+
+    private long estimateWaitMillis(ModelState state) {
+        long rounds = state.queue.size() / maxConcurrencyPerModel + 1;
+        return (long) (rounds * averageServiceMillis);
+    }
+
+    /**
+     * 在锁内登记许可，发出许可在锁外进行，避免下游订阅逻辑在锁内执行
+     */
+    private void grant(Waiter waiter, ModelState state) {
+        state.running++;
+        running++;
+        admittedCount++;
+        totalWaitMillis += System.currentTimeMillis() - waiter.enqueueMillis;
+        if (null != waiter.timeout) waiter.timeout.cancel(false);
+        waiter.permit = new Permit(waiter.model, System.currentTimeMillis());
+    }
+
+    private static void emit(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    /**
+     * 放行队列中的请求：优先已加载模型中等待最久的，其次是等待最久的其他模型
+     */
+    private List<Waiter> dispatch() {
+        List<Waiter> granted = new ArrayList<>();
+        while (running < maxTotalConcurrency) {
+            Waiter next = null;
+            ModelState nextState = null;
+            boolean starving = false;
+            for (Map.Entry<String, ModelState> entry : models.entrySet()) {
+                if (entry.getValue().running == 0 && !entry.getValue().queue.isEmpty()
+                        && System.currentTimeMillis() - entry.getValue().queue.peekFirst().enqueueMillis > maxAffinityWaitMillis) {
+                    starving = true;
+                }
+            }
+            for (Map.Entry<String, ModelState> entry : models.entrySet()) {
+                ModelState state = entry.getValue();
+                Waiter head = state.queue.peekFirst();
+                if (null == head || !canRun(entry.getKey(), state)) continue;
+                // 有模型饥饿时不再向已加载模型追加请求
+                if (starving && state.running > 0) continue;
+                boolean better = null == next
+                        || (state.running > 0 && nextState.running == 0)
+                        || ((state.running > 0) == (nextState.running > 0) && head.enqueueMillis < next.enqueueMillis);
+                if (better) {
+                    next = head;
+                    nextState = state;
+                }
+            }
+            if (null == next) break;
+
+            nextState.queue.pollFirst();
+            queued--;
+            grant(next, nextState);
+            granted.add(next);
+        }
+        return granted;
+    }
+
+    private void release(Permit permit) {
+        List<Waiter> granted;
+        synchronized (this) {
+            ModelState state = models.get(permit.model());
+            state.running--;
+            running--;
+            long serviceMillis = System.currentTimeMillis() - permit.grantedMillis();
+            averageServiceMillis = averageServiceMillis * 0.9 + serviceMillis * 0.1;
+            if (state.running == 0 && state.queue.isEmpty()) {
+                models.remove(permit.model());
+            }
+            granted = dispatch();
+        }
+        emit(granted);
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            ModelState state = models.get(waiter.model);
+            if (null == state || !state.queue.remove(waiter)) return;
+            queued--;
+            rejectedCount++;
+        }
+        waiter.sink.error(new AdmissionRejectedException("模型排队超时 model:" + waiter.model,
+                TimeUnit.MILLISECONDS.toSeconds(Math.max((long) averageServiceMillis, 1000))));
+    }
+
+    private void cancel(Waiter waiter) {
+        List<Waiter> granted;
+        synchronized (this) {
+            ModelState state = models.get(waiter.model);
+            if (null == state || !state.queue.remove(waiter)) {
+                // 取消与放行并发时许可可能已登记但下游不会再收到，直接归还
+                if (null != waiter.permit) waiter.permit.release();
+                return;
+            }
+            queued--;
+            if (state.running == 0 && state.queue.isEmpty()) {
+                models.remove(waiter.model);
+            }
+            // 取消的可能是饥饿的模型，重新计算放行
+            granted = dispatch();
+        }
+        if (null != waiter.timeout) waiter.timeout.cancel(false);
+        emit(granted);
+    }
+
+    /**
+     * 许可，release 可重复调用
+     */
+    public class Permit {
+
+        private final String model;
+        private final long grantedMillis;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        Permit(String model, long grantedMillis) {
+            this.model = model;
+            this.grantedMillis = grantedMillis;
+        }
+
+        public String model() {
+            return model;
+        }
+
+        long grantedMillis() {
+            return grantedMillis;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                ModelAdmissionQueue.this.release(this);
+            }
+        }
+
+    }
+
+    private static class ModelState {
+
+        final Deque<Waiter> queue = new ArrayDeque<>();
+        int running;
+
+    }
+
+    private static class Waiter {
+
+        final String model;
+        final MonoSink<Permit> sink;
+        final long enqueueMillis;
+        volatile ScheduledFuture<?> timeout;
+        volatile Permit permit;
+
+        Waiter(String model, MonoSink<Permit> sink, long enqueueMillis) {
+            this.model = model;
+            this.sink = sink;
+            this.enqueueMillis = enqueueMillis;
+        }
+
+    }
+
+}
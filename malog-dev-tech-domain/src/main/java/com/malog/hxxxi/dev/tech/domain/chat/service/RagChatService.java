@@ -0,0 +1,151 @@
+package com.malog.hxxxi.dev.tech.domain.chat.service;
+
+import com.malog.hxxxi.dev.tech.domain.chat.model.AssembledContext;
+import com.malog.hxxxi.dev.tech.domain.metrics.service.RagMetrics;
+import com.malog.hxxxi.dev.tech.domain.retrieval.service.HybridRetriever;
+import com.malog.hxxxi.dev.tech.domain.tag.service.RagTagRegistry;
+import io.micrometer.observation.Observation;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.SystemPromptTemplate;
+import org.springframework.ai.document.Document;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Auth : Malog
+ * @Desc : 与服务商无关的 RAG 问答引擎。检索、上下文组装、语义缓存与提示词拼装只在这里实现一次，
+ *         具体调用哪个服务商由 ChatRouter 按模型路由表决定，各个服务商的 Controller 只传入默认服务商。
+ *         RAG 链路整体延迟执行：语义缓存查询与检索中的阻塞调用在检索调度器上执行，请求线程只做准入预检后立即返回；
+ *         客户端断开时取消订阅，尚未开始的检索与模型调用不再执行，进行中的模型流随之关闭。
+ * @Time : 2026/10/20 11:50
+ */
+public class RagChatService {
+
+    private static final String SYSTEM_PROMPT = """
+            Use the information from the DOCUMENTS section to provide accurate answers but act as if you knew this information innately.
+            If unsure, simply state that you don't know.
+            Another thing you need to note is that your reply must be in Chinese!
+            DOCUMENTS:
+                {documents}
+            """;
+
+    private final ChatRouter chatRouter;
+    private final HybridRetriever hybridRetriever;
+    private final ContextAssembler contextAssembler;
+    private final SemanticResponseCache semanticResponseCache;
+    private final RagMetrics ragMetrics;
+    /** 执行语义缓存查询等阻塞调用的调度器 */
+    private final Scheduler retrievalScheduler;
+    private final RagTagRegistry ragTagRegistry;
+    /** 流式回答的帧合并，紧凑模式关闭时原样输出 */
+    private final ChatStreamFramer chatStreamFramer;
+
+    public RagChatService(ChatRouter chatRouter, HybridRetriever hybridRetriever, ContextAssembler contextAssembler,
+                          SemanticResponseCache semanticResponseCache, RagMetrics ragMetrics, Scheduler retrievalScheduler,
+                          RagTagRegistry ragTagRegistry, ChatStreamFramer chatStreamFramer) {
+        this.chatRouter = chatRouter;
+        this.hybridRetriever = hybridRetriever;
+        this.contextAssembler = contextAssembler;
+        this.semanticResponseCache = semanticResponseCache;
+        this.ragMetrics = ragMetrics;
+        this.retrievalScheduler = retrievalScheduler;
+        this.ragTagRegistry = ragTagRegistry;
+        this.chatStreamFramer = chatStreamFramer;
+    }
+
+    /**
+     * 生成聊天响应
+     *
+     * @param provider 默认服务商，模型未命中路由表时使用
+     * @param model    模型名称
+     * @param message  用户消息
+     * @return 聊天响应结果
+     * @throws AdmissionRejectedException 所有服务商繁忙
+     */
+    public ChatResponse generate(String provider, String model, String message) {
+        chatRouter.checkAdmission(provider, model);
+        return chatRouter.call(provider, model, List.of(new UserMessage(message)));
+    }
+
+    /**
+     * 流式生成聊天响应
+     *
+     * @param provider 默认服务商，模型未命中路由表时使用
+     * @param model    模型名称
+     * @param message  用户消息
+     * @return 流式的聊天响应结果
+     * @throws AdmissionRejectedException 所有服务商繁忙
+     */
+    public Flux<ChatResponse> generateStream(String provider, String model, String message) {
+        chatRouter.checkAdmission(provider, model);
+        return chatStreamFramer.frame(ragMetrics.observeStream(chatRouter.stream(provider, model, List.of(new UserMessage(message))), provider, model, null));
+    }
+
+    /**
+     * 带 RAG 的流式生成聊天响应
+     *
+     * @param provider 默认服务商，模型未命中路由表时使用
+     * @param model    模型名称
+     * @param ragTag   知识库标签
+     * @param message  用户消息
+     * @return 流式的聊天响应结果
+     * @throws AdmissionRejectedException 所有服务商繁忙
+     */
+    public Flux<ChatResponse> generateStreamRag(String provider, String model, String ragTag, String message) {
+        // 流式响应一旦开始就无法再返回 429，返回前在请求线程同步预检，只读取内存中的并发计数
+        chatRouter.checkAdmission(provider, model);
+        // 后续阶段在其他线程执行，显式传递当前请求的 span
+        Observation parent = ragMetrics.current();
+
+        // 相似问题命中语义缓存时直接回放历史回答；指标与语义缓存按原始 token 记录，合并帧只作用于写给客户端的流
+        return chatStreamFramer.frame(Flux.defer(() -> semanticResponseCache.cached(ragTag, model, message, () ->
+                        retrieve(ragTag, message, parent)
+                                .map(documents -> prompt(model, ragTag, message, documents))
+                                .flatMapMany(messages -> ragMetrics.observeStream(chatRouter.stream(provider, model, messages), provider, model, ragTag))))
+                .subscribeOn(retrievalScheduler));
+    }
+
+    /**
+     * 启动预热：执行一次检索与提示词拼装，不调用模型、不经过语义缓存，
+     * 使 embedding、向量检索、全文检索与上下文组装的代码路径和连接在首批请求之前就绪
+     *
+     * @return 拼装出的消息数
+     */
+    public int warmUp(String model, String ragTag, String message) {
+        return retrieve(ragTag, message, null)
+                .map(documents -> prompt(model, ragTag, message, documents))
+                .map(List::size)
+                .subscribeOn(retrievalScheduler)
+                .block();
+    }
+
+    private Mono<List<Document>> retrieve(String ragTag, String message, Observation parent) {
+        // 未注册的标签没有切片，不再发起 embedding 与检索请求；标签查询只读本地近端缓存
+        if (!ragTagRegistry.exists(ragTag)) {
+            return Mono.just(List.of());
+        }
+        // 向量检索与全文检索并行，按 RRF 融合
+        return hybridRetriever.retrieve(ragTag, message, parent);
+    }
+
+    private List<Message> prompt(String model, String ragTag, String message, List<Document> documents) {
+        // 去重、合并相邻切片并按模型 token 预算裁剪
+        AssembledContext context = ragMetrics.observe(RagMetrics.REQUEST_STAGE, "context_assembly",
+                () -> contextAssembler.assemble(model, documents), RagMetrics.TAG_MODEL, model, RagMetrics.TAG_RAG_TAG, ragTag);
+        ragMetrics.record("rag.context.tokens", context.getTokens(), RagMetrics.TAG_MODEL, model, RagMetrics.TAG_RAG_TAG, ragTag);
+        Message ragMessage = new SystemPromptTemplate(SYSTEM_PROMPT).createMessage(Map.of("documents", context.getText()));
+
+        List<Message> messages = new ArrayList<>();
+        messages.add(new UserMessage(message));
+        messages.add(ragMessage);
+        return messages;
+    }
+
+}
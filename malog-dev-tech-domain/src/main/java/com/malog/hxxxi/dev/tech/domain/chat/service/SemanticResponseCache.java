@@ -0,0 +1,197 @@
+package com.malog.hxxxi.dev.tech.domain.chat.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.Generation;
+import org.springframework.ai.chat.metadata.ChatGenerationMetadata;
+import org.springframework.ai.embedding.EmbeddingClient;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * @Auth : Malog
+ * @Desc : RAG 问答语义缓存。按 ragTag + 模型分组保存历史问题向量与回答，
+ *         新问题与历史问题的余弦相似度超过阈值时直接回放缓存的回答，回放按小段输出模拟流式效果。
+ *         知识库有新文档入库时通过 Redis topic 通知所有节点失效该 ragTag 下的缓存。
+ * @Time : 2026/10/19 11:05
+ */
+@Slf4j
+public class SemanticResponseCache {
+
+    private static final String INVALIDATE_TOPIC = "ragSemanticCacheInvalidate";
+    private static final String KEY_SEPARATOR = "\u0000";
+
+    private final EmbeddingClient embeddingClient;
+    private final RTopic invalidateTopic;
+    private final boolean enabled;
+    private final double similarityThreshold;
+    private final int maxEntriesPerKey;
+    private final long ttlMillis;
+    private final int replayChunkChars;
+    private final Duration replayInterval;
+
+    private final Map<String, Deque<CacheEntry>> entries = new ConcurrentHashMap<>();
+    /** 各 ragTag 的失效次数，生成期间发生过失效的回答不写入缓存 */
+    private final Map<String, AtomicLong> epochs = new ConcurrentHashMap<>();
+
+    public SemanticResponseCache(EmbeddingClient embeddingClient, RedissonClient redissonClient, boolean enabled,
+                                 double similarityThreshold, int maxEntriesPerKey, Duration ttl,
+                                 int replayChunkChars, Duration replayInterval) {
+        this.embeddingClient = embeddingClient;
+        this.enabled = enabled;
+        this.similarityThreshold = similarityThreshold;
+        this.maxEntriesPerKey = Math.max(1, maxEntriesPerKey);
+        this.ttlMillis = ttl.toMillis();
+        this.replayChunkChars = Math.max(1, replayChunkChars);
+        this.replayInterval = replayInterval;
+        this.invalidateTopic = redissonClient.getTopic(INVALIDATE_TOPIC);
+        this.invalidateTopic.addListener(String.class, (channel, ragTag) -> invalidateLocal(ragTag));
+    }
+
+    /**
+     * 命中缓存时回放历史回答，否则调用 generator 生成并在完整结束后写入缓存
+     *
+     * @param ragTag    知识库标签
+     * @param model     模型名称
+     * @param message   用户问题
+     * @param generator 未命中时的生成逻辑
+     * @return 流式的聊天响应结果
+     */
+    public Flux<ChatResponse> cached(String ragTag, String model, String message, Supplier<Flux<ChatResponse>> generator) {
+        if (!enabled) return generator.get();
+
+        String key = ragTag + KEY_SEPARATOR + model;
+        float[] vector = normalize(embeddingClient.embed(message));
+        String answer = lookup(key, vector);
+        if (null != answer) {
+            log.info("语义缓存命中 ragTag:{} model:{}", ragTag, model);
+            return replay(answer);
+        }
+
+        // 在检索之前取失效次数，生成期间知识库有新文档入库时，基于旧上下文的回答不再写入
+        long epoch = epoch(ragTag);
+        StringBuilder content = new StringBuilder();
+        return generator.get()
+                .doOnNext(response -> {
+                    if (null != response.getResult() && null != response.getResult().getOutput().getContent()) {
+                        content.append(response.getResult().getOutput().getContent());
+                    }
+                })
+                // 只缓存完整结束的回答，客户端中途断开或出错时不写入
+                .doOnComplete(() -> {
+                    if (!content.isEmpty()) {
+                        store(ragTag, epoch, key, vector, content.toString());
+                    }
+                });
+    }
+
+    /**
+     * 失效知识库下所有模型的缓存，通知集群内所有节点
+     *
+     * @param ragTag 知识库标签
+     */
+    public void invalidate(String ragTag) {
+        if (!enabled) return;
+        invalidateLocal(ragTag);
+        invalidateTopic.publish(ragTag);
+    }
+
+    private String lookup(String key, float[] vector) {
+        Deque<CacheEntry> bucket = entries.get(key);
+        if (null == bucket) return null;
+
+        long now = System.currentTimeMillis();
+        synchronized (bucket) {
+            bucket.removeIf(entry -> entry.expireAt() < now);
+            CacheEntry best = null;
+            double bestScore = similarityThreshold;
+            for (CacheEntry entry : bucket) {
+                double score = dot(vector, entry.vector());
+                if (score >= bestScore) {
+                    best = entry;
+                    bestScore = score;
+                }
+            }
+            return null == best ? null : best.answer();
+        }
+    }
+
+    private void store(String ragTag, long epoch, String key, float[] vector, String answer) {
+        Deque<CacheEntry> bucket = entries.computeIfAbsent(key, k -> new ArrayDeque<>());
+        synchronized (bucket) {
+            // 失效先递增次数再移除分组，此处次数未变时写入的分组即使随后被移除也不会残留旧回答
+            if (epoch != epoch(ragTag)) {
+                log.info("生成期间缓存已失效，不写入 ragTag:{}", ragTag);
+                return;
+            }
+            bucket.addFirst(new CacheEntry(vector, answer, System.currentTimeMillis() + ttlMillis));
+            while (bucket.size() > maxEntriesPerKey) {
+                bucket.removeLast();
+            }
+        }
+    }
+
+    private long epoch(String ragTag) {
+        AtomicLong epoch = epochs.get(ragTag);
+        return null == epoch ? 0 : epoch.get();
+    }
+
+    private void invalidateLocal(String ragTag) {
+        epochs.computeIfAbsent(ragTag, k -> new AtomicLong()).incrementAndGet();
+        entries.keySet().removeIf(key -> key.startsWith(ragTag + KEY_SEPARATOR));
+    }
+
+    /**
+     * 将缓存的回答切成小段按固定间隔输出，最后一段携带 STOP 结束标记，与模型流式输出格式保持一致
+     */
+    private Flux<ChatResponse> replay(String answer) {
+        List<ChatResponse> responses = new ArrayList<>();
+        for (int i = 0; i < answer.length(); i += replayChunkChars) {
+            String chunk = answer.substring(i, Math.min(answer.length(), i + replayChunkChars));
+            responses.add(new ChatResponse(List.of(new Generation(chunk))));
+        }
+        Generation stop = new Generation("", Map.of("finishReason", "STOP"))
+                .withGenerationMetadata(ChatGenerationMetadata.from("STOP", null));
+        responses.add(new ChatResponse(List.of(stop)));
+
+        Flux<ChatResponse> flux = Flux.fromIterable(responses);
+        return replayInterval.isZero() ? flux : flux.delayElements(replayInterval);
+    }
+
+    private static float[] normalize(List<Double> embedding) {
+        float[] vector = new float[embedding.size()];
+        double norm = 0;
+        for (int i = 0; i < vector.length; i++) {
+            double v = embedding.get(i);
+            vector[i] = (float) v;
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= (float) norm;
+            }
+        }
+        return vector;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        if (a.length != b.length) return -1;
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    private record CacheEntry(float[] vector, String answer, long expireAt) {
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.malog.hxxxi.dev.tech.domain.chat.service.provider;
+
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.messages.Message;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * 聊天服务商适配接口
+ * 屏蔽各服务商 ChatClient 与 Options 类型的差异
+ */
+public interface IChatProvider {
+
+    /**
+     * 服务商名称，与路由配置中的 provider 对应
+     */
+    String name();
+
+    /**
+     * 同步调用
+     *
+     * @param model    模型名称
+     * @param messages 消息列表
+     * @return 聊天响应结果
+     */
+    ChatResponse call(String model, List<Message> messages);
+
+    /**
+     * 流式调用
+     *
+     * @param model    模型名称
+     * @param messages 消息列表
+     * @return 流式的聊天响应结果
+     */
+    Flux<ChatResponse> stream(String model, List<Message> messages);
+
+    /**
+     * 请求发出前的准入预检，不占用许可
+     *
+     * @param model 模型名称
+     * @throws com.malog.hxxxi.dev.tech.domain.chat.service.AdmissionRejectedException 预计无法在限定时间内获得许可
+     */
+    default void checkAdmission(String model) {
+    }
+
+    /**
+     * 是否由服务商自身的准入队列控制并发，是则路由层不再限制该服务商的并发
+     */
+    default boolean admissionControlled() {
+        return false;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.malog.hxxxi.dev.tech.domain.chat.service.provider;
+
+import com.malog.hxxxi.dev.tech.domain.chat.service.ModelAdmissionQueue;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.ollama.OllamaChatClient;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : Ollama 服务商适配，请求经过按模型的准入队列后再发往 Ollama
+ * @Time : 2026/10/20 11:00
+ */
+public class OllamaChatProvider implements IChatProvider {
+
+    public static final String NAME = "ollama";
+
+    private final OllamaChatClient chatClient;
+    /** 准入队列，为 null 时不限制 */
+    private final ModelAdmissionQueue admissionQueue;
+
+    public OllamaChatProvider(OllamaChatClient chatClient, ModelAdmissionQueue admissionQueue) {
+        this.chatClient = chatClient;
+        this.admissionQueue = admissionQueue;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public void checkAdmission(String model) {
+        if (null != admissionQueue) admissionQueue.checkAdmission(model);
+    }
+
+    @Override
+    public boolean admissionControlled() {
+        return null != admissionQueue;
+    }
+
+    @Override
+    public ChatResponse call(String model, List<Message> messages) {
+        Prompt prompt = new Prompt(messages, OllamaOptions.create().withModel(model));
+        if (null == admissionQueue) return chatClient.call(prompt);
+
+        ModelAdmissionQueue.Permit permit = admissionQueue.acquire(model).block();
+        try {
+            return chatClient.call(prompt);
+        } finally {
+            permit.release();
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(String model, List<Message> messages) {
+        Prompt prompt = new Prompt(messages, OllamaOptions.create().withModel(model));
+        if (null == admissionQueue) return chatClient.stream(prompt);
+
+        // 流结束、出错或客户端断开时归还许可
+        return Flux.usingWhen(admissionQueue.acquire(model),
+                permit -> chatClient.stream(prompt),
+                permit -> Mono.fromRunnable(permit::release));
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.malog.hxxxi.dev.tech.domain.chat.service.provider;
+
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatClient;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : OpenAI 服务商适配
+ * @Time : 2026/10/20 11:00
+ */
+public class OpenAiChatProvider implements IChatProvider {
+
+    public static final String NAME = "openai";
+
+    private final OpenAiChatClient chatClient;
+
+    public OpenAiChatProvider(OpenAiChatClient chatClient) {
+        this.chatClient = chatClient;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public ChatResponse call(String model, List<Message> messages) {
+        return chatClient.call(new Prompt(messages, OpenAiChatOptions.builder().withModel(model).build()));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(String model, List<Message> messages) {
+        return chatClient.stream(new Prompt(messages, OpenAiChatOptions.builder().withModel(model).build()));
+    }
+
+}
@@ -0,0 +1,287 @@
+package com.malog.hxxxi.dev.tech.domain.embedding.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBatch;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Auth : Malog
+ * @Desc : 内容寻址的 embedding 缓存，按 hash(模型名 + 文本) 缓存向量。
+ *         一级为进程内有界 LRU（容量 + TTL 淘汰，向量以 float[] 存储），二级为可选的 Redis 共享缓存。
+ *         未命中的文本合并为一次请求交给被装饰的 EmbeddingClient。
+ * @Time : 2026/10/19 09:40
+ */
+@Slf4j
+public class CachingEmbeddingClient implements EmbeddingClient {
+
+    private static final String REDIS_KEY_PREFIX = "ragEmbedding:";
+    private static final int SEGMENTS = 16;
+
+    private final EmbeddingClient delegate;
+    private final String modelName;
+    /** Redis 二级缓存，为 null 时不启用 */
+    private final RedissonClient redissonClient;
+    private final Duration redisTtl;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long localTtlMillis;
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong redisHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingEmbeddingClient(EmbeddingClient delegate, String modelName, int localMaxSize, Duration localTtl,
+                                  RedissonClient redissonClient, Duration redisTtl) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.redissonClient = redissonClient;
+        this.redisTtl = redisTtl;
+        this.localTtlMillis = localTtl.toMillis();
+        int segmentSize = Math.max(1, localMaxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    @Override
+    public List<Double> embed(String text) {
+        return embed(List.of(text)).get(0);
+    }
+
+    @Override
+    public List<Double> embed(Document document) {
+        return embed(document.getContent());
+    }
+
+    @Override
+    public List<List<Double>> embed(List<String> texts) {
+        List<List<Double>> results = new ArrayList<>(texts.size());
+        String[] keys = new String[texts.size()];
+        List<Integer> missIndexes = new ArrayList<>();
+
+        // 1. 进程内缓存
+        for (int i = 0; i < texts.size(); i++) {
+            keys[i] = cacheKey(texts.get(i));
+            float[] vector = localGet(keys[i]);
+            if (null != vector) {
+                localHits.incrementAndGet();
+                results.add(toList(vector));
+            } else {
+                results.add(null);
+                missIndexes.add(i);
+            }
+        }
+        if (missIndexes.isEmpty()) return results;
+
+        // 2. Redis 共享缓存，批量读取
+        if (null != redissonClient) {
+            missIndexes = redisGet(keys, missIndexes, results);
+            if (missIndexes.isEmpty()) return results;
+        }
+
+        // 3. 未命中的文本合并为一次请求
+        misses.addAndGet(missIndexes.size());
+        List<String> missTexts = missIndexes.stream().map(texts::get).toList();
+        List<List<Double>> embeddings = delegate.embed(missTexts);
+        Map<String, float[]> loaded = new HashMap<>();
+        for (int i = 0; i < missIndexes.size(); i++) {
+            int index = missIndexes.get(i);
+            float[] vector = toFloatArray(embeddings.get(i));
+            localPut(keys[index], vector);
+            loaded.put(keys[index], vector);
+            results.set(index, embeddings.get(i));
+        }
+        if (null != redissonClient) {
+            redisPut(loaded);
+        }
+        return results;
+    }
+
+    @Override
+    public EmbeddingResponse embedForResponse(List<String> texts) {
+        return toResponse(embed(texts));
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        // 携带自定义 options 的请求可能改变模型，不走缓存
+        if (null != request.getOptions() && request.getOptions() != EmbeddingOptions.EMPTY) {
+            return delegate.call(request);
+        }
+        return toResponse(embed(request.getInstructions()));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    public long getLocalHits() {
+        return localHits.get();
+    }
+
+    public long getRedisHits() {
+        return redisHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getLocalSize() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private List<Integer> redisGet(String[] keys, List<Integer> missIndexes, List<List<Double>> results) {
+        try {
+            String[] redisKeys = missIndexes.stream().map(i -> REDIS_KEY_PREFIX + keys[i]).toArray(String[]::new);
+            Map<String, byte[]> cached = redissonClient.getBuckets(ByteArrayCodec.INSTANCE).get(redisKeys);
+            if (cached.isEmpty()) return missIndexes;
+
+            List<Integer> stillMissing = new ArrayList<>();
+            for (Integer index : missIndexes) {
+                byte[] bytes = cached.get(REDIS_KEY_PREFIX + keys[index]);
+                if (null == bytes) {
+                    stillMissing.add(index);
+                    continue;
+                }
+                float[] vector = decode(bytes);
+                localPut(keys[index], vector);
+                results.set(index, toList(vector));
+                redisHits.incrementAndGet();
+            }
+            return stillMissing;
+        } catch (Exception e) {
+            // 缓存不可用时降级为直接请求
+            log.warn("读取 embedding 缓存失败", e);
+            return missIndexes;
+        }
+    }
+
+    private void redisPut(Map<String, float[]> loaded) {
+        try {
+            RBatch batch = redissonClient.createBatch();
+            loaded.forEach((key, vector) -> batch.<byte[]>getBucket(REDIS_KEY_PREFIX + key, ByteArrayCodec.INSTANCE).setAsync(encode(vector), redisTtl));
+            batch.executeAsync();
+        } catch (Exception e) {
+            log.warn("写入 embedding 缓存失败", e);
+        }
+    }
+
+    private float[] localGet(String key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            CacheEntry entry = segment.get(key);
+            if (null == entry) return null;
+            if (entry.expireAt < System.currentTimeMillis()) {
+                segment.remove(key);
+                return null;
+            }
+            return entry.vector;
+        }
+    }
+
+    private void localPut(String key, float[] vector) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, new CacheEntry(vector, System.currentTimeMillis() + localTtlMillis));
+        }
+    }
+
+    private Segment segmentFor(String key) {
+        return segments[(key.hashCode() & Integer.MAX_VALUE) % SEGMENTS];
+    }
+
+    private String cacheKey(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static EmbeddingResponse toResponse(List<List<Double>> embeddings) {
+        List<Embedding> results = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            results.add(new Embedding(embeddings.get(i), i));
+        }
+        return new EmbeddingResponse(results);
+    }
+
+    private static float[] toFloatArray(List<Double> embedding) {
+        float[] vector = new float[embedding.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = embedding.get(i).floatValue();
+        }
+        return vector;
+    }
+
+    private static List<Double> toList(float[] vector) {
+        List<Double> embedding = new ArrayList<>(vector.length);
+        for (float v : vector) {
+            embedding.add((double) v);
+        }
+        return embedding;
+    }
+
+    private static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    private static float[] decode(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    private record CacheEntry(float[] vector, long expireAt) {
+    }
+
+    /**
+     * 访问顺序的 LinkedHashMap，超过容量时淘汰最久未访问的条目
+     */
+    private static class Segment extends LinkedHashMap<String, CacheEntry> {
+
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+            return size() > maxSize;
+        }
+
+    }
+
+}
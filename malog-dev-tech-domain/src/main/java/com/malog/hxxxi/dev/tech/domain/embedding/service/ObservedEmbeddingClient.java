@@ -0,0 +1,63 @@
+package com.malog.hxxxi.dev.tech.domain.embedding.service;
+
+import com.malog.hxxxi.dev.tech.domain.metrics.service.RagMetrics;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : 记录 embedding 模型调用耗时与文本数。装饰在缓存内层，只统计真正发往模型的请求
+ * @Time : 2026/10/20 19:40
+ */
+public class ObservedEmbeddingClient implements EmbeddingClient {
+
+    private static final String EMBEDDING = "rag.embedding";
+
+    private final EmbeddingClient delegate;
+    private final String modelName;
+    private final RagMetrics ragMetrics;
+
+    public ObservedEmbeddingClient(EmbeddingClient delegate, String modelName, RagMetrics ragMetrics) {
+        this.delegate = delegate;
+        this.modelName = modelName;
+        this.ragMetrics = ragMetrics;
+    }
+
+    @Override
+    public List<Double> embed(String text) {
+        return embed(List.of(text)).get(0);
+    }
+
+    @Override
+    public List<Double> embed(Document document) {
+        return embed(document.getContent());
+    }
+
+    @Override
+    public List<List<Double>> embed(List<String> texts) {
+        ragMetrics.count(EMBEDDING + ".texts", texts.size(), RagMetrics.TAG_MODEL, modelName);
+        return ragMetrics.observe(EMBEDDING, "embed", () -> delegate.embed(texts), RagMetrics.TAG_MODEL, modelName);
+    }
+
+    @Override
+    public EmbeddingResponse embedForResponse(List<String> texts) {
+        ragMetrics.count(EMBEDDING + ".texts", texts.size(), RagMetrics.TAG_MODEL, modelName);
+        return ragMetrics.observe(EMBEDDING, "embed", () -> delegate.embedForResponse(texts), RagMetrics.TAG_MODEL, modelName);
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        ragMetrics.count(EMBEDDING + ".texts", request.getInstructions().size(), RagMetrics.TAG_MODEL, modelName);
+        return ragMetrics.observe(EMBEDDING, "embed", () -> delegate.call(request), RagMetrics.TAG_MODEL, modelName);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+}
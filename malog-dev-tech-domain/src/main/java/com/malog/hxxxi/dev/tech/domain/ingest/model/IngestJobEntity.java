@@ -0,0 +1,68 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+/**
+ * @Auth : Malog
+ * @Desc : 入库任务状态快照，存储在 Redis 中，任意节点均可查询
+ * @Time : 2026/10/18 14:05
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestJobEntity {
+
+    /** 任务ID */
+    private String jobId;
+    /** 任务类型：upload、git */
+    private String jobType;
+    /** 知识库标签 */
+    private String ragTag;
+    /** 任务状态 */
+    private IngestJobStatus status;
+    /** 已解析文件数 */
+    private long filesParsed;
+    /** 解析失败文件数 */
+    private long filesFailed;
+    /** 跳过的文件数 */
+    private long filesSkipped;
+    /** 按原因统计的跳过文件数 */
+    private Map<String, Long> skipReasons;
+    /** 已切分切片数 */
+    private long chunksSplit;
+    /** 去重跳过的切片数 */
+    private long chunksDeduplicated;
+    /** 已向量化切片数 */
+    private long chunksEmbedded;
+    /** 已写入行数 */
+    private long rowsWritten;
+    /** 写入吞吐量（行/秒） */
+    private double rowsPerSecond;
+    /** 提交时间 */
+    private long submitTime;
+    /** 开始执行时间 */
+    private long startTime;
+    /** 结束时间 */
+    private long endTime;
+    /** 失败信息 */
+    private String errorMessage;
+
+    public void refresh(IngestProgress progress) {
+        this.filesParsed = progress.getFilesParsed().get();
+        this.filesFailed = progress.getFilesFailed().get();
+        this.filesSkipped = progress.skippedTotal();
+        this.skipReasons = progress.skippedByReason();
+        this.chunksSplit = progress.getChunksSplit().get();
+        this.chunksDeduplicated = progress.getChunksDeduplicated().get();
+        this.chunksEmbedded = progress.getChunksEmbedded().get();
+        this.rowsWritten = progress.getRowsWritten().get();
+        this.rowsPerSecond = progress.rowsPerSecond();
+    }
+
+}
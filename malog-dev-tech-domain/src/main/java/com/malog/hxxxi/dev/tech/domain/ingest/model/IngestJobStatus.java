@@ -0,0 +1,19 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.model;
+
+/**
+ * @Auth : Malog
+ * @Desc : 入库任务状态
+ * @Time : 2026/10/18 14:02
+ */
+public enum IngestJobStatus {
+
+    /** 已提交，等待执行 */
+    PENDING,
+    /** 执行中 */
+    RUNNING,
+    /** 执行成功 */
+    SUCCESS,
+    /** 执行失败 */
+    FAILED
+
+}
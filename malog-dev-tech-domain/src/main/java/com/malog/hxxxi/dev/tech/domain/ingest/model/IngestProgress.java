@@ -0,0 +1,143 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.model;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Auth : Malog
+ * @Desc : 入库流水线进度计数，各阶段线程并发累加
+ * @Time : 2026/10/18 10:15
+ */
+public class IngestProgress {
+
+    /** 已解析文件数 */
+    private final AtomicLong filesParsed = new AtomicLong();
+    /** 解析失败文件数 */
+    private final AtomicLong filesFailed = new AtomicLong();
+    /** 解析或切分失败的文件名，增量索引据此在下次索引时重试 */
+    private final Set<String> failedSources = ConcurrentHashMap.newKeySet();
+    /** 按原因统计的跳过文件数，构造后不再修改，并发累加各计数即可 */
+    private final Map<SkipReason, AtomicLong> filesSkipped = new EnumMap<>(SkipReason.class);
+    /** 已解析文件的字节数 */
+    private final AtomicLong bytesParsed = new AtomicLong();
+    /** 已切分的切片数 */
+    private final AtomicLong chunksSplit = new AtomicLong();
+    /** 去重跳过的切片数 */
+    private final AtomicLong chunksDeduplicated = new AtomicLong();
+    /** 已完成向量化的切片数 */
+    private final AtomicLong chunksEmbedded = new AtomicLong();
+    /** 已写入向量库的行数 */
+    private final AtomicLong rowsWritten = new AtomicLong();
+    /** 增量索引删除的旧切片行数 */
+    private final AtomicLong rowsDeleted = new AtomicLong();
+    /** 开始时间 */
+    private final long startMillis = System.currentTimeMillis();
+
+    public IngestProgress() {
+        for (SkipReason reason : SkipReason.values()) {
+            filesSkipped.put(reason, new AtomicLong());
+        }
+    }
+
+    public AtomicLong getFilesParsed() {
+        return filesParsed;
+    }
+
+    public AtomicLong getFilesFailed() {
+        return filesFailed;
+    }
+
+    /**
+     * 记录一个解析或切分失败的文件
+     */
+    public void fail(String source) {
+        filesFailed.incrementAndGet();
+        failedSources.add(source);
+    }
+
+    public Set<String> getFailedSources() {
+        return Collections.unmodifiableSet(failedSources);
+    }
+
+    public void skip(SkipReason reason) {
+        filesSkipped.get(reason).incrementAndGet();
+    }
+
+    public long skippedTotal() {
+        long total = 0;
+        for (AtomicLong count : filesSkipped.values()) {
+            total += count.get();
+        }
+        return total;
+    }
+
+    /**
+     * 非零的跳过原因及文件数
+     */
+    public Map<String, Long> skippedByReason() {
+        Map<String, Long> skipped = new LinkedHashMap<>();
+        filesSkipped.forEach((reason, count) -> {
+            if (count.get() > 0) skipped.put(reason.name(), count.get());
+        });
+        return skipped;
+    }
+
+    public AtomicLong getBytesParsed() {
+        return bytesParsed;
+    }
+
+    public AtomicLong getChunksSplit() {
+        return chunksSplit;
+    }
+
+    public AtomicLong getChunksDeduplicated() {
+        return chunksDeduplicated;
+    }
+
+    public AtomicLong getChunksEmbedded() {
+        return chunksEmbedded;
+    }
+
+    public AtomicLong getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public AtomicLong getRowsDeleted() {
+        return rowsDeleted;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long elapsedMillis() {
+        return System.currentTimeMillis() - startMillis;
+    }
+
+    /**
+     * 写入吞吐量（行/秒）
+     */
+    public double rowsPerSecond() {
+        long elapsed = Math.max(1, elapsedMillis());
+        return rowsWritten.get() * 1000D / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "filesParsed=" + filesParsed.get()
+                + ", filesFailed=" + filesFailed.get()
+                + ", filesSkipped=" + skippedByReason()
+                + ", chunksSplit=" + chunksSplit.get()
+                + ", chunksDeduplicated=" + chunksDeduplicated.get()
+                + ", chunksEmbedded=" + chunksEmbedded.get()
+                + ", rowsWritten=" + rowsWritten.get()
+                + ", rowsDeleted=" + rowsDeleted.get()
+                + ", elapsedMillis=" + elapsedMillis();
+    }
+
+}
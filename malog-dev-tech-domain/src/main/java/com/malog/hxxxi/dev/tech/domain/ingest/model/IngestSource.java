@@ -0,0 +1,33 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.core.io.Resource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @Auth : Malog
+ * @Desc : 待入库的文件来源，携带文件资源及需要附加到切片上的元数据
+ * @Time : 2026/10/18 10:12
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestSource {
+
+    /** 来源名称，用于日志输出（文件名或仓库内相对路径） */
+    private String name;
+
+    /** 文件资源 */
+    private Resource resource;
+
+    /** 附加到每个切片上的元数据 */
+    @Builder.Default
+    private Map<String, Object> metadata = new HashMap<>();
+
+}
@@ -0,0 +1,23 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.model;
+
+/**
+ * @Auth : Malog
+ * @Desc : 仓库文件未被索引的原因
+ * @Time : 2026/10/20 16:40
+ */
+public enum SkipReason {
+
+    /** 命中 .gitignore 规则 */
+    GITIGNORED,
+    /** 命中排除规则 */
+    EXCLUDED,
+    /** 未命中包含规则 */
+    NOT_INCLUDED,
+    /** 超过文件大小上限 */
+    TOO_LARGE,
+    /** 二进制文件 */
+    BINARY,
+    /** 文件读取失败 */
+    UNREADABLE
+
+}
@@ -0,0 +1,380 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMap;
+import org.redisson.api.RedissonClient;
+import org.springframework.ai.document.Document;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * @Auth : Malog
+ * @Desc : 入库切片去重，按知识库标签隔离，在向量化之前过滤，重复切片不再请求 embedding 也不写入向量库。
+ *         1. 精确去重：折叠空白后的正文 SHA-256
+ *         2. 近似去重：token 4-gram 的 64 位 SimHash，海明距离不超过阈值即视为重复；
+ *            指纹按 4 段 16 位分桶，距离不超过 3 时至少有一段完全相同，只比较同桶指纹
+ *         指纹持久化在 Redis（标签下 指纹 -> 所属文件），切片写入成功后才记录，入库失败重试时不会误判为重复。
+ *         被跳过的切片记录 所属文件 -> 跳过切片的文件 的依赖；仓库文件被删除或修改时按所属文件释放指纹，
+ *         同时返回依赖它的文件，由调用方重新入库，重复内容不会随首个文件一起消失。
+ *         上传文件入库后不保留原文件，无法重新入库，因此上传文件的切片只与上传文件去重，不会因仓库文件而被跳过。
+ * @Time : 2026/10/21 17:20
+ */
+@Slf4j
+public class ChunkDeduplicator {
+
+    private static final String EXACT_KEY_PREFIX = "ragChunkHash:";
+    private static final String SIMHASH_KEY_PREFIX = "ragChunkSimhash:";
+    /** 依赖关系：所属文件 + 换行 + 跳过切片的文件 */
+    private static final String DEPENDENT_KEY_PREFIX = "ragChunkDependent:";
+    private static final String LINK_SEPARATOR = "\n";
+    private static final int SHINGLE_SIZE = 4;
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 64 / BANDS;
+    private static final int SCAN_COUNT = 1000;
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    private final RedissonClient redissonClient;
+    /** 是否启用近似去重，关闭时只做精确去重 */
+    private final boolean nearEnabled;
+    /** 近似重复的最大海明距离 */
+    private final int maxHammingDistance;
+    /** 参与近似去重的最少 token 数，过短的切片 SimHash 不稳定 */
+    private final int minTokens;
+
+    public ChunkDeduplicator(RedissonClient redissonClient, boolean nearEnabled, int maxHammingDistance, int minTokens) {
+        this.redissonClient = redissonClient;
+        this.nearEnabled = nearEnabled;
+        // 分 4 段时距离超过 3 不再保证同桶
+        this.maxHammingDistance = Math.max(0, Math.min(BANDS - 1, maxHammingDistance));
+        this.minTokens = Math.max(SHINGLE_SIZE, minTokens);
+    }
+
+    /**
+     * 开始一次入库的去重，同一次入库内的切片之间同样去重
+     *
+     * @param ragTag 知识库标签
+     */
+    public Session open(String ragTag) {
+        return new Session(ragTag);
+    }
+
+    /**
+     * 切片所属文件：仓库文件为 仓库地址#路径，上传文件为文件名
+     */
+    public static String ownerOf(Map<String, Object> metadata) {
+        Object repo = metadata.get(GitRepositoryIndexer.METADATA_REPO);
+        Object path = metadata.get(GitRepositoryIndexer.METADATA_PATH);
+        if (null != repo && null != path) return ownerOf(String.valueOf(repo), String.valueOf(path));
+        return String.valueOf(metadata.get(DocumentIngestionPipeline.METADATA_SOURCE));
+    }
+
+    public static String ownerOf(String repoUrl, String path) {
+        return repoUrl + "#" + path;
+    }
+
+    /**
+     * 是否为仓库文件，仓库地址总是包含 /，上传文件名不含路径
+     */
+    public static boolean isRepoOwner(String owner) {
+        int separator = null == owner ? -1 : owner.indexOf('#');
+        return separator > 0 && owner.substring(0, separator).contains("/");
+    }
+
+    /**
+     * 仓库文件的仓库地址，非仓库文件返回 null
+     */
+    public static String repoOf(String owner) {
+        return isRepoOwner(owner) ? owner.substring(0, owner.indexOf('#')) : null;
+    }
+
+    /**
+     * 仓库文件在仓库内的路径，非仓库文件返回 null
+     */
+    public static String pathOf(String owner) {
+        return isRepoOwner(owner) ? owner.substring(owner.indexOf('#') + 1) : null;
+    }
+
+    /**
+     * 释放文件的指纹，文件切片被删除后调用
+     *
+     * @param ragTag 知识库标签
+     * @param owners 所属文件
+     * @return 有切片因与这些文件重复而被跳过的其他文件，需要重新入库
+     */
+    public Set<String> release(String ragTag, Collection<String> owners) {
+        if (owners.isEmpty()) return Set.of();
+        Set<String> ownerSet = new HashSet<>(owners);
+        return release(ragTag, ownerSet::contains);
+    }
+
+    /**
+     * 释放仓库下全部文件的指纹，仓库全量重建前调用
+     *
+     * @return 依赖该仓库文件的其他仓库的文件，需要重新入库
+     */
+    public Set<String> releaseRepo(String ragTag, String repoUrl) {
+        String prefix = ownerOf(repoUrl, "");
+        return release(ragTag, owner -> null != owner && owner.startsWith(prefix));
+    }
+
+    /**
+     * 删除标签下的全部指纹
+     */
+    public void forget(String ragTag) {
+        redissonClient.getMap(EXACT_KEY_PREFIX + ragTag).delete();
+        redissonClient.getMap(SIMHASH_KEY_PREFIX + ragTag).delete();
+        redissonClient.getMap(DEPENDENT_KEY_PREFIX + ragTag).delete();
+    }
+
+    private Set<String> release(String ragTag, Predicate<String> owners) {
+        Set<String> dependents = releaseLinks(ragTag, owners);
+        int released = 0;
+        for (String key : List.of(EXACT_KEY_PREFIX + ragTag, SIMHASH_KEY_PREFIX + ragTag)) {
+            RMap<String, String> map = redissonClient.getMap(key);
+            List<String> fingerprints = new ArrayList<>();
+            // HSCAN 分批遍历，不阻塞 Redis
+            for (Map.Entry<String, String> entry : map.entrySet(SCAN_COUNT)) {
+                if (owners.test(entry.getValue())) fingerprints.add(entry.getKey());
+            }
+            for (int i = 0; i < fingerprints.size(); i += SCAN_COUNT) {
+                map.fastRemove(fingerprints.subList(i, Math.min(fingerprints.size(), i + SCAN_COUNT)).toArray(new String[0]));
+            }
+            released += fingerprints.size();
+        }
+        log.info("释放切片指纹 ragTag:{} 数量:{} 需重新入库的文件:{}", ragTag, released, dependents.size());
+        return dependents;
+    }
+
+    /**
+     * 删除涉及被释放文件的依赖，返回依赖被释放文件、自身未被释放的文件
+     */
+    private Set<String> releaseLinks(String ragTag, Predicate<String> owners) {
+        RMap<String, String> links = redissonClient.getMap(DEPENDENT_KEY_PREFIX + ragTag);
+        Set<String> dependents = new LinkedHashSet<>();
+        List<String> removed = new ArrayList<>();
+        for (String link : links.keySet(SCAN_COUNT)) {
+            int separator = link.indexOf(LINK_SEPARATOR);
+            if (separator < 0) continue;
+            boolean primaryReleased = owners.test(link.substring(0, separator));
+            boolean dependentReleased = owners.test(link.substring(separator + 1));
+            if (primaryReleased || dependentReleased) removed.add(link);
+            if (primaryReleased && !dependentReleased) dependents.add(link.substring(separator + 1));
+        }
+        for (int i = 0; i < removed.size(); i += SCAN_COUNT) {
+            links.fastRemove(removed.subList(i, Math.min(removed.size(), i + SCAN_COUNT)).toArray(new String[0]));
+        }
+        return dependents;
+    }
+
+    private Fingerprint fingerprint(Document document) {
+        String content = null == document.getContent() ? "" : document.getContent();
+        String exact = sha256(content.strip().replaceAll("\\s+", " "));
+        String owner = ownerOf(document.getMetadata());
+        if (!nearEnabled) return new Fingerprint(exact, null, owner);
+        List<Integer> tokens = encoding.encode(content);
+        Long simhash = tokens.size() < minTokens ? null : simhash(tokens);
+        return new Fingerprint(exact, simhash, owner);
+    }
+
+    private static long simhash(List<Integer> tokens) {
+        int[] weights = new int[64];
+        for (int i = 0; i + SHINGLE_SIZE <= tokens.size(); i++) {
+            long hash = 0;
+            for (int j = 0; j < SHINGLE_SIZE; j++) {
+                hash = hash * 1_000_003L + tokens.get(i + j);
+            }
+            hash = mix(hash);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += ((hash >>> bit) & 1) == 1 ? 1 : -1;
+            }
+        }
+        long simhash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) simhash |= 1L << bit;
+        }
+        return simhash;
+    }
+
+    /**
+     * MurmurHash3 fmix64，使 shingle 哈希的各位均匀分布
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static void add(List<Map<Integer, List<Near>>> bands, Near near) {
+        for (int band = 0; band < BANDS; band++) {
+            bands.get(band).computeIfAbsent(bandOf(near.simhash(), band), k -> new ArrayList<>(1)).add(near);
+        }
+    }
+
+    /**
+     * 切片能否因与 primary 重复而跳过：仓库文件可以在依赖的文件释放后重新入库，上传文件只能与上传文件去重
+     */
+    private static boolean skippable(String primary, Fingerprint fingerprint) {
+        return isRepoOwner(fingerprint.owner()) || !isRepoOwner(primary);
+    }
+
+    private static int bandOf(long simhash, int band) {
+        return (int) ((simhash >>> (band * BAND_BITS)) & ((1L << BAND_BITS) - 1));
+    }
+
+    private static String sha256(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 一次入库的去重状态，向量化与写入线程并发调用
+     */
+    public class Session {
+
+        private final String ragTag;
+        private final RMap<String, String> exactIndex;
+        private final RMap<String, String> simhashIndex;
+        private final RMap<String, String> links;
+        /** 本次入库已放行的精确指纹及所属文件 */
+        private final Map<String, String> admitted = new ConcurrentHashMap<>();
+        /** 已放行、待写入成功后持久化的指纹，按切片 ID 索引 */
+        private final Map<String, Fingerprint> pending = new ConcurrentHashMap<>();
+        /** SimHash 分桶，首次使用时从 Redis 加载 */
+        private List<Map<Integer, List<Near>>> bands;
+
+        private Session(String ragTag) {
+            this.ragTag = ragTag;
+            this.exactIndex = redissonClient.getMap(EXACT_KEY_PREFIX + ragTag);
+            this.simhashIndex = redissonClient.getMap(SIMHASH_KEY_PREFIX + ragTag);
+            this.links = redissonClient.getMap(DEPENDENT_KEY_PREFIX + ragTag);
+        }
+
+        /**
+         * 过滤重复切片，Redis 不可用时不过滤
+         *
+         * @param batch 待向量化的切片
+         * @return 需要向量化的切片
+         */
+        public List<Document> filter(List<Document> batch) {
+            Map<Document, Fingerprint> fingerprints = new LinkedHashMap<>();
+            for (Document document : batch) {
+                fingerprints.put(document, fingerprint(document));
+            }
+
+            Map<String, String> stored;
+            try {
+                // 一次 HMGET 查询整批精确指纹
+                Set<String> hashes = new HashSet<>();
+                fingerprints.values().forEach(fingerprint -> hashes.add(fingerprint.exact()));
+                stored = exactIndex.getAll(hashes);
+            } catch (Exception e) {
+                log.warn("查询切片指纹失败，本批不去重 ragTag:{}", ragTag, e);
+                return batch;
+            }
+
+            List<Document> unique = new ArrayList<>(batch.size());
+            Map<String, String> skipped = new HashMap<>();
+            for (Map.Entry<Document, Fingerprint> entry : fingerprints.entrySet()) {
+                Fingerprint fingerprint = entry.getValue();
+                String primary = stored.get(fingerprint.exact());
+                if (null == primary) primary = admitted.putIfAbsent(fingerprint.exact(), fingerprint.owner());
+                if (null == primary && null != fingerprint.simhash()) primary = admitNear(fingerprint);
+                if (null != primary && skippable(primary, fingerprint)) {
+                    if (!primary.equals(fingerprint.owner())) skipped.put(primary + LINK_SEPARATOR + fingerprint.owner(), "1");
+                    continue;
+                }
+                pending.put(entry.getKey().getId(), fingerprint);
+                unique.add(entry.getKey());
+            }
+            if (!skipped.isEmpty()) {
+                try {
+                    links.putAll(skipped);
+                } catch (Exception e) {
+                    log.warn("记录切片依赖失败 ragTag:{} 数量:{}", ragTag, skipped.size(), e);
+                }
+            }
+            return unique;
+        }
+
+        /**
+         * 切片写入成功后持久化指纹
+         */
+        public void commit(List<Document> written) {
+            Map<String, String> exact = new HashMap<>();
+            Map<String, String> simhashes = new HashMap<>();
+            for (Document document : written) {
+                Fingerprint fingerprint = pending.remove(document.getId());
+                if (null == fingerprint) continue;
+                exact.put(fingerprint.exact(), fingerprint.owner());
+                if (null != fingerprint.simhash()) simhashes.put(Long.toHexString(fingerprint.simhash()), fingerprint.owner());
+            }
+            try {
+                if (!exact.isEmpty()) exactIndex.putAll(exact);
+                if (!simhashes.isEmpty()) simhashIndex.putAll(simhashes);
+            } catch (Exception e) {
+                log.warn("记录切片指纹失败 ragTag:{} 数量:{}", ragTag, exact.size(), e);
+            }
+        }
+
+        /**
+         * 查找可以跳过该切片的近似重复指纹，没有时放行并加入分桶
+         *
+         * @return 近似重复切片的所属文件，放行时返回 null
+         */
+        private synchronized String admitNear(Fingerprint fingerprint) {
+            if (null == bands) bands = load();
+            long simhash = fingerprint.simhash();
+            for (int band = 0; band < BANDS; band++) {
+                List<Near> candidates = bands.get(band).get(bandOf(simhash, band));
+                if (null == candidates) continue;
+                for (Near candidate : candidates) {
+                    if (Long.bitCount(candidate.simhash() ^ simhash) <= maxHammingDistance && skippable(candidate.owner(), fingerprint)) {
+                        return candidate.owner();
+                    }
+                }
+            }
+            add(bands, new Near(simhash, fingerprint.owner()));
+            return null;
+        }
+
+        private List<Map<Integer, List<Near>>> load() {
+            List<Map<Integer, List<Near>>> loaded = new ArrayList<>(BANDS);
+            for (int band = 0; band < BANDS; band++) {
+                loaded.add(new HashMap<>());
+            }
+            try {
+                // HSCAN 分批读取，不以一次 HGETALL 阻塞 Redis
+                for (Map.Entry<String, String> entry : simhashIndex.entrySet(SCAN_COUNT)) {
+                    add(loaded, new Near(Long.parseUnsignedLong(entry.getKey(), 16), entry.getValue()));
+                }
+            } catch (Exception e) {
+                log.warn("加载近似去重指纹失败，只与本次入库的切片比较 ragTag:{}", ragTag, e);
+            }
+            return loaded;
+        }
+
+    }
+
+    private record Fingerprint(String exact, Long simhash, String owner) {
+    }
+
+    private record Near(long simhash, String owner) {
+    }
+
+}
@@ -0,0 +1,417 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service;
+
+import com.malog.hxxxi.dev.tech.domain.ingest.model.IngestProgress;
+import com.malog.hxxxi.dev.tech.domain.ingest.model.IngestSource;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.splitter.ISourceSplitter;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.splitter.SourceSplitterRegistry;
+import com.malog.hxxxi.dev.tech.domain.metrics.service.RagMetrics;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.reader.tika.TikaDocumentReader;
+import org.springframework.ai.transformer.splitter.TextSplitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * @Auth : Malog
+ * @Desc : 分阶段入库流水线：解析 -> 切分 -> 向量化 -> 写入，阶段之间通过有界队列衔接。
+ *         解析在工作线程池中并行执行；向量化按批次聚合并限制并发；写入按多行批次落库。
+ *         流式解析模式下 Tika 通过 SAX 回调逐段输出正文，解析线程边解析边切分，切片直接进入向量化队列，
+ *         单个文件的内存占用只与分段大小和队列容量有关，与文件大小无关。
+ *         切片在向量化之前按知识库标签去重，与已入库切片完全相同或近似重复的切片不再请求 embedding。
+ *         源码、Markdown、YAML 等有结构切分器的文件不经 Tika，读入全文后在类/方法、标题、配置键边界处切分，切片直接进入向量化队列。
+ * @Time : 2026/10/18 10:30
+ */
+@Slf4j
+public class DocumentIngestionPipeline {
+
+    /** 来源文件名 */
+    public static final String METADATA_SOURCE = "source";
+    /** 切片在来源文档中的序号 */
+    public static final String METADATA_CHUNK_INDEX = "chunk_index";
+
+    /** 队列结束标记 */
+    private static final List<Document> END_OF_FILES = new ArrayList<>(0);
+    private static final Document END_OF_CHUNKS = new Document("");
+
+    private final EmbeddingClient embeddingClient;
+    private final TextSplitter textSplitter;
+    private final IVectorWriter vectorWriter;
+    /** 解析线程池，多个入库任务共享 */
+    private final ExecutorService parseExecutor;
+    /** 切分、向量化、写入阶段的工作线程 */
+    private final ExecutorService stageExecutor;
+    /** 向量化并发许可，限制对 embedding 服务的同时请求数 */
+    private final Semaphore embedPermits;
+
+    private final int splitThreads;
+    private final int embedBatchSize;
+    private final int embedConcurrency;
+    private final long embedLingerMillis;
+    private final int writeBatchSize;
+    private final int writeConcurrency;
+    private final int queueCapacity;
+    /** 是否流式解析 */
+    private final boolean streamingParse;
+    /** 流式解析时每段正文的字符数 */
+    private final int streamingSegmentChars;
+    /** 各阶段耗时埋点，未配置时不记录 */
+    private final RagMetrics ragMetrics;
+    /** 按文件类型选择的结构化切分器，未配置时全部使用 textSplitter */
+    private final SourceSplitterRegistry splitterRegistry;
+    /** 切片去重，未配置时不去重 */
+    private final ChunkDeduplicator chunkDeduplicator;
+
+    @Builder
+    public DocumentIngestionPipeline(EmbeddingClient embeddingClient, TextSplitter textSplitter, IVectorWriter vectorWriter,
+                                     ExecutorService parseExecutor, ExecutorService stageExecutor,
+                                     int splitThreads, int embedBatchSize, int embedConcurrency, long embedLingerMillis,
+                                     int writeBatchSize, int writeConcurrency, int queueCapacity,
+                                     boolean streamingParse, int streamingSegmentChars, RagMetrics ragMetrics,
+                                     SourceSplitterRegistry splitterRegistry, ChunkDeduplicator chunkDeduplicator) {
+        this.embeddingClient = embeddingClient;
+        this.textSplitter = textSplitter;
+        this.vectorWriter = vectorWriter;
+        this.parseExecutor = parseExecutor;
+        this.stageExecutor = stageExecutor;
+        this.splitThreads = Math.max(1, splitThreads);
+        this.embedBatchSize = Math.max(1, embedBatchSize);
+        this.embedConcurrency = Math.max(1, embedConcurrency);
+        this.embedLingerMillis = Math.max(0, embedLingerMillis);
+        this.writeBatchSize = Math.max(1, writeBatchSize);
+        this.writeConcurrency = Math.max(1, writeConcurrency);
+        this.queueCapacity = Math.max(this.embedBatchSize, queueCapacity);
+        this.embedPermits = new Semaphore(this.embedConcurrency);
+        this.streamingParse = streamingParse;
+        this.streamingSegmentChars = streamingSegmentChars;
+        this.ragMetrics = null == ragMetrics ? RagMetrics.noop() : ragMetrics;
+        this.splitterRegistry = null == splitterRegistry ? new SourceSplitterRegistry(List.of(), 0) : splitterRegistry;
+        this.chunkDeduplicator = chunkDeduplicator;
+    }
+
+    /**
+     * 执行一次入库，阻塞直到全部切片写入完成
+     *
+     * @param ragTag   知识库标签，写入切片元数据 knowledge
+     * @param sources  待入库文件
+     * @param progress 进度计数
+     * @return 进度计数
+     */
+    public IngestProgress ingest(String ragTag, List<IngestSource> sources, IngestProgress progress) {
+        BlockingQueue<List<Document>> parsedQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity / embedBatchSize));
+        BlockingQueue<Document> chunkQueue = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<Document>> embeddedQueue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity / embedBatchSize));
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ChunkDeduplicator.Session dedup = null == chunkDeduplicator ? null : chunkDeduplicator.open(ragTag);
+
+        // 1. 解析：每个文件一个任务，投递到解析线程池
+        List<CompletableFuture<Void>> parseTasks = new ArrayList<>(sources.size());
+        for (IngestSource source : sources) {
+            parseTasks.add(CompletableFuture.runAsync(() -> parse(ragTag, source, parsedQueue, chunkQueue, progress, failure), parseExecutor));
+        }
+        CompletableFuture<Void> parseStage = CompletableFuture.allOf(parseTasks.toArray(new CompletableFuture[0]))
+                .whenComplete((v, e) -> putEnd(parsedQueue, END_OF_FILES, splitThreads, failure));
+
+        // 2. 切分
+        CompletableFuture<Void> splitStage = runWorkers(splitThreads, () -> split(ragTag, parsedQueue, chunkQueue, progress, failure))
+                .whenComplete((v, e) -> putEnd(chunkQueue, END_OF_CHUNKS, embedConcurrency, failure));
+
+        // 3. 去重后向量化：按 embedBatchSize 聚合微批
+        CompletableFuture<Void> embedStage = runWorkers(embedConcurrency, () -> embed(ragTag, chunkQueue, embeddedQueue, dedup, progress, failure))
+                .whenComplete((v, e) -> putEnd(embeddedQueue, END_OF_FILES, writeConcurrency, failure));
+
+        // 4. 写入：聚合到 writeBatchSize 后多行写入
+        CompletableFuture<Void> writeStage = runWorkers(writeConcurrency, () -> write(ragTag, embeddedQueue, dedup, progress, failure));
+
+        CompletableFuture.allOf(parseStage, splitStage, embedStage, writeStage).join();
+
+        Throwable throwable = failure.get();
+        if (null != throwable) {
+            throw new RuntimeException("入库流水线执行失败 ragTag:" + ragTag, throwable);
+        }
+
+        log.info("入库流水线完成 ragTag:{} {}", ragTag, progress);
+        return progress;
+    }
+
+    private void parse(String ragTag, IngestSource source, BlockingQueue<List<Document>> parsedQueue, BlockingQueue<Document> chunkQueue,
+                       IngestProgress progress, AtomicReference<Throwable> failure) {
+        if (null != failure.get()) return;
+        ISourceSplitter sourceSplitter = splitterRegistry.select(source.getName(), contentLength(source));
+        if (null != sourceSplitter) {
+            parseStructured(ragTag, source, sourceSplitter, chunkQueue, progress, failure);
+            return;
+        }
+        if (streamingParse) {
+            parseStreaming(ragTag, source, chunkQueue, progress, failure);
+            return;
+        }
+        try {
+            // 使用Tika解析器读取文件内容并转换为文档对象
+            TikaDocumentReader reader = new TikaDocumentReader(source.getResource());
+            List<Document> documents = ragMetrics.observe(RagMetrics.INGEST_STAGE, "parse", reader::get, RagMetrics.TAG_RAG_TAG, ragTag);
+            documents.forEach(doc -> {
+                doc.getMetadata().putAll(source.getMetadata());
+                doc.getMetadata().put(METADATA_SOURCE, source.getName());
+                doc.getMetadata().put("knowledge", ragTag);
+            });
+            progress.getFilesParsed().incrementAndGet();
+            progress.getBytesParsed().addAndGet(contentLength(source));
+            put(parsedQueue, documents, failure);
+        } catch (Exception e) {
+            progress.fail(source.getName());
+            log.error("解析文件失败:{}", source.getName(), e);
+        }
+    }
+
+    /**
+     * 流式解析：Tika 按 SAX 回调输出正文，每凑满一段即切分并投递到向量化队列。
+     * 队列满时阻塞解析线程形成背压，下游失败时中止解析。
+     */
+    private void parseStreaming(String ragTag, IngestSource source, BlockingQueue<Document> chunkQueue,
+                                IngestProgress progress, AtomicReference<Throwable> failure) {
+        Map<String, Object> metadata = new HashMap<>(source.getMetadata());
+        metadata.put(METADATA_SOURCE, source.getName());
+        metadata.put("knowledge", ragTag);
+
+        // 同一文件的各段在解析线程内顺序切分，切片序号跨段连续
+        AtomicInteger chunkIndex = new AtomicInteger();
+        StreamingTextHandler handler = new StreamingTextHandler(streamingSegmentChars, segment -> {
+            for (Document chunk : textSplitter.apply(List.of(new Document(segment, new HashMap<>(metadata))))) {
+                chunk.getMetadata().putAll(metadata);
+                chunk.getMetadata().put(METADATA_CHUNK_INDEX, chunkIndex.getAndIncrement());
+                progress.getChunksSplit().incrementAndGet();
+                if (!put(chunkQueue, chunk, failure)) {
+                    throw new CancellationException("入库流水线已中止");
+                }
+            }
+        });
+
+        AutoDetectParser parser = new AutoDetectParser();
+        ParseContext context = new ParseContext();
+        // 压缩包、邮件附件等内嵌文档同样解析
+        context.set(Parser.class, parser);
+        long start = System.nanoTime();
+        try (InputStream inputStream = TikaInputStream.get(source.getResource().getInputStream())) {
+            parser.parse(inputStream, handler, new Metadata(), context);
+            handler.finish();
+            progress.getBytesParsed().addAndGet(contentLength(source));
+            // 流式解析与切分、队列背压交织在一起，只记录文件整体耗时
+            ragMetrics.time("rag.ingest.parse.streaming", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), RagMetrics.TAG_RAG_TAG, ragTag);
+            progress.getFilesParsed().incrementAndGet();
+        } catch (CancellationException e) {
+            log.warn("入库流水线已中止，停止解析文件:{}", source.getName());
+        } catch (Exception e) {
+            if (null != failure.get()) return;
+            progress.fail(source.getName());
+            log.error("解析文件失败:{}", source.getName(), e);
+        }
+    }
+
+    /**
+     * 结构化切分：按 UTF-8 读入全文，由切分器在结构边界处切分，切片记录符号名与行号范围
+     */
+    private void parseStructured(String ragTag, IngestSource source, ISourceSplitter sourceSplitter, BlockingQueue<Document> chunkQueue,
+                                 IngestProgress progress, AtomicReference<Throwable> failure) {
+        Map<String, Object> metadata = new HashMap<>(source.getMetadata());
+        metadata.put(METADATA_SOURCE, source.getName());
+        metadata.put("knowledge", ragTag);
+        try (InputStream inputStream = source.getResource().getInputStream()) {
+            byte[] bytes = inputStream.readAllBytes();
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            List<Document> chunks = ragMetrics.observe(RagMetrics.INGEST_STAGE, "split", () -> sourceSplitter.split(text, metadata),
+                    RagMetrics.TAG_RAG_TAG, ragTag, "splitter", sourceSplitter.name());
+            progress.getFilesParsed().incrementAndGet();
+            progress.getBytesParsed().addAndGet(bytes.length);
+            for (int i = 0; i < chunks.size(); i++) {
+                Document chunk = chunks.get(i);
+                chunk.getMetadata().put(METADATA_CHUNK_INDEX, i);
+                progress.getChunksSplit().incrementAndGet();
+                if (!put(chunkQueue, chunk, failure)) return;
+            }
+        } catch (Exception e) {
+            progress.fail(source.getName());
+            log.error("解析文件失败:{}", source.getName(), e);
+        }
+    }
+
+    private static long contentLength(IngestSource source) {
+        try {
+            return Math.max(0, source.getResource().contentLength());
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void split(String ragTag, BlockingQueue<List<Document>> parsedQueue, BlockingQueue<Document> chunkQueue, IngestProgress progress, AtomicReference<Throwable> failure) {
+        while (true) {
+            List<Document> documents = take(parsedQueue, failure);
+            if (null == documents || documents == END_OF_FILES) return;
+
+            for (Document document : documents) {
+                List<Document> chunks = ragMetrics.observe(RagMetrics.INGEST_STAGE, "split",
+                        () -> textSplitter.apply(List.of(document)), RagMetrics.TAG_RAG_TAG, ragTag);
+                for (int i = 0; i < chunks.size(); i++) {
+                    Document chunk = chunks.get(i);
+                    // 切分后的文档保留原文档的元数据，并记录切片序号供检索时合并相邻切片
+                    chunk.getMetadata().putAll(document.getMetadata());
+                    chunk.getMetadata().put(METADATA_CHUNK_INDEX, i);
+                    progress.getChunksSplit().incrementAndGet();
+                    if (!put(chunkQueue, chunk, failure)) return;
+                }
+            }
+        }
+    }
+
+    private void embed(String ragTag, BlockingQueue<Document> chunkQueue, BlockingQueue<List<Document>> embeddedQueue,
+                       ChunkDeduplicator.Session dedup, IngestProgress progress, AtomicReference<Throwable> failure) {
+        boolean end = false;
+        while (!end) {
+            List<Document> batch = new ArrayList<>(embedBatchSize);
+            Document first = take(chunkQueue, failure);
+            if (null == first || first == END_OF_CHUNKS) return;
+            batch.add(first);
+
+            // 在 linger 时间内尽量凑满一批
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(embedLingerMillis);
+            while (batch.size() < embedBatchSize) {
+                Document next = chunkQueue.poll();
+                if (null == next) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    try {
+                        next = chunkQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        failure.compareAndSet(null, e);
+                        return;
+                    }
+                    if (null == next) break;
+                }
+                if (next == END_OF_CHUNKS) {
+                    end = true;
+                    break;
+                }
+                batch.add(next);
+            }
+
+            if (null != dedup) {
+                List<Document> candidates = batch;
+                batch = ragMetrics.observe(RagMetrics.INGEST_STAGE, "dedup", () -> dedup.filter(candidates), RagMetrics.TAG_RAG_TAG, ragTag);
+                progress.getChunksDeduplicated().addAndGet(candidates.size() - batch.size());
+                if (batch.isEmpty()) continue;
+            }
+
+            List<Document> chunks = batch;
+            try {
+                embedPermits.acquire();
+                try {
+                    List<String> texts = chunks.stream().map(Document::getContent).toList();
+                    List<List<Double>> embeddings = ragMetrics.observe(RagMetrics.INGEST_STAGE, "embed",
+                            () -> embeddingClient.embed(texts), RagMetrics.TAG_RAG_TAG, ragTag);
+                    for (int i = 0; i < chunks.size(); i++) {
+                        chunks.get(i).setEmbedding(embeddings.get(i));
+                    }
+                } finally {
+                    embedPermits.release();
+                }
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+                return;
+            }
+            progress.getChunksEmbedded().addAndGet(batch.size());
+            if (!put(embeddedQueue, batch, failure)) return;
+        }
+    }
+
+    private void write(String ragTag, BlockingQueue<List<Document>> embeddedQueue, ChunkDeduplicator.Session dedup,
+                       IngestProgress progress, AtomicReference<Throwable> failure) {
+        List<Document> buffer = new ArrayList<>(writeBatchSize);
+        try {
+            while (true) {
+                List<Document> batch = take(embeddedQueue, failure);
+                if (null == batch) return;
+                if (batch == END_OF_FILES) break;
+                buffer.addAll(batch);
+                if (buffer.size() >= writeBatchSize) {
+                    progress.getRowsWritten().addAndGet(write(ragTag, buffer, dedup));
+                    buffer = new ArrayList<>(writeBatchSize);
+                }
+            }
+            if (!buffer.isEmpty()) {
+                progress.getRowsWritten().addAndGet(write(ragTag, buffer, dedup));
+            }
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    private int write(String ragTag, List<Document> buffer, ChunkDeduplicator.Session dedup) {
+        int rows = ragMetrics.observe(RagMetrics.INGEST_STAGE, "write", () -> vectorWriter.write(buffer), RagMetrics.TAG_RAG_TAG, ragTag);
+        // 写入成功后才记录指纹
+        if (null != dedup) dedup.commit(buffer);
+        return rows;
+    }
+
+    private CompletableFuture<Void> runWorkers(int count, Runnable worker) {
+        CompletableFuture<?>[] workers = new CompletableFuture[count];
+        for (int i = 0; i < count; i++) {
+            workers[i] = CompletableFuture.runAsync(worker, stageExecutor);
+        }
+        return CompletableFuture.allOf(workers);
+    }
+
+    /**
+     * 有界队列投递，下游失败时放弃投递避免阻塞
+     */
+    private static <T> boolean put(BlockingQueue<T> queue, T item, AtomicReference<Throwable> failure) {
+        try {
+            while (null == failure.get()) {
+                if (queue.offer(item, 100, TimeUnit.MILLISECONDS)) return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        }
+        return false;
+    }
+
+    /**
+     * 有界队列获取，任意阶段失败时返回 null
+     */
+    private static <T> T take(BlockingQueue<T> queue, AtomicReference<Throwable> failure) {
+        try {
+            while (null == failure.get()) {
+                T item = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (null != item) return item;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, e);
+        }
+        return null;
+    }
+
+    private static <T> void putEnd(BlockingQueue<T> queue, T end, int count, AtomicReference<Throwable> failure) {
+        for (int i = 0; i < count; i++) {
+            put(queue, end, failure);
+        }
+    }
+
+}
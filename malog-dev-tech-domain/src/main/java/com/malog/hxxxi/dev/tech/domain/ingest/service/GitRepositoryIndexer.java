@@ -0,0 +1,363 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service;
+
+import com.malog.hxxxi.dev.tech.domain.ingest.model.IngestProgress;
+import com.malog.hxxxi.dev.tech.domain.ingest.model.IngestSource;
+import com.malog.hxxxi.dev.tech.domain.ingest.model.SkipReason;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.ignore.IgnoreNode;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.redisson.api.RBucket;
+import org.redisson.api.RLock;
+import org.redisson.api.RSet;
+import org.redisson.api.RedissonClient;
+import org.springframework.core.io.PathResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+/**
+ * @Auth : Malog
+ * @Desc : Git 仓库增量索引。每个仓库在本地保留一份持久化镜像，重复分析时 fetch 而不是重新 clone，
+ *         通过上次索引的 commit 与当前 HEAD 的树差异，只向量化新增/修改的文件，并按 path 删除已删除/修改文件的旧切片。
+ *         切片元数据记录 repo、path、blob_id、commit。
+ *         待索引文件先经 RepositoryFileFilter 过滤（.gitignore、包含/排除规则、大小上限、二进制），过滤在工作窃取线程池中并行执行，
+ *         跳过的文件按原因计入进度。删除旧切片的同时释放对应文件的去重指纹；
+ *         曾因与这些文件重复而跳过切片的文件需要重新入库：同一仓库的在本次任务中一并重建，其他仓库的记入待重建列表，该仓库下次索引时重建。
+ *         解析或切分失败的文件不在下次的树差异中，同样记入待重建列表后再推进索引位置。
+ * @Time : 2026/10/18 16:20
+ */
+@Slf4j
+public class GitRepositoryIndexer {
+
+    public static final String METADATA_REPO = "repo";
+    public static final String METADATA_PATH = "path";
+    public static final String METADATA_BLOB_ID = "blob_id";
+    public static final String METADATA_COMMIT = "commit";
+
+    private static final String INDEXED_COMMIT_KEY_PREFIX = "ragGitIndexedCommit:";
+    private static final String INDEX_LOCK_KEY_PREFIX = "ragGitIndexLock:";
+    /** 知识库标签下已索引的仓库 */
+    private static final String TAG_REPOS_KEY_PREFIX = "ragGitTagRepos:";
+    /** 因依赖的重复切片被释放而需要重建的文件，按 标签:仓库 记录路径 */
+    private static final String REINDEX_KEY_PREFIX = "ragGitReindex:";
+
+    private final DocumentIngestionPipeline documentIngestionPipeline;
+    private final IVectorWriter vectorWriter;
+    private final RedissonClient redissonClient;
+    private final RepositoryFileFilter fileFilter;
+    /** 文件过滤使用的工作窃取线程池 */
+    private final ForkJoinPool scanPool;
+    /** 本地镜像根目录 */
+    private final File mirrorRoot;
+    private final ChunkDeduplicator chunkDeduplicator;
+
+    public GitRepositoryIndexer(DocumentIngestionPipeline documentIngestionPipeline, IVectorWriter vectorWriter,
+                                RedissonClient redissonClient, RepositoryFileFilter fileFilter, ForkJoinPool scanPool,
+                                String mirrorRoot, ChunkDeduplicator chunkDeduplicator) {
+        this.documentIngestionPipeline = documentIngestionPipeline;
+        this.vectorWriter = vectorWriter;
+        this.redissonClient = redissonClient;
+        this.fileFilter = fileFilter;
+        this.scanPool = scanPool;
+        this.mirrorRoot = new File(mirrorRoot);
+        this.chunkDeduplicator = chunkDeduplicator;
+    }
+
+    /**
+     * 增量索引仓库。首次索引（或上次索引的 commit 在镜像中已不可达）时全量索引。
+     *
+     * @param repoUrl  Git 仓库地址
+     * @param userName 用户名
+     * @param token    访问令牌
+     * @param ragTag   知识库标签
+     * @param progress 进度计数
+     */
+    public void index(String repoUrl, String userName, String token, String ragTag, IngestProgress progress) throws Exception {
+        String repoKey = repoKey(repoUrl);
+        // 同一仓库同一时间只允许一个索引任务，避免并发删除/写入交错
+        RLock lock = redissonClient.getLock(INDEX_LOCK_KEY_PREFIX + repoKey);
+        if (!lock.tryLock()) {
+            throw new IllegalStateException("仓库正在索引中:" + repoUrl);
+        }
+
+        try (Git git = openMirror(repoUrl, new UsernamePasswordCredentialsProvider(userName, token), ragTag + "-" + repoKey)) {
+            // 写入前登记，任务中途失败留下的切片与待重建列表在标签删除时同样被清理
+            redissonClient.getSet(TAG_REPOS_KEY_PREFIX + ragTag).add(repoKey);
+            Repository repository = git.getRepository();
+            ObjectId head = resolveRemoteHead(repository);
+            git.reset().setMode(ResetCommand.ResetType.HARD).setRef(head.name()).call();
+
+            RBucket<String> indexedCommitBucket = redissonClient.getBucket(INDEXED_COMMIT_KEY_PREFIX + repoKey);
+            String indexedCommit = indexedCommitBucket.get();
+            RSet<String> pendingReindex = redissonClient.getSet(REINDEX_KEY_PREFIX + ragTag + ":" + repoKey);
+            Set<String> reindexPaths = new LinkedHashSet<>(pendingReindex.readAll());
+            if (head.name().equals(indexedCommit) && reindexPaths.isEmpty()) {
+                log.info("仓库无变更，跳过索引 repo:{} commit:{}", repoUrl, indexedCommit);
+                return;
+            }
+
+            Map<String, String> addedOrModified = new LinkedHashMap<>();
+            Set<String> stalePaths = new LinkedHashSet<>();
+            ObjectId lastCommit = null == indexedCommit ? null : ObjectId.fromString(indexedCommit);
+            if (null != lastCommit && repository.getObjectDatabase().has(lastCommit)) {
+                diff(repository, lastCommit, head, addedOrModified, stalePaths);
+                log.info("增量索引 repo:{} {}..{} 新增/修改:{} 删除/修改:{}", repoUrl, indexedCommit, head.name(), addedOrModified.size(), stalePaths.size());
+            } else {
+                listAll(repository, head, addedOrModified);
+                // 全量索引前清理该仓库已有切片，避免重复
+                int deleted = vectorWriter.deleteByMetadata(ragTag, Map.of(), METADATA_REPO, List.of(repoUrl));
+                progress.getRowsDeleted().addAndGet(deleted);
+                scheduleReindex(ragTag, repoUrl, chunkDeduplicator.releaseRepo(ragTag, repoUrl), reindexPaths);
+                log.info("全量索引 repo:{} commit:{} 文件数:{} 清理旧切片:{}", repoUrl, head.name(), addedOrModified.size(), deleted);
+            }
+
+            // 删除已删除及已修改文件的旧切片
+            if (!stalePaths.isEmpty()) {
+                int deleted = vectorWriter.deleteByMetadata(ragTag, Map.of(METADATA_REPO, repoUrl), METADATA_PATH, stalePaths);
+                progress.getRowsDeleted().addAndGet(deleted);
+                scheduleReindex(ragTag, repoUrl, chunkDeduplicator.release(ragTag, ownersOf(repoUrl, stalePaths)), reindexPaths);
+                log.info("删除旧切片 repo:{} 文件数:{} 行数:{}", repoUrl, stalePaths.size(), deleted);
+            }
+
+            // 重建依赖被释放切片的文件：先删除其切片，释放其指纹时可能牵出更多依赖，直到没有新增
+            Set<String> handled = new HashSet<>();
+            while (true) {
+                Set<String> rebuild = new LinkedHashSet<>();
+                for (String path : reindexPaths) {
+                    if (handled.add(path) && !addedOrModified.containsKey(path)) rebuild.add(path);
+                }
+                if (rebuild.isEmpty()) break;
+                int deleted = vectorWriter.deleteByMetadata(ragTag, Map.of(METADATA_REPO, repoUrl), METADATA_PATH, rebuild);
+                progress.getRowsDeleted().addAndGet(deleted);
+                scheduleReindex(ragTag, repoUrl, chunkDeduplicator.release(ragTag, ownersOf(repoUrl, rebuild)), reindexPaths);
+                for (String path : rebuild) {
+                    // 当前提交中已删除的文件无需重建
+                    String blobId = blobOf(repository, head, path);
+                    if (null != blobId) addedOrModified.put(path, blobId);
+                }
+                log.info("重建依赖重复切片的文件 repo:{} 文件数:{} 删除行数:{}", repoUrl, rebuild.size(), deleted);
+            }
+
+            // 只向量化新增及修改且通过过滤的文件，被过滤的修改文件旧切片已在上一步删除
+            File workTree = repository.getWorkTree();
+            Map<String, IgnoreNode> ignoreRules = fileFilter.loadIgnoreRules(workTree, listGitignores(repository, head));
+            Map<String, String> indexable = filter(workTree, addedOrModified, ignoreRules, progress);
+            log.info("文件过滤 repo:{} 待索引:{} 跳过:{}", repoUrl, indexable.size(), progress.skippedByReason());
+
+            List<IngestSource> sources = new ArrayList<>(indexable.size());
+            for (Map.Entry<String, String> entry : indexable.entrySet()) {
+                Map<String, Object> metadata = new HashMap<>();
+                metadata.put(METADATA_REPO, repoUrl);
+                metadata.put(METADATA_PATH, entry.getKey());
+                metadata.put(METADATA_BLOB_ID, entry.getValue());
+                metadata.put(METADATA_COMMIT, head.name());
+                sources.add(IngestSource.builder()
+                        .name(entry.getKey())
+                        .resource(new PathResource(new File(workTree, entry.getKey()).toPath()))
+                        .metadata(metadata)
+                        .build());
+            }
+            documentIngestionPipeline.ingest(ragTag, sources, progress);
+
+            // 全部写入成功后再记录索引位置，失败时下次从旧位置重新计算差异；单个文件解析失败时记入待重建列表，下次索引时重试
+            if (!handled.isEmpty()) pendingReindex.removeAll(handled);
+            Set<String> failed = progress.getFailedSources().stream().filter(indexable::containsKey).collect(Collectors.toSet());
+            if (!failed.isEmpty()) {
+                pendingReindex.addAll(failed);
+                log.warn("部分文件解析失败，下次索引时重试 repo:{} 文件数:{}", repoUrl, failed.size());
+            }
+            indexedCommitBucket.set(head.name());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 知识库标签被删除后清除其下仓库的索引位置与待重建列表，再次索引时全量重建
+     *
+     * @param ragTag 知识库标签
+     */
+    public void forget(String ragTag) {
+        RSet<String> repoKeys = redissonClient.getSet(TAG_REPOS_KEY_PREFIX + ragTag);
+        for (String repoKey : repoKeys.readAll()) {
+            redissonClient.getBucket(INDEXED_COMMIT_KEY_PREFIX + repoKey).delete();
+            redissonClient.getSet(REINDEX_KEY_PREFIX + ragTag + ":" + repoKey).delete();
+        }
+        repoKeys.delete();
+    }
+
+    private Git openMirror(String repoUrl, CredentialsProvider credentialsProvider, String mirrorName) throws Exception {
+        File mirrorDir = new File(mirrorRoot, mirrorName);
+        if (new File(mirrorDir, ".git").exists()) {
+            Git git = Git.open(mirrorDir);
+            git.fetch()
+                    .setCredentialsProvider(credentialsProvider)
+                    .setRemoveDeletedRefs(true)
+                    .call();
+            return git;
+        }
+
+        log.info("创建仓库镜像：{}", mirrorDir.getAbsolutePath());
+        return Git.cloneRepository()
+                .setURI(repoUrl)
+                .setDirectory(mirrorDir)
+                .setCredentialsProvider(credentialsProvider)
+                .call();
+    }
+
+    /**
+     * 远端默认分支的最新提交
+     */
+    private ObjectId resolveRemoteHead(Repository repository) throws IOException {
+        ObjectId head = repository.resolve(Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/" + repository.getBranch());
+        if (null == head) {
+            head = repository.resolve(Constants.HEAD);
+        }
+        if (null == head) {
+            throw new IllegalStateException("仓库没有任何提交:" + repository.getDirectory());
+        }
+        return head;
+    }
+
+    /**
+     * 本仓库的依赖文件加入本次重建，其他仓库的记入该仓库的待重建列表；上传文件的切片不会被跳过，不会出现在依赖中
+     */
+    private void scheduleReindex(String ragTag, String repoUrl, Set<String> dependents, Set<String> reindexPaths) {
+        for (String owner : dependents) {
+            String dependentRepo = ChunkDeduplicator.repoOf(owner);
+            if (null == dependentRepo) {
+                log.warn("依赖的重复切片已释放，文件无法重新入库 ragTag:{} owner:{}", ragTag, owner);
+            } else if (dependentRepo.equals(repoUrl)) {
+                reindexPaths.add(ChunkDeduplicator.pathOf(owner));
+            } else {
+                redissonClient.getSet(REINDEX_KEY_PREFIX + ragTag + ":" + repoKey(dependentRepo)).add(ChunkDeduplicator.pathOf(owner));
+                log.info("依赖的重复切片已释放，等待所属仓库下次索引时重建 ragTag:{} owner:{}", ragTag, owner);
+            }
+        }
+    }
+
+    private static List<String> ownersOf(String repoUrl, Collection<String> paths) {
+        return paths.stream().map(path -> ChunkDeduplicator.ownerOf(repoUrl, path)).toList();
+    }
+
+    /**
+     * 文件在指定提交中的 blob，不存在或不是普通文件时返回 null
+     */
+    private String blobOf(Repository repository, ObjectId commit, String path) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repository);
+             TreeWalk treeWalk = TreeWalk.forPath(repository, path, revWalk.parseCommit(commit).getTree())) {
+            if (null == treeWalk || !isFile(treeWalk.getFileMode(0))) return null;
+            return treeWalk.getObjectId(0).name();
+        }
+    }
+
+    private void diff(Repository repository, ObjectId oldCommit, ObjectId newCommit,
+                      Map<String, String> addedOrModified, Set<String> stalePaths) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+            RevTree oldTree = revWalk.parseCommit(oldCommit).getTree();
+            RevTree newTree = revWalk.parseCommit(newCommit).getTree();
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            treeWalk.addTree(oldTree);
+            treeWalk.addTree(newTree);
+
+            for (DiffEntry entry : DiffEntry.scan(treeWalk)) {
+                switch (entry.getChangeType()) {
+                    case ADD -> {
+                        if (isFile(entry.getNewMode())) addedOrModified.put(entry.getNewPath(), entry.getNewId().name());
+                    }
+                    case MODIFY -> {
+                        stalePaths.add(entry.getOldPath());
+                        if (isFile(entry.getNewMode())) addedOrModified.put(entry.getNewPath(), entry.getNewId().name());
+                    }
+                    case DELETE -> stalePaths.add(entry.getOldPath());
+                    default -> {
+                        // 未开启重命名检测，不会出现 RENAME/COPY
+                        stalePaths.add(entry.getOldPath());
+                        if (isFile(entry.getNewMode())) addedOrModified.put(entry.getNewPath(), entry.getNewId().name());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 并行检查文件，保持原有顺序
+     */
+    private Map<String, String> filter(File workTree, Map<String, String> files, Map<String, IgnoreNode> ignoreRules, IngestProgress progress) {
+        return scanPool.submit(() -> files.entrySet().parallelStream()
+                .filter(entry -> {
+                    SkipReason reason = fileFilter.check(entry.getKey(), new File(workTree, entry.getKey()), ignoreRules);
+                    if (null == reason) return true;
+                    progress.skip(reason);
+                    return false;
+                })
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, (a, b) -> a, LinkedHashMap::new)))
+                .join();
+    }
+
+    /**
+     * 增量索引时只有变更文件，.gitignore 规则需要从完整的树中读取
+     */
+    private List<String> listGitignores(Repository repository, ObjectId commit) throws IOException {
+        List<String> paths = new ArrayList<>();
+        try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(PathSuffixFilter.create("/.gitignore"));
+            treeWalk.addTree(revWalk.parseCommit(commit).getTree());
+            while (treeWalk.next()) {
+                paths.add(treeWalk.getPathString());
+            }
+        }
+        // PathSuffixFilter 按 "/.gitignore" 过滤时不包含根目录
+        if (new File(repository.getWorkTree(), ".gitignore").isFile()) {
+            paths.add(".gitignore");
+        }
+        return paths;
+    }
+
+    private void listAll(Repository repository, ObjectId commit, Map<String, String> files) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.setRecursive(true);
+            treeWalk.addTree(revWalk.parseCommit(commit).getTree());
+            while (treeWalk.next()) {
+                if (isFile(treeWalk.getFileMode(0))) {
+                    files.put(treeWalk.getPathString(), treeWalk.getObjectId(0).name());
+                }
+            }
+        }
+    }
+
+    /**
+     * 只索引普通文件，跳过子模块与符号链接
+     */
+    private static boolean isFile(FileMode mode) {
+        return FileMode.REGULAR_FILE.equals(mode) || FileMode.EXECUTABLE_FILE.equals(mode);
+    }
+
+    private static String repoKey(String repoUrl) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(repoUrl.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest).substring(0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service;
+
+import org.springframework.ai.document.Document;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 向量写入接口
+ * 接收已完成向量化的切片（embedding 已填充），批量写入向量存储
+ */
+public interface IVectorWriter {
+
+    /**
+     * 批量写入已向量化的文档切片
+     *
+     * @param documents 已设置 embedding 的文档切片
+     * @return 实际写入行数
+     */
+    int write(List<Document> documents);
+
+    /**
+     * 按元数据删除知识库下的切片
+     *
+     * @param ragTag        知识库标签
+     * @param metadataEqual 需要同时满足的元数据等值条件
+     * @param inKey         批量匹配的元数据键
+     * @param inValues      批量匹配的元数据值
+     * @return 删除行数
+     */
+    int deleteByMetadata(String ragTag, Map<String, String> metadataEqual, String inKey, Collection<String> inValues);
+
+    /**
+     * 删除整个知识库下的全部切片
+     *
+     * @param ragTag 知识库标签
+     */
+    void dropRagTag(String ragTag);
+
+}
@@ -0,0 +1,161 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service;
+
+import com.malog.hxxxi.dev.tech.domain.ingest.model.IngestJobEntity;
+import com.malog.hxxxi.dev.tech.domain.ingest.model.IngestJobStatus;
+import com.malog.hxxxi.dev.tech.domain.ingest.model.IngestProgress;
+import com.malog.hxxxi.dev.tech.domain.metrics.service.RagMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RedissonClient;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * @Auth : Malog
+ * @Desc : 异步入库任务。提交后立即返回任务ID，任务在独立的有界线程池中执行，
+ *         进度定期刷新到 Redis，集群中任意节点都可以查询任务状态。
+ * @Time : 2026/10/18 14:10
+ */
+@Slf4j
+public class IngestJobService {
+
+    private static final String JOB_KEY_PREFIX = "ragIngestJob:";
+
+    private final RedissonClient redissonClient;
+    private final ExecutorService jobExecutor;
+    private final ScheduledExecutorService progressScheduler;
+    private final Duration jobTtl;
+    private final RagMetrics ragMetrics;
+
+    /** 本节点执行中的任务，用于定期刷新进度 */
+    private final Map<String, RunningJob> runningJobs = new ConcurrentHashMap<>();
+
+    public IngestJobService(RedissonClient redissonClient, ExecutorService jobExecutor,
+                            ScheduledExecutorService progressScheduler, long progressFlushMillis, Duration jobTtl,
+                            RagMetrics ragMetrics) {
+        this.redissonClient = redissonClient;
+        this.jobExecutor = jobExecutor;
+        this.progressScheduler = progressScheduler;
+        this.jobTtl = jobTtl;
+        this.ragMetrics = ragMetrics;
+        this.progressScheduler.scheduleWithFixedDelay(this::flushProgress, progressFlushMillis, progressFlushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 提交入库任务
+     *
+     * @param jobType 任务类型
+     * @param ragTag  知识库标签
+     * @param task    任务内容
+     * @return 任务ID
+     * @throws RejectedExecutionException 任务队列已满
+     */
+    public String submit(String jobType, String ragTag, IngestTask task) {
+        String jobId = UUID.randomUUID().toString().replace("-", "");
+        IngestJobEntity job = IngestJobEntity.builder()
+                .jobId(jobId)
+                .jobType(jobType)
+                .ragTag(ragTag)
+                .status(IngestJobStatus.PENDING)
+                .submitTime(System.currentTimeMillis())
+                .build();
+        save(job);
+
+        try {
+            jobExecutor.execute(() -> run(job, task));
+        } catch (RejectedExecutionException e) {
+            redissonClient.getBucket(JOB_KEY_PREFIX + jobId).delete();
+            throw e;
+        }
+
+        log.info("入库任务已提交 jobId:{} jobType:{} ragTag:{}", jobId, jobType, ragTag);
+        return jobId;
+    }
+
+    /**
+     * 查询任务状态
+     *
+     * @param jobId 任务ID
+     * @return 任务状态，不存在或已过期返回 null
+     */
+    public IngestJobEntity queryJob(String jobId) {
+        RBucket<IngestJobEntity> bucket = redissonClient.getBucket(JOB_KEY_PREFIX + jobId);
+        return bucket.get();
+    }
+
+    private void run(IngestJobEntity job, IngestTask task) {
+        IngestProgress progress = new IngestProgress();
+        job.setStatus(IngestJobStatus.RUNNING);
+        job.setStartTime(progress.getStartMillis());
+        save(job);
+        runningJobs.put(job.getJobId(), new RunningJob(job, progress));
+
+        try {
+            task.run(progress);
+            job.setStatus(IngestJobStatus.SUCCESS);
+        } catch (Throwable e) {
+            log.error("入库任务执行失败 jobId:{} ragTag:{}", job.getJobId(), job.getRagTag(), e);
+            job.setStatus(IngestJobStatus.FAILED);
+            job.setErrorMessage(e.getMessage());
+        } finally {
+            runningJobs.remove(job.getJobId());
+            // 与进度刷新互斥，避免旧的 RUNNING 快照覆盖最终状态
+            synchronized (job) {
+                job.refresh(progress);
+                job.setEndTime(System.currentTimeMillis());
+                save(job);
+            }
+            log.info("入库任务结束 jobId:{} status:{} {}", job.getJobId(), job.getStatus(), progress);
+            record(job, progress);
+        }
+    }
+
+    private void record(IngestJobEntity job, IngestProgress progress) {
+        String[] tags = {"jobType", job.getJobType(), "status", job.getStatus().name(), RagMetrics.TAG_RAG_TAG, job.getRagTag()};
+        ragMetrics.time("rag.ingest.job", job.getEndTime() - job.getStartTime(), tags);
+        String[] ragTag = {RagMetrics.TAG_RAG_TAG, job.getRagTag()};
+        ragMetrics.count("rag.ingest.files.parsed", progress.getFilesParsed().get(), ragTag);
+        ragMetrics.count("rag.ingest.files.failed", progress.getFilesFailed().get(), ragTag);
+        ragMetrics.count("rag.ingest.files.skipped", progress.skippedTotal(), ragTag);
+        ragMetrics.count("rag.ingest.chunks.deduplicated", progress.getChunksDeduplicated().get(), ragTag);
+        ragMetrics.count("rag.ingest.chunks", progress.getChunksEmbedded().get(), ragTag);
+        ragMetrics.count("rag.ingest.rows", progress.getRowsWritten().get(), ragTag);
+    }
+
+    private void flushProgress() {
+        for (RunningJob runningJob : runningJobs.values()) {
+            IngestJobEntity job = runningJob.job();
+            try {
+                synchronized (job) {
+                    if (IngestJobStatus.RUNNING != job.getStatus()) continue;
+                    job.refresh(runningJob.progress());
+                    save(job);
+                }
+            } catch (Exception e) {
+                log.warn("刷新入库任务进度失败 jobId:{}", job.getJobId(), e);
+            }
+        }
+    }
+
+    private void save(IngestJobEntity job) {
+        RBucket<IngestJobEntity> bucket = redissonClient.getBucket(JOB_KEY_PREFIX + job.getJobId());
+        bucket.set(job, jobTtl);
+    }
+
+    /**
+     * 入库任务内容
+     */
+    @FunctionalInterface
+    public interface IngestTask {
+
+        void run(IngestProgress progress) throws Exception;
+
+    }
+
+    private record RunningJob(IngestJobEntity job, IngestProgress progress) {
+    }
+
+}
@@ -0,0 +1,161 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service;
+
+import com.alibaba.fastjson.JSON;
+import com.malog.hxxxi.dev.tech.domain.retrieval.service.PgFullTextRetriever;
+import com.malog.hxxxi.dev.tech.domain.vector.service.KnowledgeFilters;
+import com.malog.hxxxi.dev.tech.domain.vector.service.PgVectorPartitionManager;
+import com.pgvector.PGvector;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * @Auth : Malog
+ * @Desc : pgvector 多行批量写入。PgVectorStore.add 会逐条重新调用 embedding 并逐条 insert，
+ *         流水线中切片已经完成向量化，这里直接拼装多行 VALUES 一次写入。
+ *         同时写入全文检索使用的 lexemes 列。切片按 knowledge 写入对应分区，分区不存在时自动创建。
+ * @Time : 2026/10/18 10:20
+ */
+@Slf4j
+public class PgVectorBatchWriter implements IVectorWriter {
+
+    private static final Pattern METADATA_KEY_PATTERN = Pattern.compile("[A-Za-z0-9_]+");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PgVectorPartitionManager partitionManager;
+
+    /** 单条 SQL 最多拼装的行数，避免超过 PG 的绑定参数上限（32767，每行6个参数） */
+    private final int maxRowsPerStatement;
+
+    public PgVectorBatchWriter(JdbcTemplate jdbcTemplate, PgVectorPartitionManager partitionManager, int maxRowsPerStatement) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.partitionManager = partitionManager;
+        this.maxRowsPerStatement = Math.max(1, Math.min(maxRowsPerStatement, 5000));
+    }
+
+    @Override
+    public int write(List<Document> documents) {
+        Map<String, List<Document>> byRagTag = new LinkedHashMap<>();
+        for (Document document : documents) {
+            Object knowledge = document.getMetadata().get(KnowledgeFilters.METADATA_KNOWLEDGE);
+            byRagTag.computeIfAbsent(null == knowledge ? "" : knowledge.toString(), key -> new ArrayList<>()).add(document);
+        }
+
+        int rows = 0;
+        for (Map.Entry<String, List<Document>> entry : byRagTag.entrySet()) {
+            String ragTag = entry.getKey();
+            List<Document> tagDocuments = entry.getValue();
+            partitionManager.ensurePartition(ragTag);
+            int tagRows = 0;
+            for (int from = 0; from < tagDocuments.size(); from += maxRowsPerStatement) {
+                List<Document> batch = tagDocuments.subList(from, Math.min(from + maxRowsPerStatement, tagDocuments.size()));
+                tagRows += insertOrRecreatePartition(ragTag, batch);
+            }
+            rows += tagRows;
+            partitionManager.afterWrite(ragTag, tagRows);
+        }
+        return rows;
+    }
+
+    /**
+     * 分区被其他节点删除（标签被删除后又重新入库）时重建分区后重试一次
+     */
+    private int insertOrRecreatePartition(String ragTag, List<Document> batch) {
+        try {
+            return insert(ragTag, batch);
+        } catch (DataAccessException e) {
+            if (!(e.getMostSpecificCause() instanceof SQLException sqlException)
+                    || !PgVectorPartitionManager.SQLSTATE_NO_PARTITION.equals(sqlException.getSQLState())) {
+                throw e;
+            }
+            partitionManager.evict(ragTag);
+            partitionManager.ensurePartition(ragTag);
+            return insert(ragTag, batch);
+        }
+    }
+
+    private int insert(String ragTag, List<Document> batch) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(partitionManager.getTableName())
+                .append(" (id, knowledge, content, metadata, embedding, ").append(PgFullTextRetriever.LEXEMES_COLUMN).append(") VALUES ");
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "" : ",").append("(?, ?, ?, ?::jsonb, ?, ?::tsvector)");
+        }
+        sql.append(" ON CONFLICT (id, knowledge) DO UPDATE SET content = EXCLUDED.content, metadata = EXCLUDED.metadata, embedding = EXCLUDED.embedding, ")
+                .append(PgFullTextRetriever.LEXEMES_COLUMN).append(" = EXCLUDED.").append(PgFullTextRetriever.LEXEMES_COLUMN);
+
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString());
+            int idx = 1;
+            for (Document document : batch) {
+                ps.setObject(idx++, UUID.fromString(document.getId()));
+                ps.setString(idx++, ragTag);
+                ps.setString(idx++, document.getContent());
+                ps.setString(idx++, JSON.toJSONString(document.getMetadata()));
+                ps.setObject(idx++, new PGvector(toFloatArray(document.getEmbedding())));
+                ps.setString(idx++, PgFullTextRetriever.toTsVector(document.getContent()));
+            }
+            return ps;
+        });
+    }
+
+    @Override
+    public int deleteByMetadata(String ragTag, Map<String, String> metadataEqual, String inKey, Collection<String> inValues) {
+        if (inValues.isEmpty()) return 0;
+        checkMetadataKey(inKey);
+
+        // knowledge 为分区键，删除只扫描该标签的分区
+        StringBuilder sql = new StringBuilder("DELETE FROM ").append(partitionManager.getTableName())
+                .append(" WHERE knowledge = ?");
+        List<String> keys = new ArrayList<>(metadataEqual.keySet());
+        for (String key : keys) {
+            checkMetadataKey(key);
+            sql.append(" AND metadata->>'").append(key).append("' = ?");
+        }
+        sql.append(" AND metadata->>'").append(inKey).append("' = ANY(?)");
+
+        return jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql.toString());
+            int idx = 1;
+            ps.setString(idx++, ragTag);
+            for (String key : keys) {
+                ps.setString(idx++, metadataEqual.get(key));
+            }
+            ps.setArray(idx, con.createArrayOf("text", inValues.toArray()));
+            return ps;
+        });
+    }
+
+    @Override
+    public void dropRagTag(String ragTag) {
+        partitionManager.dropPartition(ragTag);
+    }
+
+    /**
+     * 元数据键会拼接进 SQL，只允许字母、数字和下划线
+     */
+    private static void checkMetadataKey(String key) {
+        if (!METADATA_KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("非法的元数据键:" + key);
+        }
+    }
+
+    private static float[] toFloatArray(List<Double> embedding) {
+        float[] vector = new float[embedding.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = embedding.get(i).floatValue();
+        }
+        return vector;
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service;
+
+import com.malog.hxxxi.dev.tech.domain.ingest.model.SkipReason;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.ignore.IgnoreNode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.*;
+
+/**
+ * @Auth : Malog
+ * @Desc : 仓库文件过滤，决定工作区中的文件是否需要索引：
+ *         .gitignore（含子目录下的 .gitignore，强制提交的被忽略文件同样跳过）、包含/排除 glob、文件大小上限、二进制检测。
+ *         二进制检测与 git 一致，读取文件头部，出现 NUL 字节即视为二进制。
+ * @Time : 2026/10/20 16:50
+ */
+@Slf4j
+public class RepositoryFileFilter {
+
+    private static final String GITIGNORE = ".gitignore";
+    /** 二进制检测读取的字节数，与 git 相同 */
+    private static final int BINARY_SNIFF_BYTES = 8000;
+
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    private final long maxFileBytes;
+    private final boolean respectGitignore;
+
+    public RepositoryFileFilter(List<String> includeGlobs, List<String> excludeGlobs, long maxFileBytes, boolean respectGitignore) {
+        this.includes = compile(includeGlobs);
+        this.excludes = compile(excludeGlobs);
+        this.maxFileBytes = maxFileBytes;
+        this.respectGitignore = respectGitignore;
+    }
+
+    /**
+     * 加载工作区内各目录的 .gitignore 规则
+     *
+     * @param workTree 工作区根目录
+     * @param paths    仓库内文件的相对路径
+     * @return 按所在目录（根目录为空串）索引的规则
+     */
+    public Map<String, IgnoreNode> loadIgnoreRules(File workTree, Collection<String> paths) {
+        Map<String, IgnoreNode> ignoreRules = new HashMap<>();
+        if (!respectGitignore) return ignoreRules;
+        for (String path : paths) {
+            if (!path.equals(GITIGNORE) && !path.endsWith("/" + GITIGNORE)) continue;
+            IgnoreNode node = new IgnoreNode();
+            try (InputStream inputStream = Files.newInputStream(new File(workTree, path).toPath())) {
+                node.parse(inputStream);
+                ignoreRules.put(parentOf(path), node);
+            } catch (IOException e) {
+                log.warn("读取 .gitignore 失败:{}", path, e);
+            }
+        }
+        return ignoreRules;
+    }
+
+    /**
+     * 检查文件是否需要索引
+     *
+     * @param path        仓库内相对路径
+     * @param file        工作区中的文件
+     * @param ignoreRules loadIgnoreRules 返回的规则
+     * @return 跳过原因，需要索引时返回 null
+     */
+    public SkipReason check(String path, File file, Map<String, IgnoreNode> ignoreRules) {
+        if (isIgnored(path, ignoreRules)) return SkipReason.GITIGNORED;
+        if (matches(excludes, path)) return SkipReason.EXCLUDED;
+        if (!includes.isEmpty() && !matches(includes, path)) return SkipReason.NOT_INCLUDED;
+        if (maxFileBytes > 0 && file.length() > maxFileBytes) return SkipReason.TOO_LARGE;
+        try {
+            return isBinary(file) ? SkipReason.BINARY : null;
+        } catch (IOException e) {
+            return SkipReason.UNREADABLE;
+        }
+    }
+
+    /**
+     * 路径自身或任一上级目录被忽略即跳过；同一路径以最深一层命中的 .gitignore 为准
+     */
+    private static boolean isIgnored(String path, Map<String, IgnoreNode> ignoreRules) {
+        if (ignoreRules.isEmpty()) return false;
+        int from = 0;
+        while (true) {
+            int slash = path.indexOf('/', from);
+            boolean directory = slash >= 0;
+            String entry = directory ? path.substring(0, slash) : path;
+            if (isIgnoredEntry(entry, directory, ignoreRules)) return true;
+            if (!directory) return false;
+            from = slash + 1;
+        }
+    }
+
+    private static boolean isIgnoredEntry(String entry, boolean directory, Map<String, IgnoreNode> ignoreRules) {
+        String dir = parentOf(entry);
+        while (true) {
+            IgnoreNode node = ignoreRules.get(dir);
+            if (null != node) {
+                String relative = dir.isEmpty() ? entry : entry.substring(dir.length() + 1);
+                Boolean ignored = node.checkIgnored(relative, directory);
+                if (null != ignored) return ignored;
+            }
+            if (dir.isEmpty()) return false;
+            dir = parentOf(dir);
+        }
+    }
+
+    private static boolean isBinary(File file) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            byte[] head = inputStream.readNBytes(BINARY_SNIFF_BYTES);
+            for (byte b : head) {
+                if (b == 0) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * 以 ** / 开头的规则同时匹配根目录下的文件
+     */
+    private static boolean matches(List<PathMatcher> matchers, String path) {
+        Path candidate = Path.of(path);
+        Path rooted = Path.of("/" + path);
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(candidate) || matcher.matches(rooted)) return true;
+        }
+        return false;
+    }
+
+    private static List<PathMatcher> compile(List<String> globs) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        if (null == globs) return matchers;
+        for (String glob : globs) {
+            if (null == glob || glob.isBlank()) continue;
+            matchers.add(FileSystems.getDefault().getPathMatcher("glob:" + glob.trim()));
+        }
+        return matchers;
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service;
+
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.function.Consumer;
+
+/**
+ * @Auth : Malog
+ * @Desc : Tika 解析的 SAX 文本回调。正文按段累积，超过阈值后在段落或句子边界处切出一段交给下游，
+ *         解析过程中只保留当前段，内存占用与文件大小无关。
+ * @Time : 2026/10/20 15:10
+ */
+public class StreamingTextHandler extends DefaultHandler {
+
+    /** 向前查找切分边界的最大字符数，找不到边界时按阈值硬切 */
+    private static final int BOUNDARY_LOOKBACK = 2048;
+
+    private final int segmentChars;
+    private final Consumer<String> segmentConsumer;
+    private final StringBuilder buffer;
+
+    public StreamingTextHandler(int segmentChars, Consumer<String> segmentConsumer) {
+        this.segmentChars = Math.max(BOUNDARY_LOOKBACK * 2, segmentChars);
+        this.segmentConsumer = segmentConsumer;
+        this.buffer = new StringBuilder(this.segmentChars + BOUNDARY_LOOKBACK);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        buffer.append(ch, start, length);
+        while (buffer.length() >= segmentChars) {
+            emit(boundary());
+        }
+    }
+
+    /**
+     * Tika 在块级元素之间以 ignorableWhitespace 输出换行，保留下来作为段落边界
+     */
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        characters(ch, start, length);
+    }
+
+    /**
+     * 解析结束后输出剩余内容
+     */
+    public void finish() {
+        if (!buffer.isEmpty()) {
+            emit(buffer.length());
+        }
+    }
+
+    private void emit(int end) {
+        String segment = buffer.substring(0, end);
+        buffer.delete(0, end);
+        if (!segment.isBlank()) {
+            segmentConsumer.accept(segment);
+        }
+    }
+
+    /**
+     * 优先在换行处切分，其次是句末标点，最后是空白
+     */
+    private int boundary() {
+        int from = segmentChars - 1;
+        int to = Math.max(1, segmentChars - BOUNDARY_LOOKBACK);
+        int sentence = -1;
+        int whitespace = -1;
+        for (int i = from; i >= to; i--) {
+            char c = buffer.charAt(i);
+            if (c == '\n') return i + 1;
+            if (sentence < 0 && (c == '。' || c == '！' || c == '？' || c == '.' || c == '!' || c == '?')) sentence = i + 1;
+            if (whitespace < 0 && Character.isWhitespace(c)) whitespace = i + 1;
+        }
+        if (sentence > 0) return sentence;
+        return whitespace > 0 ? whitespace : segmentChars;
+    }
+
+}
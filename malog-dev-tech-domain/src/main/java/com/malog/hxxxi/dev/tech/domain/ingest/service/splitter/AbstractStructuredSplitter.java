@@ -0,0 +1,178 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service.splitter;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.Encoding;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.springframework.ai.document.Document;
+
+import java.util.*;
+
+/**
+ * @Auth : Malog
+ * @Desc : 按行切分的结构化切分器基类。子类只负责找出结构边界（声明、标题、配置键所在行），
+ *         相邻两个边界之间为一个段落；段落按 token 上限顺序打包成切片，不在段落中间截断。
+ *         单个段落超过上限时按行窗口切分；切片之间保留若干行重叠。
+ *         token 计数与 TokenTextSplitter 使用同一个 CL100K_BASE 编码。
+ * @Time : 2026/10/21 14:10
+ */
+public abstract class AbstractStructuredSplitter implements ISourceSplitter {
+
+    private final Encoding encoding = Encodings.newLazyEncodingRegistry().getEncoding(EncodingType.CL100K_BASE);
+
+    private final Set<String> extensions;
+    /** 每个切片的 token 上限 */
+    private final int chunkTokens;
+    /** 相邻切片重叠的行数 */
+    private final int overlapLines;
+
+    protected AbstractStructuredSplitter(Collection<String> extensions, int chunkTokens, int overlapLines) {
+        this.extensions = new HashSet<>();
+        for (String extension : extensions) {
+            this.extensions.add(extension.toLowerCase(Locale.ROOT));
+        }
+        this.chunkTokens = Math.max(1, chunkTokens);
+        this.overlapLines = Math.max(0, overlapLines);
+    }
+
+    /**
+     * 找出结构边界，按行号升序返回；第一行之前没有边界时视为一个无符号段落
+     *
+     * @param lines 文件各行
+     */
+    protected abstract List<Boundary> boundaries(String[] lines);
+
+    @Override
+    public boolean supports(String path) {
+        if (null == path) return false;
+        String lower = path.toLowerCase(Locale.ROOT);
+        for (String extension : extensions) {
+            if (lower.endsWith(extension)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public List<Document> split(String text, Map<String, Object> metadata) {
+        String[] lines = text.replace("\r\n", "\n").split("\n", -1);
+        int[] lineTokens = new int[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            // 换行符计 1 个 token
+            lineTokens[i] = encoding.countTokens(lines[i]) + 1;
+        }
+
+        List<Section> sections = sections(lines, boundaries(lines));
+        List<Document> chunks = new ArrayList<>();
+        // 当前切片覆盖的段落范围
+        int start = -1;
+        int end = -1;
+        int tokens = 0;
+        List<String> symbols = new ArrayList<>();
+        for (Section section : sections) {
+            int sectionTokens = sum(lineTokens, section.start, section.end);
+            if (start >= 0 && tokens + sectionTokens > chunkTokens) {
+                emit(chunks, lines, overlapFrom(chunks, start), end, symbols, metadata);
+                start = -1;
+                tokens = 0;
+                symbols = new ArrayList<>();
+            }
+            if (sectionTokens > chunkTokens) {
+                // 超长段落（大方法、长章节）按行窗口切分，各窗口沿用段落的符号
+                window(chunks, lines, lineTokens, section, metadata);
+                continue;
+            }
+            if (start < 0) start = section.start;
+            end = section.end;
+            tokens += sectionTokens;
+            if (null != section.symbol && !symbols.contains(section.symbol)) symbols.add(section.symbol);
+        }
+        if (start >= 0) {
+            emit(chunks, lines, overlapFrom(chunks, start), end, symbols, metadata);
+        }
+        return chunks;
+    }
+
+    /**
+     * 由边界生成首尾相接的段落，覆盖全部行
+     */
+    private static List<Section> sections(String[] lines, List<Boundary> boundaries) {
+        List<Section> sections = new ArrayList<>(boundaries.size() + 1);
+        int previous = 0;
+        String symbol = null;
+        for (Boundary boundary : boundaries) {
+            if (boundary.line <= previous) {
+                symbol = boundary.symbol;
+                continue;
+            }
+            sections.add(new Section(previous, boundary.line, symbol));
+            previous = boundary.line;
+            symbol = boundary.symbol;
+        }
+        if (previous < lines.length) {
+            sections.add(new Section(previous, lines.length, symbol));
+        }
+        return sections;
+    }
+
+    private void window(List<Document> chunks, String[] lines, int[] lineTokens, Section section, Map<String, Object> metadata) {
+        int start = section.start;
+        int from = overlapFrom(chunks, start);
+        while (start < section.end) {
+            int end = start;
+            int tokens = 0;
+            // 至少包含一行，单行超长时整行输出
+            while (end < section.end && (end == start || tokens + lineTokens[end] <= chunkTokens)) {
+                tokens += lineTokens[end++];
+            }
+            emit(chunks, lines, from, end, null == section.symbol ? List.of() : List.of(section.symbol), metadata);
+            if (end >= section.end) return;
+            start = Math.max(start + 1, end - overlapLines);
+            from = start;
+        }
+    }
+
+    /**
+     * 非首个切片向前补充重叠行
+     */
+    private int overlapFrom(List<Document> chunks, int start) {
+        return chunks.isEmpty() ? start : Math.max(0, start - overlapLines);
+    }
+
+    /**
+     * 输出 [from, end) 行，全为空白的切片丢弃
+     */
+    private static void emit(List<Document> chunks, String[] lines, int from, int end, List<String> symbols, Map<String, Object> metadata) {
+        String content = String.join("\n", Arrays.copyOfRange(lines, from, end)).strip();
+        if (content.isEmpty()) return;
+
+        Map<String, Object> chunkMetadata = new HashMap<>(metadata);
+        if (!symbols.isEmpty()) chunkMetadata.put(METADATA_SYMBOL, String.join(", ", symbols));
+        chunkMetadata.put(METADATA_START_LINE, from + 1);
+        chunkMetadata.put(METADATA_END_LINE, end);
+        chunks.add(new Document(content, chunkMetadata));
+    }
+
+    private static int sum(int[] values, int from, int to) {
+        int sum = 0;
+        for (int i = from; i < to; i++) sum += values[i];
+        return sum;
+    }
+
+    /**
+     * 结构边界：从该行开始一个新段落
+     */
+    protected static class Boundary {
+
+        final int line;
+        String symbol;
+
+        protected Boundary(int line, String symbol) {
+            this.line = line;
+            this.symbol = symbol;
+        }
+
+    }
+
+    private record Section(int start, int end, String symbol) {
+    }
+
+}
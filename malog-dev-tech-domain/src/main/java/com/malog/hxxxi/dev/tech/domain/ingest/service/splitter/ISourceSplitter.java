@@ -0,0 +1,42 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service.splitter;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按文件类型的结构化切分接口
+ * 在类/方法、标题、配置键等结构边界处切分整篇文本，切片元数据记录符号名与行号范围
+ */
+public interface ISourceSplitter {
+
+    /** 切片包含的符号，如类名#方法名、标题路径、配置键，多个时以逗号分隔 */
+    String METADATA_SYMBOL = "symbol";
+    /** 切片在来源文件中的起始行号，从 1 开始 */
+    String METADATA_START_LINE = "start_line";
+    /** 切片在来源文件中的结束行号，包含该行 */
+    String METADATA_END_LINE = "end_line";
+
+    /**
+     * 切分器名称，用于日志与指标
+     */
+    String name();
+
+    /**
+     * 是否处理该文件
+     *
+     * @param path 文件名或仓库内相对路径
+     */
+    boolean supports(String path);
+
+    /**
+     * 切分整篇文本
+     *
+     * @param text     文件全文
+     * @param metadata 附加到每个切片上的元数据
+     * @return 切片，按在文件中的顺序排列
+     */
+    List<Document> split(String text, Map<String, Object> metadata);
+
+}
@@ -0,0 +1,170 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service.splitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @Auth : Malog
+ * @Desc : Java 源码切分。逐字符扫描并跳过注释、字符串与文本块，按花括号深度识别顶层类型与类型内成员（方法、字段、内部类），
+ *         每个声明连同其前面的注释、注解作为一个段落；方法体内部不切分，超长方法才按行窗口切分。
+ *         符号名记为 类名、类名#成员名 或 类名.内部类名。
+ * @Time : 2026/10/21 14:40
+ */
+public class JavaSourceSplitter extends AbstractStructuredSplitter {
+
+    private static final Pattern ANNOTATION = Pattern.compile("@[\\w.]+(\\s*\\([^()]*\\))?");
+    private static final Pattern TYPE = Pattern.compile("\\b(class|interface|enum|record)\\s+(\\w+)");
+    private static final Pattern METHOD = Pattern.compile("(\\w+)\\s*\\(");
+    private static final Pattern FIELD = Pattern.compile("(\\w+)\\s*(\\[\\s*]\\s*)*$");
+
+    public JavaSourceSplitter(int chunkTokens, int overlapLines) {
+        super(List.of(".java"), chunkTokens, overlapLines);
+    }
+
+    @Override
+    public String name() {
+        return "java";
+    }
+
+    @Override
+    protected List<Boundary> boundaries(String[] lines) {
+        List<Boundary> boundaries = new ArrayList<>();
+        int depth = 0;
+        int parenDepth = 0;
+        boolean blockComment = false;
+        boolean textBlock = false;
+        // 下一个非空白字符开始一个新的声明
+        boolean pending = true;
+        // 正在读取声明头的成员及其所在深度
+        Boundary current = null;
+        int headerDepth = 0;
+        StringBuilder header = new StringBuilder();
+        String topType = null;
+
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            if (null != current) header.append(' ');
+            int j = 0;
+            while (j < line.length()) {
+                char c = line.charAt(j);
+                char next = j + 1 < line.length() ? line.charAt(j + 1) : 0;
+                if (blockComment) {
+                    if (c == '*' && next == '/') {
+                        blockComment = false;
+                        j += 2;
+                    } else {
+                        j++;
+                    }
+                    continue;
+                }
+                if (textBlock) {
+                    if (line.startsWith("\"\"\"", j)) {
+                        textBlock = false;
+                        j += 3;
+                    } else {
+                        j += c == '\\' ? 2 : 1;
+                    }
+                    continue;
+                }
+                if (Character.isWhitespace(c)) {
+                    if (null != current) header.append(' ');
+                    j++;
+                    continue;
+                }
+                if (pending && depth <= 1 && c != ';' && c != '}') {
+                    // 声明前的注释、注解归入该声明
+                    current = new Boundary(i, null);
+                    boundaries.add(current);
+                    pending = false;
+                    header.setLength(0);
+                    headerDepth = depth;
+                    parenDepth = 0;
+                }
+                if (c == '/' && next == '/') break;
+                if (c == '/' && next == '*') {
+                    blockComment = true;
+                    j += 2;
+                    continue;
+                }
+                if (c == '"' && line.startsWith("\"\"\"", j)) {
+                    textBlock = true;
+                    j += 3;
+                    continue;
+                }
+                if (c == '"' || c == '\'') {
+                    j = skipLiteral(line, j, c);
+                    continue;
+                }
+
+                if (null != current) {
+                    if (c == '(') parenDepth++;
+                    if (c == ')') parenDepth--;
+                    if (parenDepth <= 0 && (c == '{' || c == ';' || c == '=')) {
+                        String text = ANNOTATION.matcher(header).replaceAll(" ").trim();
+                        current.symbol = symbol(text, headerDepth, topType);
+                        if (headerDepth == 0 && c == '{') {
+                            Matcher type = TYPE.matcher(text);
+                            if (type.find()) topType = type.group(2);
+                        }
+                        current = null;
+                    } else {
+                        header.append(c);
+                    }
+                }
+
+                if (c == '{') {
+                    depth++;
+                    // 进入顶层类型的类体，下一个声明是成员
+                    if (depth == 1 && null == current) pending = true;
+                } else if (c == '}') {
+                    depth = Math.max(0, depth - 1);
+                    if (depth <= 1 && null == current) pending = true;
+                } else if (c == ';' && depth <= 1 && null == current) {
+                    pending = true;
+                }
+                j++;
+            }
+        }
+        return boundaries;
+    }
+
+    /**
+     * 由声明头解析符号名，package、import 不记录
+     */
+    private static String symbol(String header, int depth, String topType) {
+        if (header.isEmpty() || header.startsWith("package ") || header.startsWith("import ")) return null;
+        String name;
+        boolean type = false;
+        Matcher matcher = TYPE.matcher(header);
+        if (matcher.find()) {
+            name = matcher.group(2);
+            type = true;
+        } else if ((matcher = METHOD.matcher(header)).find()) {
+            name = matcher.group(1);
+        } else if ((matcher = FIELD.matcher(header)).find()) {
+            name = matcher.group(1);
+        } else {
+            return null;
+        }
+        if (depth == 0 || null == topType) return name;
+        return topType + (type ? "." : "#") + name;
+    }
+
+    private static int skipLiteral(String line, int start, char quote) {
+        int k = start + 1;
+        while (k < line.length()) {
+            char c = line.charAt(k);
+            if (c == '\\') {
+                k += 2;
+            } else if (c == quote) {
+                return k + 1;
+            } else {
+                k++;
+            }
+        }
+        return line.length();
+    }
+
+}
@@ -0,0 +1,61 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service.splitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @Auth : Malog
+ * @Desc : Markdown 切分。在 ATX 标题（# ~ ######）处切分，代码块内的 # 不视为标题；
+ *         符号名记为标题路径，如 部署 > Docker > 环境变量。
+ * @Time : 2026/10/21 15:10
+ */
+public class MarkdownSplitter extends AbstractStructuredSplitter {
+
+    private static final Pattern HEADING = Pattern.compile("^ {0,3}(#{1,6})\\s+(.*?)\\s*#*\\s*$");
+
+    public MarkdownSplitter(int chunkTokens, int overlapLines) {
+        super(List.of(".md", ".markdown"), chunkTokens, overlapLines);
+    }
+
+    @Override
+    public String name() {
+        return "markdown";
+    }
+
+    @Override
+    protected List<Boundary> boundaries(String[] lines) {
+        List<Boundary> boundaries = new ArrayList<>();
+        String[] titles = new String[7];
+        String fence = null;
+        for (int i = 0; i < lines.length; i++) {
+            String trimmed = lines[i].strip();
+            if (trimmed.startsWith("```") || trimmed.startsWith("~~~")) {
+                String marker = trimmed.substring(0, 3);
+                if (null == fence) {
+                    fence = marker;
+                } else if (marker.equals(fence)) {
+                    fence = null;
+                }
+                continue;
+            }
+            if (null != fence) continue;
+
+            Matcher matcher = HEADING.matcher(lines[i]);
+            if (!matcher.matches()) continue;
+            int level = matcher.group(1).length();
+            titles[level] = matcher.group(2);
+            for (int l = level + 1; l < titles.length; l++) {
+                titles[l] = null;
+            }
+            List<String> path = new ArrayList<>(level);
+            for (int l = 1; l <= level; l++) {
+                if (null != titles[l]) path.add(titles[l]);
+            }
+            boundaries.add(new Boundary(i, String.join(" > ", path)));
+        }
+        return boundaries;
+    }
+
+}
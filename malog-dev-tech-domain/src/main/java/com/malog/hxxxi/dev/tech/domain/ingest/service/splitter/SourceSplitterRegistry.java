@@ -0,0 +1,37 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service.splitter;
+
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : 按文件类型选择结构化切分器，按注册顺序取第一个支持该文件的切分器；
+ *         没有匹配的切分器或文件超过大小上限（结构化切分需要读入全文）时返回 null，由流水线使用默认的 TextSplitter。
+ * @Time : 2026/10/21 15:50
+ */
+public class SourceSplitterRegistry {
+
+    private final List<ISourceSplitter> splitters;
+    /** 结构化切分的文件大小上限（单位：字节），0 表示不限制 */
+    private final long maxFileBytes;
+
+    public SourceSplitterRegistry(List<ISourceSplitter> splitters, long maxFileBytes) {
+        this.splitters = List.copyOf(splitters);
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    /**
+     * 选择切分器
+     *
+     * @param path          文件名或仓库内相对路径
+     * @param contentLength 文件大小，未知时为 -1
+     * @return 结构化切分器，使用默认切分时返回 null
+     */
+    public ISourceSplitter select(String path, long contentLength) {
+        if (maxFileBytes > 0 && (contentLength < 0 || contentLength > maxFileBytes)) return null;
+        for (ISourceSplitter splitter : splitters) {
+            if (splitter.supports(path)) return splitter;
+        }
+        return null;
+    }
+
+}
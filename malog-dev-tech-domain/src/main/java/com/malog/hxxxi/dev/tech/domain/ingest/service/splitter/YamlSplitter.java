@@ -0,0 +1,78 @@
+package com.malog.hxxxi.dev.tech.domain.ingest.service.splitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @Auth : Malog
+ * @Desc : YAML 切分。在文档分隔符（---）、顶层键及其下一级键处切分，键前的注释归入该键；
+ *         符号名记为键路径，如 spring.datasource。
+ * @Time : 2026/10/21 15:30
+ */
+public class YamlSplitter extends AbstractStructuredSplitter {
+
+    private static final Pattern KEY = Pattern.compile("^(\\s*)(\"[^\"]*\"|'[^']*'|[^\\s#'\"-][^:#]*?)\\s*:(\\s|$)");
+
+    public YamlSplitter(int chunkTokens, int overlapLines) {
+        super(List.of(".yml", ".yaml"), chunkTokens, overlapLines);
+    }
+
+    @Override
+    public String name() {
+        return "yaml";
+    }
+
+    @Override
+    protected List<Boundary> boundaries(String[] lines) {
+        List<Boundary> boundaries = new ArrayList<>();
+        String top = null;
+        // 顶层键下一级键的缩进
+        int childIndent = -1;
+        // 紧邻键之前的注释起始行
+        int commentStart = -1;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            String trimmed = line.strip();
+            if (trimmed.isEmpty()) {
+                commentStart = -1;
+                continue;
+            }
+            if (trimmed.startsWith("#")) {
+                if (commentStart < 0) commentStart = i;
+                continue;
+            }
+            int at = commentStart >= 0 ? commentStart : i;
+            commentStart = -1;
+            if (line.equals("---") || line.startsWith("--- ")) {
+                boundaries.add(new Boundary(at, null));
+                top = null;
+                childIndent = -1;
+                continue;
+            }
+
+            Matcher matcher = KEY.matcher(line);
+            if (!matcher.find()) continue;
+            int indent = matcher.group(1).length();
+            String key = unquote(matcher.group(2).trim());
+            if (indent == 0) {
+                top = key;
+                childIndent = -1;
+                boundaries.add(new Boundary(at, key));
+            } else if (null != top && (childIndent < 0 || indent == childIndent)) {
+                childIndent = indent;
+                boundaries.add(new Boundary(at, top + "." + key));
+            }
+        }
+        return boundaries;
+    }
+
+    private static String unquote(String key) {
+        if (key.length() >= 2 && (key.startsWith("\"") && key.endsWith("\"") || key.startsWith("'") && key.endsWith("'"))) {
+            return key.substring(1, key.length() - 1);
+        }
+        return key;
+    }
+
+}
@@ -0,0 +1,213 @@
+package com.malog.hxxxi.dev.tech.domain.metrics.service;
+
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.ai.chat.ChatResponse;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * @Auth : Malog
+ * @Desc : RAG 请求与入库各阶段的埋点。阶段耗时通过 Observation 记录，同时产生计时器与链路 span；
+ *         流式回答额外记录首 token 耗时、token 数与生成速度。统一按 provider、model、ragTag 打标签。
+ *         ragTag 与 model 来自请求参数，未注册的标签、未配置的模型在指标中统一记为 unknown，避免任意取值产生无限的时间序列；
+ *         原始取值只作为高基数键值进入链路 span。
+ * @Time : 2026/10/20 19:10
+ */
+public class RagMetrics {
+
+    public static final String TAG_PROVIDER = "provider";
+    public static final String TAG_MODEL = "model";
+    public static final String TAG_RAG_TAG = "ragTag";
+    public static final String TAG_STAGE = "stage";
+
+    /** RAG 请求阶段：检索、向量检索、全文检索、上下文组装 */
+    public static final String REQUEST_STAGE = "rag.request.stage";
+    /** 入库阶段：解析、向量化、写入 */
+    public static final String INGEST_STAGE = "rag.ingest.stage";
+
+    private static final String NONE = "none";
+    private static final String UNKNOWN = "unknown";
+    /** 归为 unknown 的原始取值在 span 中的键后缀 */
+    private static final String REQUESTED_SUFFIX = ".requested";
+
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final Predicate<String> knownRagTag;
+    private final Predicate<String> knownModel;
+
+    /**
+     * @param knownRagTag 标签是否可以作为指标标签，否则记为 unknown
+     * @param knownModel  模型是否可以作为指标标签，否则记为 unknown
+     */
+    public RagMetrics(MeterRegistry meterRegistry, ObservationRegistry observationRegistry,
+                      Predicate<String> knownRagTag, Predicate<String> knownModel) {
+        this.meterRegistry = meterRegistry;
+        this.observationRegistry = observationRegistry;
+        this.knownRagTag = knownRagTag;
+        this.knownModel = knownModel;
+    }
+
+    /**
+     * 不记录任何指标，用于未接入监控的场景
+     */
+    public static RagMetrics noop() {
+        return new RagMetrics(new CompositeMeterRegistry(), ObservationRegistry.NOOP, ragTag -> true, model -> true);
+    }
+
+    /**
+     * 记录同步阶段的耗时
+     *
+     * @param name  指标名
+     * @param stage 阶段
+     * @param tags  其余标签，键值交替
+     */
+    public <T> T observe(String name, String stage, Supplier<T> supplier, String... tags) {
+        return observation(name, stage, null, tags).observe(supplier);
+    }
+
+    /**
+     * 在其他线程执行的阶段，显式指定父 span
+     */
+    public <T> T observe(String name, String stage, Observation parent, Supplier<T> supplier, String... tags) {
+        return observation(name, stage, parent, tags).observe(supplier);
+    }
+
+    /**
+     * 记录异步阶段的耗时，订阅时开始，结束（完成、出错、取消）时停止。
+     * 阶段内部再拆分的子阶段以传入的 Observation 作为父 span
+     */
+    public <T> Mono<T> observeMono(String name, String stage, Observation parent, Function<Observation, Mono<T>> mono, String... tags) {
+        return Mono.defer(() -> {
+            Observation observation = observation(name, stage, parent, tags).start();
+            return mono.apply(observation)
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop());
+        });
+    }
+
+    /**
+     * 当前线程上的 Observation，跨线程执行时作为父 span 传递
+     */
+    public Observation current() {
+        return observationRegistry.getCurrentObservation();
+    }
+
+    /**
+     * 记录流式回答：首 token 耗时、总耗时、token 数及生成速度，订阅结束（完成、出错、取消）时上报
+     */
+    public Flux<ChatResponse> observeStream(Flux<ChatResponse> flux, String provider, String model, String ragTag) {
+        String[] keyValues = sanitize(TAG_PROVIDER, provider, TAG_MODEL, model, TAG_RAG_TAG, ragTag);
+        Tags tags = Tags.of(keyValues);
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicLong firstTokenAt = new AtomicLong();
+            AtomicLong tokens = new AtomicLong();
+            Observation observation = Observation.createNotStarted("rag.chat.stream", observationRegistry)
+                    .lowCardinalityKeyValues(KeyValues.of(keyValues));
+            requested(observation, TAG_MODEL, model);
+            requested(observation, TAG_RAG_TAG, ragTag);
+            observation.start();
+
+            return flux
+                    .doOnNext(response -> {
+                        if (null == response.getResult() || null == response.getResult().getOutput().getContent()
+                                || response.getResult().getOutput().getContent().isEmpty()) return;
+                        // 流式输出每个分片约为一个 token
+                        tokens.incrementAndGet();
+                        if (firstTokenAt.compareAndSet(0, System.nanoTime())) {
+                            Timer.builder("rag.chat.ttft").description("首 token 耗时").tags(tags)
+                                    .register(meterRegistry).record(firstTokenAt.get() - start, TimeUnit.NANOSECONDS);
+                            observation.event(Observation.Event.of("first-token"));
+                        }
+                    })
+                    .doOnError(observation::error)
+                    .doFinally(signal -> {
+                        long end = System.nanoTime();
+                        Counter.builder("rag.chat.tokens").description("生成的 token 数").tags(tags)
+                                .register(meterRegistry).increment(tokens.get());
+                        long first = firstTokenAt.get();
+                        if (first > 0 && tokens.get() > 1 && end > first) {
+                            DistributionSummary.builder("rag.chat.tokens.per.second").description("首 token 之后的生成速度").tags(tags)
+                                    .register(meterRegistry).record(tokens.get() * 1e9 / (end - first));
+                        }
+                        observation.lowCardinalityKeyValue("signal", signal.name());
+                        observation.stop();
+                    });
+        });
+    }
+
+    /**
+     * 记录数值分布，如上下文 token 数
+     */
+    public void record(String name, double amount, String... tags) {
+        DistributionSummary.builder(name).tags(sanitize(tags)).register(meterRegistry).record(amount);
+    }
+
+    /**
+     * 累加计数，如入库文件数、写入行数
+     */
+    public void count(String name, double amount, String... tags) {
+        if (amount <= 0) return;
+        Counter.builder(name).tags(sanitize(tags)).register(meterRegistry).increment(amount);
+    }
+
+    /**
+     * 记录已知耗时，如入库任务总耗时
+     */
+    public void time(String name, long millis, String... tags) {
+        Timer.builder(name).tags(sanitize(tags)).register(meterRegistry).record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private Observation observation(String name, String stage, Observation parent, String... tags) {
+        Observation observation = Observation.createNotStarted(name, observationRegistry)
+                .contextualName(name + "." + stage)
+                .lowCardinalityKeyValue(TAG_STAGE, stage);
+        for (int i = 0; i + 1 < tags.length; i += 2) {
+            observation.lowCardinalityKeyValue(tags[i], valueOf(tags[i], tags[i + 1]));
+            requested(observation, tags[i], tags[i + 1]);
+        }
+        if (null != parent) {
+            observation.parentObservation(parent);
+        }
+        return observation;
+    }
+
+    private String[] sanitize(String... tags) {
+        String[] sanitized = new String[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            sanitized[i] = i % 2 == 1 ? valueOf(tags[i - 1], tags[i]) : tags[i];
+        }
+        return sanitized;
+    }
+
+    /**
+     * 归为 unknown 的取值以高基数键值记录在 span 上，不进入指标
+     */
+    private void requested(Observation observation, String key, String value) {
+        if (UNKNOWN.equals(valueOf(key, value))) {
+            observation.highCardinalityKeyValue(key + REQUESTED_SUFFIX, value);
+        }
+    }
+
+    private String valueOf(String key, String value) {
+        if (null == value || value.isEmpty()) return NONE;
+        if (TAG_RAG_TAG.equals(key) && !knownRagTag.test(value)) return UNKNOWN;
+        if (TAG_MODEL.equals(key) && !knownModel.test(value)) return UNKNOWN;
+        return value;
+    }
+
+}
@@ -0,0 +1,476 @@
+package com.malog.hxxxi.dev.tech.domain.ollama.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * @Auth : Malog
+ * @Desc : 多副本 Ollama 客户端，替换单个 OllamaApi，OllamaChatClient 与 OllamaEmbeddingClient 无需改动。
+ *         每次请求选择负载最低的健康副本：优先选择已加载该模型的副本（模型亲和），避免各副本反复换入换出模型；
+ *         亲和副本进行中的请求数达到上限且存在更空闲的副本时才转到未加载该模型的副本。负载相同时按延迟的指数滑动平均比较。
+ *         连接失败或 5xx 连续达到阈值的副本被摘除，定期通过 /api/ps 探测，恢复后重新加入，同时刷新各副本已加载的模型。
+ *         非流式请求失败时换一个副本重试，流式请求只在首个响应之前失败时重试；embedding 请求可以对冲：
+ *         超过延迟阈值仍未返回时向另一个副本发出同样的请求，取先返回的结果。
+ * @Time : 2026/10/22 17:10
+ */
+@Slf4j
+public class ReplicatedOllamaApi extends OllamaApi {
+
+    /** OllamaApi 的错误处理器把 HTTP 错误转为 "[状态码] 内容" 的 RuntimeException */
+    private static final Pattern SERVER_ERROR = Pattern.compile("^\\[5\\d\\d].*", Pattern.DOTALL);
+    /** 延迟滑动平均的权重 */
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final List<Replica> replicas;
+    private final int affinityMaxInFlight;
+    private final long affinityTtlMillis;
+    private final int failureThreshold;
+    private final long probeIntervalMillis;
+    /** 对冲延迟，0 表示不对冲 */
+    private final long hedgeDelayMillis;
+    private final ScheduledExecutorService probeScheduler;
+    private final ExecutorService hedgeExecutor;
+
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * @param baseUrls            各副本地址
+     * @param affinityMaxInFlight 亲和副本进行中的请求数达到该值后允许转到其他副本
+     * @param affinityTtl         副本处理过某模型后视为已加载的时长，与 Ollama 的 keep_alive 对应
+     * @param failureThreshold    连续失败多少次后摘除副本
+     * @param probeInterval       健康探测间隔
+     * @param hedgeDelay          embedding 对冲延迟，为 0 时不对冲
+     */
+    public ReplicatedOllamaApi(List<String> baseUrls, int affinityMaxInFlight, Duration affinityTtl,
+                               int failureThreshold, Duration probeInterval, Duration hedgeDelay) {
+        super(baseUrls.get(0));
+        List<Replica> list = new ArrayList<>();
+        for (String baseUrl : baseUrls) {
+            list.add(new Replica(baseUrl));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+        this.affinityMaxInFlight = Math.max(1, affinityMaxInFlight);
+        this.affinityTtlMillis = affinityTtl.toMillis();
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.probeIntervalMillis = Math.max(1000, probeInterval.toMillis());
+        this.hedgeDelayMillis = hedgeDelay.toMillis();
+
+        AtomicInteger index = new AtomicInteger();
+        this.probeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ollama-replica-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "ollama-hedge-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.probeScheduler.scheduleWithFixedDelay(this::probeAll, 0, probeIntervalMillis, TimeUnit.MILLISECONDS);
+        log.info("Ollama 副本池 副本:{} 对冲延迟:{}ms", baseUrls, hedgeDelayMillis);
+    }
+
+    @Override
+    public GenerateResponse generate(GenerateRequest request) {
+        return call(request.model(), api -> api.generate(request), new HashSet<>());
+    }
+
+    @Override
+    public Flux<GenerateResponse> generateStreaming(GenerateRequest request) {
+        return stream(request.model(), api -> api.generateStreaming(request), new HashSet<>());
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest request) {
+        return call(request.model(), api -> api.chat(request), new HashSet<>());
+    }
+
+    @Override
+    public Flux<ChatResponse> streamingChat(ChatRequest request) {
+        return stream(request.model(), api -> api.streamingChat(request), new HashSet<>());
+    }
+
+    @Override
+    public EmbeddingResponse embeddings(EmbeddingRequest request) {
+        if (hedgeDelayMillis <= 0 || replicas.size() < 2) {
+            return call(request.model(), api -> api.embeddings(request), new HashSet<>());
+        }
+        return hedged(request.model(), api -> api.embeddings(request));
+    }
+
+    public List<Replica> replicas() {
+        return replicas;
+    }
+
+    /** 发出的对冲请求数 */
+    public long getHedges() {
+        return hedges.get();
+    }
+
+    /** 对冲请求先于原请求返回的次数 */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    public void shutdown() {
+        probeScheduler.shutdownNow();
+        hedgeExecutor.shutdownNow();
+    }
+
+    /**
+     * 非流式请求，副本故障时换一个副本重试，直到所有副本都试过
+     *
+     * @param excluded 已失败、不再选择的副本，重试过程中会继续加入
+     */
+    private <T> T call(String model, Function<OllamaApi, T> request, Set<Replica> excluded) {
+        while (true) {
+            Replica replica = select(model, excluded);
+            try {
+                return invoke(replica, model, request);
+            } catch (RuntimeException e) {
+                excluded.add(replica);
+                if (!isReplicaFailure(e) || excluded.size() >= replicas.size()) throw e;
+                log.warn("Ollama 副本请求失败，换副本重试 replica:{} model:{} {}", replica.baseUrl, model, e.getMessage());
+            }
+        }
+    }
+
+    private <T> T invoke(Replica replica, String model, Function<OllamaApi, T> request) {
+        long start = replica.begin(model, affinityTtlMillis);
+        try {
+            T response = request.apply(replica.api);
+            replica.succeed(start);
+            return response;
+        } catch (RuntimeException e) {
+            fail(replica, e);
+            throw e;
+        } finally {
+            replica.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * 流式请求，首个响应之前副本故障时换一个副本重试；延迟按首个响应的耗时记录
+     */
+    private <T> Flux<T> stream(String model, Function<OllamaApi, Flux<T>> request, Set<Replica> excluded) {
+        return Flux.defer(() -> {
+            Replica replica = select(model, excluded);
+            long start = replica.begin(model, affinityTtlMillis);
+            AtomicBoolean emitted = new AtomicBoolean();
+            AtomicBoolean finished = new AtomicBoolean();
+            return request.apply(replica.api)
+                    .doOnNext(response -> {
+                        if (emitted.compareAndSet(false, true)) replica.succeed(start);
+                    })
+                    .doOnError(e -> fail(replica, e))
+                    .doFinally(signal -> {
+                        if (finished.compareAndSet(false, true)) replica.inFlight.decrementAndGet();
+                    })
+                    .onErrorResume(e -> {
+                        if (emitted.get() || !isReplicaFailure(e)) return Flux.error(e);
+                        excluded.add(replica);
+                        if (excluded.size() >= replicas.size()) return Flux.error(e);
+                        log.warn("Ollama 副本流式请求失败，换副本重试 replica:{} model:{} {}", replica.baseUrl, model, e.getMessage());
+                        return stream(model, request, excluded);
+                    });
+        });
+    }
+
+    /**
+     * 在对冲线程中请求副本。进行中的请求数在提交前计入，任务结束或被取消时扣减（只扣减一次），
+     * 被放弃的一方不会因阻塞中的 HTTP 调用继续占用负载计数而影响选择
+     */
+    private <T> CompletableFuture<T> submit(Replica replica, String model, Function<OllamaApi, T> request) {
+        long start = replica.begin(model, affinityTtlMillis);
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) replica.inFlight.decrementAndGet();
+        };
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = hedgeExecutor.submit(() -> {
+                try {
+                    T response = request.apply(replica.api);
+                    replica.succeed(start);
+                    future.complete(response);
+                } catch (Throwable e) {
+                    // 取消后的中断不计为副本故障
+                    if (!future.isCancelled()) fail(replica, e);
+                    future.completeExceptionally(e);
+                } finally {
+                    release.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release.run();
+            throw e;
+        }
+        future.whenComplete((response, error) -> {
+            if (!future.isCancelled()) return;
+            task.cancel(true);
+            release.run();
+        });
+        return future;
+    }
+
+    /**
+     * 对冲请求：超过延迟阈值未返回时向另一个副本发出同样的请求，取先成功的结果并取消另一方，两者都失败时抛出原请求的异常。
+     * 原请求在对冲之前失败时排除该副本重试
+     */
+    private <T> T hedged(String model, Function<OllamaApi, T> request) {
+        Replica primary = select(model, Set.of());
+        CompletableFuture<T> primaryFuture = submit(primary, model, request);
+        try {
+            return primaryFuture.get(hedgeDelayMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // 继续对冲
+        } catch (ExecutionException e) {
+            if (!isReplicaFailure(e.getCause())) throw unwrap(e.getCause());
+            log.warn("Ollama 副本请求失败，换副本重试 replica:{} model:{} {}", primary.baseUrl, model, e.getCause().getMessage());
+            Set<Replica> excluded = new HashSet<>();
+            excluded.add(primary);
+            return call(model, request, excluded);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            primaryFuture.cancel(true);
+            throw new CancellationException("embedding 请求被中断");
+        }
+
+        Set<Replica> excluded = Set.of(primary);
+        Replica secondary = selectHealthy(model, excluded);
+        if (null == secondary) return join(primaryFuture);
+
+        hedges.incrementAndGet();
+        CompletableFuture<T> secondaryFuture = submit(secondary, model, request);
+        CompletableFuture<T> first = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        primaryFuture.whenComplete((response, error) -> {
+            if (null == error) {
+                if (first.complete(response)) secondaryFuture.cancel(true);
+            } else if (failures.incrementAndGet() == 2) {
+                first.completeExceptionally(error);
+            }
+        });
+        secondaryFuture.whenComplete((response, error) -> {
+            if (null == error) {
+                if (first.complete(response)) {
+                    hedgeWins.incrementAndGet();
+                    primaryFuture.cancel(true);
+                }
+            } else if (failures.incrementAndGet() == 2) {
+                first.completeExceptionally(primaryFuture.isCompletedExceptionally() ? causeOf(primaryFuture) : error);
+            }
+        });
+        return join(first);
+    }
+
+    /**
+     * 选择副本：优先健康副本，全部被摘除时仍在未排除的副本中选择，避免探测恢复之前完全不可用
+     */
+    private Replica select(String model, Set<Replica> excluded) {
+        Replica replica = selectHealthy(model, excluded);
+        if (null != replica) return replica;
+        return replicas.stream()
+                .filter(candidate -> !excluded.contains(candidate))
+                .min((a, b) -> Integer.compare(a.inFlight.get(), b.inFlight.get()))
+                .orElseThrow(() -> new IllegalStateException("没有可用的 Ollama 副本"));
+    }
+
+    /**
+     * 亲和副本中负载最低的一个；亲和副本饱和且其他副本更空闲时，选负载最低的非亲和副本
+     */
+    private Replica selectHealthy(String model, Set<Replica> excluded) {
+        long now = System.currentTimeMillis();
+        Replica warm = null;
+        Replica cold = null;
+        for (Replica replica : replicas) {
+            if (!replica.healthy || excluded.contains(replica)) continue;
+            if (replica.isWarm(model, now)) {
+                if (null == warm || replica.compareLoad(warm) < 0) warm = replica;
+            } else {
+                if (null == cold || replica.compareLoad(cold) < 0) cold = replica;
+            }
+        }
+        if (null == warm) return cold;
+        if (null == cold || warm.inFlight.get() < affinityMaxInFlight) return warm;
+        return cold.inFlight.get() < warm.inFlight.get() ? cold : warm;
+    }
+
+    private void fail(Replica replica, Throwable e) {
+        if (!isReplicaFailure(e)) return;
+        if (replica.failures.incrementAndGet() >= failureThreshold && replica.healthy) {
+            replica.healthy = false;
+            log.warn("Ollama 副本已摘除 replica:{} 连续失败:{}", replica.baseUrl, replica.failures.get());
+        }
+    }
+
+    private void probeAll() {
+        for (Replica replica : replicas) {
+            try {
+                replica.probe(System.currentTimeMillis() + probeIntervalMillis * 2);
+                if (!replica.healthy) {
+                    replica.failures.set(0);
+                    replica.healthy = true;
+                    log.info("Ollama 副本已恢复 replica:{}", replica.baseUrl);
+                }
+            } catch (Exception e) {
+                if (replica.healthy) {
+                    replica.healthy = false;
+                    log.warn("Ollama 副本探测失败，已摘除 replica:{} {}", replica.baseUrl, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 连接失败、超时与 5xx 视为副本故障；4xx（如模型不存在）换副本也不会成功
+     */
+    private static boolean isReplicaFailure(Throwable e) {
+        Throwable cause = e instanceof CompletionException && null != e.getCause() ? e.getCause() : e;
+        if (cause instanceof ResourceAccessException || cause instanceof WebClientRequestException) return true;
+        if (cause instanceof WebClientResponseException response) return response.getStatusCode().is5xxServerError();
+        return null != cause.getMessage() && SERVER_ERROR.matcher(cause.getMessage()).matches();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static Throwable causeOf(CompletableFuture<?> future) {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable e) {
+        return e instanceof RuntimeException runtime ? runtime : new IllegalStateException(e);
+    }
+
+    /**
+     * 单个副本的状态
+     */
+    public static class Replica {
+
+        private final String baseUrl;
+        private final OllamaApi api;
+        private final RestClient probeClient;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+        /** 已加载的模型及其视为已加载的截止时间 */
+        private final Map<String, Long> warmModels = new ConcurrentHashMap<>();
+        private volatile boolean healthy = true;
+        /** 延迟的指数滑动平均（单位：毫秒） */
+        private volatile double latencyMillis;
+
+        private Replica(String baseUrl) {
+            this.baseUrl = baseUrl;
+            this.api = new OllamaApi(baseUrl);
+            this.probeClient = RestClient.builder().baseUrl(baseUrl).build();
+        }
+
+        public String getBaseUrl() {
+            return baseUrl;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public double getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        private long begin(String model, long affinityTtlMillis) {
+            inFlight.incrementAndGet();
+            long now = System.currentTimeMillis();
+            warmModels.merge(model, now + affinityTtlMillis, Math::max);
+            return now;
+        }
+
+        private void succeed(long start) {
+            failures.set(0);
+            double elapsed = System.currentTimeMillis() - start;
+            latencyMillis = 0 == latencyMillis ? elapsed : latencyMillis + EWMA_ALPHA * (elapsed - latencyMillis);
+        }
+
+        private boolean isWarm(String model, long now) {
+            Long until = warmModels.get(model);
+            return null != until && until > now;
+        }
+
+        private int compareLoad(Replica other) {
+            int compared = Integer.compare(inFlight.get(), other.inFlight.get());
+            return 0 != compared ? compared : Double.compare(latencyMillis, other.latencyMillis);
+        }
+
+        /**
+         * 查询 /api/ps，成功即视为健康，同时记录当前已加载的模型；旧版 Ollama 没有该接口时只确认可连接
+         */
+        private void probe(long warmUntil) {
+            String body;
+            try {
+                body = probeClient.get().uri("/api/ps").retrieve().body(String.class);
+            } catch (HttpClientErrorException.NotFound e) {
+                return;
+            }
+            JSONObject ps = JSON.parseObject(body);
+            JSONArray models = null == ps ? null : ps.getJSONArray("models");
+            if (null == models) return;
+            for (int i = 0; i < models.size(); i++) {
+                String name = models.getJSONObject(i).getString("name");
+                if (null != name) warmModels.merge(name, warmUntil, Math::max);
+            }
+            long now = System.currentTimeMillis();
+            warmModels.values().removeIf(until -> until <= now);
+        }
+
+    }
+
+}
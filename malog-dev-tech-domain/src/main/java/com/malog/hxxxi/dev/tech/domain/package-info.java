@@ -0,0 +1 @@
+package com.malog.hxxxi.dev.tech.domain;
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.malog.hxxxi.dev.tech.domain.ratelimit.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : 一类接口的限流规则，按客户端分别计数。请求数、并发流数与入库字节数三项限额相互独立，取 0 表示不限制；
+ *         规则保存在 Redis hash 中，运行时修改后各节点同步生效。
+ * @Time : 2026/10/22 10:20
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RateLimitRule {
+
+    /** 接口类别，如 chat、stream、ingest */
+    private String endpointClass;
+    /** 匹配的请求路径，Ant 风格；多个规则同时匹配时取最具体的一条 */
+    private List<String> paths;
+    /** 是否启用 */
+    @Builder.Default
+    private boolean enabled = true;
+    /** 每个周期允许的请求数 */
+    private long requests;
+    /** 请求数的统计周期（单位：秒） */
+    @Builder.Default
+    private long requestsIntervalSeconds = 60;
+    /** 同时进行的请求数上限，用于流式回答等长连接 */
+    private int concurrent;
+    /** 每个周期允许上传的字节数 */
+    private long bytes;
+    /** 上传字节数的统计周期（单位：秒） */
+    @Builder.Default
+    private long bytesIntervalSeconds = 86400;
+
+}
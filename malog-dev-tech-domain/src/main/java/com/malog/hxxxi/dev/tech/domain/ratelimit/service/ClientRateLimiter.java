@@ -0,0 +1,366 @@
+package com.malog.hxxxi.dev.tech.domain.ratelimit.service;
+
+import com.malog.hxxxi.dev.tech.domain.ratelimit.model.RateLimitRule;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.redisson.api.RMap;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RScript;
+import org.redisson.api.RTopic;
+import org.redisson.api.RateLimiterConfig;
+import org.redisson.api.RateType;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.StatusListener;
+import org.redisson.client.RedisException;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.util.AntPathMatcher;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Auth : Malog
+ * @Desc : 按客户端与接口类别的分布式限流，集群内各节点共享同一份计数：
+ *         请求数使用 Redisson 令牌桶（RRateLimiter），每个节点一次预取一小批许可在本地消费，避免每个请求都访问 Redis；
+ *         并发数使用 Redis 有序集合记录带过期时间的租约，节点宕机未释放的租约到期自动失效；上传字节数使用按字节计的令牌桶。
+ *         被拒绝的客户端在建议的重试时间内由本地直接拒绝，本节点进行中的请求已达上限时同样不访问 Redis。
+ *         规则保存在 Redis hash 中，配置文件中的规则只作为初始值，运行时修改后通过 topic 通知各节点重新加载。
+ * @Time : 2026/10/22 10:40
+ */
+@Slf4j
+public class ClientRateLimiter {
+
+    private static final String RULES_KEY = "ragRateLimitRules";
+    private static final String INVALIDATE_TOPIC = "ragRateLimitRulesInvalidate";
+    private static final String REQUESTS_KEY_PREFIX = "ragRateLimit:requests:";
+    private static final String BYTES_KEY_PREFIX = "ragRateLimit:bytes:";
+    private static final String CONCURRENT_KEY_PREFIX = "ragRateLimit:concurrent:";
+
+    /** 本地状态的清理间隔，按调用次数计 */
+    private static final int SWEEP_EVERY = 1024;
+    /** 已确认配置的令牌桶数量上限，超过后清空，之后重新确认一次 */
+    private static final int MAX_CONFIGURED = 10000;
+
+    /**
+     * 清除过期租约后判断是否已满，未满时登记新租约并续期整个集合。
+     * KEYS[1] 租约集合；ARGV：当前时间、并发上限、租约到期时间、租约ID、集合过期时间（毫秒）
+     */
+    private static final String ACQUIRE_CONCURRENT_SCRIPT =
+            "redis.call('zremrangebyscore', KEYS[1], '-inf', ARGV[1]) " +
+            "if redis.call('zcard', KEYS[1]) >= tonumber(ARGV[2]) then return 0 end " +
+            "redis.call('zadd', KEYS[1], ARGV[3], ARGV[4]) " +
+            "redis.call('pexpire', KEYS[1], ARGV[5]) " +
+            "return 1";
+
+    private final RedissonClient redissonClient;
+    private final RMap<String, RateLimitRule> rules;
+    private final RTopic invalidateTopic;
+    private final double leaseFraction;
+    private final long concurrentLeaseMillis;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    /** 近端缓存的规则 */
+    private final Map<String, RateLimitRule> local = new ConcurrentHashMap<>();
+    /** 本节点预取的请求许可 */
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    /** 被拒绝的客户端在该时间之前由本地直接拒绝 */
+    private final Map<String, Long> blockedUntil = new ConcurrentHashMap<>();
+    /** 本节点进行中的请求数 */
+    private final Map<String, AtomicInteger> inflight = new ConcurrentHashMap<>();
+    /** 已确认配置的令牌桶及其速率 */
+    private final Map<String, String> configured = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+
+    /**
+     * @param redissonClient        Redis 客户端
+     * @param defaults              配置文件中的规则，Redis 中已存在同名规则时不覆盖
+     * @param leaseFraction         每次预取的许可占周期限额的比例，预取的许可在周期乘以该比例的时间内有效
+     * @param concurrentLeaseMillis 并发租约的有效期，超过该时长的连接不再计数
+     */
+    public ClientRateLimiter(RedissonClient redissonClient, Map<String, RateLimitRule> defaults, double leaseFraction, long concurrentLeaseMillis) {
+        this.redissonClient = redissonClient;
+        this.leaseFraction = Math.max(0, Math.min(1, leaseFraction));
+        this.concurrentLeaseMillis = concurrentLeaseMillis;
+        this.rules = redissonClient.getMap(RULES_KEY);
+        this.invalidateTopic = redissonClient.getTopic(INVALIDATE_TOPIC);
+        this.invalidateTopic.addListener(String.class, (channel, endpointClass) -> reload(endpointClass));
+        this.invalidateTopic.addListener(new StatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                reloadAll();
+            }
+
+            @Override
+            public void onUnsubscribe(String channel) {
+            }
+        });
+        if (null != defaults) {
+            defaults.forEach((endpointClass, rule) -> {
+                rule.setEndpointClass(endpointClass);
+                rules.fastPutIfAbsent(endpointClass, rule);
+            });
+        }
+        reloadAll();
+    }
+
+    /**
+     * 匹配请求路径对应的规则，只查询近端缓存
+     *
+     * @return 最具体的一条已启用规则，没有匹配时返回 null
+     */
+    public RateLimitRule match(String path) {
+        Comparator<String> comparator = pathMatcher.getPatternComparator(path);
+        RateLimitRule matched = null;
+        String matchedPattern = null;
+        for (RateLimitRule rule : local.values()) {
+            if (!rule.isEnabled() || null == rule.getPaths()) continue;
+            for (String pattern : rule.getPaths()) {
+                if (!pathMatcher.match(pattern, path)) continue;
+                if (null == matchedPattern || comparator.compare(pattern, matchedPattern) < 0) {
+                    matched = rule;
+                    matchedPattern = pattern;
+                }
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 消耗一次请求许可
+     *
+     * @throws RateLimitedException 超过周期内的请求数
+     */
+    public void acquireRequest(String client, RateLimitRule rule) {
+        sweep();
+        if (rule.getRequests() <= 0) return;
+        String key = rule.getEndpointClass() + ":" + client;
+        long now = System.currentTimeMillis();
+        checkBlocked(key, now);
+
+        Lease lease = leases.computeIfAbsent(key, k -> new Lease());
+        synchronized (lease) {
+            if (lease.permits > 0 && now < lease.expiresAt) {
+                lease.permits--;
+                return;
+            }
+            long intervalSeconds = Math.max(1, rule.getRequestsIntervalSeconds());
+            long batch = Math.max(1, (long) (rule.getRequests() * leaseFraction));
+            String name = REQUESTS_KEY_PREFIX + key;
+            long granted = tryAcquire(name, rule.getRequests(), intervalSeconds, batch);
+            // 接近限额时整批预取失败，退回到单个许可
+            if (0 == granted && batch > 1) {
+                granted = tryAcquire(name, rule.getRequests(), intervalSeconds, 1);
+            }
+            if (0 == granted) {
+                long retryAfterSeconds = Math.max(1, intervalSeconds / rule.getRequests());
+                blockedUntil.put(key, now + TimeUnit.SECONDS.toMillis(retryAfterSeconds));
+                throw new RateLimitedException("请求过于频繁 client:" + client + " class:" + rule.getEndpointClass(), retryAfterSeconds);
+            }
+            lease.permits = granted - 1;
+            lease.expiresAt = now + Math.max(1, (long) (TimeUnit.SECONDS.toMillis(intervalSeconds) * leaseFraction));
+        }
+    }
+
+    /**
+     * 登记一个进行中的请求，结束时调用返回值的 close 释放
+     *
+     * @return 规则未限制并发时返回 null
+     * @throws RateLimitedException 进行中的请求数已达上限
+     */
+    public ConcurrentLease acquireConcurrent(String client, RateLimitRule rule) {
+        if (rule.getConcurrent() <= 0) return null;
+        String key = rule.getEndpointClass() + ":" + client;
+        AtomicInteger running = inflight.computeIfAbsent(key, k -> new AtomicInteger());
+        // 本节点已达上限时不必再访问 Redis
+        if (running.get() >= rule.getConcurrent()) {
+            throw new RateLimitedException("并发请求过多 client:" + client + " class:" + rule.getEndpointClass(), 1);
+        }
+
+        String leaseId = UUID.randomUUID().toString();
+        String name = CONCURRENT_KEY_PREFIX + key;
+        long now = System.currentTimeMillis();
+        Long acquired = redissonClient.getScript(StringCodec.INSTANCE).eval(RScript.Mode.READ_WRITE, ACQUIRE_CONCURRENT_SCRIPT, RScript.ReturnType.INTEGER,
+                List.of(name), String.valueOf(now), String.valueOf(rule.getConcurrent()),
+                String.valueOf(now + concurrentLeaseMillis), leaseId, String.valueOf(concurrentLeaseMillis));
+        if (null == acquired || 0 == acquired) {
+            throw new RateLimitedException("并发请求过多 client:" + client + " class:" + rule.getEndpointClass(), 1);
+        }
+        running.incrementAndGet();
+        return new ConcurrentLease(name, leaseId, running);
+    }
+
+    /**
+     * 消耗上传字节配额
+     *
+     * @param bytes 本次上传的字节数，未知时传 0 跳过检查
+     * @throws RateLimitedException 超过周期内的上传字节数
+     */
+    public void acquireBytes(String client, RateLimitRule rule, long bytes) {
+        if (rule.getBytes() <= 0 || bytes <= 0) return;
+        long intervalSeconds = Math.max(1, rule.getBytesIntervalSeconds());
+        if (bytes > rule.getBytes()) {
+            throw new RateLimitedException("单次上传超过配额 client:" + client + " class:" + rule.getEndpointClass() + " bytes:" + bytes, intervalSeconds);
+        }
+        String name = BYTES_KEY_PREFIX + rule.getEndpointClass() + ":" + client;
+        if (0 == tryAcquire(name, rule.getBytes(), intervalSeconds, bytes)) {
+            // 按配额的恢复速度估算可以再次上传同样大小的时间
+            long retryAfterSeconds = (long) Math.ceil((double) intervalSeconds * bytes / rule.getBytes());
+            throw new RateLimitedException("上传字节数超过配额 client:" + client + " class:" + rule.getEndpointClass() + " bytes:" + bytes, retryAfterSeconds);
+        }
+    }
+
+    /**
+     * 全部规则，按接口类别排序
+     */
+    public List<RateLimitRule> rules() {
+        List<RateLimitRule> all = new ArrayList<>(local.values());
+        all.sort(Comparator.comparing(RateLimitRule::getEndpointClass));
+        return all;
+    }
+
+    /**
+     * 新增或修改规则，各节点收到通知后生效；速率变化时对应客户端的令牌桶重新计数
+     */
+    public void update(RateLimitRule rule) {
+        if (null == rule || StringUtils.isBlank(rule.getEndpointClass())) {
+            throw new IllegalArgumentException("接口类别不能为空");
+        }
+        rules.fastPut(rule.getEndpointClass(), rule);
+        publish(rule.getEndpointClass());
+    }
+
+    /**
+     * 删除规则
+     */
+    public void remove(String endpointClass) {
+        rules.fastRemove(endpointClass);
+        publish(endpointClass);
+    }
+
+    /**
+     * 从令牌桶取许可，桶在 Redis 中过期后重新配置
+     *
+     * @return 取到的许可数，失败时为 0
+     */
+    private long tryAcquire(String name, long rate, long intervalSeconds, long permits) {
+        try {
+            return limiter(name, rate, intervalSeconds).tryAcquire(permits) ? permits : 0;
+        } catch (RedisException e) {
+            configured.remove(name);
+            return limiter(name, rate, intervalSeconds).tryAcquire(permits) ? permits : 0;
+        } finally {
+            // 空闲的客户端两个周期后从 Redis 中清除
+            redissonClient.getRateLimiter(name).expireAsync(Duration.ofSeconds(intervalSeconds * 2));
+        }
+    }
+
+    private RRateLimiter limiter(String name, long rate, long intervalSeconds) {
+        RRateLimiter limiter = redissonClient.getRateLimiter(name);
+        String signature = rate + "/" + intervalSeconds;
+        if (signature.equals(configured.get(name))) return limiter;
+
+        Duration interval = Duration.ofSeconds(intervalSeconds);
+        if (!limiter.trySetRate(RateType.OVERALL, rate, interval)) {
+            RateLimiterConfig config = limiter.getConfig();
+            if (config.getRate() != rate || config.getRateInterval() != interval.toMillis()) {
+                limiter.setRate(RateType.OVERALL, rate, interval);
+            }
+        }
+        if (configured.size() >= MAX_CONFIGURED) {
+            configured.clear();
+        }
+        configured.put(name, signature);
+        return limiter;
+    }
+
+    private void checkBlocked(String key, long now) {
+        Long until = blockedUntil.get(key);
+        if (null == until) return;
+        if (now < until) {
+            throw new RateLimitedException("请求过于频繁 " + key, TimeUnit.MILLISECONDS.toSeconds(until - now) + 1);
+        }
+        blockedUntil.remove(key, until);
+    }
+
+    /**
+     * 定期清理过期的预取许可、拒绝记录与空闲的并发计数
+     */
+    private void sweep() {
+        if (calls.incrementAndGet() % SWEEP_EVERY != 0) return;
+        long now = System.currentTimeMillis();
+        leases.entrySet().removeIf(entry -> now >= entry.getValue().expiresAt);
+        blockedUntil.entrySet().removeIf(entry -> now >= entry.getValue());
+        inflight.entrySet().removeIf(entry -> entry.getValue().get() <= 0);
+    }
+
+    private void publish(String endpointClass) {
+        // 本节点立即生效，其他节点收到通知后重新加载
+        reload(endpointClass);
+        invalidateTopic.publish(endpointClass);
+    }
+
+    private void reload(String endpointClass) {
+        RateLimitRule rule = rules.get(endpointClass);
+        if (null == rule) {
+            local.remove(endpointClass);
+        } else {
+            local.put(endpointClass, rule);
+        }
+        // 按旧规则预取的许可与拒绝记录作废
+        String prefix = endpointClass + ":";
+        leases.keySet().removeIf(key -> key.startsWith(prefix));
+        blockedUntil.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private void reloadAll() {
+        Map<String, RateLimitRule> all = rules.readAllMap();
+        local.putAll(all);
+        local.keySet().retainAll(all.keySet());
+        leases.clear();
+        blockedUntil.clear();
+        log.info("限流规则已加载 数量:{}", all.size());
+    }
+
+    /**
+     * 本节点预取的请求许可
+     */
+    private static class Lease {
+        private long permits;
+        private long expiresAt;
+    }
+
+    /**
+     * 进行中的请求占用的并发租约，重复关闭只释放一次
+     */
+    public class ConcurrentLease implements AutoCloseable {
+
+        private final String name;
+        private final String leaseId;
+        private final AtomicInteger running;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private ConcurrentLease(String name, String leaseId, AtomicInteger running) {
+            this.name = name;
+            this.leaseId = leaseId;
+            this.running = running;
+        }
+
+        @Override
+        public void close() {
+            if (!closed.compareAndSet(false, true)) return;
+            running.decrementAndGet();
+            redissonClient.getScoredSortedSet(name, StringCodec.INSTANCE).removeAsync(leaseId);
+        }
+
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.malog.hxxxi.dev.tech.domain.ratelimit.service;
+
+/**
+ * 客户端超出限流规则，请求被拒绝
+ */
+public class RateLimitedException extends RuntimeException {
+
+    /** 建议的重试间隔（单位：秒） */
+    private final long retryAfterSeconds;
+
+    public RateLimitedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+}
@@ -0,0 +1,219 @@
+package com.malog.hxxxi.dev.tech.domain.retrieval.service;
+
+import org.springframework.ai.document.Document;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * @Auth : Malog
+ * @Desc : 进程内 BM25 倒排索引，单个知识库一份。倒排表使用 int[] 存放文档序号与词频，删除采用墓碑标记，
+ *         墓碑较多时由 compact 重新编号并清理倒排表。
+ * @Time : 2026/10/19 17:50
+ */
+public class Bm25Index {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<Document> documents = new ArrayList<>();
+    private int[] lengths = new int[1024];
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> idToDoc = new HashMap<>();
+    private final BitSet deleted = new BitSet();
+    private long totalLength;
+
+    public void add(Document document) {
+        List<String> tokens = LexicalTokenizer.tokenize(document.getContent());
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = idToDoc.remove(document.getId());
+            if (null != existing) markDeleted(existing);
+
+            int doc = documents.size();
+            documents.add(document);
+            if (doc >= lengths.length) lengths = Arrays.copyOf(lengths, lengths.length * 2);
+            lengths[doc] = tokens.size();
+            totalLength += tokens.size();
+            idToDoc.put(document.getId(), doc);
+            frequencies.forEach((term, frequency) -> postings.computeIfAbsent(term, key -> new Postings()).add(doc, frequency));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer doc = idToDoc.remove(id);
+            if (null == doc) return false;
+            markDeleted(doc);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int removeIf(Predicate<Document> predicate) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int doc = 0; doc < documents.size(); doc++) {
+                if (deleted.get(doc) || !predicate.test(documents.get(doc))) continue;
+                idToDoc.remove(documents.get(doc).getId());
+                markDeleted(doc);
+                removed++;
+            }
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 墓碑文档占全部文档的比例
+     */
+    public double deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return documents.isEmpty() ? 0 : (double) (documents.size() - idToDoc.size()) / documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 回收墓碑：存活文档重新连续编号，倒排表按新编号过滤重写，不再有存活文档的词项直接移除。
+     * 只搬移已有的倒排数据，不重新分词
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            if (deleted.isEmpty()) return;
+            int[] remap = new int[documents.size()];
+            List<Document> live = new ArrayList<>(idToDoc.size());
+            int[] liveLengths = new int[Math.max(1024, idToDoc.size())];
+            for (int doc = 0; doc < documents.size(); doc++) {
+                if (deleted.get(doc)) {
+                    remap[doc] = -1;
+                    continue;
+                }
+                remap[doc] = live.size();
+                liveLengths[live.size()] = lengths[doc];
+                live.add(documents.get(doc));
+            }
+            postings.values().removeIf(termPostings -> termPostings.compact(remap) == 0);
+
+            documents.clear();
+            documents.addAll(live);
+            lengths = liveLengths;
+            deleted.clear();
+            idToDoc.clear();
+            for (int doc = 0; doc < live.size(); doc++) {
+                idToDoc.put(live.get(doc).getId(), doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Hit> search(String query, int topK) {
+        Set<String> terms = new LinkedHashSet<>(LexicalTokenizer.tokenize(query));
+        lock.readLock().lock();
+        try {
+            int liveCount = idToDoc.size();
+            if (liveCount == 0 || terms.isEmpty()) return List.of();
+            float averageLength = (float) totalLength / liveCount;
+
+            Map<Integer, Float> scores = new HashMap<>();
+            for (String term : terms) {
+                Postings termPostings = postings.get(term);
+                if (null == termPostings) continue;
+                int documentFrequency = termPostings.liveCount;
+                if (documentFrequency == 0) continue;
+                float idf = (float) Math.log(1 + (liveCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+                for (int i = 0; i < termPostings.size; i++) {
+                    int doc = termPostings.docs[i];
+                    if (deleted.get(doc)) continue;
+                    int frequency = termPostings.frequencies[i];
+                    float norm = K1 * (1 - B + B * lengths[doc] / averageLength);
+                    scores.merge(doc, idf * frequency * (K1 + 1) / (frequency + norm), Float::sum);
+                }
+            }
+
+            PriorityQueue<Hit> top = new PriorityQueue<>(Comparator.comparingDouble(Hit::score));
+            scores.forEach((doc, score) -> {
+                top.add(new Hit(documents.get(doc), score));
+                if (top.size() > topK) top.poll();
+            });
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort((a, b) -> Float.compare(b.score(), a.score()));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void markDeleted(int doc) {
+        deleted.set(doc);
+        totalLength -= lengths[doc];
+        for (String term : new HashSet<>(LexicalTokenizer.tokenize(documents.get(doc).getContent()))) {
+            Postings termPostings = postings.get(term);
+            if (null != termPostings) termPostings.liveCount--;
+        }
+    }
+
+    /**
+     * 检索结果
+     */
+    public record Hit(Document document, float score) {
+    }
+
+    private static class Postings {
+
+        int[] docs = new int[4];
+        int[] frequencies = new int[4];
+        int size;
+        int liveCount;
+
+        void add(int doc, int frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+            liveCount++;
+        }
+
+        /**
+         * 去掉已删除文档并按新编号重写，返回剩余条数
+         */
+        int compact(int[] remap) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int doc = remap[docs[i]];
+                if (doc < 0) continue;
+                docs[kept] = doc;
+                frequencies[kept] = frequencies[i];
+                kept++;
+            }
+            size = kept;
+            liveCount = kept;
+            docs = Arrays.copyOf(docs, Math.max(4, kept));
+            frequencies = Arrays.copyOf(frequencies, Math.max(4, kept));
+            return kept;
+        }
+
+    }
+
+}
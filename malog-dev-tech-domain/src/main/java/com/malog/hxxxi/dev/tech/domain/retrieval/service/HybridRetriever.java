@@ -0,0 +1,123 @@
+package com.malog.hxxxi.dev.tech.domain.retrieval.service;
+
+import com.malog.hxxxi.dev.tech.domain.metrics.service.RagMetrics;
+import io.micrometer.observation.Observation;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * @Auth : Malog
+ * @Desc : 混合检索。向量检索与全文检索并行执行，按倒数排名融合（RRF，score = Σ 1 / (k + rank)）合并结果。
+ *         代码标识符、错误码、类名等精确词由全文检索召回，语义相近的内容由向量检索召回。
+ *         任意一路失败时降级为另一路的结果。
+ *         两路检索中的 embedding 请求与 JDBC 查询都是阻塞调用，放在有界的检索调度器上执行，
+ *         调用方以 Mono 组合到响应式链路中，取消订阅时两路检索一并取消。
+ * @Time : 2026/10/19 18:50
+ */
+@Slf4j
+public class HybridRetriever {
+
+    public static final String METADATA_RRF_SCORE = "rrf_score";
+
+    private final VectorStore vectorStore;
+    /** 全文检索，为 null 时只走向量检索 */
+    private final ILexicalRetriever lexicalRetriever;
+    private final Scheduler scheduler;
+    /** 默认融合后返回数量 */
+    private final int topK;
+    private final int vectorTopK;
+    private final int lexicalTopK;
+    private final int rrfK;
+    private final RagMetrics ragMetrics;
+
+    public HybridRetriever(VectorStore vectorStore, ILexicalRetriever lexicalRetriever, Scheduler scheduler,
+                           int topK, int vectorTopK, int lexicalTopK, int rrfK, RagMetrics ragMetrics) {
+        this.vectorStore = vectorStore;
+        this.lexicalRetriever = lexicalRetriever;
+        this.scheduler = scheduler;
+        this.topK = topK;
+        this.vectorTopK = vectorTopK;
+        this.lexicalTopK = lexicalTopK;
+        this.rrfK = rrfK;
+        this.ragMetrics = ragMetrics;
+    }
+
+    /**
+     * 按默认数量检索知识库
+     *
+     * @param ragTag 知识库标签
+     * @param query  用户问题
+     * @param parent 父 span，跨线程传递链路
+     * @return 按融合得分降序的切片
+     */
+    public Mono<List<Document>> retrieve(String ragTag, String query, Observation parent) {
+        return retrieve(ragTag, query, topK, parent);
+    }
+
+    /**
+     * 检索知识库
+     *
+     * @param ragTag 知识库标签
+     * @param query  用户问题
+     * @param topK   融合后返回数量
+     * @param parent 父 span，跨线程传递链路
+     * @return 按融合得分降序的切片
+     */
+    public Mono<List<Document>> retrieve(String ragTag, String query, int topK, Observation parent) {
+        return ragMetrics.observeMono(RagMetrics.REQUEST_STAGE, "retrieval", parent,
+                observation -> doRetrieve(ragTag, query, topK, observation), RagMetrics.TAG_RAG_TAG, ragTag);
+    }
+
+    private Mono<List<Document>> doRetrieve(String ragTag, String query, int topK, Observation parent) {
+        Mono<List<Document>> vectorLane = lane("vector", ragTag, parent, () -> vectorStore.similaritySearch(
+                SearchRequest.query(query)
+                        .withTopK(Math.max(topK, vectorTopK))
+                        .withFilterExpression("knowledge == '" + ragTag + "'")));
+        if (null == lexicalRetriever) {
+            return vectorLane.map(documents -> documents.subList(0, Math.min(topK, documents.size())));
+        }
+
+        Mono<List<Document>> lexicalLane = lane("lexical", ragTag, parent,
+                () -> lexicalRetriever.lexicalSearch(ragTag, query, Math.max(topK, lexicalTopK)));
+        return Mono.zip(vectorLane, lexicalLane)
+                .map(lanes -> fuse(List.of(lanes.getT1(), lanes.getT2()), topK));
+    }
+
+    private Mono<List<Document>> lane(String name, String ragTag, Observation parent, Supplier<List<Document>> search) {
+        return Mono.fromCallable(() -> ragMetrics.observe(RagMetrics.REQUEST_STAGE, name + "_search", parent, search,
+                        RagMetrics.TAG_RAG_TAG, ragTag))
+                .subscribeOn(scheduler)
+                .onErrorResume(e -> {
+                    log.warn("{} 检索失败，降级为单路检索 ragTag:{}", name, ragTag, e);
+                    return Mono.just(List.of());
+                });
+    }
+
+    private List<Document> fuse(List<List<Document>> rankings, int topK) {
+        Map<String, Double> scores = new HashMap<>();
+        Map<String, Document> documents = new LinkedHashMap<>();
+        for (List<Document> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                Document document = ranking.get(rank);
+                scores.merge(document.getId(), 1.0 / (rrfK + rank + 1), Double::sum);
+                documents.putIfAbsent(document.getId(), document);
+            }
+        }
+
+        List<Document> fused = new ArrayList<>(documents.values());
+        fused.sort((a, b) -> Double.compare(scores.get(b.getId()), scores.get(a.getId())));
+        List<Document> result = fused.subList(0, Math.min(topK, fused.size()));
+        for (Document document : result) {
+            document.getMetadata().put(METADATA_RRF_SCORE, scores.get(document.getId()));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.malog.hxxxi.dev.tech.domain.retrieval.service;
+
+import org.springframework.ai.document.Document;
+
+import java.util.List;
+
+/**
+ * 全文检索接口
+ * 与向量检索作用于同一批切片，按关键词相关度排序返回
+ */
+public interface ILexicalRetriever {
+
+    /**
+     * 在知识库内按关键词检索
+     *
+     * @param ragTag 知识库标签
+     * @param query  查询内容
+     * @param topK   返回数量
+     * @return 按相关度降序的切片
+     */
+    List<Document> lexicalSearch(String ragTag, String query, int topK);
+
+}
@@ -0,0 +1,101 @@
+package com.malog.hxxxi.dev.tech.domain.retrieval.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * @Auth : Malog
+ * @Desc : 全文检索分词。英文/代码标识符整体保留并按驼峰、下划线再拆分（OllamaChatClient -> ollamachatclient ollama chat client），
+ *         中文按二元组切分。入库与查询使用同一套分词，保证 BM25 与 tsvector 两种实现的结果一致。
+ * @Time : 2026/10/19 17:30
+ */
+public final class LexicalTokenizer {
+
+    /** 超长的标识符一般是 hash、base64 等无检索价值的内容 */
+    private static final int MAX_WORD_LENGTH = 64;
+
+    private LexicalTokenizer() {
+    }
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (null == text) return tokens;
+
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            int start = i;
+            if (isWordChar(c)) {
+                while (i < n && isWordChar(text.charAt(i))) i++;
+                addWord(text.substring(start, i), tokens);
+            } else if (isHan(c)) {
+                while (i < n && isHan(text.charAt(i))) i++;
+                addHan(text, start, i, tokens);
+            } else {
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static void addWord(String word, List<String> tokens) {
+        if (word.length() > MAX_WORD_LENGTH) return;
+        String lower = word.toLowerCase(Locale.ROOT);
+        if (lower.length() > 1 || Character.isDigit(lower.charAt(0))) {
+            tokens.add(lower);
+        }
+
+        // 驼峰、下划线、字母数字边界拆分
+        List<String> parts = new ArrayList<>();
+        StringBuilder part = new StringBuilder();
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == '_' || (!part.isEmpty() && isBoundary(word, i))) {
+                flush(part, parts);
+            }
+            if (c != '_') part.append(c);
+        }
+        flush(part, parts);
+        if (parts.size() < 2) return;
+        for (String p : parts) {
+            if (p.length() > 1) tokens.add(p);
+        }
+    }
+
+    private static void flush(StringBuilder part, List<String> parts) {
+        if (part.isEmpty()) return;
+        parts.add(part.toString().toLowerCase(Locale.ROOT));
+        part.setLength(0);
+    }
+
+    private static boolean isBoundary(String word, int i) {
+        char prev = word.charAt(i - 1);
+        char curr = word.charAt(i);
+        if (Character.isLowerCase(prev) && Character.isUpperCase(curr)) return true;
+        if (Character.isDigit(prev) != Character.isDigit(curr)) return true;
+        // HTTPServer -> HTTP Server
+        return i + 1 < word.length() && Character.isUpperCase(prev) && Character.isUpperCase(curr)
+                && Character.isLowerCase(word.charAt(i + 1));
+    }
+
+    private static void addHan(String text, int start, int end, List<String> tokens) {
+        if (end - start == 1) {
+            tokens.add(text.substring(start, end));
+            return;
+        }
+        for (int i = start; i < end - 1; i++) {
+            tokens.add(text.substring(i, i + 2));
+        }
+    }
+
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isHan(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+}
@@ -0,0 +1,116 @@
+package com.malog.hxxxi.dev.tech.domain.retrieval.service;
+
+import com.alibaba.fastjson.JSON;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+
+/**
+ * @Auth : Malog
+ * @Desc : 基于 Postgres tsvector 的全文检索，与 pgvector 共用按知识库标签分区的向量表。
+ *         lexemes 列在写入时由 LexicalTokenizer 分词后直接构造 tsvector 字面量，不依赖数据库的分词配置（中文、代码标识符）。
+ * @Time : 2026/10/19 18:20
+ */
+@Slf4j
+public class PgFullTextRetriever implements ILexicalRetriever {
+
+    public static final String LEXEMES_COLUMN = "lexemes";
+
+    /** tsvector 的位置上限 */
+    private static final int MAX_POSITION = 16383;
+    /** 单个词保留的最大位置数 */
+    private static final int MAX_POSITIONS_PER_LEXEME = 256;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String tableName;
+
+    public PgFullTextRetriever(JdbcTemplate jdbcTemplate, String tableName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+    }
+
+    /**
+     * 补充 lexemes 列与 GIN 索引，表由 PgVectorPartitionManager 创建，分区表上的索引自动作用于各分区
+     */
+    public void initSchema() {
+        jdbcTemplate.execute("ALTER TABLE " + tableName + " ADD COLUMN IF NOT EXISTS " + LEXEMES_COLUMN + " tsvector");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + tableName + "_" + LEXEMES_COLUMN + "_idx ON " + tableName + " USING gin (" + LEXEMES_COLUMN + ")");
+    }
+
+    /**
+     * 为已有数据补齐 lexemes
+     *
+     * @param batchSize 每批行数
+     * @return 补齐的行数
+     */
+    public int backfill(int batchSize) {
+        int total = 0;
+        while (true) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                    "SELECT id, content FROM " + tableName + " WHERE " + LEXEMES_COLUMN + " IS NULL LIMIT ?", batchSize);
+            if (rows.isEmpty()) break;
+
+            List<Object[]> args = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                args.add(new Object[]{toTsVector((String) row.get("content")), row.get("id")});
+            }
+            jdbcTemplate.batchUpdate("UPDATE " + tableName + " SET " + LEXEMES_COLUMN + " = ?::tsvector WHERE id = ?", args);
+            total += rows.size();
+        }
+        if (total > 0) log.info("全文索引补齐完成 行数:{}", total);
+        return total;
+    }
+
+    @Override
+    public List<Document> lexicalSearch(String ragTag, String query, int topK) {
+        String tsQuery = toTsQuery(query);
+        if (tsQuery.isEmpty()) return List.of();
+
+        // ts_rank 归一化参数1：按 1 + log(文档长度) 折算，抑制长切片
+        String sql = "SELECT id, content, metadata, ts_rank(" + LEXEMES_COLUMN + ", q, 1) AS rank FROM " + tableName + ", CAST(? AS tsquery) q"
+                + " WHERE knowledge = ? AND " + LEXEMES_COLUMN + " @@ q ORDER BY rank DESC LIMIT ?";
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> metadata = JSON.parseObject(rs.getString("metadata"), Map.class);
+            metadata = null == metadata ? new HashMap<>() : new HashMap<>(metadata);
+            metadata.put("rank", rs.getFloat("rank"));
+            return new Document(rs.getString("id"), rs.getString("content"), metadata);
+        }, tsQuery, ragTag, topK);
+    }
+
+    /**
+     * 构造带位置信息的 tsvector 字面量，如 'chat':1,5 'client':2
+     */
+    public static String toTsVector(String content) {
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        List<String> tokens = LexicalTokenizer.tokenize(content);
+        for (int i = 0; i < tokens.size(); i++) {
+            List<Integer> list = positions.computeIfAbsent(tokens.get(i), key -> new ArrayList<>());
+            if (list.size() < MAX_POSITIONS_PER_LEXEME) list.add(Math.min(i + 1, MAX_POSITION));
+        }
+
+        StringBuilder tsVector = new StringBuilder();
+        positions.forEach((token, list) -> {
+            if (!tsVector.isEmpty()) tsVector.append(' ');
+            tsVector.append('\'').append(token).append("':");
+            for (int i = 0; i < list.size(); i++) {
+                tsVector.append(i == 0 ? "" : ",").append(list.get(i));
+            }
+        });
+        return tsVector.toString();
+    }
+
+    /**
+     * 查询词之间为 OR 关系，由 ts_rank 按命中数量与词频排序
+     */
+    private static String toTsQuery(String query) {
+        StringJoiner joiner = new StringJoiner(" | ");
+        for (String token : new LinkedHashSet<>(LexicalTokenizer.tokenize(query))) {
+            joiner.add("'" + token + "'");
+        }
+        return joiner.toString();
+    }
+
+}
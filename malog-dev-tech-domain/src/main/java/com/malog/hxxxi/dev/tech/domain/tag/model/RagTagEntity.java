@@ -0,0 +1,32 @@
+package com.malog.hxxxi.dev.tech.domain.tag.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @Auth : Malog
+ * @Desc : 知识库标签及其统计，存储在 Redis hash 中，各节点本地保留一份近端缓存
+ * @Time : 2026/10/21 16:20
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RagTagEntity {
+
+    /** 知识库标签 */
+    private String ragTag;
+    /** 切片数，累计写入行数减去增量索引删除的行数 */
+    private long chunkCount;
+    /** 已入库的原始文件字节数 */
+    private long bytes;
+    /** 创建时间 */
+    private long createTime;
+    /** 最近一次入库时间 */
+    private long lastIngestTime;
+    /** 最近一次入库使用的 embedding 模型 */
+    private String embeddingModel;
+
+}
@@ -0,0 +1,194 @@
+package com.malog.hxxxi.dev.tech.domain.tag.service;
+
+import com.malog.hxxxi.dev.tech.domain.tag.model.RagTagEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RBucket;
+import org.redisson.api.RList;
+import org.redisson.api.RLock;
+import org.redisson.api.RMap;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.StatusListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Auth : Malog
+ * @Desc : 知识库标签注册表。标签及统计保存在 Redis hash 中，注册使用 HSETNX，统计更新按标签加锁，集群内并发入库时结果一致；
+ *         每个节点在本地保留近端缓存，写入后通过 Redis topic 通知各节点重新加载该标签，查询标签不访问 Redis。
+ *         topic 重新订阅（如断线重连）时全量重新加载，避免遗漏期间的变更。
+ * @Time : 2026/10/21 16:30
+ */
+@Slf4j
+public class RagTagRegistry {
+
+    private static final String REGISTRY_KEY = "ragTagRegistry";
+    private static final String LOCK_KEY_PREFIX = "ragTagRegistryLock:";
+    private static final String INVALIDATE_TOPIC = "ragTagRegistryInvalidate";
+    /** 旧版使用的标签列表，迁移后保留，供回滚到旧版时使用 */
+    private static final String LEGACY_LIST_KEY = "ragTag";
+    /** 旧版标签列表已迁移的标记 */
+    private static final String LEGACY_MIGRATED_KEY = "ragTagRegistryLegacyMigrated";
+
+    private final RedissonClient redissonClient;
+    private final RMap<String, RagTagEntity> registry;
+    private final RTopic invalidateTopic;
+    private final String embeddingModel;
+
+    /** 近端缓存 */
+    private final Map<String, RagTagEntity> local = new ConcurrentHashMap<>();
+
+    public RagTagRegistry(RedissonClient redissonClient, String embeddingModel) {
+        this.redissonClient = redissonClient;
+        this.embeddingModel = embeddingModel;
+        this.registry = redissonClient.getMap(REGISTRY_KEY);
+        this.invalidateTopic = redissonClient.getTopic(INVALIDATE_TOPIC);
+        this.invalidateTopic.addListener(String.class, (channel, ragTag) -> reload(ragTag));
+        this.invalidateTopic.addListener(new StatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                reloadAll();
+            }
+
+            @Override
+            public void onUnsubscribe(String channel) {
+            }
+        });
+        migrateLegacy();
+        reloadAll();
+    }
+
+    /**
+     * 全部标签，按创建时间排序
+     */
+    public List<String> tags() {
+        return entities().stream().map(RagTagEntity::getRagTag).toList();
+    }
+
+    /**
+     * 全部标签及统计，按创建时间排序
+     */
+    public List<RagTagEntity> entities() {
+        List<RagTagEntity> entities = new ArrayList<>(local.values());
+        entities.sort(Comparator.comparingLong(RagTagEntity::getCreateTime).thenComparing(RagTagEntity::getRagTag));
+        return entities;
+    }
+
+    /**
+     * 标签是否存在，只查询近端缓存
+     */
+    public boolean exists(String ragTag) {
+        return null != ragTag && local.containsKey(ragTag);
+    }
+
+    public RagTagEntity get(String ragTag) {
+        return local.get(ragTag);
+    }
+
+    /**
+     * 注册标签，已存在时不做任何修改
+     *
+     * @return 是否新注册
+     */
+    public boolean register(String ragTag) {
+        if (exists(ragTag)) return false;
+        long now = System.currentTimeMillis();
+        boolean created = registry.fastPutIfAbsent(ragTag, RagTagEntity.builder()
+                .ragTag(ragTag)
+                .createTime(now)
+                .embeddingModel(embeddingModel)
+                .build());
+        if (created) {
+            publish(ragTag);
+        } else {
+            reload(ragTag);
+        }
+        return created;
+    }
+
+    /**
+     * 记录一次入库。标签在提交入库时注册，此时不存在说明入库期间已被删除，不再更新，避免删除后又被加回
+     *
+     * @param ragTag       知识库标签
+     * @param chunkDelta   切片数变化：写入行数减去删除行数
+     * @param bytesDelta   入库的原始文件字节数
+     */
+    public void recordIngest(String ragTag, long chunkDelta, long bytesDelta) {
+        RLock lock = redissonClient.getLock(LOCK_KEY_PREFIX + ragTag);
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            RagTagEntity entity = registry.get(ragTag);
+            if (null == entity) return;
+            entity.setChunkCount(Math.max(0, entity.getChunkCount() + chunkDelta));
+            entity.setBytes(entity.getBytes() + bytesDelta);
+            entity.setLastIngestTime(now);
+            entity.setEmbeddingModel(embeddingModel);
+            registry.fastPut(ragTag, entity);
+        } finally {
+            lock.unlock();
+        }
+        publish(ragTag);
+    }
+
+    /**
+     * 删除标签，与统计更新持同一把锁，避免并发的 recordIngest 读到旧值后又写回
+     */
+    public void remove(String ragTag) {
+        RLock lock = redissonClient.getLock(LOCK_KEY_PREFIX + ragTag);
+        lock.lock();
+        try {
+            registry.fastRemove(ragTag);
+        } finally {
+            lock.unlock();
+        }
+        publish(ragTag);
+    }
+
+    private void publish(String ragTag) {
+        // 本节点立即生效，其他节点收到通知后重新加载
+        reload(ragTag);
+        invalidateTopic.publish(ragTag);
+    }
+
+    private void reload(String ragTag) {
+        RagTagEntity entity = registry.get(ragTag);
+        if (null == entity) {
+            local.remove(ragTag);
+        } else {
+            local.put(ragTag, entity);
+        }
+    }
+
+    private void reloadAll() {
+        Map<String, RagTagEntity> all = registry.readAllMap();
+        local.putAll(all);
+        local.keySet().retainAll(all.keySet());
+        log.info("知识库标签已加载 数量:{}", all.size());
+    }
+
+    /**
+     * 旧版标签列表并入注册表，已存在的标签不覆盖。迁移完成后写入标记，不再重复迁移；
+     * 旧列表暂不删除，滚动升级期间旧版节点仍在读取，待旧版全部下线后在后续版本中删除
+     */
+    private void migrateLegacy() {
+        RBucket<Boolean> marker = redissonClient.getBucket(LEGACY_MIGRATED_KEY);
+        if (marker.isExists()) return;
+        RList<String> legacy = redissonClient.getList(LEGACY_LIST_KEY);
+        if (!legacy.isExists()) return;
+        long now = System.currentTimeMillis();
+        int migrated = 0;
+        for (String ragTag : legacy.readAll()) {
+            if (registry.fastPutIfAbsent(ragTag, RagTagEntity.builder().ragTag(ragTag).createTime(now + migrated).build())) {
+                migrated++;
+            }
+        }
+        marker.set(true);
+        log.info("旧版知识库标签列表已迁移 数量:{}", migrated);
+    }
+
+}
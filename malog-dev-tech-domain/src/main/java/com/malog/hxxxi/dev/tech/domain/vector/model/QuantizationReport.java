@@ -0,0 +1,57 @@
+package com.malog.hxxxi.dev.tech.domain.vector.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : 标签下各量化方式的召回率与检索延迟对比，以不走索引的精确检索结果为基准
+ * @Time : 2026/10/22 10:40
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QuantizationReport {
+
+    /** 知识库标签 */
+    private String ragTag;
+    /** 当前使用的量化方式 */
+    private String quantization;
+    /** 抽样查询数 */
+    private int samples;
+    /** 每次查询返回的条数 */
+    private int topK;
+    /** 量化检索的候选数 */
+    private int candidates;
+    /** 精确检索的平均耗时（单位：毫秒） */
+    private double exactMeanMillis;
+    /** 各量化方式的结果 */
+    private List<Entry> entries;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+
+        /** 量化方式 */
+        private String quantization;
+        /** 分区上是否存在该方式的 ANN 索引，不存在时为顺序扫描，耗时仅供参考 */
+        private boolean indexed;
+        /** 索引大小（单位：字节） */
+        private long indexBytes;
+        /** 与精确检索结果相比的 recall@topK */
+        private double recall;
+        /** 平均耗时（单位：毫秒） */
+        private double meanMillis;
+        /** p95 耗时（单位：毫秒） */
+        private double p95Millis;
+
+    }
+
+}
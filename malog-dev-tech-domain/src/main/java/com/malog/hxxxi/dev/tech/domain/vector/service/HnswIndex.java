@@ -0,0 +1,604 @@
+package com.malog.hxxxi.dev.tech.domain.vector.service;
+
+import com.alibaba.fastjson.JSON;
+import org.springframework.ai.document.Document;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * @Auth : Malog
+ * @Desc : 单个知识库分区的 HNSW 图索引。向量归一化后连续存放在一个 float[] 中，相似度即内积（余弦）；
+ *         邻接表使用 int[]，下标0存放邻居数量。删除采用墓碑标记，节点仍参与图导航但不出现在结果中；
+ *         检索宽度按墓碑占比放大，墓碑较多时由 compact 重建图回收空间。
+ *         快照按顺序写出，加载时通过 mmap 分段映射读取。
+ * @Time : 2026/10/19 14:20
+ */
+public class HnswIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x484E5357;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int MAX_LEVEL = 16;
+
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private float[] vectors;
+    private int[] levels;
+    private int[][][] links;
+    private Document[] documents;
+    private final BitSet deleted = new BitSet();
+    private final Map<String, Integer> idToNode = new HashMap<>();
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    /** 修改次数，压缩期间有写入时放弃本次压缩 */
+    private long modCount;
+
+    public HnswIndex(int dimensions, int m, int efConstruction, int initialCapacity) {
+        this.dimensions = dimensions;
+        this.m = Math.max(2, m);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelMultiplier = 1 / Math.log(this.m);
+        int capacity = Math.max(16, initialCapacity);
+        this.vectors = new float[capacity * dimensions];
+        this.levels = new int[capacity];
+        this.links = new int[capacity][][];
+        this.documents = new Document[capacity];
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * 存活（未删除）的节点数
+     */
+    public int liveCount() {
+        lock.readLock().lock();
+        try {
+            return idToNode.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 墓碑节点占全部节点的比例
+     */
+    public double deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return 0 == size ? 0 : (double) (size - idToNode.size()) / size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 插入向量，相同 id 已存在时先标记旧节点删除
+     *
+     * @param document 文档（不含 embedding）
+     * @param vector   已归一化的向量
+     */
+    public void add(Document document, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("向量维度不匹配，期望:" + dimensions + " 实际:" + vector.length);
+        }
+        lock.writeLock().lock();
+        try {
+            modCount++;
+            Integer existing = idToNode.remove(document.getId());
+            if (null != existing) deleted.set(existing);
+
+            ensureCapacity(size + 1);
+            int node = size++;
+            System.arraycopy(vector, 0, vectors, node * dimensions, dimensions);
+            documents[node] = document;
+            idToNode.put(document.getId(), node);
+
+            int level = randomLevel();
+            levels[node] = level;
+            links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[node][l] = new int[(l == 0 ? maxM0 : m) + 1];
+            }
+
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return;
+            }
+
+            int offset = node * dimensions;
+            int ep = entryPoint;
+            for (int l = maxLevel; l > level; l--) {
+                ep = greedyClosest(vectors, offset, ep, l);
+            }
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                List<Scored> candidates = searchLayer(vectors, offset, ep, efConstruction, l);
+                int[] selected = selectNeighbors(candidates, m);
+                for (int neighbor : selected) {
+                    connect(node, neighbor, l);
+                    connect(neighbor, node, l);
+                }
+                ep = candidates.get(0).node();
+            }
+
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 按 id 删除
+     */
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = idToNode.remove(id);
+            if (null == node) return false;
+            deleted.set(node);
+            modCount++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除满足条件的文档
+     */
+    public int removeIf(Predicate<Document> predicate) {
+        lock.writeLock().lock();
+        try {
+            int removed = 0;
+            for (int node = 0; node < size; node++) {
+                if (deleted.get(node) || !predicate.test(documents[node])) continue;
+                deleted.set(node);
+                idToNode.remove(documents[node].getId());
+                removed++;
+            }
+            if (removed > 0) modCount++;
+            return removed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 只用存活节点重建图，回收墓碑占用的向量、邻接表与文档。在读锁下复制存活节点，无锁重建，
+     * 最后在写锁下替换；重建期间有写入时放弃本次压缩，由下次重试，检索与写入不会被重建阻塞
+     *
+     * @return 是否完成压缩
+     */
+    public boolean compact() {
+        long version;
+        float[] liveVectors;
+        Document[] liveDocuments;
+        lock.readLock().lock();
+        try {
+            if (idToNode.size() == size) return false;
+            version = modCount;
+            liveVectors = new float[idToNode.size() * dimensions];
+            liveDocuments = new Document[idToNode.size()];
+            int live = 0;
+            for (int node = 0; node < size; node++) {
+                if (deleted.get(node)) continue;
+                System.arraycopy(vectors, node * dimensions, liveVectors, live * dimensions, dimensions);
+                liveDocuments[live++] = documents[node];
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        HnswIndex rebuilt = new HnswIndex(dimensions, m, efConstruction, liveDocuments.length);
+        for (int i = 0; i < liveDocuments.length; i++) {
+            rebuilt.add(liveDocuments[i], Arrays.copyOfRange(liveVectors, i * dimensions, (i + 1) * dimensions));
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (modCount != version) return false;
+            vectors = rebuilt.vectors;
+            levels = rebuilt.levels;
+            links = rebuilt.links;
+            documents = rebuilt.documents;
+            deleted.clear();
+            idToNode.clear();
+            idToNode.putAll(rebuilt.idToNode);
+            size = rebuilt.size;
+            entryPoint = rebuilt.entryPoint;
+            maxLevel = rebuilt.maxLevel;
+            modCount++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 遍历未删除的文档
+     */
+    public void forEachLive(Consumer<Document> consumer) {
+        lock.readLock().lock();
+        try {
+            for (int node = 0; node < size; node++) {
+                if (!deleted.get(node)) consumer.accept(documents[node]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 近似 topK 检索
+     *
+     * @param query  已归一化的查询向量
+     * @param topK   返回数量
+     * @param ef     检索宽度
+     * @param filter 元数据过滤条件
+     * @return 按相似度降序的结果
+     */
+    public List<Hit> search(float[] query, int topK, int ef, Predicate<Document> filter) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || query.length != dimensions) return List.of();
+
+            int ep = entryPoint;
+            for (int l = maxLevel; l > 0; l--) {
+                ep = greedyClosest(query, 0, ep, l);
+            }
+            // 墓碑仍占用候选名额，按存活比例放大检索宽度，避免墓碑较多时返回不足 topK
+            int width = Math.max(ef, topK);
+            int live = idToNode.size();
+            if (live < size) {
+                width = (int) Math.min(size, (long) width * size / Math.max(1, live));
+            }
+            List<Scored> candidates = searchLayer(query, 0, ep, width, 0);
+
+            List<Hit> hits = new ArrayList<>(topK);
+            for (Scored candidate : candidates) {
+                if (hits.size() >= topK) break;
+                if (deleted.get(candidate.node())) continue;
+                Document document = documents[candidate.node()];
+                if (!filter.test(document)) continue;
+                hits.add(new Hit(document, candidate.score()));
+            }
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 贪心查找当前层中与查询最相近的节点
+     */
+    private int greedyClosest(float[] query, int queryOffset, int ep, int level) {
+        float best = similarity(query, queryOffset, ep);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbors = links[ep][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float score = similarity(query, queryOffset, neighbors[i]);
+                if (score > best) {
+                    best = score;
+                    ep = neighbors[i];
+                    changed = true;
+                }
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * 在指定层做宽度为 ef 的最佳优先搜索，返回按相似度降序的候选
+     */
+    private List<Scored> searchLayer(float[] query, int queryOffset, int ep, int ef, int level) {
+        PriorityQueue<Scored> candidates = new PriorityQueue<>((a, b) -> Float.compare(b.score(), a.score()));
+        PriorityQueue<Scored> results = new PriorityQueue<>(Comparator.comparingDouble(Scored::score));
+        BitSet visited = new BitSet(size);
+
+        Scored start = new Scored(ep, similarity(query, queryOffset, ep));
+        candidates.add(start);
+        results.add(start);
+        visited.set(ep);
+
+        while (!candidates.isEmpty()) {
+            Scored current = candidates.poll();
+            if (results.size() >= ef && current.score() < results.peek().score()) break;
+
+            int[] neighbors = links[current.node()][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) continue;
+                visited.set(neighbor);
+
+                float score = similarity(query, queryOffset, neighbor);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Scored scored = new Scored(neighbor, score);
+                    candidates.add(scored);
+                    results.add(scored);
+                    if (results.size() > ef) results.poll();
+                }
+            }
+        }
+
+        List<Scored> sorted = new ArrayList<>(results);
+        sorted.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return sorted;
+    }
+
+    /**
+     * 启发式邻居选择：候选与已选邻居的相似度高于与目标的相似度时跳过，保证邻居分布在不同方向；不足时用被跳过的候选补齐
+     */
+    private int[] selectNeighbors(List<Scored> candidates, int max) {
+        List<Integer> selected = new ArrayList<>(max);
+        List<Integer> skipped = new ArrayList<>();
+        for (Scored candidate : candidates) {
+            if (selected.size() >= max) break;
+            boolean diverse = true;
+            for (int chosen : selected) {
+                if (similarity(vectors, candidate.node() * dimensions, chosen) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) selected.add(candidate.node());
+            else skipped.add(candidate.node());
+        }
+        for (int i = 0; i < skipped.size() && selected.size() < max; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] neighbors = links[from][level];
+        int count = neighbors[0];
+        if (count < neighbors.length - 1) {
+            neighbors[++count] = to;
+            neighbors[0] = count;
+            return;
+        }
+
+        // 邻居已满，在原邻居与新节点中重新选择
+        int offset = from * dimensions;
+        List<Scored> candidates = new ArrayList<>(count + 1);
+        for (int i = 1; i <= count; i++) {
+            candidates.add(new Scored(neighbors[i], similarity(vectors, offset, neighbors[i])));
+        }
+        candidates.add(new Scored(to, similarity(vectors, offset, to)));
+        candidates.sort((a, b) -> Float.compare(b.score(), a.score()));
+
+        int[] selected = selectNeighbors(candidates, neighbors.length - 1);
+        neighbors[0] = selected.length;
+        System.arraycopy(selected, 0, neighbors, 1, selected.length);
+    }
+
+    private float similarity(float[] query, int queryOffset, int node) {
+        int offset = node * dimensions;
+        float sum = 0;
+        for (int i = 0; i < dimensions; i++) {
+            sum += query[queryOffset + i] * vectors[offset + i];
+        }
+        return sum;
+    }
+
+    private int randomLevel() {
+        double r = 1 - ThreadLocalRandom.current().nextDouble();
+        return Math.min(MAX_LEVEL, (int) Math.floor(-Math.log(r) * levelMultiplier));
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= levels.length) return;
+        int capacity = Math.max(required, levels.length + (levels.length >> 1));
+        vectors = Arrays.copyOf(vectors, capacity * dimensions);
+        levels = Arrays.copyOf(levels, capacity);
+        links = Arrays.copyOf(links, capacity);
+        documents = Arrays.copyOf(documents, capacity);
+    }
+
+    /**
+     * 写出快照，先写临时文件再原子替换
+     */
+    public void save(Path file) throws IOException {
+        lock.readLock().lock();
+        try {
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 20))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(dimensions);
+                out.writeInt(m);
+                out.writeInt(efConstruction);
+                out.writeInt(size);
+                out.writeInt(entryPoint);
+                out.writeInt(maxLevel);
+
+                for (int i = 0; i < size * dimensions; i++) {
+                    out.writeFloat(vectors[i]);
+                }
+                for (int node = 0; node < size; node++) {
+                    out.writeInt(levels[node]);
+                    for (int l = 0; l <= levels[node]; l++) {
+                        int[] neighbors = links[node][l];
+                        out.writeInt(neighbors[0]);
+                        for (int i = 1; i <= neighbors[0]; i++) {
+                            out.writeInt(neighbors[i]);
+                        }
+                    }
+                }
+                for (int node = 0; node < size; node++) {
+                    Document document = documents[node];
+                    out.writeBoolean(deleted.get(node));
+                    writeString(out, document.getId());
+                    writeString(out, document.getContent());
+                    writeString(out, JSON.toJSONString(document.getMetadata()));
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 通过 mmap 加载快照
+     */
+    @SuppressWarnings("unchecked")
+    public static HnswIndex load(Path file) throws IOException {
+        try (MappedReader in = new MappedReader(file)) {
+            if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("不支持的 HNSW 快照格式:" + file);
+            }
+            int dimensions = in.getInt();
+            int m = in.getInt();
+            int efConstruction = in.getInt();
+            int size = in.getInt();
+
+            HnswIndex index = new HnswIndex(dimensions, m, efConstruction, size);
+            index.entryPoint = in.getInt();
+            index.maxLevel = in.getInt();
+            index.size = size;
+
+            in.getFloats(index.vectors, size * dimensions);
+            for (int node = 0; node < size; node++) {
+                int level = in.getInt();
+                index.levels[node] = level;
+                index.links[node] = new int[level + 1][];
+                for (int l = 0; l <= level; l++) {
+                    int[] neighbors = new int[(l == 0 ? index.maxM0 : index.m) + 1];
+                    neighbors[0] = in.getInt();
+                    for (int i = 1; i <= neighbors[0]; i++) {
+                        neighbors[i] = in.getInt();
+                    }
+                    index.links[node][l] = neighbors;
+                }
+            }
+            for (int node = 0; node < size; node++) {
+                boolean isDeleted = in.getBoolean();
+                String id = in.getString();
+                String content = in.getString();
+                Map<String, Object> metadata = JSON.parseObject(in.getString(), Map.class);
+                index.documents[node] = new Document(id, content, metadata);
+                if (isDeleted) {
+                    index.deleted.set(node);
+                } else {
+                    index.idToNode.put(id, node);
+                }
+            }
+            return index;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private record Scored(int node, float score) {
+    }
+
+    /**
+     * 检索结果
+     */
+    public record Hit(Document document, float score) {
+    }
+
+    /**
+     * 分段映射读取快照文件，单段不超过 256MB，读取跨段时在当前位置重新映射
+     */
+    private static class MappedReader implements Closeable {
+
+        private static final long WINDOW = 256L << 20;
+
+        private final FileChannel channel;
+        private final long fileSize;
+        private long windowStart;
+        private MappedByteBuffer buffer;
+
+        MappedReader(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.fileSize = channel.size();
+            remap(0);
+        }
+
+        int getInt() throws IOException {
+            ensure(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        boolean getBoolean() throws IOException {
+            ensure(1);
+            return buffer.get() != 0;
+        }
+
+        void getFloats(float[] target, int length) throws IOException {
+            int offset = 0;
+            while (offset < length) {
+                ensure(Float.BYTES);
+                int n = Math.min(length - offset, buffer.remaining() / Float.BYTES);
+                buffer.asFloatBuffer().get(target, offset, n);
+                buffer.position(buffer.position() + n * Float.BYTES);
+                offset += n;
+            }
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                ensure(1);
+                int n = Math.min(length - offset, buffer.remaining());
+                buffer.get(bytes, offset, n);
+                offset += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) return;
+            long position = windowStart + buffer.position();
+            if (position + bytes > fileSize) {
+                throw new EOFException("HNSW 快照文件不完整");
+            }
+            remap(position);
+        }
+
+        private void remap(long position) throws IOException {
+            windowStart = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, fileSize - position));
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+    }
+
+}
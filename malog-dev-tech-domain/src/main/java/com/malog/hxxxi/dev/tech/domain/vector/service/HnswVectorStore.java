@@ -0,0 +1,349 @@
+package com.malog.hxxxi.dev.tech.domain.vector.service;
+
+import com.malog.hxxxi.dev.tech.domain.ingest.service.IVectorWriter;
+import com.malog.hxxxi.dev.tech.domain.retrieval.service.Bm25Index;
+import com.malog.hxxxi.dev.tech.domain.retrieval.service.ILexicalRetriever;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * @Auth : Malog
+ * @Desc : 进程内 HNSW 向量存储，单机部署时替代 pgvector，检索不再经过数据库往返。
+ *         按 knowledge 标签分区，每个分区一张独立的 HNSW 图，检索带 knowledge 过滤时只查对应分区。
+ *         分区定期及关闭时写出快照，启动时通过 mmap 加载，重启无需重新向量化。
+ *         每个分区同时维护一份 BM25 倒排索引供混合检索使用，加载快照时由文档重建。
+ *         删除与覆盖写入只留下墓碑，墓碑占比超过阈值的分区在快照周期内压缩，回收内存并缩小快照。
+ * @Time : 2026/10/19 15:10
+ */
+@Slf4j
+public class HnswVectorStore implements VectorStore, IVectorWriter, ILexicalRetriever {
+
+    public static final String METADATA_KNOWLEDGE = KnowledgeFilters.METADATA_KNOWLEDGE;
+    public static final String METADATA_DISTANCE = "distance";
+
+    private static final String SNAPSHOT_SUFFIX = ".hnsw";
+    /** 未设置 knowledge 的文档所在分区 */
+    private static final String DEFAULT_PARTITION = "";
+
+    private final EmbeddingClient embeddingClient;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    /** 快照目录，为 null 时不持久化 */
+    private final Path snapshotDir;
+    /** 墓碑占比超过该值时压缩分区，0 表示不压缩 */
+    private final double compactDeletedRatio;
+
+    private final Map<String, HnswIndex> partitions = new ConcurrentHashMap<>();
+    private final Map<String, Bm25Index> lexicalPartitions = new ConcurrentHashMap<>();
+    /** 快照后有变更的分区 */
+    private final Set<String> dirtyPartitions = ConcurrentHashMap.newKeySet();
+
+    public HnswVectorStore(EmbeddingClient embeddingClient, int m, int efConstruction, int efSearch, Path snapshotDir,
+                           double compactDeletedRatio) {
+        this.embeddingClient = embeddingClient;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.snapshotDir = snapshotDir;
+        this.compactDeletedRatio = compactDeletedRatio;
+        loadSnapshots();
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        List<List<Double>> embeddings = embeddingClient.embed(documents.stream().map(Document::getContent).toList());
+        for (int i = 0; i < documents.size(); i++) {
+            documents.get(i).setEmbedding(embeddings.get(i));
+        }
+        write(documents);
+    }
+
+    @Override
+    public int write(List<Document> documents) {
+        for (Document document : documents) {
+            String partition = partitionOf(document.getMetadata());
+            float[] vector = normalize(document.getEmbedding());
+            HnswIndex index = partitions.computeIfAbsent(partition, key -> new HnswIndex(vector.length, m, efConstruction, 1024));
+            // 图中只保留内容与元数据，向量单独存放在连续数组中
+            Document stored = new Document(document.getId(), document.getContent(), new HashMap<>(document.getMetadata()));
+            index.add(stored, vector);
+            lexicalPartitions.computeIfAbsent(partition, key -> new Bm25Index()).add(stored);
+            dirtyPartitions.add(partition);
+        }
+        return documents.size();
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        boolean removed = false;
+        for (Map.Entry<String, HnswIndex> entry : partitions.entrySet()) {
+            Bm25Index lexicalIndex = lexicalPartitions.get(entry.getKey());
+            for (String id : idList) {
+                if (entry.getValue().remove(id)) {
+                    removed = true;
+                    dirtyPartitions.add(entry.getKey());
+                    if (null != lexicalIndex) lexicalIndex.remove(id);
+                }
+            }
+        }
+        return Optional.of(removed);
+    }
+
+    @Override
+    public int deleteByMetadata(String ragTag, Map<String, String> metadataEqual, String inKey, Collection<String> inValues) {
+        HnswIndex index = partitions.get(ragTag);
+        if (null == index || inValues.isEmpty()) return 0;
+
+        Set<String> values = new HashSet<>(inValues);
+        Predicate<Document> predicate = document -> {
+            Map<String, Object> metadata = document.getMetadata();
+            for (Map.Entry<String, String> entry : metadataEqual.entrySet()) {
+                if (!entry.getValue().equals(String.valueOf(metadata.get(entry.getKey())))) return false;
+            }
+            return values.contains(String.valueOf(metadata.get(inKey)));
+        };
+        int removed = index.removeIf(predicate);
+        Bm25Index lexicalIndex = lexicalPartitions.get(ragTag);
+        if (null != lexicalIndex) lexicalIndex.removeIf(predicate);
+        if (removed > 0) dirtyPartitions.add(ragTag);
+        return removed;
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = normalize(embeddingClient.embed(request.getQuery()));
+        Filter.Expression expression = request.getFilterExpression();
+        Predicate<Document> filter = null == expression ? document -> true : document -> matches(expression, document.getMetadata());
+
+        // 过滤条件中带 knowledge 等值约束时只检索对应分区
+        String knowledge = null == expression ? null : KnowledgeFilters.knowledgeOf(expression);
+        Collection<HnswIndex> targets;
+        if (null != knowledge) {
+            HnswIndex index = partitions.get(knowledge);
+            targets = null == index ? List.of() : List.of(index);
+        } else {
+            targets = partitions.values();
+        }
+
+        int topK = request.getTopK();
+        int ef = Math.max(efSearch, topK);
+        List<HnswIndex.Hit> hits = new ArrayList<>();
+        for (HnswIndex index : targets) {
+            hits.addAll(index.search(query, topK, ef, filter));
+        }
+        hits.sort((a, b) -> Float.compare(b.score(), a.score()));
+
+        List<Document> documents = new ArrayList<>(Math.min(topK, hits.size()));
+        for (HnswIndex.Hit hit : hits) {
+            if (documents.size() >= topK || hit.score() < request.getSimilarityThreshold()) break;
+            Map<String, Object> metadata = new HashMap<>(hit.document().getMetadata());
+            metadata.put(METADATA_DISTANCE, 1 - hit.score());
+            documents.add(new Document(hit.document().getId(), hit.document().getContent(), metadata));
+        }
+        return documents;
+    }
+
+    @Override
+    public List<Document> lexicalSearch(String ragTag, String query, int topK) {
+        Bm25Index lexicalIndex = lexicalPartitions.get(ragTag);
+        if (null == lexicalIndex) return List.of();
+
+        List<Document> documents = new ArrayList<>();
+        for (Bm25Index.Hit hit : lexicalIndex.search(query, topK)) {
+            Map<String, Object> metadata = new HashMap<>(hit.document().getMetadata());
+            metadata.put("rank", hit.score());
+            documents.add(new Document(hit.document().getId(), hit.document().getContent(), metadata));
+        }
+        return documents;
+    }
+
+    @Override
+    public void dropRagTag(String ragTag) {
+        partitions.remove(ragTag);
+        lexicalPartitions.remove(ragTag);
+        dirtyPartitions.remove(ragTag);
+        if (null == snapshotDir) return;
+        try {
+            Files.deleteIfExists(snapshotFile(ragTag));
+        } catch (IOException e) {
+            log.warn("删除 HNSW 快照失败 ragTag:{}", ragTag, e);
+        }
+    }
+
+    /**
+     * 压缩墓碑过多的分区后，将有变更的分区写出快照
+     */
+    public void snapshot() {
+        compact();
+        writeSnapshots();
+    }
+
+    /**
+     * 压缩墓碑占比超过阈值的分区，HNSW 图重建期间有写入时放弃，下个周期重试
+     */
+    public void compact() {
+        if (compactDeletedRatio <= 0) return;
+        for (Map.Entry<String, HnswIndex> entry : partitions.entrySet()) {
+            String partition = entry.getKey();
+            HnswIndex index = entry.getValue();
+            double ratio = index.deletedRatio();
+            if (ratio >= compactDeletedRatio) {
+                long start = System.currentTimeMillis();
+                if (index.compact()) {
+                    dirtyPartitions.add(partition);
+                    log.info("HNSW 分区已压缩 ragTag:{} 墓碑占比:{} 文档数:{} 耗时:{}ms", partition, String.format("%.2f", ratio),
+                            index.liveCount(), System.currentTimeMillis() - start);
+                } else {
+                    log.info("HNSW 分区压缩期间有写入，下次重试 ragTag:{}", partition);
+                }
+            }
+            Bm25Index lexicalIndex = lexicalPartitions.get(partition);
+            if (null != lexicalIndex && lexicalIndex.deletedRatio() >= compactDeletedRatio) {
+                lexicalIndex.compact();
+            }
+        }
+    }
+
+    /**
+     * 关闭时写出最终快照，不再压缩
+     */
+    public void close() {
+        writeSnapshots();
+    }
+
+    private void writeSnapshots() {
+        if (null == snapshotDir) return;
+        for (String partition : new ArrayList<>(dirtyPartitions)) {
+            HnswIndex index = partitions.get(partition);
+            dirtyPartitions.remove(partition);
+            if (null == index) continue;
+            try {
+                long start = System.currentTimeMillis();
+                index.save(snapshotFile(partition));
+                log.info("HNSW 快照已写出 ragTag:{} 文档数:{} 耗时:{}ms", partition, index.liveCount(), System.currentTimeMillis() - start);
+            } catch (Exception e) {
+                // 失败时保留变更标记，下次继续重试
+                dirtyPartitions.add(partition);
+                log.error("HNSW 快照写出失败 ragTag:{}", partition, e);
+            }
+        }
+    }
+
+    private void loadSnapshots() {
+        if (null == snapshotDir) return;
+        try {
+            Files.createDirectories(snapshotDir);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(snapshotDir, "*" + SNAPSHOT_SUFFIX)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    String partition = decodePartition(name.substring(0, name.length() - SNAPSHOT_SUFFIX.length()));
+                    long start = System.currentTimeMillis();
+                    HnswIndex index = HnswIndex.load(file);
+                    partitions.put(partition, index);
+                    Bm25Index lexicalIndex = new Bm25Index();
+                    index.forEachLive(lexicalIndex::add);
+                    lexicalPartitions.put(partition, lexicalIndex);
+                    log.info("HNSW 快照已加载 ragTag:{} 文档数:{} 耗时:{}ms", partition, index.liveCount(), System.currentTimeMillis() - start);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("加载 HNSW 快照失败:" + snapshotDir, e);
+        }
+    }
+
+    private Path snapshotFile(String partition) {
+        return snapshotDir.resolve(encodePartition(partition) + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * 知识库标签可能包含中文或路径字符，文件名使用 UTF-8 十六进制编码
+     */
+    private static String encodePartition(String partition) {
+        return "p" + HexFormat.of().formatHex(partition.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodePartition(String fileName) {
+        return new String(HexFormat.of().parseHex(fileName.substring(1)), StandardCharsets.UTF_8);
+    }
+
+    private static String partitionOf(Map<String, Object> metadata) {
+        Object knowledge = metadata.get(METADATA_KNOWLEDGE);
+        return null == knowledge ? DEFAULT_PARTITION : knowledge.toString();
+    }
+
+    private static boolean matches(Filter.Operand operand, Map<String, Object> metadata) {
+        if (operand instanceof Filter.Group group) {
+            return matches(group.content(), metadata);
+        }
+        Filter.Expression expression = (Filter.Expression) operand;
+        return switch (expression.type()) {
+            case AND -> matches(expression.left(), metadata) && matches(expression.right(), metadata);
+            case OR -> matches(expression.left(), metadata) || matches(expression.right(), metadata);
+            default -> {
+                Object actual = metadata.get(((Filter.Key) expression.left()).key());
+                Object expected = ((Filter.Value) expression.right()).value();
+                yield compare(expression.type(), actual, expected);
+            }
+        };
+    }
+
+    private static boolean compare(Filter.ExpressionType type, Object actual, Object expected) {
+        switch (type) {
+            case EQ:
+                return null != actual && String.valueOf(actual).equals(String.valueOf(expected));
+            case NE:
+                return null == actual || !String.valueOf(actual).equals(String.valueOf(expected));
+            case IN:
+            case NIN:
+                boolean contains = null != actual && expected instanceof Collection<?> values
+                        && values.stream().anyMatch(value -> String.valueOf(value).equals(String.valueOf(actual)));
+                return Filter.ExpressionType.IN == type ? contains : !contains;
+            case GT:
+            case GTE:
+            case LT:
+            case LTE:
+                if (!(actual instanceof Number) || !(expected instanceof Number)) return false;
+                int result = Double.compare(((Number) actual).doubleValue(), ((Number) expected).doubleValue());
+                return switch (type) {
+                    case GT -> result > 0;
+                    case GTE -> result >= 0;
+                    case LT -> result < 0;
+                    default -> result <= 0;
+                };
+            default:
+                throw new UnsupportedOperationException("不支持的过滤条件:" + type);
+        }
+    }
+
+    private static float[] normalize(List<Double> embedding) {
+        float[] vector = new float[embedding.size()];
+        double norm = 0;
+        for (int i = 0; i < vector.length; i++) {
+            double v = embedding.get(i);
+            vector[i] = (float) v;
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= (float) norm;
+            }
+        }
+        return vector;
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.malog.hxxxi.dev.tech.domain.vector.service;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+/**
+ * @Auth : Malog
+ * @Desc : 检索过滤条件中 knowledge 约束的提取，向量存储据此只检索对应标签的分区
+ * @Time : 2026/10/20 10:05
+ */
+public final class KnowledgeFilters {
+
+    public static final String METADATA_KNOWLEDGE = "knowledge";
+
+    private KnowledgeFilters() {
+    }
+
+    /**
+     * 提取过滤条件中（AND 连接的）knowledge 等值约束
+     *
+     * @return 标签，不存在时返回 null
+     */
+    public static String knowledgeOf(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return knowledgeOf(group.content());
+        }
+        if (!(operand instanceof Filter.Expression expression)) return null;
+        return switch (expression.type()) {
+            case EQ -> isKnowledgeEq(expression) ? String.valueOf(((Filter.Value) expression.right()).value()) : null;
+            case AND -> {
+                String left = knowledgeOf(expression.left());
+                yield null != left ? left : knowledgeOf(expression.right());
+            }
+            default -> null;
+        };
+    }
+
+    /**
+     * 去掉（AND 连接的）knowledge 等值约束后剩余的过滤条件，knowledge 已由分区裁剪保证
+     *
+     * @return 剩余条件，没有剩余条件时返回 null
+     */
+    public static Filter.Operand withoutKnowledge(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            Filter.Operand content = withoutKnowledge(group.content());
+            return null == content ? null : new Filter.Group((Filter.Expression) content);
+        }
+        if (!(operand instanceof Filter.Expression expression)) return operand;
+        if (Filter.ExpressionType.EQ == expression.type() && isKnowledgeEq(expression)) return null;
+        if (Filter.ExpressionType.AND != expression.type()) return expression;
+
+        Filter.Operand left = withoutKnowledge(expression.left());
+        Filter.Operand right = withoutKnowledge(expression.right());
+        if (null == left) return right;
+        if (null == right) return left;
+        return new Filter.Expression(Filter.ExpressionType.AND, left, right);
+    }
+
+    private static boolean isKnowledgeEq(Filter.Expression expression) {
+        return Filter.ExpressionType.EQ == expression.type()
+                && expression.left() instanceof Filter.Key key && METADATA_KNOWLEDGE.equals(key.key())
+                && expression.right() instanceof Filter.Value;
+    }
+
+}
@@ -0,0 +1,319 @@
+package com.malog.hxxxi.dev.tech.domain.vector.service;
+
+import com.alibaba.fastjson.JSON;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.IVectorWriter;
+import com.malog.hxxxi.dev.tech.domain.vector.model.QuantizationReport;
+import com.pgvector.PGvector;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingClient;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.converter.PgVectorFilterExpressionConverter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+
+/**
+ * @Auth : Malog
+ * @Desc : 按知识库标签分区的 pgvector 向量存储，替代 PgVectorStore。
+ *         检索条件中的 knowledge 等值约束转为分区键条件，只扫描该标签分区上的 ANN 索引；
+ *         其余元数据条件仍按 jsonpath 过滤。ef_search / probes 在检索事务内通过 SET LOCAL 设置。
+ *         标签配置了量化时，先在 halfvec / bit 表达式索引上取候选，再在子查询外按全精度向量的余弦距离重排。
+ * @Time : 2026/10/20 11:20
+ */
+public class PartitionedPgVectorStore implements VectorStore {
+
+    public static final String METADATA_DISTANCE = "distance";
+
+    private static final List<String> QUANTIZATIONS = List.of(PgVectorPartitionManager.QUANTIZATION_NONE,
+            PgVectorPartitionManager.QUANTIZATION_HALFVEC, PgVectorPartitionManager.QUANTIZATION_BINARY);
+    /** 量化报告的抽样查询数上限，每个样本要在四种检索方式上各跑一次 */
+    private static final int MAX_REPORT_SAMPLES = 100;
+    /** 量化报告的 topK 上限 */
+    private static final int MAX_REPORT_TOP_K = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingClient embeddingClient;
+    private final IVectorWriter vectorWriter;
+    private final PgVectorPartitionManager partitionManager;
+    /** HNSW 查询时的检索宽度 */
+    private final int efSearch;
+    /** IVFFlat 查询时探查的聚类数 */
+    private final int ivfflatProbes;
+    /** 量化检索的候选倍数，候选数为 topK * rerankFactor */
+    private final int rerankFactor;
+
+    private final PgVectorFilterExpressionConverter filterExpressionConverter = new PgVectorFilterExpressionConverter();
+
+    public PartitionedPgVectorStore(JdbcTemplate jdbcTemplate, EmbeddingClient embeddingClient, IVectorWriter vectorWriter,
+                                    PgVectorPartitionManager partitionManager, int efSearch, int ivfflatProbes, int rerankFactor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.embeddingClient = embeddingClient;
+        this.vectorWriter = vectorWriter;
+        this.partitionManager = partitionManager;
+        this.efSearch = efSearch;
+        this.ivfflatProbes = ivfflatProbes;
+        this.rerankFactor = Math.max(1, rerankFactor);
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        List<List<Double>> embeddings = embeddingClient.embed(documents.stream().map(Document::getContent).toList());
+        for (int i = 0; i < documents.size(); i++) {
+            documents.get(i).setEmbedding(embeddings.get(i));
+        }
+        vectorWriter.write(documents);
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        if (idList.isEmpty()) return Optional.of(false);
+        int rows = jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement("DELETE FROM " + partitionManager.getTableName() + " WHERE id = ANY(?)");
+            ps.setArray(1, con.createArrayOf("uuid", idList.stream().map(UUID::fromString).toArray()));
+            return ps;
+        });
+        return Optional.of(rows > 0);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        PGvector query = new PGvector(toFloatArray(embeddingClient.embed(request.getQuery())));
+        Filter.Expression expression = request.getFilterExpression();
+        String knowledge = null == expression ? null : KnowledgeFilters.knowledgeOf(expression);
+        Filter.Operand remaining = null == expression || null == knowledge ? expression : KnowledgeFilters.withoutKnowledge(expression);
+        String jsonPath = null;
+        if (null != remaining) {
+            Filter.Expression remainingExpression = remaining instanceof Filter.Group group ? group.content() : (Filter.Expression) remaining;
+            jsonPath = filterExpressionConverter.convertExpression(remainingExpression);
+        }
+        // 量化按标签配置，未限定标签时使用全精度索引
+        String quantization = null == knowledge ? PgVectorPartitionManager.QUANTIZATION_NONE : partitionManager.quantizationOf(knowledge);
+
+        int topK = request.getTopK();
+        String sql = searchSql(quantization, null != knowledge, jsonPath);
+        List<Document> documents = inTransaction(con -> {
+            // SET LOCAL 只在本事务内生效，不影响连接池中连接的其他使用者
+            String searchSetting = searchSetting(candidates(quantization, topK));
+            if (null != searchSetting) {
+                try (Statement statement = con.createStatement()) {
+                    statement.execute(searchSetting);
+                }
+            }
+            return search(con, sql, query, knowledge, quantization, topK);
+        });
+
+        if (null == documents) return List.of();
+        double threshold = request.getSimilarityThreshold();
+        return documents.stream()
+                .filter(document -> 1 - ((Number) document.getMetadata().get(METADATA_DISTANCE)).doubleValue() >= threshold)
+                .toList();
+    }
+
+    /**
+     * 对比标签下各量化方式的召回率与延迟。从分区中随机抽取已入库的向量作为查询，
+     * 以关闭索引扫描的精确检索为基准，依次在全精度、halfvec、binary 索引上检索（量化方式取候选后按全精度重排）。
+     * 抽样向量本身必然命中自己，计算召回率前从基准与结果中去掉样本自身，只比较其余的 topK 个近邻。
+     *
+     * @param ragTag  知识库标签
+     * @param samples 抽样查询数，限制在 [1, 100]
+     * @param topK    每次查询返回的条数，限制在 [1, 50]
+     */
+    public QuantizationReport quantizationReport(String ragTag, int samples, int topK) {
+        int sampleCount = Math.max(1, Math.min(MAX_REPORT_SAMPLES, samples));
+        int k = Math.max(1, Math.min(MAX_REPORT_TOP_K, topK));
+        List<String> sampleIds = new ArrayList<>(sampleCount);
+        List<PGvector> queries = jdbcTemplate.query("SELECT id, embedding FROM " + partitionManager.getTableName()
+                        + " WHERE knowledge = ? ORDER BY random() LIMIT ?",
+                (rs, rowNum) -> {
+                    sampleIds.add(rs.getString(1));
+                    return new PGvector(rs.getString(2));
+                }, ragTag, sampleCount);
+        String partition = partitionManager.partitionName(ragTag);
+
+        long[] exactNanos = new long[queries.size()];
+        List<Set<String>> expected = new ArrayList<>(queries.size());
+        String exactSql = searchSql(PgVectorPartitionManager.QUANTIZATION_NONE, true, null);
+        for (int i = 0; i < queries.size(); i++) {
+            PGvector query = queries.get(i);
+            long start = System.nanoTime();
+            List<Document> exact = inTransaction(con -> {
+                try (Statement statement = con.createStatement()) {
+                    statement.execute("SET LOCAL enable_indexscan = off");
+                    statement.execute("SET LOCAL enable_bitmapscan = off");
+                }
+                return search(con, exactSql, query, ragTag, PgVectorPartitionManager.QUANTIZATION_NONE, k + 1);
+            });
+            exactNanos[i] = System.nanoTime() - start;
+            expected.add(neighbours(exact, sampleIds.get(i), k));
+        }
+
+        List<QuantizationReport.Entry> entries = new ArrayList<>(QUANTIZATIONS.size());
+        for (String quantization : QUANTIZATIONS) {
+            String indexName = partitionManager.annIndexName(partition, quantization);
+            Long indexBytes = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(pg_relation_size(to_regclass(?)), -1)", Long.class, indexName);
+            String sql = searchSql(quantization, true, null);
+            long[] nanos = new long[queries.size()];
+            double recall = 0;
+            for (int i = 0; i < queries.size(); i++) {
+                PGvector query = queries.get(i);
+                long start = System.nanoTime();
+                List<Document> found = inTransaction(con -> {
+                    String searchSetting = searchSetting(candidates(quantization, k));
+                    if (null != searchSetting) {
+                        try (Statement statement = con.createStatement()) {
+                            statement.execute(searchSetting);
+                        }
+                    }
+                    return search(con, sql, query, ragTag, quantization, k + 1);
+                });
+                nanos[i] = System.nanoTime() - start;
+                Set<String> hits = neighbours(found, sampleIds.get(i), k);
+                hits.retainAll(expected.get(i));
+                recall += expected.get(i).isEmpty() ? 1 : (double) hits.size() / expected.get(i).size();
+            }
+            entries.add(QuantizationReport.Entry.builder()
+                    .quantization(quantization)
+                    .indexed(null != indexBytes && indexBytes >= 0)
+                    .indexBytes(null == indexBytes ? -1 : indexBytes)
+                    .recall(queries.isEmpty() ? 0 : recall / queries.size())
+                    .meanMillis(meanMillis(nanos))
+                    .p95Millis(p95Millis(nanos))
+                    .build());
+        }
+
+        return QuantizationReport.builder()
+                .ragTag(ragTag)
+                .quantization(partitionManager.quantizationOf(ragTag))
+                .samples(queries.size())
+                .topK(k)
+                .candidates(k * rerankFactor)
+                .exactMeanMillis(meanMillis(exactNanos))
+                .entries(entries)
+                .build();
+    }
+
+    /**
+     * 量化时先在量化索引上按近似距离取 topK * rerankFactor 个候选，再按全精度余弦距离重排取 topK
+     */
+    private String searchSql(String quantization, boolean withKnowledge, String jsonPath) {
+        StringBuilder where = new StringBuilder(" WHERE true");
+        if (withKnowledge) {
+            where.append(" AND knowledge = ?");
+        }
+        if (null != jsonPath) {
+            where.append(" AND metadata @@ '").append(jsonPath.replace("'", "''")).append("'::jsonpath");
+        }
+        if (PgVectorPartitionManager.QUANTIZATION_NONE.equals(quantization)) {
+            return "SELECT id, content, metadata, embedding <=> ? AS distance FROM " + partitionManager.getTableName()
+                    + where + " ORDER BY distance LIMIT ?";
+        }
+        return "SELECT id, content, metadata, embedding <=> ? AS distance FROM ("
+                + "SELECT id, content, metadata, embedding FROM " + partitionManager.getTableName() + where
+                + " ORDER BY " + partitionManager.coarseDistance(quantization) + " LIMIT ?"
+                + ") candidates ORDER BY distance LIMIT ?";
+    }
+
+    private List<Document> search(Connection con, String sql, PGvector query, String knowledge, String quantization, int topK) throws SQLException {
+        boolean quantized = !PgVectorPartitionManager.QUANTIZATION_NONE.equals(quantization);
+        List<Document> results = new ArrayList<>(topK);
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            int idx = 1;
+            ps.setObject(idx++, query);
+            if (null != knowledge) ps.setString(idx++, knowledge);
+            if (quantized) {
+                ps.setObject(idx++, query);
+                ps.setInt(idx++, candidates(quantization, topK));
+            }
+            ps.setInt(idx, topK);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    results.add(toDocument(rs));
+                }
+            }
+        }
+        return results;
+    }
+
+    private int candidates(String quantization, int topK) {
+        return PgVectorPartitionManager.QUANTIZATION_NONE.equals(quantization) ? topK : topK * rerankFactor;
+    }
+
+    private <T> T inTransaction(ConnectionCallback<T> callback) {
+        return jdbcTemplate.execute((ConnectionCallback<T>) con -> {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try {
+                T result = callback.doInConnection(con);
+                con.commit();
+                return result;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    /**
+     * 去掉样本自身后按距离取前 topK 个结果的 id
+     */
+    private static Set<String> neighbours(List<Document> documents, String sampleId, int topK) {
+        Set<String> ids = new HashSet<>();
+        if (null == documents) return ids;
+        for (Document document : documents) {
+            if (ids.size() >= topK) break;
+            if (!document.getId().equals(sampleId)) ids.add(document.getId());
+        }
+        return ids;
+    }
+
+    private static double meanMillis(long[] nanos) {
+        if (nanos.length == 0) return 0;
+        return Arrays.stream(nanos).average().orElse(0) / 1e6;
+    }
+
+    private static double p95Millis(long[] nanos) {
+        if (nanos.length == 0) return 0;
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * 0.95) - 1)] / 1e6;
+    }
+
+    /**
+     * HNSW 单次最多返回 ef_search 条结果，检索宽度不能小于候选数
+     */
+    private String searchSetting(int limit) {
+        return switch (partitionManager.getIndexType()) {
+            case PgVectorPartitionManager.INDEX_TYPE_HNSW -> "SET LOCAL hnsw.ef_search = " + Math.max(efSearch, limit);
+            case PgVectorPartitionManager.INDEX_TYPE_IVFFLAT -> "SET LOCAL ivfflat.probes = " + Math.max(1, ivfflatProbes);
+            default -> null;
+        };
+    }
+
+    private static Document toDocument(ResultSet rs) throws SQLException {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> metadata = JSON.parseObject(rs.getString("metadata"), Map.class);
+        metadata = null == metadata ? new HashMap<>() : new HashMap<>(metadata);
+        metadata.put(METADATA_DISTANCE, rs.getFloat("distance"));
+        return new Document(rs.getString("id"), rs.getString("content"), metadata);
+    }
+
+    private static float[] toFloatArray(List<Double> embedding) {
+        float[] vector = new float[embedding.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = embedding.get(i).floatValue();
+        }
+        return vector;
+    }
+
+}
@@ -0,0 +1,328 @@
+package com.malog.hxxxi.dev.tech.domain.vector.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Auth : Malog
+ * @Desc : pgvector 按知识库标签 LIST 分区管理。knowledge 为真实列并作为分区键，检索时按分区裁剪，
+ *         小标签的检索延迟不再随全库数据量增长；每个分区单独建立 ANN 索引（HNSW 或 IVFFlat）。
+ *         分区在标签首次写入时自动创建，删除标签直接 DROP 分区。
+ *         可按标签选择量化：ANN 索引建在 halfvec（半精度）或 binary_quantize 后的 bit 表达式上，索引体积分别约为原来的 1/2 与 1/32，
+ *         表中仍保留全精度向量，检索时在量化索引上取候选后按全精度距离重排。
+ * @Time : 2026/10/20 10:30
+ */
+@Slf4j
+public class PgVectorPartitionManager {
+
+    public static final String INDEX_TYPE_HNSW = "hnsw";
+    public static final String INDEX_TYPE_IVFFLAT = "ivfflat";
+    public static final String INDEX_TYPE_NONE = "none";
+
+    public static final String QUANTIZATION_NONE = "none";
+    public static final String QUANTIZATION_HALFVEC = "halfvec";
+    public static final String QUANTIZATION_BINARY = "binary";
+
+    /** 插入时找不到对应分区（分区已被其他节点删除）返回的 SQLSTATE */
+    public static final String SQLSTATE_NO_PARTITION = "23514";
+
+    /** 分区表表名 */
+    @Getter
+    private final String tableName;
+    private final JdbcTemplate jdbcTemplate;
+    @Getter
+    private final int dimensions;
+    /** ANN 索引类型，hnsw、ivfflat 或 none */
+    @Getter
+    private final String indexType;
+    private final int hnswM;
+    private final int hnswEfConstruction;
+    /** IVFFlat 聚类数，小于等于0时按分区行数/1000 计算 */
+    private final int ivfflatLists;
+    /** 分区行数达到该值后才构建 IVFFlat 索引，空分区上训练出的聚类中心没有意义 */
+    private final long ivfflatMinRows;
+    /** 默认量化方式，none、halfvec 或 binary */
+    private final String quantization;
+    /** 按标签指定的量化方式，覆盖默认值 */
+    private final Map<String, String> tagQuantization;
+
+    /** 已确认存在的分区，值为是否已建 ANN 索引 */
+    private final Map<String, Boolean> partitions = new ConcurrentHashMap<>();
+    /** 正在构建 IVFFlat 索引的分区 */
+    private final Set<String> indexing = ConcurrentHashMap.newKeySet();
+    /** 未建 IVFFlat 索引分区的估计行数：首次写入时取 pg_class.reltuples，之后累加本节点写入的行数 */
+    private final Map<String, AtomicLong> estimatedRows = new ConcurrentHashMap<>();
+    /** IVFFlat 索引在后台单线程构建，不占用入库写线程 */
+    private final ExecutorService indexExecutor;
+
+    public PgVectorPartitionManager(JdbcTemplate jdbcTemplate, String tableName, int dimensions, String indexType,
+                                    int hnswM, int hnswEfConstruction, int ivfflatLists, long ivfflatMinRows,
+                                    String quantization, Map<String, String> tagQuantization) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+        this.dimensions = dimensions;
+        this.indexType = indexType;
+        this.hnswM = hnswM;
+        this.hnswEfConstruction = hnswEfConstruction;
+        this.ivfflatLists = ivfflatLists;
+        this.ivfflatMinRows = Math.max(1, ivfflatMinRows);
+        this.quantization = null == quantization ? QUANTIZATION_NONE : quantization;
+        this.tagQuantization = null == tagQuantization ? Map.of() : new HashMap<>(tagQuantization);
+        this.indexExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "pgvector-index-build");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 标签使用的量化方式
+     *
+     * @param ragTag 知识库标签
+     * @return none、halfvec 或 binary
+     */
+    public String quantizationOf(String ragTag) {
+        return tagQuantization.getOrDefault(ragTag, quantization);
+    }
+
+    /**
+     * 创建分区父表。主键需包含分区键，id 在前以便按 id 更新、删除时走索引
+     */
+    public void initSchema() {
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + tableName + " ("
+                + "id uuid NOT NULL, "
+                + "knowledge text NOT NULL, "
+                + "content text, "
+                + "metadata jsonb, "
+                + "embedding vector(" + dimensions + "), "
+                + "lexemes tsvector, "
+                + "PRIMARY KEY (id, knowledge)"
+                + ") PARTITION BY LIST (knowledge)");
+    }
+
+    /**
+     * 确保标签对应的分区存在，不存在时创建分区及其 ANN 索引
+     *
+     * @param ragTag 知识库标签
+     */
+    public void ensurePartition(String ragTag) {
+        if (partitions.containsKey(ragTag)) return;
+
+        String partition = partitionName(ragTag);
+        String tagQuantization = quantizationOf(ragTag);
+        Boolean indexed = jdbcTemplate.execute((ConnectionCallback<Boolean>) con -> {
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try (Statement statement = con.createStatement()) {
+                // 多个节点同时首次写入同一标签时串行建分区
+                statement.execute("SELECT pg_advisory_xact_lock(hashtext('" + partition + "'))");
+                statement.execute("CREATE TABLE IF NOT EXISTS " + partition + " PARTITION OF " + tableName
+                        + " FOR VALUES IN (" + literal(ragTag) + ")");
+                if (INDEX_TYPE_HNSW.equals(indexType)) {
+                    // 空分区上建 HNSW 索引几乎没有开销，之后随写入增量构建；已有数据的标签切换量化方式时在此补建新索引
+                    statement.execute("CREATE INDEX IF NOT EXISTS " + annIndexName(partition, tagQuantization) + " ON " + partition
+                            + " USING hnsw " + annExpression(tagQuantization) + " WITH (m = " + hnswM + ", ef_construction = " + hnswEfConstruction + ")");
+                }
+                boolean exists;
+                try (ResultSet rs = statement.executeQuery("SELECT to_regclass('" + annIndexName(partition, tagQuantization) + "') IS NOT NULL")) {
+                    exists = rs.next() && rs.getBoolean(1);
+                }
+                con.commit();
+                return exists;
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            } finally {
+                con.setAutoCommit(autoCommit);
+            }
+        });
+        partitions.put(ragTag, Boolean.TRUE.equals(indexed));
+        log.info("pgvector 分区就绪 ragTag:{} partition:{} indexType:{} quantization:{}", ragTag, partition, indexType, tagQuantization);
+    }
+
+    /**
+     * 写入后检查是否需要构建 IVFFlat 索引。HNSW 索引在建分区时已创建，无需处理。
+     * 按估计行数判断，不对分区做 count(*)；达到阈值后提交到后台构建，索引建成后不再检查
+     *
+     * @param ragTag 知识库标签
+     * @param rows   本次写入的行数
+     */
+    public void afterWrite(String ragTag, long rows) {
+        if (!INDEX_TYPE_IVFFLAT.equals(indexType) || Boolean.TRUE.equals(partitions.get(ragTag))) return;
+
+        String partition = partitionName(ragTag);
+        long estimated = estimatedRows.computeIfAbsent(ragTag, key -> new AtomicLong(reltuples(partition))).addAndGet(rows);
+        if (estimated < ivfflatMinRows || !indexing.add(ragTag)) return;
+
+        try {
+            indexExecutor.execute(() -> buildIvfflat(ragTag, partition, estimated));
+        } catch (RejectedExecutionException e) {
+            indexing.remove(ragTag);
+        }
+    }
+
+    private void buildIvfflat(String ragTag, String partition, long rows) {
+        try {
+            // pgvector 建议百万行以内 lists 取 行数/1000
+            int lists = ivfflatLists > 0 ? ivfflatLists : (int) Math.max(1, rows / 1000);
+            long start = System.currentTimeMillis();
+            // CONCURRENTLY 构建期间不阻塞同分区的写入
+            String tagQuantization = quantizationOf(ragTag);
+            jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + annIndexName(partition, tagQuantization) + " ON " + partition
+                    + " USING ivfflat " + annExpression(tagQuantization) + " WITH (lists = " + lists + ")");
+            partitions.computeIfPresent(ragTag, (key, indexed) -> true);
+            estimatedRows.remove(ragTag);
+            log.info("IVFFlat 索引构建完成 ragTag:{} 估计行数:{} lists:{} 耗时:{}ms", ragTag, rows, lists, System.currentTimeMillis() - start);
+        } catch (DataAccessException e) {
+            // 下次写入时重试
+            log.warn("IVFFlat 索引构建失败 ragTag:{}", ragTag, e);
+        } finally {
+            indexing.remove(ragTag);
+        }
+    }
+
+    /**
+     * 分区的统计行数，只读系统表；从未 ANALYZE 的分区为 -1 或 0，按 0 计
+     */
+    private long reltuples(String partition) {
+        Long rows = jdbcTemplate.query("SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)",
+                rs -> rs.next() ? rs.getLong(1) : null, partition);
+        return null == rows ? 0 : Math.max(0, rows);
+    }
+
+    /**
+     * 停止后台索引构建线程，已提交的构建继续执行
+     */
+    public void shutdown() {
+        indexExecutor.shutdown();
+    }
+
+    /**
+     * 删除标签对应的分区，只修改元数据，不逐行删除
+     *
+     * @param ragTag 知识库标签
+     */
+    public void dropPartition(String ragTag) {
+        partitions.remove(ragTag);
+        estimatedRows.remove(ragTag);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(ragTag));
+        log.info("pgvector 分区已删除 ragTag:{}", ragTag);
+    }
+
+    /**
+     * 分区被其他节点删除后清除本地记录，下次写入时重新创建
+     */
+    public void evict(String ragTag) {
+        partitions.remove(ragTag);
+        estimatedRows.remove(ragTag);
+    }
+
+    /**
+     * 将旧版 PgVectorStore 的未分区表按 knowledge 迁移到分区表，迁移后旧表改名保留
+     *
+     * @param legacyTable 旧表表名
+     */
+    public void migrateLegacy(String legacyTable) {
+        String relkind = jdbcTemplate.query("SELECT relkind FROM pg_class WHERE oid = to_regclass(?)",
+                rs -> rs.next() ? rs.getString(1) : null, legacyTable);
+        // 只迁移普通表
+        if (!"r".equals(relkind)) return;
+
+        Boolean hasLexemes = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM information_schema.columns WHERE table_name = ? AND column_name = 'lexemes')",
+                Boolean.class, legacyTable);
+        String lexemes = Boolean.TRUE.equals(hasLexemes) ? ", lexemes" : "";
+        List<String> ragTags = jdbcTemplate.queryForList(
+                "SELECT DISTINCT COALESCE(metadata->>'knowledge', '') FROM " + legacyTable, String.class);
+
+        long start = System.currentTimeMillis();
+        int total = 0;
+        for (String ragTag : ragTags) {
+            ensurePartition(ragTag);
+            int rows = jdbcTemplate.update("INSERT INTO " + tableName + " (id, knowledge, content, metadata, embedding" + lexemes + ")"
+                    + " SELECT id, ?, content, metadata::jsonb, embedding" + lexemes + " FROM " + legacyTable
+                    + " WHERE COALESCE(metadata->>'knowledge', '') = ? ON CONFLICT DO NOTHING", ragTag, ragTag);
+            total += rows;
+            afterWrite(ragTag, rows);
+        }
+        jdbcTemplate.execute("ALTER TABLE " + legacyTable + " RENAME TO " + legacyTable + "_migrated");
+        log.info("旧向量表迁移完成 table:{} 标签数:{} 行数:{} 耗时:{}ms", legacyTable, ragTags.size(), total, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 标签可能包含中文等任意字符，分区名取其 MD5，保证是合法且不超长的标识符
+     */
+    public String partitionName(String ragTag) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(ragTag.getBytes(StandardCharsets.UTF_8));
+            return tableName + "_p_" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 分区上某种量化方式的 ANN 索引名，不量化时沿用原有索引名
+     */
+    public String annIndexName(String partition, String quantization) {
+        return switch (quantization) {
+            case QUANTIZATION_HALFVEC -> partition + "_ann_half";
+            case QUANTIZATION_BINARY -> partition + "_ann_bin";
+            default -> partition + "_ann";
+        };
+    }
+
+    /**
+     * 索引列（表达式）及操作符类，与检索时的排序表达式一一对应才能走索引
+     */
+    private String annExpression(String quantization) {
+        return switch (quantization) {
+            case QUANTIZATION_HALFVEC -> "((embedding::halfvec(" + dimensions + ")) halfvec_cosine_ops)";
+            case QUANTIZATION_BINARY -> "((binary_quantize(embedding)::bit(" + dimensions + ")) bit_hamming_ops)";
+            default -> "(embedding vector_cosine_ops)";
+        };
+    }
+
+    /**
+     * 在量化索引上取候选时的排序表达式，参数为全精度查询向量
+     */
+    public String coarseDistance(String quantization) {
+        return switch (quantization) {
+            case QUANTIZATION_HALFVEC -> "embedding::halfvec(" + dimensions + ") <=> ?::halfvec(" + dimensions + ")";
+            case QUANTIZATION_BINARY -> "binary_quantize(embedding)::bit(" + dimensions + ") <~> binary_quantize(?::vector)";
+            default -> "embedding <=> ?";
+        };
+    }
+
+    /**
+     * DDL 不支持绑定参数，分区取值以 SQL 字面量拼接
+     */
+    private static String literal(String value) {
+        if (value.indexOf('\u0000') >= 0) {
+            throw new IllegalArgumentException("非法的知识库标签:" + value);
+        }
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.malog.hxxxi.dev.tech.domain.warmup.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RFuture;
+import org.redisson.api.RedissonClient;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : 预先建立连接池中的连接。同时持有多个 JDBC 连接迫使连接池创建到目标数量，而不是在首批请求时逐个建立；
+ *         Redis 并发发出多条命令，确认各连接可用。
+ * @Time : 2026/10/22 15:40
+ */
+@Slf4j
+public class ConnectionPoolPrimer {
+
+    private static final String REDIS_PROBE_KEY = "ragWarmUp";
+
+    /**
+     * 同时取出 connections 个 JDBC 连接并各执行一次查询
+     */
+    public static void primeJdbc(DataSource dataSource, int connections) {
+        List<Connection> opened = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.max(1, connections); i++) {
+                Connection connection = dataSource.getConnection();
+                opened.add(connection);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT 1");
+                }
+            }
+            log.info("JDBC 连接池预热完成 连接数:{}", opened.size());
+        } catch (SQLException e) {
+            throw new IllegalStateException("JDBC 连接池预热失败", e);
+        } finally {
+            for (Connection connection : opened) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.warn("归还 JDBC 连接失败", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 并发发出 commands 条只读命令并等待全部返回
+     */
+    public static void primeRedis(RedissonClient redissonClient, int commands) {
+        List<RFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, commands); i++) {
+            futures.add(redissonClient.getBucket(REDIS_PROBE_KEY).isExistsAsync());
+        }
+        futures.forEach(future -> future.toCompletableFuture().join());
+        log.info("Redis 连接池预热完成 命令数:{}", futures.size());
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.malog.hxxxi.dev.tech.domain.warmup.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Auth : Malog
+ * @Desc : 预加载 Ollama 模型并设置 keep_alive。不带 prompt 的 generate 请求只加载模型，embedding 模型不支持 generate，
+ *         以空 prompt 调用 embeddings 加载；模型已加载时立即返回，定期调用可以刷新常驻时间。
+ *         普通请求不携带 keep_alive，会把常驻时间重置为 Ollama 的默认值（OLLAMA_KEEP_ALIVE），因此需要定期刷新。
+ *         配置了多个副本时在每个副本上加载，之后由副本池的模型亲和路由保持各副本的模型常驻。
+ * @Time : 2026/10/22 15:30
+ */
+@Slf4j
+public class OllamaModelPreloader {
+
+    private final List<RestClient> restClients;
+    private final String keepAlive;
+
+    /**
+     * @param baseUrls  Ollama 各副本地址
+     * @param keepAlive 模型常驻时间，如 30m，-1 表示一直常驻
+     */
+    public OllamaModelPreloader(List<String> baseUrls, String keepAlive) {
+        this.restClients = baseUrls.stream().map(baseUrl -> RestClient.builder().baseUrl(baseUrl).build()).toList();
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * 加载聊天模型
+     */
+    public void preloadChat(String model) {
+        post("/api/generate", Map.of("model", model, "keep_alive", keepAlive));
+        log.info("Ollama 聊天模型已加载 model:{} keepAlive:{}", model, keepAlive);
+    }
+
+    /**
+     * 加载 embedding 模型
+     */
+    public void preloadEmbedding(String model) {
+        post("/api/embeddings", Map.of("model", model, "prompt", "", "keep_alive", keepAlive));
+        log.info("Ollama embedding 模型已加载 model:{} keepAlive:{}", model, keepAlive);
+    }
+
+    private void post(String uri, Map<String, Object> body) {
+        for (RestClient restClient : restClients) {
+            restClient.post()
+                    .uri(uri)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(body)
+                    .retrieve()
+                    .toBodilessEntity();
+        }
+    }
+
+}
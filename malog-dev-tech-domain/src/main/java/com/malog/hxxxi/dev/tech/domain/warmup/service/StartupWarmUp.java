@@ -0,0 +1,111 @@
+package com.malog.hxxxi.dev.tech.domain.warmup.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Auth : Malog
+ * @Desc : 启动预热。预热任务按阶段执行，同一阶段的任务并行，后一阶段依赖前一阶段的结果（如合成查询依赖 embedding 模型已加载）；
+ *         所有阶段共享一个总时限，超时的任务被放弃，剩余阶段跳过。预热尽力而为，单个任务失败只记录日志，不影响启动。
+ * @Time : 2026/10/22 15:10
+ */
+@Slf4j
+public class StartupWarmUp {
+
+    /**
+     * 预热任务
+     *
+     * @param name   任务名，用于日志
+     * @param action 任务内容
+     */
+    public record Task(String name, Runnable action) {
+    }
+
+    private final Duration timeout;
+    private final List<List<Task>> phases = new ArrayList<>();
+
+    public StartupWarmUp(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * 追加一个阶段，阶段内的任务并行执行
+     */
+    public StartupWarmUp then(List<Task> tasks) {
+        if (!tasks.isEmpty()) {
+            phases.add(tasks);
+        }
+        return this;
+    }
+
+    /**
+     * 执行全部阶段，在总时限内返回
+     *
+     * @return 全部任务是否在时限内成功完成
+     */
+    public boolean run() {
+        long start = System.currentTimeMillis();
+        long deadline = start + timeout.toMillis();
+        AtomicInteger index = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "warm-up-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        boolean succeeded = true;
+        Map<String, String> results = new LinkedHashMap<>();
+        try {
+            for (List<Task> phase : phases) {
+                Map<Task, Future<Long>> futures = new LinkedHashMap<>();
+                for (Task task : phase) {
+                    futures.put(task, executor.submit(() -> {
+                        long taskStart = System.currentTimeMillis();
+                        task.action().run();
+                        return System.currentTimeMillis() - taskStart;
+                    }));
+                }
+                for (Map.Entry<Task, Future<Long>> entry : futures.entrySet()) {
+                    String name = entry.getKey().name();
+                    try {
+                        long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                        results.put(name, entry.getValue().get(remaining, TimeUnit.MILLISECONDS) + "ms");
+                    } catch (TimeoutException e) {
+                        entry.getValue().cancel(true);
+                        results.put(name, "timeout");
+                        succeeded = false;
+                    } catch (ExecutionException e) {
+                        log.warn("预热任务失败 task:{}", name, e.getCause());
+                        results.put(name, "failed");
+                        succeeded = false;
+                    }
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    log.warn("预热超过时限 {}ms，跳过剩余阶段", timeout.toMillis());
+                    succeeded = false;
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            succeeded = false;
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("启动预热结束 耗时:{}ms 成功:{} 任务:{}", System.currentTimeMillis() - start, succeeded, results);
+        return succeeded;
+    }
+
+}
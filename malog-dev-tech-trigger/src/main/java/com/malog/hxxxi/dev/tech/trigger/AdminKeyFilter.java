@@ -0,0 +1,77 @@
+package com.malog.hxxxi.dev.tech.trigger;
+
+import com.alibaba.fastjson.JSON;
+import com.malog.hxxxi.dev.tech.api.response.Response;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : 管理接口鉴权。按 MVC 路由使用的路径匹配（见 RequestPaths），匹配的请求须在请求头中携带配置的管理密钥，否则返回 403；
+ *         未配置密钥时管理接口一律拒绝，不会因漏配而对外开放。
+ * @Time : 2026/10/23 10:10
+ */
+@Slf4j
+public class AdminKeyFilter extends OncePerRequestFilter {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<String> paths;
+    private final String keyHeader;
+    private final byte[] key;
+
+    public AdminKeyFilter(List<String> paths, String keyHeader, String key) {
+        this.paths = List.copyOf(paths);
+        this.keyHeader = keyHeader;
+        this.key = StringUtils.isBlank(key) ? null : key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String path = RequestPaths.lookupPath(request);
+        if (null == path) {
+            log.warn("请求路径含有 \";\" 或编码的分隔符，拒绝 uri:{}", request.getRequestURI());
+            reject(response, HttpStatus.BAD_REQUEST, "请求路径不合法");
+            return;
+        }
+        if (HttpMethod.OPTIONS.matches(request.getMethod()) || paths.stream().noneMatch(pattern -> pathMatcher.match(pattern, path))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        if (null == key) {
+            log.warn("管理密钥未配置，拒绝管理接口请求 path:{}", path);
+            reject(response, HttpStatus.FORBIDDEN, "管理接口未开启");
+            return;
+        }
+        String presented = request.getHeader(keyHeader);
+        // 定长比较，不从响应耗时泄露密钥前缀
+        if (null == presented || !MessageDigest.isEqual(key, presented.getBytes(StandardCharsets.UTF_8))) {
+            log.warn("管理密钥校验失败 path:{} remote:{}", path, request.getRemoteAddr());
+            reject(response, HttpStatus.FORBIDDEN, "管理密钥错误");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String info) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(JSON.toJSONString(Response.<String>builder().code("0001").info(info).build()));
+    }
+
+}
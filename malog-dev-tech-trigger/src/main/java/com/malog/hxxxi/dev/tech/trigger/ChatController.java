@@ -0,0 +1,67 @@
+package com.malog.hxxxi.dev.tech.trigger;
+
+import com.malog.hxxxi.dev.tech.api.IAiService;
+import com.malog.hxxxi.dev.tech.domain.chat.service.RagChatService;
+import jakarta.annotation.Resource;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+
+/**
+ * @Auth : Malog
+ * @Desc : 统一聊天入口，完全按模型路由表选择服务商
+ * @Time : 2026/10/20 12:10
+ */
+@RestController
+@CrossOrigin("*")
+@RequestMapping("/api/v1/chat/")
+public class ChatController implements IAiService {
+
+    @Resource
+    private RagChatService ragChatService;
+    /** 未命中模型路由表时使用的服务商 */
+    @Value("${rag.chat.default-provider:ollama}")
+    private String defaultProvider;
+
+    /**
+     * 生成聊天响应
+     *
+     * @param model 模型名称
+     * @param message 用户消息
+     * @return 聊天响应结果
+     */
+    @RequestMapping(value = "generate", method = RequestMethod.GET)
+    @Override
+    public ChatResponse generate(@RequestParam("model") String model, @RequestParam("message") String message) {
+        return ragChatService.generate(defaultProvider, model, message);
+    }
+
+    /**
+     * 流式生成聊天响应
+     *
+     * @param model 模型名称
+     * @param message 用户消息
+     * @return 流式的聊天响应结果
+     */
+    @RequestMapping(value = "generate_stream", method = RequestMethod.GET)
+    @Override
+    public Flux<ChatResponse> generateStream(@RequestParam("model") String model, @RequestParam("message") String message) {
+        return ragChatService.generateStream(defaultProvider, model, message);
+    }
+
+    /**
+     * 生成基于RAG的流式聊天响应
+     *
+     * @param model 指定使用的AI模型名称
+     * @param ragTag RAG标签，用于指定知识库中的特定文档集合
+     * @param message 用户输入的消息内容
+     * @return 返回流式的聊天响应结果
+     */
+    @RequestMapping(value = "generate_stream_rag", method = RequestMethod.GET)
+    @Override
+    public Flux<ChatResponse> generateStreamRag(@RequestParam("model") String model, @RequestParam("ragTag") String ragTag, @RequestParam("message") String message) {
+        return ragChatService.generateStreamRag(defaultProvider, model, ragTag, message);
+    }
+
+}
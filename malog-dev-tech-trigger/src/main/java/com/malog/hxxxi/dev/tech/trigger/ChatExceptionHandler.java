@@ -0,0 +1,42 @@
+package com.malog.hxxxi.dev.tech.trigger;
+
+import com.alibaba.fastjson.JSON;
+import com.malog.hxxxi.dev.tech.api.response.Response;
+import com.malog.hxxxi.dev.tech.domain.chat.service.AdmissionRejectedException;
+import com.malog.hxxxi.dev.tech.domain.chat.service.ChatProviderUnavailableException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * @Auth : Malog
+ * @Desc : 聊天接口的繁忙处理。排队已满返回 429 并携带 Retry-After，所有服务商不可用返回 503。
+ *         响应体为 JSON 字符串，兼容 text/event-stream 请求的内容协商。
+ * @Time : 2026/10/20 15:40
+ */
+@Slf4j
+@RestControllerAdvice(assignableTypes = {OllamaController.class, OpenAiController.class, ChatController.class})
+public class ChatExceptionHandler {
+
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<String> handleAdmissionRejected(AdmissionRejectedException e) {
+        log.warn("聊天请求被拒绝 {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(JSON.toJSONString(Response.<String>builder().code("0001").info("模型繁忙，请稍后重试").build()));
+    }
+
+    @ExceptionHandler(ChatProviderUnavailableException.class)
+    public ResponseEntity<String> handleProviderUnavailable(ChatProviderUnavailableException e) {
+        log.warn("聊天服务商不可用 {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(JSON.toJSONString(Response.<String>builder().code("0001").info("模型服务不可用，请稍后重试").build()));
+    }
+
+}
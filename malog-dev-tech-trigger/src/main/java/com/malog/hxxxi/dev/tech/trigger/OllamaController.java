@@ -1,29 +1,16 @@
 package com.malog.hxxxi.dev.tech.trigger;
 
 import com.malog.hxxxi.dev.tech.api.IAiService;
+import com.malog.hxxxi.dev.tech.domain.chat.service.RagChatService;
+import com.malog.hxxxi.dev.tech.domain.chat.service.provider.OllamaChatProvider;
 import jakarta.annotation.Resource;
 import org.springframework.ai.chat.ChatResponse;
-import org.springframework.ai.chat.messages.Message;
-import org.springframework.ai.chat.messages.UserMessage;
-import org.springframework.ai.chat.prompt.Prompt;
-import org.springframework.ai.chat.prompt.SystemPromptTemplate;
-import org.springframework.ai.document.Document;
-import org.springframework.ai.ollama.OllamaChatClient;
-import org.springframework.ai.ollama.api.OllamaOptions;
-import org.springframework.ai.openai.OpenAiChatOptions;
-import org.springframework.ai.vectorstore.PgVectorStore;
-import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-
 /**
  * @Auth : Malog
- * @Desc : Ollama聊天模型控制
+ * @Desc : Ollama聊天模型控制，未命中模型路由表时默认走 Ollama
  * @Time : 2025/11/23 17:06
  */
 @RestController
@@ -32,9 +19,7 @@ import java.util.stream.Collectors;
 public class OllamaController implements IAiService {
 
     @Resource
-    private OllamaChatClient chatClient;
-    @Resource
-    private PgVectorStore pgVectorStore;
+    private RagChatService ragChatService;
 
     /**
      * 生成聊天响应
@@ -46,7 +31,7 @@ public class OllamaController implements IAiService {
     @RequestMapping(value = "generate", method = RequestMethod.GET)
     @Override
     public ChatResponse generate(@RequestParam("model") String model, @RequestParam("message") String message) {
-        return chatClient.call(new Prompt(message, OllamaOptions.create().withModel(model)));
+        return ragChatService.generate(OllamaChatProvider.NAME, model, message);
     }
 
     /**
@@ -56,10 +41,10 @@ public class OllamaController implements IAiService {
      * @param message 用户消息
      * @return 流式的聊天响应结果
      */
-    @RequestMapping(value = "generate", method = RequestMethod.GET)
+    @RequestMapping(value = "generate_stream", method = RequestMethod.GET)
     @Override
     public Flux<ChatResponse> generateStream(@RequestParam("model") String model, @RequestParam("message") String message) {
-        return chatClient.stream(new Prompt(message, OllamaOptions.create().withModel(model)));
+        return ragChatService.generateStream(OllamaChatProvider.NAME, model, message);
     }
 
     /**
@@ -73,32 +58,7 @@ public class OllamaController implements IAiService {
     @RequestMapping(value = "generate_stream_rag", method = RequestMethod.GET)
     @Override
     public Flux<ChatResponse> generateStreamRag(@RequestParam("model") String model, @RequestParam("ragTag") String ragTag, @RequestParam("message") String message) {
-        String SYSTEM_PROMPT = """
-                Use the information from the DOCUMENTS section to provide accurate answers but act as if you knew this information innately.
-                If unsure, simply state that you don't know.
-                Another thing you need to note is that your reply must be in Chinese!
-                DOCUMENTS:
-                    {documents}
-                """;
-
-        // 指定文档搜索
-        SearchRequest request = SearchRequest.query(message)
-                .withTopK(5)
-                .withFilterExpression("knowledge == '" + ragTag + "'");
-
-        List<Document> documents = pgVectorStore.similaritySearch(request);
-        String documentCollectors = documents.stream().map(Document::getContent).collect(Collectors.joining());
-        Message ragMessage = new SystemPromptTemplate(SYSTEM_PROMPT).createMessage(Map.of("documents", documentCollectors));
-
-        List<Message> messages = new ArrayList<>();
-        messages.add(new UserMessage(message));
-        messages.add(ragMessage);
-
-        return chatClient.stream(new Prompt(
-                messages,
-                OllamaOptions.create()
-                        .withModel(model)
-        ));
+        return ragChatService.generateStreamRag(OllamaChatProvider.NAME, model, ragTag, message);
     }
 
 }
@@ -1,38 +1,46 @@
 package com.malog.hxxxi.dev.tech.trigger;
 
 import com.malog.hxxxi.dev.tech.api.IRAGService;
+import com.malog.hxxxi.dev.tech.api.dto.IngestJobResponseDTO;
+import com.malog.hxxxi.dev.tech.api.dto.QuantizationReportResponseDTO;
+import com.malog.hxxxi.dev.tech.api.dto.RagTagResponseDTO;
 import com.malog.hxxxi.dev.tech.api.response.Response;
+import com.malog.hxxxi.dev.tech.domain.chat.service.SemanticResponseCache;
+import com.malog.hxxxi.dev.tech.domain.ingest.model.IngestJobEntity;
+import com.malog.hxxxi.dev.tech.domain.ingest.model.IngestProgress;
+import com.malog.hxxxi.dev.tech.domain.ingest.model.IngestSource;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.ChunkDeduplicator;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.DocumentIngestionPipeline;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.GitRepositoryIndexer;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.IVectorWriter;
+import com.malog.hxxxi.dev.tech.domain.ingest.service.IngestJobService;
+import com.malog.hxxxi.dev.tech.domain.tag.service.RagTagRegistry;
+import com.malog.hxxxi.dev.tech.domain.vector.model.QuantizationReport;
+import com.malog.hxxxi.dev.tech.domain.vector.service.PartitionedPgVectorStore;
 import jakarta.annotation.Resource;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
-import org.redisson.api.RList;
-import org.redisson.api.RedissonClient;
-import org.springframework.ai.document.Document;
 import org.springframework.ai.ollama.OllamaChatClient;
-import org.springframework.ai.reader.tika.TikaDocumentReader;
 import org.springframework.ai.transformer.splitter.TokenTextSplitter;
-import org.springframework.ai.vectorstore.PgVectorStore;
 import org.springframework.ai.vectorstore.SimpleVectorStore;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.core.io.PathResource;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @Auth : Malog
- * @Desc :
+ * @Desc : 知识库接口。删除标签、量化报告等管理接口须携带管理密钥（见 AdminKeyFilter），不开放跨域访问
  * @Time : 2025/11/23 20:35
  */
 @Slf4j
 @RestController
-@CrossOrigin("*")
 @RequestMapping("/api/v1/rag/")
 public class RAGController implements IRAGService {
 
@@ -43,9 +51,22 @@ public class RAGController implements IRAGService {
     @Resource
     private SimpleVectorStore simpleVectorStore;
     @Resource
-    private PgVectorStore pgVectorStore;
+    private DocumentIngestionPipeline documentIngestionPipeline;
     @Resource
-    private RedissonClient redissonClient;
+    private IngestJobService ingestJobService;
+    @Resource
+    private GitRepositoryIndexer gitRepositoryIndexer;
+    @Resource
+    private SemanticResponseCache semanticResponseCache;
+    @Resource
+    private IVectorWriter vectorWriter;
+    @Resource
+    private RagTagRegistry ragTagRegistry;
+    @Resource
+    private ChunkDeduplicator chunkDeduplicator;
+    /** rag.vector-store.type=hnsw 时不存在 */
+    @Resource
+    private ObjectProvider<PartitionedPgVectorStore> partitionedPgVectorStoreProvider;
 
     /**
      * 查询RAG标签列表
@@ -55,135 +76,249 @@ public class RAGController implements IRAGService {
      * - info: 响应信息，"上传成功"表示操作结果
      * - data: 标签列表数据
      */
+    @CrossOrigin("*")
     @RequestMapping(value = "query_rag_tag_list", method = RequestMethod.GET)
     @Override
     public Response<List<String>> queryRagTagList() {
-        // 从Redis中获取ragTag列表
-        RList<String> elements = redissonClient.getList("ragTag");
+        // 读取本地近端缓存，不访问 Redis
         return Response.<List<String>>builder()
                 .code("0000")
                 .info("上传成功")
-                .data(elements)
+                .data(ragTagRegistry.tags())
                 .build();
     }
 
+    /**
+     * 查询RAG标签及统计
+     *
+     * @return 各标签的切片数、字节数、最近入库时间及 embedding 模型
+     */
+    @CrossOrigin("*")
+    @RequestMapping(value = "query_rag_tag_stats", method = RequestMethod.GET)
+    @Override
+    public Response<List<RagTagResponseDTO>> queryRagTagStats() {
+        List<RagTagResponseDTO> tags = ragTagRegistry.entities().stream()
+                .map(entity -> RagTagResponseDTO.builder()
+                        .ragTag(entity.getRagTag())
+                        .chunkCount(entity.getChunkCount())
+                        .bytes(entity.getBytes())
+                        .createTime(entity.getCreateTime())
+                        .lastIngestTime(entity.getLastIngestTime())
+                        .embeddingModel(entity.getEmbeddingModel())
+                        .build())
+                .toList();
+        return Response.<List<RagTagResponseDTO>>builder().code("0000").info("调用成功").data(tags).build();
+    }
+
 
     /**
-     * 上传文件并处理文档
+     * 上传文件并提交异步入库任务
+     * <p>
+     * 文件先落盘到临时目录（请求结束后 MultipartFile 会被清理），随后立即返回任务ID，
+     * 解析、切分、向量化、写入在入库任务线程池中执行，进度通过 query_ingest_job 查询。
      *
      * @param ragTag 标签标识，用于标识知识库分类
      * @param files  待上传的文件列表
-     * @return 响应结果，包含上传状态信息
+     * @return 响应结果，data 为入库任务ID
      */
+    @CrossOrigin("*")
     @RequestMapping(value = "file/upload", method = RequestMethod.POST, headers = "content-type=multipart/form-data")
     @Override
     public Response<String> uploadFile(@RequestParam String ragTag, @RequestParam List<MultipartFile> files) {
         log.info("upload files start: {}", ragTag);
-        for (MultipartFile file : files) {
-            // 使用Tika解析器读取文件内容并转换为文档对象
-            TikaDocumentReader reader = new TikaDocumentReader(file.getResource());
-            List<Document> documents = reader.get();
-            // 对文档进行分词和分割处理
-            List<Document> documentSpliterList = tokenTextSplitter.apply(documents);
-
-            // 为原始文档和分割后的文档添加知识库标签元数据
-            documents.forEach(doc -> doc.getMetadata().put("knowledge", ragTag));
-            documentSpliterList.forEach(doc -> doc.getMetadata().put("knowledge", ragTag));
-
-            // 将处理后的文档存储到向量数据库中
-            pgVectorStore.accept(documentSpliterList);
-
-            // 维护Redis中的标签列表，确保标签唯一性
-            RList<String> elements = redissonClient.getList("ragTag");
-            if (!elements.contains(ragTag)) {
-                elements.add(ragTag);
+        Path uploadDir;
+        try {
+            uploadDir = Files.createTempDirectory("rag-upload-");
+        } catch (IOException e) {
+            log.error("upload files failed: {}", ragTag, e);
+            return Response.<String>builder().code("0001").info("上传失败").build();
+        }
+        List<IngestSource> sources = new ArrayList<>(files.size());
+        try {
+            for (MultipartFile file : files) {
+                Path target = Files.createTempFile(uploadDir, "upload-", "-" + Paths.get(String.valueOf(file.getOriginalFilename())).getFileName());
+                file.transferTo(target);
+                sources.add(IngestSource.builder()
+                        .name(file.getOriginalFilename())
+                        .resource(new PathResource(target))
+                        .build());
             }
+        } catch (IOException e) {
+            log.error("upload files failed: {}", ragTag, e);
+            // 已落盘的文件不会再被入库任务清理
+            FileUtils.deleteQuietly(uploadDir.toFile());
+            return Response.<String>builder().code("0001").info("上传失败").build();
+        }
 
-            log.info("upload files end: {}", ragTag);
+        try {
+            String jobId = ingestJobService.submit("upload", ragTag, progress -> {
+                // 入库开始即注册标签，已写入的切片可以立即检索
+                ragTagRegistry.register(ragTag);
+                try {
+                    // 解析、切分、向量化、写入分阶段并行执行
+                    documentIngestionPipeline.ingest(ragTag, sources, progress);
+                    // 知识库内容变化，失效该标签下的语义缓存
+                    semanticResponseCache.invalidate(ragTag);
+                } finally {
+                    // 失败时已写入的切片同样计入统计
+                    _recordIngest(ragTag, progress);
+                    FileUtils.deleteDirectory(uploadDir.toFile());
+                }
+            });
+            log.info("upload files submitted: {} jobId:{}", ragTag, jobId);
+            return Response.<String>builder()
+                    .code("0000")
+                    .info("上传成功")
+                    .data(jobId)
+                    .build();
+        } catch (RejectedExecutionException e) {
+            FileUtils.deleteQuietly(uploadDir.toFile());
+            return Response.<String>builder().code("0001").info("入库任务繁忙，请稍后重试").build();
         }
-        return Response.<String>builder()
-                .code("0000")
-                .info("上传成功")
-                .build();
     }
 
     /**
      * 分析指定的 Git 仓库，将其内容提取并存储到向量数据库中。
      * <p>
-     * 该方法会克隆指定 URL 的 Git 仓库到本地临时目录，然后递归遍历所有文件，
-     * 使用 Tika 解析文档内容，并进行分词处理后存入向量数据库（pgVectorStore）。
+     * 该方法提交异步入库任务后立即返回任务ID。任务在本地持久化镜像上 fetch 最新提交，
+     * 与上次索引的提交做树差异，只解析新增/修改的文件并写入向量数据库，同时删除已删除/修改文件的旧切片。
      * 同时将项目名称记录至 Redis 列表中用于后续检索或标记。
      *
      * @param repoUrl  Git 仓库地址，必须是可访问的 HTTPS 或 SSH 地址
      * @param userName 访问 Git 仓库所需的用户名（如 GitHub 用户名）
      * @param token    访问 Git 仓库所需的认证令牌（如 GitHub Personal Access Token）
-     * @return 响应对象，表示操作是否成功。若成功则 code 为 "0000"，info 为 "调用成功"
-     * @throws Exception 克隆、读取文件或解析过程中可能抛出异常
+     * @return 响应对象，若提交成功则 code 为 "0000"，data 为入库任务ID
      */
+    @CrossOrigin("*")
     @RequestMapping(value = "analyze_git_repository", method = RequestMethod.POST)
     @Override
-    public Response<String> analyzeGitRepository(@RequestParam("repoUrl") String repoUrl, @RequestParam("userName") String userName, @RequestParam("token") String token) throws Exception {
-        // 定义本地克隆路径及从URL中提取项目名
-        String localPath = "./git-cloned-repo";
+    public Response<String> analyzeGitRepository(@RequestParam("repoUrl") String repoUrl, @RequestParam("userName") String userName, @RequestParam("token") String token) {
         String repoProjectName = _extractProjectName(repoUrl);
-        log.info("克隆路径：{}", new File(localPath).getAbsolutePath());
-
-        // 删除旧的克隆目录以确保干净环境
-        FileUtils.deleteDirectory(new File(localPath));
-
-        // 克隆远程 Git 仓库到本地
-        Git git = Git.cloneRepository()
-                .setURI(repoUrl)
-                .setDirectory(new File(localPath))
-                .setCredentialsProvider(new UsernamePasswordCredentialsProvider(userName, token))
-                .call();
-
-        // 遍历克隆后的文件夹中的所有文件并处理
-        Files.walkFileTree(Paths.get(localPath), new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                log.info("{} 遍历解析路径，上传知识库:{}", repoProjectName, file.getFileName());
+        try {
+            String jobId = ingestJobService.submit("git", repoProjectName, progress -> {
+                // 将项目名称注册为知识库标签，已存在时不重复添加
+                ragTagRegistry.register(repoProjectName);
                 try {
-                    // 使用 Tika 解析文件内容
-                    TikaDocumentReader reader = new TikaDocumentReader(new PathResource(file));
-                    List<Document> documents = reader.get();
-                    List<Document> documentSplitterList = tokenTextSplitter.apply(documents);
-
-                    // 添加元数据标识所属知识库
-                    documents.forEach(doc -> doc.getMetadata().put("knowledge", repoProjectName));
-                    documentSplitterList.forEach(doc -> doc.getMetadata().put("knowledge", repoProjectName));
-
-                    // 存储到向量数据库
-                    pgVectorStore.accept(documentSplitterList);
-                } catch (Exception e) {
-                    log.error("遍历解析路径，上传知识库失败:{}", file.getFileName());
+                    gitRepositoryIndexer.index(repoUrl, userName, token, repoProjectName, progress);
+                    semanticResponseCache.invalidate(repoProjectName);
+                } finally {
+                    _recordIngest(repoProjectName, progress);
                 }
+                log.info("遍历解析路径，上传完成:{}", repoUrl);
+            });
+            return Response.<String>builder().code("0000").info("调用成功").data(jobId).build();
+        } catch (RejectedExecutionException e) {
+            return Response.<String>builder().code("0001").info("入库任务繁忙，请稍后重试").build();
+        }
+    }
 
-                return FileVisitResult.CONTINUE;
-            }
-
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                log.info("Failed to access file: {} - {}", file.toString(), exc.getMessage());
-                return FileVisitResult.CONTINUE;
-            }
-        });
-
-        // 清理本地克隆的仓库目录
-        FileUtils.deleteDirectory(new File(localPath));
-
-        // 将项目名称加入 Redis 标签列表中，避免重复添加
-        RList<String> elements = redissonClient.getList("ragTag");
-        if (!elements.contains(repoProjectName)) {
-            elements.add(repoProjectName);
+    /**
+     * 查询入库任务进度
+     *
+     * @param jobId 入库任务ID
+     * @return 任务状态及进度
+     */
+    @CrossOrigin("*")
+    @RequestMapping(value = "query_ingest_job", method = RequestMethod.GET)
+    @Override
+    public Response<IngestJobResponseDTO> queryIngestJob(@RequestParam("jobId") String jobId) {
+        IngestJobEntity job = ingestJobService.queryJob(jobId);
+        if (null == job) {
+            return Response.<IngestJobResponseDTO>builder().code("0001").info("任务不存在或已过期").build();
         }
+        return Response.<IngestJobResponseDTO>builder()
+                .code("0000")
+                .info("调用成功")
+                .data(IngestJobResponseDTO.builder()
+                        .jobId(job.getJobId())
+                        .jobType(job.getJobType())
+                        .ragTag(job.getRagTag())
+                        .status(job.getStatus().name())
+                        .filesParsed(job.getFilesParsed())
+                        .filesFailed(job.getFilesFailed())
+                        .filesSkipped(job.getFilesSkipped())
+                        .skipReasons(job.getSkipReasons())
+                        .chunksDeduplicated(job.getChunksDeduplicated())
+                        .chunksEmbedded(job.getChunksEmbedded())
+                        .rowsWritten(job.getRowsWritten())
+                        .rowsPerSecond(job.getRowsPerSecond())
+                        .submitTime(job.getSubmitTime())
+                        .startTime(job.getStartTime())
+                        .endTime(job.getEndTime())
+                        .errorMessage(job.getErrorMessage())
+                        .build())
+                .build();
+    }
 
-        // 关闭 Git 资源连接
-        git.close();
+    /**
+     * 删除知识库标签。pgvector 下直接删除该标签的分区，不逐行删除；管理接口，须携带管理密钥
+     *
+     * @param ragTag 知识库标签
+     * @return 删除结果
+     */
+    @RequestMapping(value = "delete_rag_tag", method = RequestMethod.POST)
+    @Override
+    public Response<Boolean> deleteRagTag(@RequestParam("ragTag") String ragTag) {
+        vectorWriter.dropRagTag(ragTag);
+        ragTagRegistry.remove(ragTag);
+        // 标签下的仓库再次索引时需要全量重建
+        gitRepositoryIndexer.forget(ragTag);
+        chunkDeduplicator.forget(ragTag);
+        semanticResponseCache.invalidate(ragTag);
+        log.info("删除知识库标签完成 ragTag:{}", ragTag);
+        return Response.<Boolean>builder().code("0000").info("调用成功").data(true).build();
+    }
 
-        log.info("遍历解析路径，上传完成:{}", repoUrl);
+    /**
+     * 量化检索召回率与延迟报告，只支持 pgvector 存储。每个样本要跑一次精确检索和三次量化检索，
+     * 开销较大，因此只接受 POST，且 samples / topK 在存储层分别限制在 100 / 50 以内
+     *
+     * @param ragTag  知识库标签
+     * @param samples 抽样查询数，最多 100
+     * @param topK    每次查询返回的条数，最多 50
+     * @return 各量化方式的 recall@topK、平均与 p95 耗时及索引大小
+     */
+    @RequestMapping(value = "query_quantization_report", method = RequestMethod.POST)
+    @Override
+    public Response<QuantizationReportResponseDTO> queryQuantizationReport(@RequestParam("ragTag") String ragTag,
+                                                                           @RequestParam(value = "samples", defaultValue = "50") int samples,
+                                                                           @RequestParam(value = "topK", defaultValue = "5") int topK) {
+        PartitionedPgVectorStore pgVectorStore = partitionedPgVectorStoreProvider.getIfAvailable();
+        if (null == pgVectorStore) {
+            return Response.<QuantizationReportResponseDTO>builder().code("0001").info("当前向量存储不支持量化").build();
+        }
+        QuantizationReport report = pgVectorStore.quantizationReport(ragTag, samples, topK);
+        log.info("量化检索报告 ragTag:{} {}", ragTag, report);
+        return Response.<QuantizationReportResponseDTO>builder()
+                .code("0000")
+                .info("调用成功")
+                .data(QuantizationReportResponseDTO.builder()
+                        .ragTag(report.getRagTag())
+                        .quantization(report.getQuantization())
+                        .samples(report.getSamples())
+                        .topK(report.getTopK())
+                        .candidates(report.getCandidates())
+                        .exactMeanMillis(report.getExactMeanMillis())
+                        .entries(report.getEntries().stream()
+                                .map(entry -> QuantizationReportResponseDTO.Entry.builder()
+                                        .quantization(entry.getQuantization())
+                                        .indexed(entry.isIndexed())
+                                        .indexBytes(entry.getIndexBytes())
+                                        .recall(entry.getRecall())
+                                        .meanMillis(entry.getMeanMillis())
+                                        .p95Millis(entry.getP95Millis())
+                                        .build())
+                                .toList())
+                        .build())
+                .build();
+    }
 
-        return Response.<String>builder().code("0000").info("调用成功").build();
+    /**
+     * 更新标签统计：切片数按写入行数减去删除行数累加
+     */
+    private void _recordIngest(String ragTag, IngestProgress progress) {
+        ragTagRegistry.recordIngest(ragTag, progress.getRowsWritten().get() - progress.getRowsDeleted().get(),
+                progress.getBytesParsed().get());
     }
 
     /**
@@ -0,0 +1,92 @@
+package com.malog.hxxxi.dev.tech.trigger;
+
+import com.malog.hxxxi.dev.tech.api.IRateLimitService;
+import com.malog.hxxxi.dev.tech.api.dto.RateLimitRuleDTO;
+import com.malog.hxxxi.dev.tech.api.response.Response;
+import com.malog.hxxxi.dev.tech.domain.ratelimit.model.RateLimitRule;
+import com.malog.hxxxi.dev.tech.domain.ratelimit.service.ClientRateLimiter;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * @Auth : Malog
+ * @Desc : 限流规则管理，修改后通过 Redis topic 通知各节点重新加载。
+ *         须携带管理密钥（见 AdminKeyFilter），且不开放跨域访问
+ * @Time : 2026/10/22 11:30
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/v1/rate_limit/")
+public class RateLimitController implements IRateLimitService {
+
+    @Resource
+    private ClientRateLimiter clientRateLimiter;
+
+    /**
+     * 查询全部限流规则
+     *
+     * @return 按接口类别排序的规则列表
+     */
+    @RequestMapping(value = "query_rules", method = RequestMethod.GET)
+    @Override
+    public Response<List<RateLimitRuleDTO>> queryRules() {
+        List<RateLimitRuleDTO> rules = clientRateLimiter.rules().stream()
+                .map(rule -> RateLimitRuleDTO.builder()
+                        .endpointClass(rule.getEndpointClass())
+                        .paths(rule.getPaths())
+                        .enabled(rule.isEnabled())
+                        .requests(rule.getRequests())
+                        .requestsIntervalSeconds(rule.getRequestsIntervalSeconds())
+                        .concurrent(rule.getConcurrent())
+                        .bytes(rule.getBytes())
+                        .bytesIntervalSeconds(rule.getBytesIntervalSeconds())
+                        .build())
+                .toList();
+        return Response.<List<RateLimitRuleDTO>>builder().code("0000").info("调用成功").data(rules).build();
+    }
+
+    /**
+     * 新增或修改限流规则，速率变化时对应客户端重新计数
+     *
+     * @param rule 限流规则
+     * @return 修改结果
+     */
+    @RequestMapping(value = "update_rule", method = RequestMethod.POST)
+    @Override
+    public Response<Boolean> updateRule(@RequestBody RateLimitRuleDTO rule) {
+        if (StringUtils.isBlank(rule.getEndpointClass()) || null == rule.getPaths() || rule.getPaths().isEmpty()) {
+            return Response.<Boolean>builder().code("0001").info("接口类别与匹配路径不能为空").data(false).build();
+        }
+        clientRateLimiter.update(RateLimitRule.builder()
+                .endpointClass(rule.getEndpointClass())
+                .paths(rule.getPaths())
+                .enabled(rule.isEnabled())
+                .requests(Math.max(0, rule.getRequests()))
+                .requestsIntervalSeconds(Math.max(1, rule.getRequestsIntervalSeconds()))
+                .concurrent(Math.max(0, rule.getConcurrent()))
+                .bytes(Math.max(0, rule.getBytes()))
+                .bytesIntervalSeconds(Math.max(1, rule.getBytesIntervalSeconds()))
+                .build());
+        log.info("限流规则已修改 {}", rule);
+        return Response.<Boolean>builder().code("0000").info("调用成功").data(true).build();
+    }
+
+    /**
+     * 删除限流规则
+     *
+     * @param endpointClass 接口类别
+     * @return 删除结果
+     */
+    @RequestMapping(value = "delete_rule", method = RequestMethod.POST)
+    @Override
+    public Response<Boolean> deleteRule(@RequestParam("endpointClass") String endpointClass) {
+        clientRateLimiter.remove(endpointClass);
+        log.info("限流规则已删除 endpointClass:{}", endpointClass);
+        return Response.<Boolean>builder().code("0000").info("调用成功").data(true).build();
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.malog.hxxxi.dev.tech.trigger;
+
+import com.alibaba.fastjson.JSON;
+import com.malog.hxxxi.dev.tech.api.response.Response;
+import com.malog.hxxxi.dev.tech.domain.ratelimit.model.RateLimitRule;
+import com.malog.hxxxi.dev.tech.domain.ratelimit.service.ClientRateLimiter;
+import com.malog.hxxxi.dev.tech.domain.ratelimit.service.RateLimitedException;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.redisson.client.RedisException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @Auth : Malog
+ * @Desc : 按客户端限流。客户端以 API Key 区分（请求头或查询串参数，EventSource 无法设置请求头），未携带时按来源 IP；
+ *         依次检查请求数、上传字节数（按 Content-Length）与并发数，超出时返回 429 并携带 Retry-After。
+ *         流式回答在异步请求结束（完成、超时、出错）时才释放并发租约。
+ *         规则按 MVC 路由使用的路径匹配（见 RequestPaths），带 ";" 或编码分隔符的请求直接返回 400。
+ * @Time : 2026/10/22 11:00
+ */
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final ClientRateLimiter clientRateLimiter;
+    private final String apiKeyHeader;
+    private final String apiKeyParam;
+    private final boolean trustForwardedFor;
+
+    public RateLimitFilter(ClientRateLimiter clientRateLimiter, String apiKeyHeader, String apiKeyParam, boolean trustForwardedFor) {
+        this.clientRateLimiter = clientRateLimiter;
+        this.apiKeyHeader = apiKeyHeader;
+        this.apiKeyParam = apiKeyParam;
+        this.trustForwardedFor = trustForwardedFor;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String path = RequestPaths.lookupPath(request);
+        if (null == path) {
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        RateLimitRule rule = HttpMethod.OPTIONS.matches(request.getMethod()) ? null : clientRateLimiter.match(path);
+        if (null == rule) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        String client = clientOf(request);
+        ClientRateLimiter.ConcurrentLease lease;
+        try {
+            clientRateLimiter.acquireRequest(client, rule);
+            clientRateLimiter.acquireBytes(client, rule, Math.max(0, request.getContentLengthLong()));
+            lease = clientRateLimiter.acquireConcurrent(client, rule);
+        } catch (RateLimitedException e) {
+            log.warn("请求被限流 {}", e.getMessage());
+            reject(response, e.getRetryAfterSeconds());
+            return;
+        } catch (RedisException e) {
+            // Redis 不可用时放行，不因限流影响正常服务
+            log.error("限流检查失败，放行请求 client:{} class:{}", client, rule.getEndpointClass(), e);
+            filterChain.doFilter(request, response);
+            return;
+        }
+        if (null == lease) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleasingListener(lease));
+            } else {
+                lease.close();
+            }
+        }
+    }
+
+    /**
+     * 限流检查已在首次分发时完成
+     */
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return true;
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        String apiKey = request.getHeader(apiKeyHeader);
+        if (StringUtils.isBlank(apiKey)) {
+            apiKey = queryParameter(request.getQueryString(), apiKeyParam);
+        }
+        if (StringUtils.isNotBlank(apiKey)) {
+            // Redis 键名中不出现原始 API Key
+            return "key:" + DigestUtils.md5DigestAsHex(apiKey.trim().getBytes(StandardCharsets.UTF_8));
+        }
+        if (trustForwardedFor) {
+            String forwardedFor = request.getHeader("X-Forwarded-For");
+            if (StringUtils.isNotBlank(forwardedFor)) {
+                return "ip:" + StringUtils.substringBefore(forwardedFor, ",").trim();
+            }
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    /**
+     * 只从查询串中取参数。getParameter 对表单和 multipart 请求会先读取并解析整个请求体，
+     * 超大的上传会在字节限流之前被写入临时文件，超限时也只会得到 500 而不是 429
+     */
+    private static String queryParameter(String queryString, String name) {
+        if (StringUtils.isBlank(queryString)) return null;
+        try {
+            for (String pair : StringUtils.split(queryString, '&')) {
+                if (name.equals(URLDecoder.decode(StringUtils.substringBefore(pair, "="), StandardCharsets.UTF_8))) {
+                    return URLDecoder.decode(StringUtils.substringAfter(pair, "="), StandardCharsets.UTF_8);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // 非法的百分号编码，按未携带 API Key 处理
+        }
+        return null;
+    }
+
+    private static void reject(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(JSON.toJSONString(Response.<String>builder().code("0001").info("请求过于频繁，请稍后重试").build()));
+    }
+
+    /**
+     * 异步请求结束时释放并发租约
+     */
+    private record ReleasingListener(ClientRateLimiter.ConcurrentLease lease) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            lease.close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            lease.close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            lease.close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // 重新开始异步处理时监听器会被移除，需要重新注册
+            event.getAsyncContext().addListener(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.malog.hxxxi.dev.tech.trigger;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * @Auth : Malog
+ * @Desc : 过滤器按路径匹配规则时使用的请求路径。Spring MVC 按解码、去掉 ";" 参数后的路径路由，
+ *         直接匹配原始 requestURI 时 "/api/v1/rag;a/delete_rag_tag" 或百分号编码的路径可以绕过鉴权与限流，
+ *         因此按 MVC 相同的方式取应用内路径，并拒绝仍带有 ";" 或编码分隔符的请求。
+ * @Time : 2026/10/23 15:40
+ */
+final class RequestPaths {
+
+    private static final String[] ENCODED_SEPARATORS = {"%2f", "%5c", "%3b", "%25", "%2e"};
+
+    private RequestPaths() {
+    }
+
+    /**
+     * @return 解码后的应用内路径（不含上下文路径），原始 URI 带有 ";" 或编码的分隔符时返回 null，调用方应拒绝请求
+     */
+    static String lookupPath(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        if (null == uri || uri.indexOf(';') >= 0 || StringUtils.containsAny(uri.toLowerCase(), ENCODED_SEPARATORS)) {
+            return null;
+        }
+        return UrlPathHelper.defaultInstance.getLookupPathForRequest(request);
+    }
+
+}